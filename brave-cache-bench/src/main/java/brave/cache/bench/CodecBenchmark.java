@@ -0,0 +1,86 @@
+package brave.cache.bench;
+
+import brave.cache.codec.ByteArrayCodec;
+import brave.cache.codec.JacksonCodec;
+import brave.cache.codec.NamespaceCodec;
+import brave.cache.codec.PathCodec;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+
+    private final ByteArrayCodec byteArrayCodec = new ByteArrayCodec();
+    private final JacksonCodec<Payload> jacksonCodec = new JacksonCodec<>(new ObjectMapper(), Payload.class);
+    private final NamespaceCodec<Long> namespaceCodec = NamespaceCodec.forLong("bench");
+    private final PathCodec<Long> pathCodec = PathCodec.forLong("bench", "user", "/", "profile");
+
+    private byte[] bytes;
+    private Payload payload;
+    private long key;
+
+    private ByteBuffer encodedBytes;
+    private ByteBuffer encodedPayload;
+    private ByteBuffer encodedNamespaceKey;
+    private ByteBuffer encodedPathKey;
+
+    @Setup
+    public void setup() {
+        bytes = new byte[256];
+        payload = Payload.sample(42);
+        key = 1_234_567_890L;
+
+        encodedBytes = byteArrayCodec.encode(bytes);
+        encodedPayload = jacksonCodec.encode(payload);
+        encodedNamespaceKey = namespaceCodec.encode(key);
+        encodedPathKey = pathCodec.encode(key);
+    }
+
+    @Benchmark
+    public ByteBuffer byteArrayEncode() {
+        return byteArrayCodec.encode(bytes);
+    }
+
+    @Benchmark
+    public byte[] byteArrayDecode() {
+        return byteArrayCodec.decode(encodedBytes.duplicate());
+    }
+
+    @Benchmark
+    public ByteBuffer jacksonEncode() {
+        return jacksonCodec.encode(payload);
+    }
+
+    @Benchmark
+    public Payload jacksonDecode() {
+        return jacksonCodec.decode(encodedPayload.duplicate());
+    }
+
+    @Benchmark
+    public ByteBuffer namespaceEncode() {
+        return namespaceCodec.encode(key);
+    }
+
+    @Benchmark
+    public Long namespaceDecode() {
+        return namespaceCodec.decode(encodedNamespaceKey.duplicate());
+    }
+
+    @Benchmark
+    public ByteBuffer pathEncode() {
+        return pathCodec.encode(key);
+    }
+
+    @Benchmark
+    public Long pathDecode() {
+        return pathCodec.decode(encodedPathKey.duplicate());
+    }
+}
@@ -0,0 +1,65 @@
+package brave.cache.bench;
+
+import brave.cache.local.LocalCache;
+import org.cache2k.Cache2kBuilder;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link LocalCache} with a loader, read by several threads over a key space larger than its capacity.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(8)
+@Fork(1)
+public class LocalCacheBenchmark {
+
+    private static final int BATCH_SIZE = 16;
+
+    @Param({"10000"})
+    public int entryCapacity;
+
+    @Param({"5000", "20000"})
+    public int keySpace;
+
+    private org.cache2k.Cache<Long, Payload> backStorage;
+    private LocalCache<Long, Payload> cache;
+
+    @Setup
+    public void setup() {
+        backStorage = Cache2kBuilder.of(Long.class, Payload.class)
+                .name("localCacheBenchmark" + entryCapacity + "x" + keySpace)
+                .entryCapacity(entryCapacity)
+                .expireAfterWrite(5, TimeUnit.MINUTES)
+                .loader(Payload::sample)
+                .build();
+        cache = new LocalCache<>(backStorage);
+    }
+
+    @TearDown
+    public void tearDown() {
+        backStorage.close();
+    }
+
+    @Benchmark
+    public Payload load() {
+        return cache.load(ThreadLocalRandom.current().nextLong(keySpace));
+    }
+
+    @Benchmark
+    public Map<Long, Payload> loadAll() {
+        long firstKey = ThreadLocalRandom.current().nextLong(keySpace - BATCH_SIZE);
+        Long[] keys = new Long[BATCH_SIZE];
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            keys[i] = firstKey + i;
+        }
+        return cache.loadAll(List.of(keys));
+    }
+}
@@ -0,0 +1,23 @@
+package brave.cache.bench;
+
+import java.util.List;
+
+/**
+ * A typical cached value, a few scalar fields and a small list.
+ */
+public class Payload {
+
+    public long id;
+    public String name;
+    public double score;
+    public List<String> tags;
+
+    public static Payload sample(long id) {
+        Payload payload = new Payload();
+        payload.id = id;
+        payload.name = "payload-" + id;
+        payload.score = id * 0.5;
+        payload.tags = List.of("alpha", "beta", "gamma");
+        return payload;
+    }
+}
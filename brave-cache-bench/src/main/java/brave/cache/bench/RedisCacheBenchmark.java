@@ -0,0 +1,128 @@
+package brave.cache.bench;
+
+import brave.cache.codec.ByteArrayCodec;
+import brave.cache.codec.NamespaceCodec;
+import brave.cache.redis.ReactiveRedisCache;
+import brave.cache.redis.RedisCache;
+import brave.cache.util.Tuple;
+import io.lettuce.core.RedisClient;
+import org.openjdk.jmh.annotations.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import redis.embedded.RedisServer;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link RedisCache} and {@link ReactiveRedisCache} against an embedded redis.
+ * <br>
+ * A hit reads one of the {@link #HOT_KEYS} written during setup, a miss reads a never seen key
+ * so that it stays a miss. Keys loaded on miss expire shortly to keep redis small.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class RedisCacheBenchmark {
+
+    private static final int REDIS_PORT = 6799;
+    private static final int HOT_KEYS = 1024;
+    private static final int BATCH_SIZE = 16;
+    private static final long COLD_KEYS_START = 1L << 40;
+
+    @Param({"0.0", "0.5", "0.9", "1.0"})
+    public double hitRatio;
+
+    private final AtomicLong coldKeys = new AtomicLong(COLD_KEYS_START);
+    private final byte[] value = new byte[256];
+
+    private RedisServer redisServer;
+    private RedisClient redisClient;
+    private RedisCache<Long, byte[]> redisCache;
+    private ReactiveRedisCache<Long, byte[]> reactiveRedisCache;
+
+    @Setup
+    public void setup() {
+        redisServer = new RedisServer(REDIS_PORT);
+        redisServer.start();
+        redisClient = RedisClient.create("redis://localhost:" + REDIS_PORT);
+
+        redisCache = new RedisCache.Builder<Long, byte[]>()
+                .redisClient(redisClient)
+                .keyCodec(NamespaceCodec.forLong("bench"))
+                .valueCodec(new ByteArrayCodec())
+                .defaultTimeToLive(Duration.ofSeconds(5))
+                .singleLoader(key -> value)
+                .multiLoader(keys -> {
+                    Map<Long, byte[]> keyValues = new HashMap<>();
+                    keys.forEach(key -> keyValues.put(key, value));
+                    return keyValues;
+                })
+                .build();
+
+        reactiveRedisCache = new ReactiveRedisCache.Builder<Long, byte[]>()
+                .redisClient(redisClient)
+                .keyCodec(NamespaceCodec.forLong("bench"))
+                .valueCodec(new ByteArrayCodec())
+                .defaultTimeToLive(Duration.ofSeconds(5))
+                .singleLoader(key -> Mono.just(value))
+                .multiLoader(keys -> Flux.fromIterable(keys).map(key -> Tuple.tuple(key, value)))
+                .build();
+
+        for (long key = 0; key < HOT_KEYS; key++) {
+            redisCache.put(key, value, Duration.ofHours(1));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        reactiveRedisCache.close();
+        redisCache.close();
+        redisClient.shutdown();
+        redisServer.stop();
+    }
+
+    private long nextKey() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return random.nextDouble() < hitRatio
+                ? random.nextLong(HOT_KEYS)
+                : coldKeys.incrementAndGet();
+    }
+
+    private List<Long> nextKeys() {
+        Long[] keys = new Long[BATCH_SIZE];
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            keys[i] = nextKey();
+        }
+        return List.of(keys);
+    }
+
+    @Benchmark
+    public byte[] load() {
+        return redisCache.load(nextKey());
+    }
+
+    @Benchmark
+    public Map<Long, byte[]> loadAll() {
+        return redisCache.loadAll(nextKeys());
+    }
+
+    @Benchmark
+    public byte[] reactiveGet() {
+        return reactiveRedisCache.get(nextKey()).block();
+    }
+
+    @Benchmark
+    public Map<Long, byte[]> reactiveGetAll() {
+        return reactiveRedisCache.getAll(nextKeys()).block();
+    }
+}
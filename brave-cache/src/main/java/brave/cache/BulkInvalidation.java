@@ -0,0 +1,104 @@
+package brave.cache;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress handle of a bulk invalidation running in background,
+ * e.g. {@link Cache#removeByPrefix(String)}.
+ */
+public class BulkInvalidation {
+
+    private final String pattern;
+    private final AtomicLong scannedKeys = new AtomicLong();
+    private final AtomicLong removedKeys = new AtomicLong();
+    private final CompletableFuture<Long> completion = new CompletableFuture<>();
+    private volatile boolean cancelled;
+
+    public BulkInvalidation(String pattern) {
+        this.pattern = pattern;
+    }
+
+    public static BulkInvalidation completed(String pattern, long removedKeys) {
+        BulkInvalidation bulkInvalidation = new BulkInvalidation(pattern);
+        bulkInvalidation.scanned(removedKeys);
+        bulkInvalidation.removed(removedKeys);
+        bulkInvalidation.complete();
+        return bulkInvalidation;
+    }
+
+    public String getPattern() {
+        return pattern;
+    }
+
+    public long getScannedKeys() {
+        return scannedKeys.get();
+    }
+
+    public long getRemovedKeys() {
+        return removedKeys.get();
+    }
+
+    public boolean isDone() {
+        return completion.isDone();
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Stop the invalidation after the batch in progress.
+     * Keys removed so far stay removed.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * @return Completes with the number of removed keys when the invalidation finishes
+     */
+    public CompletableFuture<Long> completion() {
+        return completion;
+    }
+
+    /**
+     * Block until the invalidation finishes.
+     *
+     * @param timeout Maximum time to wait
+     * @return The number of removed keys
+     */
+    public long await(Duration timeout) throws InterruptedException, TimeoutException {
+        try {
+            return completion.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException exex) {
+            throw new IllegalStateException("Failed to invalidate keys matching " + pattern, exex.getCause());
+        }
+    }
+
+    public void scanned(long keys) {
+        scannedKeys.addAndGet(keys);
+    }
+
+    public void removed(long keys) {
+        removedKeys.addAndGet(keys);
+    }
+
+    public void complete() {
+        completion.complete(removedKeys.get());
+    }
+
+    public void fail(Throwable error) {
+        completion.completeExceptionally(error);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("BulkInvalidation(%s, scanned %d, removed %d%s)",
+                pattern, getScannedKeys(), getRemovedKeys(), isDone() ? ", done" : "");
+    }
+}
@@ -5,6 +5,8 @@ import brave.cache.annotation.CacheableContext;
 import java.time.Duration;
 import java.util.Collection;
 import java.util.Map;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
 
 /**
  * Partly extracted from the interface {@link org.cache2k.Cache}.
@@ -36,12 +38,89 @@ public interface Cache<K, V> {
      */
     boolean put(K key, V value, long expireAtTimestamp);
 
+    /**
+     * Put the (key, value) pair with the default time to live only if the key is absent,
+     * so that a loaded value never overwrites a fresher write.
+     * <br>
+     * @param key The key
+     * @param value The value
+     * @return Whether the value was put
+     * @throws UnsupportedOperationException By default, when the cache cannot put atomically
+     */
+    default boolean putIfAbsent(K key, V value) {
+        throw new UnsupportedOperationException(getClass().getName() + " does not put atomically if absent");
+    }
+
+    /**
+     * Put the (key, value) pair with the default time to live unless the cached value has the same or a newer version.
+     * <br>
+     * @param key The key
+     * @param value The value
+     * @param version The version of a value, e.g. its last modification timestamp
+     * @return Whether the value was put
+     * @throws UnsupportedOperationException By default, when the cache cannot put atomically
+     */
+    default boolean putIfNewer(K key, V value, ToLongFunction<V> version) {
+        throw new UnsupportedOperationException(getClass().getName() + " does not put atomically if newer");
+    }
+
+    /**
+     * Put all the (key, value) pairs at once with the default time to live, by default one by one.
+     * <br>
+     * @param keyValues The key values
+     * @return Success or Failure
+     */
+    default boolean putAll(Map<K, V> keyValues) {
+        boolean succeeded = true;
+        for (Map.Entry<K, V> kv : keyValues.entrySet()) {
+            succeeded &= put(kv.getKey(), kv.getValue());
+        }
+        return succeeded;
+    }
+
+    /**
+     * Put all the (key, value) pairs at once, each with the time to live given by {@param timeToLive}, by default one by one.
+     * <br>
+     * @param keyValues The key values
+     * @param timeToLive The time to live of a value, e.g. shorter for a negative lookup
+     * @return Success or Failure
+     */
+    default boolean putAll(Map<K, V> keyValues, Function<V, Duration> timeToLive) {
+        boolean succeeded = true;
+        for (Map.Entry<K, V> kv : keyValues.entrySet()) {
+            succeeded &= put(kv.getKey(), kv.getValue(), timeToLive.apply(kv.getValue()));
+        }
+        return succeeded;
+    }
+
     long remove(K[] key);
 
     boolean remove(K key);
 
     boolean expireAt(K key, long timestamp);
 
+    /**
+     * Remove all the keys whose encoded form starts with {@param prefix}.
+     * The keys are scanned and removed incrementally in background.
+     * <br>
+     * @param prefix The raw prefix of the encoded keys, e.g. <code>namespace:path/</code>
+     * @return The progress of the removal
+     * @throws UnsupportedOperationException By default, when the cache cannot match encoded keys
+     */
+    default BulkInvalidation removeByPrefix(String prefix) {
+        throw new UnsupportedOperationException(getClass().getName() + " does not remove by prefix");
+    }
+
+    /**
+     * Remove all the keys in the namespace of this cache's key codec.
+     * <br>
+     * @return The progress of the removal
+     * @throws UnsupportedOperationException By default, when the cache cannot match encoded keys
+     */
+    default BulkInvalidation invalidateNamespace() {
+        throw new UnsupportedOperationException(getClass().getName() + " does not invalidate a namespace");
+    }
+
     static <K, V> Cache<K, V> fromContext(CacheableContext cacheableContext) {
         return cacheableContext.getCache();
     }
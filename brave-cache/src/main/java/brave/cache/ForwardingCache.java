@@ -0,0 +1,102 @@
+package brave.cache;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Base of the {@link Cache} decorators, forwards every call to the decorated cache.
+ *
+ * @param <K>
+ * @param <V>
+ */
+public abstract class ForwardingCache<K, V> implements Cache<K, V> {
+
+    protected final Cache<K, V> delegate;
+
+    protected ForwardingCache(Cache<K, V> delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public V load(K key) {
+        return delegate.load(key);
+    }
+
+    @Override
+    public Map<K, V> loadAll(Collection<K> keys) {
+        return delegate.loadAll(keys);
+    }
+
+    @Override
+    public Map<K, V> loadAll(K[] keys) {
+        return delegate.loadAll(keys);
+    }
+
+    @Override
+    public V reloadIfExist(K key) {
+        return delegate.reloadIfExist(key);
+    }
+
+    @Override
+    public boolean put(K key, V value) {
+        return delegate.put(key, value);
+    }
+
+    @Override
+    public boolean put(K key, V value, Duration timeToLive) {
+        return delegate.put(key, value, timeToLive);
+    }
+
+    @Override
+    public boolean put(K key, V value, long expireAtTimestamp) {
+        return delegate.put(key, value, expireAtTimestamp);
+    }
+
+    @Override
+    public boolean putIfAbsent(K key, V value) {
+        return delegate.putIfAbsent(key, value);
+    }
+
+    @Override
+    public boolean putIfNewer(K key, V value, ToLongFunction<V> version) {
+        return delegate.putIfNewer(key, value, version);
+    }
+
+    @Override
+    public boolean putAll(Map<K, V> keyValues) {
+        return delegate.putAll(keyValues);
+    }
+
+    @Override
+    public boolean putAll(Map<K, V> keyValues, Function<V, Duration> timeToLive) {
+        return delegate.putAll(keyValues, timeToLive);
+    }
+
+    @Override
+    public long remove(K[] keys) {
+        return delegate.remove(keys);
+    }
+
+    @Override
+    public boolean remove(K key) {
+        return delegate.remove(key);
+    }
+
+    @Override
+    public boolean expireAt(K key, long timestamp) {
+        return delegate.expireAt(key, timestamp);
+    }
+
+    @Override
+    public BulkInvalidation removeByPrefix(String prefix) {
+        return delegate.removeByPrefix(prefix);
+    }
+
+    @Override
+    public BulkInvalidation invalidateNamespace() {
+        return delegate.invalidateNamespace();
+    }
+}
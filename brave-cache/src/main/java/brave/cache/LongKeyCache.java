@@ -0,0 +1,25 @@
+package brave.cache;
+
+import brave.cache.util.LongObjectMap;
+
+import java.time.Duration;
+
+/**
+ * {@link Cache} of primitive <code>long</code> keys, whose primitive methods never box the keys.
+ * The boxed methods of {@link Cache} are kept for compatibility.
+ *
+ * @param <V>
+ */
+public interface LongKeyCache<V> extends Cache<Long, V> {
+
+    V load(long key);
+
+    LongObjectMap<V> loadAll(long[] keys);
+
+    boolean put(long key, V value);
+
+    boolean put(long key, V value, Duration timeToLive);
+
+    boolean remove(long key);
+
+}
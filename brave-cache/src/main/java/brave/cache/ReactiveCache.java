@@ -1,11 +1,14 @@
 package brave.cache;
 
 import brave.cache.annotation.CacheableContext;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.time.Duration;
 import java.util.Collection;
 import java.util.Map;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
 
 public interface ReactiveCache<K, V> {
 
@@ -38,6 +41,55 @@ public interface ReactiveCache<K, V> {
      */
     Mono<Boolean> put(K key, V value, long expireAtTimestamp);
 
+    /**
+     * Put the (key, value) pair with the default time to live only if the key is absent,
+     * so that a loaded value never overwrites a fresher write.
+     * <br>
+     * @param key The key
+     * @param value The value
+     * @return Whether the value was put, by default an UnsupportedOperationException error when the cache cannot put atomically
+     */
+    default Mono<Boolean> putIfAbsent(K key, V value) {
+        return Mono.error(new UnsupportedOperationException(getClass().getName() + " does not put atomically if absent"));
+    }
+
+    /**
+     * Put the (key, value) pair with the default time to live unless the cached value has the same or a newer version.
+     * <br>
+     * @param key The key
+     * @param value The value
+     * @param version The version of a value, e.g. its last modification timestamp
+     * @return Whether the value was put, by default an UnsupportedOperationException error when the cache cannot put atomically
+     */
+    default Mono<Boolean> putIfNewer(K key, V value, ToLongFunction<V> version) {
+        return Mono.error(new UnsupportedOperationException(getClass().getName() + " does not put atomically if newer"));
+    }
+
+    /**
+     * Put all the (key, value) pairs at once with the default time to live, by default one by one.
+     * <br>
+     * @param keyValues The key values
+     * @return Success or Failure
+     */
+    default Mono<Boolean> putAll(Map<K, V> keyValues) {
+        return Flux.fromIterable(keyValues.entrySet())
+                .concatMap(kv -> put(kv.getKey(), kv.getValue()))
+                .all(Boolean::booleanValue);
+    }
+
+    /**
+     * Put all the (key, value) pairs at once, each with the time to live given by {@param timeToLive}, by default one by one.
+     * <br>
+     * @param keyValues The key values
+     * @param timeToLive The time to live of a value, e.g. shorter for a negative lookup
+     * @return Success or Failure
+     */
+    default Mono<Boolean> putAll(Map<K, V> keyValues, Function<V, Duration> timeToLive) {
+        return Flux.fromIterable(keyValues.entrySet())
+                .concatMap(kv -> put(kv.getKey(), kv.getValue(), timeToLive.apply(kv.getValue())))
+                .all(Boolean::booleanValue);
+    }
+
     Mono<Long> remove(K[] keys);
 
     Mono<Boolean> remove(K key);
@@ -52,6 +104,26 @@ public interface ReactiveCache<K, V> {
      */
     Mono<Boolean> expireAt(K key, long timestampMillis);
 
+    /**
+     * Remove all the keys whose encoded form starts with {@param prefix}.
+     * The keys are scanned and removed incrementally once subscribed, cancelling the subscription stops after the batch in progress.
+     * <br>
+     * @param prefix The raw prefix of the encoded keys, e.g. <code>namespace:path/</code>
+     * @return The completed removal, by default an UnsupportedOperationException error when the cache cannot match encoded keys
+     */
+    default Mono<BulkInvalidation> removeByPrefix(String prefix) {
+        return Mono.error(new UnsupportedOperationException(getClass().getName() + " does not remove by prefix"));
+    }
+
+    /**
+     * Remove all the keys in the namespace of this cache's key codec.
+     * <br>
+     * @return The completed removal, by default an UnsupportedOperationException error when the cache cannot match encoded keys
+     */
+    default Mono<BulkInvalidation> invalidateNamespace() {
+        return Mono.error(new UnsupportedOperationException(getClass().getName() + " does not invalidate a namespace"));
+    }
+
     static <K, V> Cache<K, V> fromContext(CacheableContext cacheableContext) {
         return cacheableContext.getCache();
     }
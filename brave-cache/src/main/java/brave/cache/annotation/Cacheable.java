@@ -16,6 +16,25 @@ public @interface Cacheable
     String name();
     String backend() default "LOCAL";
     String timeToLive();
+
+    /**
+     * Record hits, misses, errors, evictions and latencies through a {@link brave.metric.MetricsCollector},
+     * or a {@link io.micrometer.core.instrument.MeterRegistry} when no collector is defined.
+     */
+    String metrics() default "false";
+
+    /**
+     * Memoize the loaded values within the {@link brave.cache.memo.MemoScope} of the current request.
+     */
+    String memoize() default "false";
+
+    /**
+     * Build a {@link brave.cache.LongKeyCache} which never boxes the keys.
+     * LOCAL caches require {@link Local#keyClass()} to be <code>long</code> or {@link Long},
+     * REDIS caches require {@link Redis#keyCodec()} to be a {@link brave.cache.codec.LongNamespaceCodec}.
+     * The cacheable target may implement {@link brave.cache.redis.LongSingleLoader} and {@link brave.cache.redis.LongMultiLoader}.
+     */
+    boolean longKeys() default false;
     Local local() default @Local(
             keyClass = void.class,
             valueClass = void.class
@@ -24,6 +43,8 @@ public @interface Cacheable
             keyCodec = ByteArrayCodec.class,
             valueCodec = ByteArrayCodec.class
     );
+    WriteBehind writeBehind() default @WriteBehind;
+    Trace trace() default @Trace;
 
     @interface Local {
         long entryCapacity() default Long.MAX_VALUE;
@@ -31,11 +52,108 @@ public @interface Cacheable
         boolean permitNullValues() default true;
         Class<?> keyClass();
         Class<?> valueClass();
+
+        /**
+         * Codecs used to write the entries into the snapshot file and the keys into the invalidation events.
+         * Only required when {@link #snapshotPath()} is set or {@link #invalidationBus()} is enabled.
+         * The cache then fails to build when they are left to the default {@link ByteArrayCodec} with keys or values other than <code>byte[]</code>.
+         */
+        Class<? extends Codec<?>> keyCodec() default ByteArrayCodec.class;
+        Class<? extends Codec<?>> valueCodec() default ByteArrayCodec.class;
+
+        /**
+         * Path of the snapshot file. When set, the cache is restored from this file
+         * on startup and dumped into it on shutdown. Blank means no snapshot.
+         */
+        String snapshotPath() default "";
+
+        /**
+         * Interval between periodic snapshots, e.g. <code>PT5M</code>.
+         * Blank means the snapshot is only dumped on shutdown.
+         */
+        String snapshotInterval() default "";
+
+        /**
+         * Broadcast the keys put or removed on this node so that the other nodes drop their copy,
+         * requires an {@link brave.cache.invalidation.InvalidationBus} bean.
+         */
+        boolean invalidationBus() default false;
     }
 
     @interface Redis {
         Class<? extends Codec<?>> keyCodec();
         Class<? extends Codec<?>> valueCodec();
+
+        /**
+         * Number of keys scanned per <code>SCAN</code> call of a bulk invalidation.
+         */
+        int scanBatchSize() default 500;
+
+        /**
+         * Maximum number of keys removed per second by a bulk invalidation, 0 means unlimited.
+         */
+        int invalidationOpsPerSecond() default 5000;
+
+        /**
+         * {@link io.lettuce.core.ReadFrom} of the <code>GET</code>/<code>MGET</code> reads, e.g. REPLICA_PREFERRED,
+         * blank means reading from the primary. Writes always go to the primary.
+         */
+        String readFrom() default "";
+
+        /**
+         * Comma separated redis URIs of the primary and replicas, or only of the primary to discover its replicas.
+         */
+        String nodes() default "";
+
+        /**
+         * Retry a read on the primary when it fails on the replicas.
+         */
+        String fallbackToPrimary() default "true";
+
+        /**
+         * Expiry of the loader lease which caps the loads of a missing key to one node at a time,
+         * blank means every node loads its misses.
+         */
+        String leaseTimeout() default "";
+
+        /**
+         * How long the nodes which lost the lease wait for the value before loading it themselves.
+         */
+        String leaseWait() default "PT1S";
+
+        /**
+         * Encoded values larger than this number of bytes are split into chunks of this size, 0 means no chunking.
+         */
+        int chunkSize() default 0;
+    }
+
+    /**
+     * Write-behind mode, the cacheable target must implement {@link brave.cache.writebehind.CacheWriter}.
+     */
+    @interface WriteBehind {
+        boolean enabled() default false;
+        int queueCapacity() default 10000;
+        int batchSize() default 100;
+        String flushInterval() default "PT1S";
+        int maxRetries() default 3;
+        String retryBackoff() default "PT0.5S";
+        String offerTimeout() default "PT5S";
+    }
+
+    /**
+     * Record the accesses of a sample of the keys into a trace file,
+     * to be replayed by {@link brave.cache.trace.CacheSimulator}.
+     */
+    @interface Trace {
+        /**
+         * Path of the trace file, blank means no tracing.
+         */
+        String path() default "";
+
+        /**
+         * Fraction of the keys whose accesses are recorded.
+         */
+        String sampleRate() default "0.01";
     }
 
     @Retention(RetentionPolicy.RUNTIME)
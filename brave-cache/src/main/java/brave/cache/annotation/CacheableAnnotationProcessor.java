@@ -9,20 +9,43 @@ import org.springframework.beans.factory.config.ConstructorArgumentValues.ValueH
 import org.springframework.beans.factory.support.BeanDefinitionRegistry;
 import org.springframework.beans.factory.support.BeanDefinitionRegistryPostProcessor;
 import org.springframework.beans.factory.support.GenericBeanDefinition;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
 
 import static org.springframework.beans.factory.config.BeanDefinition.SCOPE_SINGLETON;
 
+/**
+ * Registers a {@link CacheableContext} and a {@link Cache} bean for every bean annotated with {@link Cacheable}.
+ * <br>
+ * Only the types listed in the {@link CacheableIndex} are inspected when an index is found,
+ * unless <code>brave.cache.index.enabled</code> is false. Otherwise every bean class is loaded and reflected.
+ */
 @Slf4j
 @Component
-public class CacheableAnnotationProcessor implements BeanDefinitionRegistryPostProcessor {
+public class CacheableAnnotationProcessor implements BeanDefinitionRegistryPostProcessor, EnvironmentAware {
+
+    private boolean indexEnabled = true;
+
+    @Override
+    public void setEnvironment(Environment environment) {
+        this.indexEnabled = environment.getProperty("brave.cache.index.enabled", Boolean.class, true);
+    }
 
     @Override
     public void postProcessBeanDefinitionRegistry(BeanDefinitionRegistry registry) throws BeansException {
+        CacheableIndex index = indexEnabled ? CacheableIndex.load(ClassUtils.getDefaultClassLoader()) : null;
+        boolean indexed = index != null && index.isPresent();
+        if (indexed) {
+            log.warn("Looking up {} indexed {} types", index.types().size(), Cacheable.class.getName());
+        }
+
         for (String cacheableBeanName : registry.getBeanDefinitionNames()) {
             BeanDefinition cacheableBeanDef = registry.getBeanDefinition(cacheableBeanName);
             String cacheableBeanClassName = cacheableBeanDef.getBeanClassName();
             if (StringUtils.isBlank(cacheableBeanClassName)) continue;
+            if (indexed && !index.contains(cacheableBeanClassName)) continue;
 
             Class<?> cacheableBeanClass;
             try {
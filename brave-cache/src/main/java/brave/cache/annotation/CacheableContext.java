@@ -2,26 +2,58 @@ package brave.cache.annotation;
 
 import brave.cache.Cache;
 import brave.cache.CacheBackend;
+import brave.cache.LongKeyCache;
+import brave.cache.codec.ByteArrayCodec;
 import brave.cache.codec.Codec;
+import brave.cache.codec.LongNamespaceCodec;
+import brave.cache.invalidation.BroadcastingCache;
+import brave.cache.invalidation.InvalidationBus;
 import brave.cache.local.LocalCache;
+import brave.cache.local.LocalCacheSnapshot;
+import brave.cache.local.LocalLongKeyCache;
+import brave.cache.memo.MemoizingCache;
+import brave.cache.metric.CacheInstrumentation;
+import brave.cache.metric.MetricsCacheInstrumentation;
+import brave.cache.redis.LongMultiLoader;
+import brave.cache.redis.LongSingleLoader;
 import brave.cache.redis.MultiLoader;
 import brave.cache.redis.RedisCache;
+import brave.cache.redis.RedisLongKeyCache;
 import brave.cache.redis.SingleLoader;
+import brave.cache.trace.TraceRecorder;
+import brave.cache.trace.TracingCache;
 import brave.cache.util.ConfigResolver;
+import brave.cache.util.LongObjectMap;
+import brave.cache.writebehind.CacheWriter;
+import brave.cache.writebehind.WriteBehindCache;
+import brave.metric.MetricsCollector;
+import io.lettuce.core.ReadFrom;
 import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisURI;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
 import org.cache2k.Cache2kBuilder;
+import org.cache2k.event.CacheEntryEvictedListener;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
 import org.springframework.beans.factory.config.EmbeddedValueResolver;
 import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.ResolvableType;
 import org.springframework.core.env.AbstractEnvironment;
 import org.springframework.expression.ExpressionParser;
 import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.util.ClassUtils;
 import org.springframework.util.StringValueResolver;
 
 import java.lang.reflect.Field;
+import java.nio.file.Path;
 import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import static brave.cache.CacheBackend.REDIS;
 import static brave.cache.CacheBackend.LOCAL;
@@ -29,9 +61,15 @@ import static brave.cache.util.ReflectionUtil.name;
 
 @Slf4j
 @SuppressWarnings("unchecked")
-public class CacheableContext {
+public class CacheableContext implements DisposableBean {
+
+    private static final int MAXIMUM_METRICS_PER_CACHE = 16;
 
     private final Cache<?, ?> cache;
+    private final CacheInstrumentation instrumentation;
+    private LocalCacheSnapshot<?, ?> snapshot;
+    private WriteBehindCache<?, ?> writeBehindCache;
+    private TraceRecorder traceRecorder;
 
     CacheableContext(ConfigurableApplicationContext context, Object target) {
         Cacheable cacheable = target.getClass().getAnnotation(Cacheable.class);
@@ -39,9 +77,11 @@ public class CacheableContext {
         if (cacheable == null)
             throw new IllegalStateException("No " + Cacheable.class.getName() + " annotation found on target " + target);
 
-        this.cache = buildCacheOnCacheableTarget(context, target);
+        this.instrumentation = setupInstrumentation(context, cacheable);
+        this.cache = setupMemo(context, cacheable, setupTrace(context, cacheable,
+                setupWriteBehind(context, target, buildCacheOnCacheableTarget(context, target))));
 
-        injectCacheToCacheableTarget(target);
+        injectCacheToCacheableTarget(context, target);
     }
 
     private Cache<Object, Object> buildCacheOnCacheableTarget(ConfigurableApplicationContext context, Object target) {
@@ -60,10 +100,16 @@ public class CacheableContext {
         CacheBackend backend = configResolver.getEnum(cacheable.backend(), CacheBackend.class);
         log.warn("Setting up {} with backend {}, default ttl {}", cacheable.name(), backend, defaultTimeToLive);
 
+        if (cacheable.longKeys()) {
+            return (Cache<Object, Object>) (Cache<?, ?>) buildLongKeyCache(context, target, backend, defaultTimeToLive);
+        }
+
         if (backend == REDIS) {
             RedisClient redisClient = context.getBean(RedisClient.class);
             Codec<Object> keyCodec = (Codec<Object>) configResolver.getInstance(cacheable.redis().keyCodec());
             Codec<Object> valueCodec = (Codec<Object>) configResolver.getInstance(cacheable.redis().valueCodec());
+            requireCodec(cacheable, "redis.keyCodec", keyCodec, loaderType(target, 0, SingleLoader.class, MultiLoader.class));
+            requireCodec(cacheable, "redis.valueCodec", valueCodec, loaderType(target, 1, SingleLoader.class, MultiLoader.class));
 
             RedisCache.Builder<Object, Object> cacheBuilder = new RedisCache.Builder<>()
                     .redisClient(redisClient)
@@ -71,7 +117,29 @@ public class CacheableContext {
                     .keyCodec(keyCodec)
                     .valueCodec(valueCodec)
                     .singleLoader(singleLoader)
-                    .multiLoader(multiLoader);
+                    .multiLoader(multiLoader)
+                    .scanBatchSize(cacheable.redis().scanBatchSize())
+                    .invalidationOpsPerSecond(cacheable.redis().invalidationOpsPerSecond())
+                    .chunkSize(cacheable.redis().chunkSize())
+                    .instrumentation(instrumentation);
+
+            String readFrom = configResolver.getString(cacheable.redis().readFrom());
+            if (StringUtils.isNotBlank(readFrom)) {
+                List<RedisURI> nodes = Arrays.stream(configResolver.getString(cacheable.redis().nodes()).split(","))
+                        .map(String::trim)
+                        .filter(StringUtils::isNotEmpty)
+                        .map(RedisURI::create)
+                        .collect(Collectors.toList());
+                log.warn("Reading {} from {} of {}", cacheable.name(), readFrom, nodes);
+                cacheBuilder.readFrom(ReadFrom.valueOf(readFrom))
+                        .nodes(nodes)
+                        .fallbackToPrimary(Boolean.parseBoolean(configResolver.getString(cacheable.redis().fallbackToPrimary())));
+            }
+
+            if (StringUtils.isNotBlank(cacheable.redis().leaseTimeout())) {
+                cacheBuilder.leaseTimeout(configResolver.getDuration(cacheable.redis().leaseTimeout()))
+                        .leaseWait(configResolver.getDuration(cacheable.redis().leaseWait()));
+            }
 
             return cacheBuilder.build();
         }
@@ -87,19 +155,242 @@ public class CacheableContext {
                     .permitNullValues(cacheable.local().permitNullValues());
 
             if (singleLoader != null) {
-                //noinspection
-                cacheBuilder.loader(singleLoader::load);
+                cacheBuilder.loader(LocalCache.timedLoader(singleLoader, instrumentation)::load);
+            }
+
+            if (instrumentation != CacheInstrumentation.NOOP) {
+                cacheBuilder.addListener((CacheEntryEvictedListener<Object, Object>) (evictingCache, entry) -> instrumentation.evictions(1));
+            }
+
+            org.cache2k.Cache<Object, Object> backStorage = cacheBuilder.build();
+            setupSnapshot(configResolver, cacheable, backStorage);
+
+            Codec<Object> keyCodec = (Codec<Object>) configResolver.getInstance(cacheable.local().keyCodec());
+            // Prefixes are matched on the encoded keys, only when the key codec encodes the key class
+            LocalCache<Object, Object> localCache = new LocalCache<>(backStorage, instrumentation,
+                    keyCodec.getType() != null && keyCodec.getType().isAssignableFrom(keyClass) ? keyCodec : null);
+            return setupInvalidationBus(context, configResolver, cacheable, localCache);
+        }
+
+        return null;
+    }
+
+    private LongKeyCache<Object> buildLongKeyCache(ConfigurableApplicationContext context, Object target,
+                                                   CacheBackend backend, Duration defaultTimeToLive) {
+        Cacheable cacheable = target.getClass().getAnnotation(Cacheable.class);
+        ConfigResolver configResolver = getConfigResolver(context);
+
+        if (cacheable.writeBehind().enabled() || StringUtils.isNotBlank(configResolver.getString(cacheable.trace().path()))
+                || StringUtils.isNotBlank(configResolver.getString(cacheable.local().snapshotPath())) || cacheable.local().invalidationBus()
+                || StringUtils.isNotBlank(configResolver.getString(cacheable.redis().readFrom()))
+                || StringUtils.isNotBlank(configResolver.getString(cacheable.redis().leaseTimeout()))
+                || cacheable.redis().chunkSize() > 0 || Boolean.parseBoolean(configResolver.getString(cacheable.memoize()))) {
+            throw new IllegalStateException("Cache " + cacheable.name() + " with long keys supports neither write-behind,"
+                    + " trace, snapshot, invalidation bus, replica reads, loader lease, chunking nor memoization");
+        }
+
+        LongSingleLoader<Object> singleLoader = getLongSingleLoader(target);
+        LongMultiLoader<Object> multiLoader = getLongMultiLoader(target);
+
+        if (backend == REDIS) {
+            Codec<?> keyCodec = configResolver.getInstance(cacheable.redis().keyCodec());
+            if (!(keyCodec instanceof LongNamespaceCodec)) {
+                throw new IllegalStateException("Cache " + cacheable.name() + " with long keys requires a "
+                        + LongNamespaceCodec.class.getName() + " key codec");
+            }
+
+            Codec<Object> valueCodec = (Codec<Object>) configResolver.getInstance(cacheable.redis().valueCodec());
+            Class<?> valueType = target instanceof LongSingleLoader || target instanceof LongMultiLoader
+                    ? loaderType(target, 0, LongSingleLoader.class, LongMultiLoader.class)
+                    : loaderType(target, 1, SingleLoader.class, MultiLoader.class);
+            requireCodec(cacheable, "redis.valueCodec", valueCodec, valueType);
+
+            return new RedisLongKeyCache.Builder<>()
+                    .redisClient(context.getBean(RedisClient.class))
+                    .defaultTimeToLive(defaultTimeToLive)
+                    .keyCodec((LongNamespaceCodec) keyCodec)
+                    .valueCodec(valueCodec)
+                    .singleLoader(singleLoader)
+                    .multiLoader(multiLoader)
+                    .scanBatchSize(cacheable.redis().scanBatchSize())
+                    .invalidationOpsPerSecond(cacheable.redis().invalidationOpsPerSecond())
+                    .instrumentation(instrumentation)
+                    .build();
+        }
+
+        if (backend == LOCAL) {
+            Class<?> keyClass = cacheable.local().keyClass();
+            if (keyClass != long.class && keyClass != Long.class) {
+                throw new IllegalStateException("Cache " + cacheable.name() + " with long keys requires key class long, got " + keyClass.getName());
+            }
+
+            Codec<?> keyCodec = configResolver.getInstance(cacheable.local().keyCodec());
+            return new LocalLongKeyCache.Builder<>()
+                    .name(cacheable.name())
+                    .keyCodec(keyCodec instanceof LongNamespaceCodec ? (LongNamespaceCodec) keyCodec : null)
+                    .entryCapacity(cacheable.local().entryCapacity())
+                    .defaultTimeToLive(defaultTimeToLive)
+                    .permitNullValues(cacheable.local().permitNullValues())
+                    .refreshAhead(cacheable.local().refreshAhead())
+                    .singleLoader(singleLoader)
+                    .multiLoader(multiLoader)
+                    .instrumentation(instrumentation)
+                    .build();
+        }
+
+        return null;
+    }
+
+    private LongSingleLoader<Object> getLongSingleLoader(Object target) {
+        if (target instanceof LongSingleLoader) return (LongSingleLoader<Object>) target;
+        if (!(target instanceof SingleLoader)) return null;
+
+        SingleLoader<Long, Object> singleLoader = (SingleLoader<Long, Object>) target;
+        return singleLoader::load;
+    }
+
+    private LongMultiLoader<Object> getLongMultiLoader(Object target) {
+        if (target instanceof LongMultiLoader) return (LongMultiLoader<Object>) target;
+        if (!(target instanceof MultiLoader)) return null;
+
+        MultiLoader<Long, Object> multiLoader = (MultiLoader<Long, Object>) target;
+        return keys -> {
+            Map<Long, Object> keyValues = multiLoader.loadAll(Arrays.stream(keys).boxed().collect(Collectors.toList()));
+            LongObjectMap<Object> primitiveKeyValues = new LongObjectMap<>(keyValues.size());
+            keyValues.forEach(primitiveKeyValues::put);
+            return primitiveKeyValues;
+        };
+    }
+
+    private Cache<Object, Object> setupWriteBehind(ConfigurableApplicationContext context, Object target, Cache<Object, Object> cache) {
+        Cacheable cacheable = target.getClass().getAnnotation(Cacheable.class);
+        Cacheable.WriteBehind writeBehind = cacheable.writeBehind();
+        if (cache == null || !writeBehind.enabled()) return cache;
+
+        if (!(target instanceof CacheWriter)) {
+            throw new IllegalStateException("Write-behind cache " + cacheable.name() + " requires "
+                    + target.getClass().getName() + " to implement " + CacheWriter.class.getName());
+        }
+
+        ConfigResolver configResolver = getConfigResolver(context);
+        WriteBehindCache<Object, Object> writeBehindCache = new WriteBehindCache.Builder<Object, Object>()
+                .name(cacheable.name())
+                .cache(cache)
+                .writer((CacheWriter<Object, Object>) target)
+                .queueCapacity(writeBehind.queueCapacity())
+                .batchSize(writeBehind.batchSize())
+                .flushInterval(configResolver.getDuration(writeBehind.flushInterval()))
+                .maxRetries(writeBehind.maxRetries())
+                .retryBackoff(configResolver.getDuration(writeBehind.retryBackoff()))
+                .offerTimeout(configResolver.getDuration(writeBehind.offerTimeout()))
+                .instrumentation(instrumentation)
+                .build();
+
+        log.warn("Writing {} behind in batches of {}", cacheable.name(), writeBehind.batchSize());
+        this.writeBehindCache = writeBehindCache;
+        return writeBehindCache;
+    }
+
+    private CacheInstrumentation setupInstrumentation(ConfigurableApplicationContext context, Cacheable cacheable) {
+        ConfigResolver configResolver = getConfigResolver(context);
+        if (!Boolean.parseBoolean(configResolver.getString(cacheable.metrics()))) return CacheInstrumentation.NOOP;
+
+        MetricsCollector metricsCollector = context.getBeanProvider(MetricsCollector.class).getIfAvailable();
+        if (metricsCollector == null) {
+            MeterRegistry meterRegistry = context.getBeanProvider(MeterRegistry.class).getIfAvailable();
+            if (meterRegistry == null) {
+                throw new IllegalStateException("Metrics of cache " + cacheable.name() + " require either a "
+                        + MetricsCollector.class.getName() + " or a " + MeterRegistry.class.getName());
             }
+            metricsCollector = new MetricsCollector(meterRegistry, MAXIMUM_METRICS_PER_CACHE);
+        }
+
+        log.warn("Recording metrics of {}", cacheable.name());
+        return new MetricsCacheInstrumentation(metricsCollector, cacheable.name());
+    }
+
+    private Cache<Object, Object> setupInvalidationBus(ConfigurableApplicationContext context, ConfigResolver configResolver,
+                                                       Cacheable cacheable, LocalCache<Object, Object> localCache) {
+        if (!cacheable.local().invalidationBus()) return localCache;
 
-            return new LocalCache<>(cacheBuilder.build());
+        InvalidationBus invalidationBus = context.getBeanProvider(InvalidationBus.class).getIfAvailable();
+        if (invalidationBus == null) {
+            throw new IllegalStateException("Cache " + cacheable.name() + " requires an " + InvalidationBus.class.getName()
+                    + ", e.g. by setting brave.cache.invalidation.topic");
         }
 
+        Codec<Object> keyCodec = (Codec<Object>) configResolver.getInstance(cacheable.local().keyCodec());
+        requireCodec(cacheable, "local.keyCodec", keyCodec, cacheable.local().keyClass());
+        log.warn("Broadcasting invalidations of {}", cacheable.name());
+        return new BroadcastingCache<>(localCache, invalidationBus.register(cacheable.name(), keyCodec, localCache));
+    }
+
+    private Cache<Object, Object> setupTrace(ConfigurableApplicationContext context, Cacheable cacheable, Cache<Object, Object> cache) {
+        if (cache == null || StringUtils.isBlank(cacheable.trace().path())) return cache;
+
+        ConfigResolver configResolver = getConfigResolver(context);
+        Path tracePath = Path.of(configResolver.getString(cacheable.trace().path()));
+        double sampleRate = Double.parseDouble(configResolver.getString(cacheable.trace().sampleRate()));
+
+        log.warn("Tracing {} of the keys of {} into {}", sampleRate, cacheable.name(), tracePath);
+        this.traceRecorder = new TraceRecorder(tracePath, sampleRate);
+        return new TracingCache<>(cache, traceRecorder);
+    }
+
+    private Cache<Object, Object> setupMemo(ConfigurableApplicationContext context, Cacheable cacheable, Cache<Object, Object> cache) {
+        if (cache == null || !Boolean.parseBoolean(getConfigResolver(context).getString(cacheable.memoize()))) return cache;
+
+        log.warn("Memoizing {} within request scopes", cacheable.name());
+        return new MemoizingCache<>(cache);
+    }
+
+    private void setupSnapshot(ConfigResolver configResolver, Cacheable cacheable, org.cache2k.Cache<Object, Object> backStorage) {
+        if (StringUtils.isBlank(cacheable.local().snapshotPath())) return;
+
+        Path snapshotPath = Path.of(configResolver.getString(cacheable.local().snapshotPath()));
+        Codec<Object> keyCodec = (Codec<Object>) configResolver.getInstance(cacheable.local().keyCodec());
+        Codec<Object> valueCodec = (Codec<Object>) configResolver.getInstance(cacheable.local().valueCodec());
+        requireCodec(cacheable, "local.keyCodec", keyCodec, cacheable.local().keyClass());
+        requireCodec(cacheable, "local.valueCodec", valueCodec, cacheable.local().valueClass());
+
+        LocalCacheSnapshot<Object, Object> localCacheSnapshot = new LocalCacheSnapshot<>(backStorage, keyCodec, valueCodec, snapshotPath);
+        localCacheSnapshot.restore();
+
+        if (StringUtils.isNotBlank(cacheable.local().snapshotInterval())) {
+            Duration snapshotInterval = configResolver.getDuration(cacheable.local().snapshotInterval());
+            log.warn("Scheduling snapshot of {} to {} every {}", cacheable.name(), snapshotPath, snapshotInterval);
+            localCacheSnapshot.schedule(snapshotInterval);
+        }
+
+        this.snapshot = localCacheSnapshot;
+    }
+
+    /**
+     * Fail on the default {@link ByteArrayCodec} of a cache whose keys or values are not <code>byte[]</code>,
+     * rather than on their first encoding. Unknown types, e.g. without a loader, are not checked.
+     */
+    private static void requireCodec(Cacheable cacheable, String attribute, Codec<?> codec, Class<?> type) {
+        if (codec.getType() != byte[].class || type == null || type == Object.class || type == void.class || type == byte[].class) return;
+
+        throw new IllegalStateException("Cache " + cacheable.name() + " requires a codec of "
+                + type.getName() + " in @Cacheable(" + attribute + "), " + codec.getClass().getName() + " only encodes byte[]");
+    }
+
+    /**
+     * @return The type argument {@param generic} of the first loader interface implemented by {@param target}, null when unknown
+     */
+    private static Class<?> loaderType(Object target, int generic, Class<?>... loaderClasses) {
+        for (Class<?> loaderClass : loaderClasses) {
+            ResolvableType loader = ResolvableType.forClass(target.getClass()).as(loaderClass);
+            if (loader != ResolvableType.NONE) return loader.getGeneric(generic).resolve();
+        }
         return null;
     }
 
-    private void injectCacheToCacheableTarget(Object target) {
-        for (Field field : target.getClass().getDeclaredFields()) {
-            if (field.getType() != Cache.class) continue;
+    private void injectCacheToCacheableTarget(ConfigurableApplicationContext context, Object target) {
+        for (Field field : injectCandidates(context, target.getClass())) {
+            boolean isLongKeyCacheField = field.getType() == LongKeyCache.class && cache instanceof LongKeyCache;
+            if (field.getType() != Cache.class && !isLongKeyCacheField) continue;
 
             Cacheable.Inject inject = field.getAnnotation(Cacheable.Inject.class);
             if (inject == null) continue;
@@ -121,6 +412,49 @@ public class CacheableContext {
         return (Cache<K, V>) cache;
     }
 
+    @Override
+    public void destroy() throws InterruptedException {
+        WriteBehindCache<?, ?> capturedWriteBehindCache = this.writeBehindCache;
+        this.writeBehindCache = null;
+        if (capturedWriteBehindCache != null) {
+            capturedWriteBehindCache.close();
+        }
+
+        TraceRecorder capturedTraceRecorder = this.traceRecorder;
+        this.traceRecorder = null;
+        if (capturedTraceRecorder != null) {
+            capturedTraceRecorder.close();
+        }
+
+        LocalCacheSnapshot<?, ?> capturedSnapshot = this.snapshot;
+        this.snapshot = null;
+        if (capturedSnapshot != null) {
+            capturedSnapshot.close();
+        }
+    }
+
+    /**
+     * @return The indexed inject fields of {@param targetClass}, or all its fields when it is not indexed
+     */
+    private Field[] injectCandidates(ConfigurableApplicationContext context, Class<?> targetClass) {
+        if (!context.getEnvironment().getProperty("brave.cache.index.enabled", Boolean.class, true)) {
+            return targetClass.getDeclaredFields();
+        }
+
+        List<String> injectFields = CacheableIndex.load(ClassUtils.getDefaultClassLoader()).injectFields(targetClass.getName());
+        if (injectFields == null) return targetClass.getDeclaredFields();
+
+        Field[] fields = new Field[injectFields.size()];
+        for (int i = 0; i < fields.length; i++) {
+            try {
+                fields[i] = targetClass.getDeclaredField(injectFields.get(i));
+            } catch (NoSuchFieldException nsfex) {
+                throw new IllegalStateException("Stale " + CacheableIndex.LOCATION + ", no field " + injectFields.get(i) + " in " + targetClass.getName(), nsfex);
+            }
+        }
+        return fields;
+    }
+
     private ConfigResolver getConfigResolver(ConfigurableApplicationContext context) {
         return new ConfigResolver(
                 stringValueResolver(context),
@@ -0,0 +1,94 @@
+package brave.cache.annotation;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * The {@link Cacheable} types and their {@link Cacheable.Inject} fields, listed at build time by
+ * {@link CacheableIndexProcessor} into <code>META-INF/brave/cacheable.index</code> files.
+ * <br>
+ * Each line holds the binary name of a type followed by its inject fields, separated by tabs.
+ */
+public final class CacheableIndex {
+
+    static final String LOCATION = "META-INF/brave/cacheable.index";
+
+    private static final Map<ClassLoader, CacheableIndex> LOADED = new WeakHashMap<>();
+
+    private final Map<String, List<String>> injectFieldsByType;
+    private final boolean present;
+
+    private CacheableIndex(Map<String, List<String>> injectFieldsByType, boolean present) {
+        this.injectFieldsByType = injectFieldsByType;
+        this.present = present;
+    }
+
+    /**
+     * @return The merged index files visible from {@param classLoader}, loaded once per class loader
+     */
+    public static CacheableIndex load(ClassLoader classLoader) {
+        synchronized (LOADED) {
+            return LOADED.computeIfAbsent(classLoader, CacheableIndex::read);
+        }
+    }
+
+    private static CacheableIndex read(ClassLoader classLoader) {
+        Map<String, List<String>> injectFieldsByType = new HashMap<>();
+        boolean present = false;
+        try {
+            Enumeration<URL> indexUrls = classLoader.getResources(LOCATION);
+            while (indexUrls.hasMoreElements()) {
+                present = true;
+                try (BufferedReader reader = new BufferedReader(new InputStreamReader(indexUrls.nextElement().openStream(), StandardCharsets.UTF_8))) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        if (line.isBlank()) continue;
+                        String[] columns = line.split("\t");
+                        injectFieldsByType.put(columns[0], List.of(Arrays.copyOfRange(columns, 1, columns.length)));
+                    }
+                }
+            }
+        } catch (IOException ioex) {
+            throw new UncheckedIOException("Failed to read " + LOCATION, ioex);
+        }
+        return new CacheableIndex(Collections.unmodifiableMap(injectFieldsByType), present);
+    }
+
+    static String formatLine(String type, List<String> injectFields) {
+        return injectFields.isEmpty() ? type : type + "\t" + String.join("\t", injectFields);
+    }
+
+    /**
+     * @return Whether at least an index file was found, otherwise the types have to be scanned
+     */
+    public boolean isPresent() {
+        return present;
+    }
+
+    public Set<String> types() {
+        return injectFieldsByType.keySet();
+    }
+
+    public boolean contains(String type) {
+        return injectFieldsByType.containsKey(type);
+    }
+
+    /**
+     * @return The inject fields of {@param type}, or null when it is not indexed
+     */
+    public List<String> injectFields(String type) {
+        return injectFieldsByType.get(type);
+    }
+}
@@ -0,0 +1,93 @@
+package brave.cache.annotation;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Writes the {@link CacheableIndex} of the {@link Cacheable} types compiled with it,
+ * so that {@link CacheableAnnotationProcessor} and {@link CacheableContext} do not scan for them at startup.
+ * <br>
+ * Enabled with <code>annotationProcessor project(':brave-cache')</code>.
+ */
+@SupportedAnnotationTypes(CacheableIndexProcessor.CACHEABLE)
+public class CacheableIndexProcessor extends AbstractProcessor {
+
+    static final String CACHEABLE = "brave.cache.annotation.Cacheable";
+    static final String INJECT = "brave.cache.annotation.Cacheable.Inject";
+
+    private final Map<String, List<String>> injectFieldsByType = new TreeMap<>();
+    private final List<Element> originatingElements = new ArrayList<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (element.getKind() != ElementKind.CLASS) continue;
+                index((TypeElement) element);
+            }
+        }
+
+        if (roundEnv.processingOver() && !injectFieldsByType.isEmpty()) {
+            writeIndex();
+        }
+        return false;
+    }
+
+    private void index(TypeElement type) {
+        List<String> injectFields = new ArrayList<>();
+        for (Element enclosed : type.getEnclosedElements()) {
+            if (enclosed.getKind() == ElementKind.FIELD && isAnnotatedWith(enclosed, INJECT)) {
+                injectFields.add(enclosed.getSimpleName().toString());
+            }
+        }
+
+        String binaryName = processingEnv.getElementUtils().getBinaryName(type).toString();
+        injectFieldsByType.put(binaryName, injectFields);
+        originatingElements.add(type);
+    }
+
+    private static boolean isAnnotatedWith(Element element, String annotationName) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            TypeElement annotationType = (TypeElement) mirror.getAnnotationType().asElement();
+            if (annotationType.getQualifiedName().contentEquals(annotationName)) return true;
+        }
+        return false;
+    }
+
+    private void writeIndex() {
+        try {
+            FileObject index = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "",
+                    CacheableIndex.LOCATION, originatingElements.toArray(new Element[0]));
+            try (Writer writer = index.openWriter()) {
+                for (Map.Entry<String, List<String>> entry : injectFieldsByType.entrySet()) {
+                    writer.write(CacheableIndex.formatLine(entry.getKey(), entry.getValue()));
+                    writer.write('\n');
+                }
+            }
+        } catch (IOException ioex) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "Failed to write " + CacheableIndex.LOCATION + ": " + ioex.getMessage());
+        }
+    }
+}
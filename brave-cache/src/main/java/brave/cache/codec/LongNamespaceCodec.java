@@ -0,0 +1,106 @@
+package brave.cache.codec;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Encodes <code>long</code> keys as <code>namespace:digits</code>, writing the ASCII digits directly into the buffer
+ * instead of going through {@link String#valueOf(long)} and {@link Long#parseLong(String)}.
+ * The encoded keys are the same as the ones of a {@link NamespaceCodec} serializing the keys with {@link String#valueOf(long)}.
+ */
+public class LongNamespaceCodec extends NamespaceCodec<Long> {
+
+    private static final int MAX_DIGITS = 20;
+
+    private final byte[] prefix;
+    private final Charset charset;
+
+    public LongNamespaceCodec(String namespace) {
+        this(namespace, Charset.defaultCharset());
+    }
+
+    /**
+     * @param charset Of the namespace, the same as the {@link NamespaceCodec} whose keys are shared,
+     *                the digits are ASCII which every ASCII compatible charset encodes alike
+     */
+    public LongNamespaceCodec(String namespace, Charset charset) {
+        super(namespace, charset);
+        this.charset = charset;
+        this.prefix = (namespace + ":").getBytes(charset);
+    }
+
+    @Override
+    public Class<Long> getType() {
+        return Long.class;
+    }
+
+    @Override
+    public ByteBuffer encode(Long key) {
+        return ByteBuffer.wrap(encodeLong(key));
+    }
+
+    @Override
+    public Long decode(ByteBuffer rawKey) {
+        return decodeLong(rawKey);
+    }
+
+    public byte[] encodeLong(long key) {
+        if (key == Long.MIN_VALUE) {
+            return (getNamespace() + ":" + key).getBytes(charset);
+        }
+
+        byte[] digits = new byte[MAX_DIGITS];
+        int start = MAX_DIGITS;
+        long remaining = Math.abs(key);
+        do {
+            digits[--start] = (byte) ('0' + remaining % 10);
+            remaining /= 10;
+        } while (remaining != 0);
+        if (key < 0) {
+            digits[--start] = '-';
+        }
+
+        int digitsLength = MAX_DIGITS - start;
+        byte[] encoded = new byte[prefix.length + digitsLength];
+        System.arraycopy(prefix, 0, encoded, 0, prefix.length);
+        System.arraycopy(digits, start, encoded, prefix.length, digitsLength);
+        return encoded;
+    }
+
+    public long decodeLong(ByteBuffer rawKey) {
+        ByteBuffer bytes = rawKey.duplicate();
+        bytes.rewind();
+        if (bytes.remaining() <= prefix.length) {
+            throw new IllegalStateException("Invalid caching key of " + bytes.remaining() + " bytes");
+        }
+        for (byte prefixByte : prefix) {
+            if (bytes.get() != prefixByte) {
+                throw new IllegalStateException("Caching key out of namespace " + getNamespace());
+            }
+        }
+
+        boolean negative = bytes.get(bytes.position()) == '-';
+        if (negative) bytes.get();
+
+        long value = 0;
+        while (bytes.hasRemaining()) {
+            int digit = bytes.get() - '0';
+            if (digit < 0 || digit > 9) {
+                throw new IllegalStateException("Invalid digit in caching key");
+            }
+            // Accumulate negatively so that Long.MIN_VALUE fits
+            value = value * 10 - digit;
+        }
+        return negative ? value : -value;
+    }
+
+    @Override
+    public String serialize(Long obj) {
+        return String.valueOf(obj);
+    }
+
+    @Override
+    public Long deserialize(String serializedObj) {
+        return Long.parseLong(serializedObj);
+    }
+}
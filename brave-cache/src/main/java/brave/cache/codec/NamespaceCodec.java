@@ -19,8 +19,12 @@ public abstract class NamespaceCodec<T> implements Codec<T> {
         this.stringCodec = new StringCodec(charset);
     }
 
+    public String getNamespace() {
+        return namespace;
+    }
+
     @Override
-    final public ByteBuffer encode(T obj) {
+    public ByteBuffer encode(T obj) {
         String serializedObj = serialize(obj);
         String boxedSerializedObj = box(serializedObj);
         return stringCodec.encodeValue(boxedSerializedObj);
@@ -33,7 +37,7 @@ public abstract class NamespaceCodec<T> implements Codec<T> {
     }
 
     @Override
-    final public T decode(ByteBuffer rawObj) {
+    public T decode(ByteBuffer rawObj) {
         String boxedSerializedObj = stringCodec.decodeValue(rawObj);
         String serializedObj = unbox(boxedSerializedObj);
         return deserialize(serializedObj);
@@ -46,22 +50,7 @@ public abstract class NamespaceCodec<T> implements Codec<T> {
     public abstract T deserialize(String serializedObj);
 
     public static NamespaceCodec<Long> forLong(String namespace) {
-        return new NamespaceCodec<>(namespace) {
-            @Override
-            public Class<Long> getType() {
-                return Long.class;
-            }
-
-            @Override
-            public Long deserialize(String serializedObj) {
-                return Long.parseLong(serializedObj);
-            }
-
-            @Override
-            public String serialize(Long obj) {
-                return String.valueOf(obj);
-            }
-        };
+        return new LongNamespaceCodec(namespace);
     }
 
     public static NamespaceCodec<String> forString(String namespace) {
@@ -0,0 +1,109 @@
+package brave.cache.invalidation;
+
+import brave.cache.Cache;
+import brave.cache.ForwardingCache;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Publishes an invalidation of every key changed through this cache,
+ * so that the other nodes drop their stale copy.
+ *
+ * @param <K>
+ * @param <V>
+ */
+public class BroadcastingCache<K, V> extends ForwardingCache<K, V> {
+
+    private final InvalidationPublisher<K> publisher;
+
+    public BroadcastingCache(Cache<K, V> delegate, InvalidationPublisher<K> publisher) {
+        super(delegate);
+        this.publisher = publisher;
+    }
+
+    @Override
+    public V reloadIfExist(K key) {
+        V value = delegate.reloadIfExist(key);
+        if (value != null) publisher.publish(key);
+        return value;
+    }
+
+    @Override
+    public boolean put(K key, V value) {
+        boolean put = delegate.put(key, value);
+        publisher.publish(key);
+        return put;
+    }
+
+    @Override
+    public boolean put(K key, V value, Duration timeToLive) {
+        boolean put = delegate.put(key, value, timeToLive);
+        publisher.publish(key);
+        return put;
+    }
+
+    @Override
+    public boolean put(K key, V value, long expireAtTimestamp) {
+        boolean put = delegate.put(key, value, expireAtTimestamp);
+        publisher.publish(key);
+        return put;
+    }
+
+    @Override
+    public boolean putIfAbsent(K key, V value) {
+        boolean put = delegate.putIfAbsent(key, value);
+        if (put) publisher.publish(key);
+        return put;
+    }
+
+    @Override
+    public boolean putIfNewer(K key, V value, ToLongFunction<V> version) {
+        boolean put = delegate.putIfNewer(key, value, version);
+        if (put) publisher.publish(key);
+        return put;
+    }
+
+    @Override
+    public boolean putAll(Map<K, V> keyValues) {
+        boolean put = delegate.putAll(keyValues);
+        for (K key : keyValues.keySet()) {
+            publisher.publish(key);
+        }
+        return put;
+    }
+
+    @Override
+    public boolean putAll(Map<K, V> keyValues, Function<V, Duration> timeToLive) {
+        boolean put = delegate.putAll(keyValues, timeToLive);
+        for (K key : keyValues.keySet()) {
+            publisher.publish(key);
+        }
+        return put;
+    }
+
+    @Override
+    public long remove(K[] keys) {
+        long removed = delegate.remove(keys);
+        for (K key : keys) {
+            publisher.publish(key);
+        }
+        return removed;
+    }
+
+    @Override
+    public boolean remove(K key) {
+        boolean removed = delegate.remove(key);
+        publisher.publish(key);
+        return removed;
+    }
+
+    @Override
+    public boolean expireAt(K key, long timestamp) {
+        boolean expired = delegate.expireAt(key, timestamp);
+        publisher.publish(key);
+        return expired;
+    }
+}
@@ -0,0 +1,21 @@
+package brave.cache.invalidation;
+
+import brave.cache.Cache;
+import brave.cache.codec.Codec;
+
+/**
+ * Propagates the invalidation of LOCAL cache keys to every node of the application.
+ */
+public interface InvalidationBus {
+
+    /**
+     * Register a LOCAL cache to receive the invalidations published by other nodes.
+     *
+     * @param cacheName Name of the cache, same on every node
+     * @param keyCodec Codec to encode the keys in the invalidation events
+     * @param localCache The cache whose keys are removed upon invalidation
+     * @return The publisher of invalidations for this cache
+     */
+    <K> InvalidationPublisher<K> register(String cacheName, Codec<K> keyCodec, Cache<K, ?> localCache);
+
+}
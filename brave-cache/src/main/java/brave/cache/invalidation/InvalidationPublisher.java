@@ -0,0 +1,8 @@
+package brave.cache.invalidation;
+
+@FunctionalInterface
+public interface InvalidationPublisher<K> {
+
+    void publish(K key);
+
+}
@@ -0,0 +1,281 @@
+package brave.cache.invalidation;
+
+import brave.cache.Cache;
+import brave.cache.codec.Codec;
+import brave.config.PropertyIndex;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.CommonClientConfigs;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.LockSupport;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Broadcasts the invalidation of LOCAL cache keys over a Kafka topic, enabled by
+ * <code>brave.cache.invalidation.topic</code>. Requires <code>kafka-clients</code> on the classpath,
+ * which brave-cache does not bring by itself.
+ * <br>
+ * Each event is keyed by <code>cacheName \0 encodedKey</code>, so the topic can be compacted,
+ * and carries the id of the publishing node, which skips its own events.
+ * Every node reads all the partitions of the topic from their end, without consumer group, so a restart
+ * leaves no group behind, and the keys invalidated several times within a poll are removed only once.
+ * <pre>
+ * brave.cache.invalidation:
+ *   topic: cache.invalidation
+ *   bootstrap-servers: localhost:9092
+ *   producer:
+ *     # Kafka producer properties as keys
+ *   consumer:
+ *     # Kafka consumer properties as keys
+ * </pre>
+ */
+@Slf4j
+@Component
+@ConditionalOnClass(name = "org.apache.kafka.clients.consumer.KafkaConsumer")
+@ConditionalOnProperty(prefix = "brave.cache.invalidation", name = "topic")
+public class KafkaInvalidationBus implements InvalidationBus, DisposableBean {
+
+    private static final byte SEPARATOR = 0;
+    private static final Duration POLLING_TIMEOUT = Duration.ofSeconds(1);
+    private static final Duration PARTITIONS_REFRESH = Duration.ofMinutes(1);
+
+    private final String topic;
+    private final Properties producerProperties;
+    private final Properties consumerProperties;
+    private final byte[] nodeId = UUID.randomUUID().toString().getBytes(UTF_8);
+    private final Map<String, Registration<?>> registrations = new ConcurrentHashMap<>();
+
+    private volatile KafkaProducer<byte[], byte[]> producer;
+    private volatile KafkaConsumer<byte[], byte[]> consumer;
+    private volatile boolean closed;
+    private Thread consumerThread;
+
+    @Autowired
+    public KafkaInvalidationBus(ConfigurableEnvironment environment) {
+        this(environment.getRequiredProperty("brave.cache.invalidation.topic"),
+                clientProperties(environment, "producer"),
+                clientProperties(environment, "consumer"));
+    }
+
+    public KafkaInvalidationBus(String topic, Properties producerProperties, Properties consumerProperties) {
+        if (topic.contains(",")) {
+            throw new IllegalStateException("Invalidations are published to and consumed from a single topic, got " + topic);
+        }
+        this.topic = topic.trim();
+        this.producerProperties = producerProperties;
+        this.consumerProperties = consumerProperties;
+    }
+
+    private static Properties clientProperties(ConfigurableEnvironment environment, String client) {
+        Properties properties = PropertyIndex.of(environment).getProperties("brave.cache.invalidation." + client);
+        String bootstrapServers = environment.getProperty("brave.cache.invalidation.bootstrap-servers");
+        if (bootstrapServers != null) {
+            properties.putIfAbsent(CommonClientConfigs.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        }
+        return properties;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        Properties producerConfig = new Properties();
+        producerConfig.putAll(producerProperties);
+        producerConfig.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class.getName());
+        producerConfig.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class.getName());
+        producer = new KafkaProducer<>(producerConfig);
+
+        Properties consumerConfig = new Properties();
+        consumerConfig.putAll(consumerProperties);
+        consumerConfig.remove(ConsumerConfig.GROUP_ID_CONFIG);
+        consumerConfig.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        consumerConfig.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class.getName());
+        consumerConfig.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class.getName());
+        consumer = new KafkaConsumer<>(consumerConfig);
+
+        consumerThread = new Thread(this::consumeInvalidations, "cache-invalidation{" + topic + "}");
+        consumerThread.setDaemon(true);
+        consumerThread.start();
+        log.warn("Consuming invalidations of {}", topic);
+    }
+
+    @Override
+    public <K> InvalidationPublisher<K> register(String cacheName, Codec<K> keyCodec, Cache<K, ?> localCache) {
+        if (registrations.putIfAbsent(cacheName, new Registration<>(keyCodec, localCache)) != null) {
+            throw new IllegalStateException("Cache " + cacheName + " is already registered for invalidation");
+        }
+
+        byte[] cacheNameBytes = cacheName.getBytes(UTF_8);
+        return key -> publish(cacheName, eventKey(cacheNameBytes, keyCodec.encode(key)));
+    }
+
+    private void publish(String cacheName, byte[] eventKey) {
+        KafkaProducer<byte[], byte[]> capturedProducer = this.producer;
+        if (capturedProducer == null) {
+            log.error("Cannot publish invalidation of {}, producer is not ready", cacheName);
+            return;
+        }
+
+        capturedProducer.send(new ProducerRecord<>(topic, eventKey, nodeId), (metadata, ex) -> {
+            if (ex != null) log.error("Failed to publish invalidation of {}", cacheName, ex);
+        });
+    }
+
+    /**
+     * Read the partitions of the topic from their end at start, and the partitions added later from their beginning.
+     */
+    private void consumeInvalidations() {
+        Set<TopicPartition> assigned = new HashSet<>();
+        long partitionsRefreshedNanos = 0;
+        try {
+            while (!closed) {
+                try {
+                    if (assigned.isEmpty() || System.nanoTime() - partitionsRefreshedNanos >= PARTITIONS_REFRESH.toNanos()) {
+                        assignNewPartitions(assigned);
+                        partitionsRefreshedNanos = System.nanoTime();
+                    }
+                    if (assigned.isEmpty()) {
+                        // The topic does not exist yet
+                        LockSupport.parkNanos(POLLING_TIMEOUT.toNanos());
+                        continue;
+                    }
+
+                    applyInvalidations(consumer.poll(POLLING_TIMEOUT));
+                } catch (WakeupException waex) {
+                    throw waex;
+                } catch (RuntimeException ex) {
+                    log.error("Failed to consume invalidations of {}", topic, ex);
+                }
+            }
+        } catch (WakeupException waex) {
+            if (!closed) throw waex;
+        } finally {
+            consumer.close();
+        }
+    }
+
+    private void assignNewPartitions(Set<TopicPartition> assigned) {
+        List<PartitionInfo> partitionInfos = consumer.partitionsFor(topic);
+        if (partitionInfos == null) return;
+
+        List<TopicPartition> newPartitions = new ArrayList<>();
+        for (PartitionInfo partitionInfo : partitionInfos) {
+            TopicPartition partition = new TopicPartition(partitionInfo.topic(), partitionInfo.partition());
+            if (!assigned.contains(partition)) newPartitions.add(partition);
+        }
+        if (newPartitions.isEmpty()) return;
+
+        boolean initial = assigned.isEmpty();
+        assigned.addAll(newPartitions);
+        consumer.assign(assigned);
+        if (initial) {
+            consumer.seekToEnd(newPartitions);
+        } else {
+            consumer.seekToBeginning(newPartitions);
+        }
+    }
+
+    public void applyInvalidations(ConsumerRecords<byte[], byte[]> records) {
+        Map<String, Set<ByteBuffer>> invalidatedKeys = new HashMap<>();
+
+        for (ConsumerRecord<byte[], byte[]> record : records) {
+            if (record.key() == null || Arrays.equals(nodeId, record.value())) continue;
+
+            int separatorIndex = indexOf(record.key(), SEPARATOR);
+            if (separatorIndex < 0) continue;
+
+            String cacheName = new String(record.key(), 0, separatorIndex, UTF_8);
+            byte[] encodedKey = Arrays.copyOfRange(record.key(), separatorIndex + 1, record.key().length);
+            invalidatedKeys.computeIfAbsent(cacheName, name -> new LinkedHashSet<>()).add(ByteBuffer.wrap(encodedKey));
+        }
+
+        invalidatedKeys.forEach((cacheName, encodedKeys) -> {
+            Registration<?> registration = registrations.get(cacheName);
+            if (registration != null) {
+                registration.invalidate(encodedKeys);
+            }
+        });
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        closed = true;
+        KafkaConsumer<byte[], byte[]> capturedConsumer = consumer;
+        if (capturedConsumer != null) {
+            capturedConsumer.wakeup();
+            consumerThread.join(POLLING_TIMEOUT.multipliedBy(5).toMillis());
+        }
+        KafkaProducer<byte[], byte[]> capturedProducer = producer;
+        if (capturedProducer != null) {
+            capturedProducer.close();
+        }
+    }
+
+    static byte[] eventKey(byte[] cacheName, ByteBuffer encodedKey) {
+        ByteBuffer key = encodedKey.duplicate();
+        byte[] eventKey = new byte[cacheName.length + 1 + key.remaining()];
+        System.arraycopy(cacheName, 0, eventKey, 0, cacheName.length);
+        eventKey[cacheName.length] = SEPARATOR;
+        key.get(eventKey, cacheName.length + 1, key.remaining());
+        return eventKey;
+    }
+
+    private static int indexOf(byte[] bytes, byte value) {
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] == value) return i;
+        }
+        return -1;
+    }
+
+    private static class Registration<K> {
+
+        private final Codec<K> keyCodec;
+        private final Cache<K, ?> localCache;
+
+        Registration(Codec<K> keyCodec, Cache<K, ?> localCache) {
+            this.keyCodec = keyCodec;
+            this.localCache = localCache;
+        }
+
+        void invalidate(Set<ByteBuffer> encodedKeys) {
+            for (ByteBuffer encodedKey : encodedKeys) {
+                try {
+                    localCache.remove(keyCodec.decode(encodedKey));
+                } catch (RuntimeException ex) {
+                    log.error("Failed to invalidate key {}", encodedKey, ex);
+                }
+            }
+        }
+    }
+}
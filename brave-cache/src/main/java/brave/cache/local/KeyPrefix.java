@@ -0,0 +1,30 @@
+package brave.cache.local;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Raw prefix of encoded keys, matched by the LOCAL caches the way <code>SCAN MATCH</code> does on REDIS caches.
+ */
+final class KeyPrefix {
+
+    private final byte[] prefix;
+
+    KeyPrefix(String prefix) {
+        this.prefix = prefix.getBytes(StandardCharsets.UTF_8);
+    }
+
+    boolean matches(ByteBuffer encodedKey) {
+        if (encodedKey.remaining() < prefix.length) return false;
+
+        int start = encodedKey.position();
+        for (int i = 0; i < prefix.length; i++) {
+            if (encodedKey.get(start + i) != prefix[i]) return false;
+        }
+        return true;
+    }
+
+    boolean matches(byte[] encodedKey) {
+        return matches(ByteBuffer.wrap(encodedKey));
+    }
+}
@@ -1,33 +1,59 @@
 package brave.cache.local;
 
+import brave.cache.BulkInvalidation;
 import brave.cache.Cache;
+import brave.cache.codec.Codec;
+import brave.cache.metric.CacheInstrumentation;
+import brave.cache.redis.SingleLoader;
 
 import java.time.Duration;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.function.ToLongFunction;
 
 public class LocalCache<K, V> implements Cache<K, V> {
 
     private final org.cache2k.Cache<K, V> backStorage;
+    private final LocalStorage<K, V> storage;
 
     public LocalCache(org.cache2k.Cache<K, V> backStorage) {
+        this(backStorage, CacheInstrumentation.NOOP);
+    }
+
+    public LocalCache(org.cache2k.Cache<K, V> backStorage, CacheInstrumentation instrumentation) {
+        this(backStorage, instrumentation, null);
+    }
+
+    /**
+     * @param keyCodec Encodes the keys matched by {@link #removeByPrefix(String)}, none when null
+     */
+    public LocalCache(org.cache2k.Cache<K, V> backStorage, CacheInstrumentation instrumentation, Codec<K> keyCodec) {
         this.backStorage = backStorage;
+        this.storage = new LocalStorage<>(backStorage, instrumentation, keyCodec);
+    }
+
+    /**
+     * @return {@param loader} recording its latency and failures into {@param instrumentation},
+     * to be set as the loader of the back storage
+     */
+    public static <K, V> SingleLoader<K, V> timedLoader(SingleLoader<K, V> loader, CacheInstrumentation instrumentation) {
+        return LocalStorage.timed(loader, instrumentation);
     }
 
     @Override
     public V load(K key) {
-        return backStorage.get(key);
+        return storage.load(key);
     }
 
     @Override
     public Map<K, V> loadAll(Collection<K> keys) {
-        return backStorage.getAll(keys);
+        return storage.loadAll(keys);
     }
 
     @Override
     public Map<K, V> loadAll(K[] keys) {
-        return backStorage.getAll(List.of(keys));
+        return loadAll(List.of(keys));
     }
 
     @Override
@@ -59,6 +85,29 @@ public class LocalCache<K, V> implements Cache<K, V> {
         return true;
     }
 
+    @Override
+    public boolean putIfAbsent(K key, V value) {
+        return backStorage.putIfAbsent(key, value);
+    }
+
+    /**
+     * The versions are compared within the entry lock, so that a concurrent write cannot slip in between.
+     */
+    @Override
+    public boolean putIfNewer(K key, V value, ToLongFunction<V> version) {
+        return backStorage.invoke(key, entry -> {
+            if (entry.exists() && version.applyAsLong(entry.getValue()) >= version.applyAsLong(value)) return false;
+            entry.setValue(value);
+            return true;
+        });
+    }
+
+    @Override
+    public boolean putAll(Map<K, V> keyValues) {
+        backStorage.putAll(keyValues);
+        return true;
+    }
+
     @Override
     public final long remove(K[] keys) {
         long removed = 0;
@@ -80,4 +129,14 @@ public class LocalCache<K, V> implements Cache<K, V> {
         backStorage.expireAt(key, timestamp);
         return true;
     }
+
+    @Override
+    public BulkInvalidation removeByPrefix(String prefix) {
+        return storage.removeByPrefix(prefix);
+    }
+
+    @Override
+    public BulkInvalidation invalidateNamespace() {
+        return storage.invalidateNamespace();
+    }
 }
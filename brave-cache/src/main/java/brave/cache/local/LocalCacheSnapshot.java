@@ -0,0 +1,216 @@
+package brave.cache.local;
+
+import brave.cache.codec.Codec;
+import lombok.extern.slf4j.Slf4j;
+import org.cache2k.CacheEntry;
+import org.cache2k.processor.MutableCacheEntry;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * Dumps the entries of a cache2k cache into a file and restores them on startup.
+ * <br>
+ * The file is written sequentially as
+ * <code>header, (keyLength, key, valueLength, value, expireAt)*, -1</code>
+ * into a temporary file which then atomically replaces the previous snapshot.
+ * Entries which already expired at restore time are skipped.
+ *
+ * @param <K>
+ * @param <V>
+ */
+@Slf4j
+public class LocalCacheSnapshot<K, V> implements AutoCloseable {
+
+    private static final int MAGIC = 0x42435348;
+    private static final int FORMAT_VERSION = 1;
+    private static final int END_OF_ENTRIES = -1;
+
+    private final org.cache2k.Cache<K, V> backStorage;
+    private final Codec<K> keyCodec;
+    private final Codec<V> valueCodec;
+    private final Path path;
+
+    private ScheduledExecutorService scheduler;
+
+    public LocalCacheSnapshot(org.cache2k.Cache<K, V> backStorage, Codec<K> keyCodec, Codec<V> valueCodec, Path path) {
+        this.backStorage = backStorage;
+        this.keyCodec = keyCodec;
+        this.valueCodec = valueCodec;
+        this.path = path;
+    }
+
+    public synchronized void schedule(Duration interval) {
+        if (scheduler != null) {
+            throw new IllegalStateException("Snapshot of " + path + " is already scheduled");
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cache-snapshot-" + backStorage.getName());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        long intervalMillis = interval.toMillis();
+        scheduler.scheduleWithFixedDelay(this::dumpQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Restore the non-expired entries of the snapshot file into the cache.
+     *
+     * @return Number of restored entries
+     */
+    public int restore() {
+        if (!Files.isRegularFile(path)) {
+            log.warn("No snapshot found at {}", path);
+            return 0;
+        }
+
+        long now = System.currentTimeMillis();
+        int restored = 0;
+        int skipped = 0;
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                log.error("Snapshot {} is too large to be restored: {} bytes", path, channel.size());
+                return 0;
+            }
+
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (mapped.remaining() < 16 || mapped.getInt() != MAGIC || mapped.getInt() != FORMAT_VERSION) {
+                log.error("Ignoring snapshot {} with unknown format", path);
+                return 0;
+            }
+            long createdAt = mapped.getLong();
+
+            int keyLength;
+            while ((keyLength = mapped.getInt()) != END_OF_ENTRIES) {
+                ByteBuffer keyBytes = slice(mapped, keyLength);
+                int valueLength = mapped.getInt();
+                ByteBuffer valueBytes = slice(mapped, valueLength);
+                long expireAt = mapped.getLong();
+
+                if (expireAt <= now) {
+                    skipped += 1;
+                    continue;
+                }
+
+                K key = keyCodec.decode(keyBytes);
+                V value = valueCodec.decode(valueBytes);
+                backStorage.put(key, value);
+                backStorage.expireAt(key, expireAt);
+                restored += 1;
+            }
+
+            log.warn("Restored {} entries, skipped {} expired entries of cache {} from snapshot {} taken {} ms ago",
+                    restored, skipped, backStorage.getName(), path, now - createdAt);
+        } catch (IOException | RuntimeException ex) {
+            log.error("Failed to restore snapshot {} after {} entries", path, restored, ex);
+        }
+
+        return restored;
+    }
+
+    /**
+     * Write all the non-expired entries of the cache into the snapshot file.
+     *
+     * @return Number of written entries
+     */
+    public synchronized int dump() throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+
+        Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+        long now = System.currentTimeMillis();
+        int written = 0;
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempPath)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(now);
+
+            for (CacheEntry<K, V> entry : backStorage.entries()) {
+                if (entry.getExceptionInfo() != null) continue;
+
+                V value = entry.getValue();
+                if (value == null) continue;
+
+                long expireAt = expiryOf(entry.getKey());
+                if (expireAt <= now) continue;
+
+                write(out, keyCodec.encode(entry.getKey()));
+                write(out, valueCodec.encode(value));
+                out.writeLong(expireAt);
+                written += 1;
+            }
+
+            out.writeInt(END_OF_ENTRIES);
+        }
+
+        Files.move(tempPath, path, REPLACE_EXISTING, ATOMIC_MOVE);
+        log.warn("Dumped {} entries of cache {} to snapshot {}", written, backStorage.getName(), path);
+        return written;
+    }
+
+    private void dumpQuietly() {
+        try {
+            dump();
+        } catch (IOException | RuntimeException ex) {
+            log.error("Failed to dump cache {} to snapshot {}", backStorage.getName(), path, ex);
+        }
+    }
+
+    /**
+     * cache2k reports a negative expiry time for sharp expiry, 0 for an absent entry.
+     */
+    private long expiryOf(K key) {
+        Long expiryTime = backStorage.invoke(key, MutableCacheEntry::getExpiryTime);
+        if (expiryTime == null) return 0;
+        return Math.abs(expiryTime);
+    }
+
+    private static ByteBuffer slice(ByteBuffer source, int length) {
+        ByteBuffer slice = source.slice();
+        slice.limit(length);
+        source.position(source.position() + length);
+        return slice;
+    }
+
+    private static void write(DataOutputStream out, ByteBuffer bytes) throws IOException {
+        ByteBuffer data = bytes.duplicate();
+        out.writeInt(data.remaining());
+        if (data.hasArray()) {
+            out.write(data.array(), data.arrayOffset() + data.position(), data.remaining());
+        } else {
+            byte[] copied = new byte[data.remaining()];
+            data.get(copied);
+            out.write(copied);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        ScheduledExecutorService capturedScheduler = this.scheduler;
+        this.scheduler = null;
+        if (capturedScheduler != null) {
+            capturedScheduler.shutdownNow();
+        }
+        dumpQuietly();
+    }
+}
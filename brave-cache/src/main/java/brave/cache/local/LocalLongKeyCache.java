@@ -0,0 +1,490 @@
+package brave.cache.local;
+
+import brave.cache.BulkInvalidation;
+import brave.cache.LongKeyCache;
+import brave.cache.codec.LongNamespaceCodec;
+import brave.cache.metric.CacheInstrumentation;
+import brave.cache.redis.LongMultiLoader;
+import brave.cache.redis.LongSingleLoader;
+import brave.cache.util.LongObjectMap;
+import lombok.Setter;
+import lombok.experimental.Accessors;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+/**
+ * LOCAL {@link LongKeyCache} storing the entries in primitive open addressing maps.
+ * <br>
+ * Keys are spread over {@link #SEGMENTS} segments, each guarded by its own lock, so that writes of different segments
+ * do not contend. Expired entries are removed when read, and a few sampled entries of a segment are checked
+ * on each write to it, so that expired entries which are never read again are purged as the cache is written.
+ * When {@link Builder#entryCapacity} is reached, the entry expiring first among {@link #EVICTION_SAMPLES} sampled
+ * entries is evicted, which approximates evicting the oldest entry.
+ * <br>
+ * Loaded null values are cached when {@link Builder#permitNullValues} is set. Entries are not refreshed ahead,
+ * an expired entry is loaded again on its next read.
+ *
+ * @param <V>
+ */
+@Slf4j
+public class LocalLongKeyCache<V> implements LongKeyCache<V> {
+
+    private static final int SEGMENTS = 16;
+    private static final int SEGMENT_SHIFT = Long.SIZE - Integer.numberOfTrailingZeros(SEGMENTS);
+    private static final int EVICTION_SAMPLES = 5;
+    private static final int EXPIRY_SAMPLES = 5;
+
+    private final String name;
+    private final long entryCapacity;
+    private final long defaultTimeToLiveMillis;
+    private final boolean permitNullValues;
+    private final LongSingleLoader<V> singleLoader;
+    private final LongMultiLoader<V> multiLoader;
+    private final CacheInstrumentation instrumentation;
+    private final LongNamespaceCodec keyCodec;
+
+    private final Segment<V>[] segments;
+    private final AtomicLong size = new AtomicLong();
+
+    @SuppressWarnings("unchecked")
+    private LocalLongKeyCache(Builder<V> builder) {
+        this.name = builder.name;
+        this.entryCapacity = builder.entryCapacity;
+        this.defaultTimeToLiveMillis = builder.defaultTimeToLive != null
+                ? builder.defaultTimeToLive.toMillis()
+                : Long.MAX_VALUE;
+        this.permitNullValues = builder.permitNullValues;
+        this.singleLoader = builder.singleLoader;
+        this.multiLoader = builder.multiLoader;
+        this.instrumentation = builder.instrumentation;
+        this.keyCodec = builder.keyCodec;
+        this.segments = new Segment[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment<>();
+        }
+    }
+
+    @Override
+    public V load(long key) {
+        Entry<V> entry = liveEntry(key, System.currentTimeMillis());
+        if (entry != null) {
+            instrumentation.hits(1);
+            return entry.value;
+        }
+
+        instrumentation.misses(1);
+        if (singleLoader == null) return null;
+
+        V value = timedLoad(key);
+        if (value != null || permitNullValues) put(key, value);
+        return value;
+    }
+
+    @Override
+    public LongObjectMap<V> loadAll(long[] keys) {
+        long now = System.currentTimeMillis();
+        LongObjectMap<V> keyValues = new LongObjectMap<>(keys.length);
+        long[] missingKeys = new long[keys.length];
+        int missingCount = 0;
+        int hitCount = 0;
+
+        for (long key : keys) {
+            Entry<V> entry = liveEntry(key, now);
+            if (entry == null) {
+                missingKeys[missingCount++] = key;
+                continue;
+            }
+            hitCount++;
+            if (entry.value != null) keyValues.put(key, entry.value);
+        }
+
+        instrumentation.hits(hitCount);
+        instrumentation.misses(missingCount);
+        if (missingCount == 0) return keyValues;
+
+        long[] loadedKeys = Arrays.copyOf(missingKeys, missingCount);
+        LongObjectMap<V> loadedKeyValues = loadMissing(loadedKeys);
+        for (long key : loadedKeys) {
+            V value = loadedKeyValues.get(key);
+            if (value != null) keyValues.put(key, value);
+            if (value != null || permitNullValues) put(key, value);
+        }
+        return keyValues;
+    }
+
+    private LongObjectMap<V> loadMissing(long[] missingKeys) {
+        long startNanos = System.nanoTime();
+        try {
+            if (multiLoader != null) return multiLoader.loadAll(missingKeys);
+
+            LongObjectMap<V> keyValues = new LongObjectMap<>(missingKeys.length);
+            if (singleLoader == null) return keyValues;
+            for (long key : missingKeys) {
+                keyValues.put(key, singleLoader.load(key));
+            }
+            return keyValues;
+        } catch (RuntimeException ex) {
+            instrumentation.error();
+            throw ex;
+        } finally {
+            instrumentation.loadLatency(System.nanoTime() - startNanos);
+        }
+    }
+
+    private V timedLoad(long key) {
+        long startNanos = System.nanoTime();
+        try {
+            return singleLoader.load(key);
+        } catch (RuntimeException ex) {
+            instrumentation.error();
+            throw ex;
+        } finally {
+            instrumentation.loadLatency(System.nanoTime() - startNanos);
+        }
+    }
+
+    /**
+     * @return The entry of {@param key} unless missing or expired, an expired entry is removed
+     */
+    private Entry<V> liveEntry(long key, long now) {
+        Segment<V> segment = segment(key);
+        Entry<V> entry;
+        segment.lock.readLock().lock();
+        try {
+            entry = segment.entries.get(key);
+        } finally {
+            segment.lock.readLock().unlock();
+        }
+        if (entry == null) return null;
+        if (entry.expireAtMillis > now) return entry;
+
+        segment.lock.writeLock().lock();
+        try {
+            // Unless written again meanwhile
+            if (segment.entries.get(key) == entry) removeEntry(segment, key);
+        } finally {
+            segment.lock.writeLock().unlock();
+        }
+        return null;
+    }
+
+    @Override
+    public boolean put(long key, V value) {
+        return putExpireAt(key, value, expireAt(defaultTimeToLiveMillis));
+    }
+
+    @Override
+    public boolean put(long key, V value, Duration timeToLive) {
+        return putExpireAt(key, value, expireAt(timeToLive.toMillis()));
+    }
+
+    private boolean putExpireAt(long key, V value, long expireAtMillis) {
+        Segment<V> segment = segment(key);
+        segment.lock.writeLock().lock();
+        try {
+            purgeExpired(segment, System.currentTimeMillis());
+            if (segment.entries.put(key, new Entry<>(value, expireAtMillis)) == null) size.incrementAndGet();
+        } finally {
+            segment.lock.writeLock().unlock();
+        }
+        evictOverCapacity();
+        return true;
+    }
+
+    /**
+     * Put {@param value} unless {@param keep} accepts the live entry of {@param key}, within the lock of its segment.
+     */
+    private boolean putUnless(long key, V value, Predicate<Entry<V>> keep) {
+        long now = System.currentTimeMillis();
+        Segment<V> segment = segment(key);
+        segment.lock.writeLock().lock();
+        try {
+            Entry<V> entry = segment.entries.get(key);
+            if (entry != null && entry.expireAtMillis > now && keep.test(entry)) return false;
+
+            purgeExpired(segment, now);
+            if (segment.entries.put(key, new Entry<>(value, expireAt(defaultTimeToLiveMillis))) == null) size.incrementAndGet();
+        } finally {
+            segment.lock.writeLock().unlock();
+        }
+        evictOverCapacity();
+        return true;
+    }
+
+    /**
+     * Remove the expired entries among a few sampled ones of {@param segment}, must hold its write lock.
+     * Each write removes the more expired entries as they are more common, which keeps them a small share of the segment.
+     */
+    private void purgeExpired(Segment<V> segment, long now) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < EXPIRY_SAMPLES && !segment.entries.isEmpty(); i++) {
+            long key = segment.entries.sampleKey(random.nextInt());
+            if (segment.entries.get(key).expireAtMillis <= now) removeEntry(segment, key);
+        }
+    }
+
+    /**
+     * Evict the entry expiring first among a few sampled ones of the segments, until the capacity is respected.
+     */
+    private void evictOverCapacity() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (size.get() > entryCapacity) {
+            Segment<V> victimSegment = null;
+            long victimKey = 0;
+            Entry<V> victim = null;
+            int start = random.nextInt(SEGMENTS);
+            // Sample consecutive segments, skipping the empty ones up to a full round
+            for (int i = 0, samples = 0; i < SEGMENTS && samples < EVICTION_SAMPLES; i++) {
+                Segment<V> segment = segments[(start + i) & (SEGMENTS - 1)];
+                segment.lock.readLock().lock();
+                try {
+                    if (segment.entries.isEmpty()) continue;
+                    samples++;
+                    long key = segment.entries.sampleKey(random.nextInt());
+                    Entry<V> entry = segment.entries.get(key);
+                    if (victim == null || entry.expireAtMillis < victim.expireAtMillis) {
+                        victimSegment = segment;
+                        victimKey = key;
+                        victim = entry;
+                    }
+                } finally {
+                    segment.lock.readLock().unlock();
+                }
+            }
+            if (victim == null) return;
+
+            victimSegment.lock.writeLock().lock();
+            try {
+                if (victimSegment.entries.get(victimKey) == victim) {
+                    removeEntry(victimSegment, victimKey);
+                    instrumentation.evictions(1);
+                }
+            } finally {
+                victimSegment.lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Must hold the write lock of {@param segment}.
+     */
+    private boolean removeEntry(Segment<V> segment, long key) {
+        if (segment.entries.remove(key) == null) return false;
+        size.decrementAndGet();
+        return true;
+    }
+
+    private Segment<V> segment(long key) {
+        return segments[(int) ((key * 0x9E3779B97F4A7C15L) >>> SEGMENT_SHIFT)];
+    }
+
+    private static long expireAt(long timeToLiveMillis) {
+        long now = System.currentTimeMillis();
+        return timeToLiveMillis >= Long.MAX_VALUE - now ? Long.MAX_VALUE : now + timeToLiveMillis;
+    }
+
+    @Override
+    public boolean remove(long key) {
+        Segment<V> segment = segment(key);
+        segment.lock.writeLock().lock();
+        try {
+            return removeEntry(segment, key);
+        } finally {
+            segment.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public V load(Long key) {
+        return load(key.longValue());
+    }
+
+    @Override
+    public Map<Long, V> loadAll(Collection<Long> keys) {
+        return loadAll(keys.stream().mapToLong(Long::longValue).toArray()).toMap();
+    }
+
+    @Override
+    public Map<Long, V> loadAll(Long[] keys) {
+        long[] primitiveKeys = new long[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            primitiveKeys[i] = keys[i];
+        }
+        return loadAll(primitiveKeys).toMap();
+    }
+
+    @Override
+    public V reloadIfExist(Long key) {
+        if (remove(key.longValue())) {
+            return load(key.longValue());
+        }
+        return null;
+    }
+
+    @Override
+    public boolean put(Long key, V value) {
+        return put(key.longValue(), value);
+    }
+
+    @Override
+    public boolean put(Long key, V value, Duration timeToLive) {
+        return put(key.longValue(), value, timeToLive);
+    }
+
+    @Override
+    public boolean put(Long key, V value, long expireAtTimestamp) {
+        return putExpireAt(key, value, expireAtTimestamp);
+    }
+
+    @Override
+    public boolean putIfAbsent(Long key, V value) {
+        return putUnless(key, value, entry -> true);
+    }
+
+    /**
+     * A cached null value, see {@link Builder#permitNullValues}, is older than any version.
+     */
+    @Override
+    public boolean putIfNewer(Long key, V value, ToLongFunction<V> version) {
+        long newVersion = version.applyAsLong(value);
+        return putUnless(key, value, entry -> entry.value != null && version.applyAsLong(entry.value) >= newVersion);
+    }
+
+    @Override
+    public boolean putAll(Map<Long, V> keyValues) {
+        long expireAtMillis = expireAt(defaultTimeToLiveMillis);
+        keyValues.forEach((key, value) -> putExpireAt(key, value, expireAtMillis));
+        return true;
+    }
+
+    @Override
+    public long remove(Long[] keys) {
+        long removed = 0;
+        for (Long key : keys) {
+            if (remove(key.longValue())) {
+                removed += 1;
+            }
+        }
+        return removed;
+    }
+
+    @Override
+    public boolean remove(Long key) {
+        return remove(key.longValue());
+    }
+
+    @Override
+    public boolean expireAt(Long key, long timestamp) {
+        Segment<V> segment = segment(key);
+        segment.lock.writeLock().lock();
+        try {
+            Entry<V> entry = segment.entries.get(key);
+            if (entry == null) return false;
+            segment.entries.put(key, new Entry<>(entry.value, timestamp));
+            return true;
+        } finally {
+            segment.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Every key is encoded with the key codec and removed when it starts with {@param prefix}, segment by segment.
+     */
+    @Override
+    public BulkInvalidation removeByPrefix(String prefix) {
+        if (keyCodec == null) {
+            throw new UnsupportedOperationException("Keys of LOCAL cache " + name + " have no key codec to match a prefix");
+        }
+
+        KeyPrefix keyPrefix = new KeyPrefix(prefix);
+        BulkInvalidation progress = new BulkInvalidation(prefix);
+        for (Segment<V> segment : segments) {
+            segment.lock.writeLock().lock();
+            try {
+                long[] keys = segment.entries.keys();
+                progress.scanned(keys.length);
+                for (long key : keys) {
+                    if (keyPrefix.matches(keyCodec.encodeLong(key)) && segment.entries.remove(key) != null) {
+                        size.decrementAndGet();
+                        progress.removed(1);
+                    }
+                }
+            } finally {
+                segment.lock.writeLock().unlock();
+            }
+        }
+        progress.complete();
+        return progress;
+    }
+
+    @Override
+    public BulkInvalidation invalidateNamespace() {
+        long removed = 0;
+        for (Segment<V> segment : segments) {
+            segment.lock.writeLock().lock();
+            try {
+                int segmentSize = segment.entries.size();
+                segment.entries.clear();
+                size.addAndGet(-segmentSize);
+                removed += segmentSize;
+            } finally {
+                segment.lock.writeLock().unlock();
+            }
+        }
+        return BulkInvalidation.completed(name, removed);
+    }
+
+    private static class Segment<V> {
+
+        private final LongObjectMap<Entry<V>> entries = new LongObjectMap<>();
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    }
+
+    private static class Entry<V> {
+
+        private final V value;
+        private final long expireAtMillis;
+
+        Entry(V value, long expireAtMillis) {
+            this.value = value;
+            this.expireAtMillis = expireAtMillis;
+        }
+    }
+
+    @Setter
+    @Accessors(fluent = true, chain = true)
+    public static class Builder<V> {
+
+        private String name = "";
+        private long entryCapacity = Long.MAX_VALUE;
+        private Duration defaultTimeToLive;
+        private boolean permitNullValues;
+        private boolean refreshAhead;
+        private LongSingleLoader<V> singleLoader;
+        private LongMultiLoader<V> multiLoader;
+        private CacheInstrumentation instrumentation = CacheInstrumentation.NOOP;
+        /**
+         * Encodes the keys matched by {@link LocalLongKeyCache#removeByPrefix(String)}, none when null
+         */
+        private LongNamespaceCodec keyCodec;
+
+        public LocalLongKeyCache<V> build() {
+            if (entryCapacity <= 0) {
+                throw new IllegalStateException("Invalid entry capacity " + entryCapacity + " of cache " + name);
+            }
+            if (refreshAhead) {
+                log.warn("Cache {} with long keys does not refresh ahead, its expired entries are loaded again when read", name);
+            }
+            return new LocalLongKeyCache<>(this);
+        }
+    }
+}
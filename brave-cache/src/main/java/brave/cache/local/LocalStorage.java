@@ -0,0 +1,115 @@
+package brave.cache.local;
+
+import brave.cache.BulkInvalidation;
+import brave.cache.codec.Codec;
+import brave.cache.metric.CacheInstrumentation;
+import brave.cache.redis.SingleLoader;
+import org.cache2k.Cache;
+import org.cache2k.CacheEntry;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads and bulk removals of the back storage shared by {@link LocalCache} and {@link ReactiveLocalCache}.
+ * <br>
+ * Loads always go through the cache2k <code>get</code>/<code>getAll</code>, so that the loader, its refresh
+ * and its {@link org.cache2k.io.CacheLoaderException} are the same whether the cache is instrumented or not.
+ * An instrumented cache peeks first to tell hits from misses, and only gets the missing keys.
+ *
+ * @param <K>
+ * @param <V>
+ */
+final class LocalStorage<K, V> {
+
+    private final Cache<K, V> backStorage;
+    private final CacheInstrumentation instrumentation;
+    private final Codec<K> keyCodec;
+
+    LocalStorage(Cache<K, V> backStorage, CacheInstrumentation instrumentation, Codec<K> keyCodec) {
+        this.backStorage = backStorage;
+        this.instrumentation = instrumentation;
+        this.keyCodec = keyCodec;
+    }
+
+    /**
+     * @return {@param loader} recording its latency and failures, to be set as the loader of the back storage
+     */
+    static <K, V> SingleLoader<K, V> timed(SingleLoader<K, V> loader, CacheInstrumentation instrumentation) {
+        return key -> {
+            long startNanos = System.nanoTime();
+            try {
+                return loader.load(key);
+            } catch (RuntimeException ex) {
+                instrumentation.error();
+                throw ex;
+            } finally {
+                instrumentation.loadLatency(System.nanoTime() - startNanos);
+            }
+        };
+    }
+
+    V load(K key) {
+        if (instrumentation == CacheInstrumentation.NOOP) return backStorage.get(key);
+
+        CacheEntry<K, V> entry = backStorage.peekEntry(key);
+        if (entry != null) {
+            instrumentation.hits(1);
+            return entry.getValue();
+        }
+
+        instrumentation.misses(1);
+        return backStorage.get(key);
+    }
+
+    Map<K, V> loadAll(Collection<K> keys) {
+        if (instrumentation == CacheInstrumentation.NOOP) return backStorage.getAll(keys);
+
+        Map<K, V> present = backStorage.peekAll(keys);
+        instrumentation.hits(present.size());
+        if (present.size() >= keys.size()) return present;
+
+        List<K> missingKeys = new ArrayList<>(keys.size() - present.size());
+        for (K key : keys) {
+            if (!present.containsKey(key)) missingKeys.add(key);
+        }
+        instrumentation.misses(missingKeys.size());
+
+        Map<K, V> keyValues = new HashMap<>(present);
+        keyValues.putAll(backStorage.getAll(missingKeys));
+        return keyValues;
+    }
+
+    /**
+     * Every key is encoded with the key codec and removed when it starts with {@param prefix}, at once.
+     */
+    BulkInvalidation removeByPrefix(String prefix) {
+        if (keyCodec == null) {
+            throw new UnsupportedOperationException("Keys of LOCAL cache " + backStorage.getName() + " have no key codec to match a prefix");
+        }
+
+        KeyPrefix keyPrefix = new KeyPrefix(prefix);
+        BulkInvalidation progress = new BulkInvalidation(prefix);
+        for (K key : backStorage.keys()) {
+            progress.scanned(1);
+            if (keyPrefix.matches(keyCodec.encode(key)) && backStorage.containsAndRemove(key)) {
+                progress.removed(1);
+            }
+        }
+        progress.complete();
+        return progress;
+    }
+
+    BulkInvalidation invalidateNamespace() {
+        long removed = 0;
+        for (K key : backStorage.keys()) {
+            if (backStorage.containsAndRemove(key)) {
+                removed += 1;
+            }
+        }
+        return BulkInvalidation.completed(backStorage.getName(), removed);
+    }
+}
@@ -1,23 +1,45 @@
 package brave.cache.local;
 
+import brave.cache.BulkInvalidation;
 import brave.cache.ReactiveCache;
+import brave.cache.codec.Codec;
+import brave.cache.metric.CacheInstrumentation;
+import brave.cache.redis.SingleLoader;
+import lombok.Setter;
+import lombok.experimental.Accessors;
 import lombok.extern.slf4j.Slf4j;
 import org.cache2k.Cache;
+import org.cache2k.Cache2kBuilder;
 import org.cache2k.CacheException;
+import org.cache2k.event.CacheEntryEvictedListener;
 import reactor.core.publisher.Mono;
 
 import java.time.Duration;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Map;
+import java.util.function.ToLongFunction;
 
 @Slf4j
 public class ReactiveLocalCache<K, V> implements ReactiveCache<K, V> {
 
     private final org.cache2k.Cache<K, V> backStorage;
+    private final LocalStorage<K, V> storage;
 
     public ReactiveLocalCache(Cache<K, V> backStorage) {
+        this(backStorage, CacheInstrumentation.NOOP);
+    }
+
+    public ReactiveLocalCache(Cache<K, V> backStorage, CacheInstrumentation instrumentation) {
+        this(backStorage, instrumentation, null);
+    }
+
+    /**
+     * @param keyCodec Encodes the keys matched by {@link #removeByPrefix(String)}, none when null
+     */
+    public ReactiveLocalCache(Cache<K, V> backStorage, CacheInstrumentation instrumentation, Codec<K> keyCodec) {
         this.backStorage = backStorage;
+        this.storage = new LocalStorage<>(backStorage, instrumentation, keyCodec);
     }
 
     @Override
@@ -37,17 +59,17 @@ public class ReactiveLocalCache<K, V> implements ReactiveCache<K, V> {
 
     @Override
     public Mono<V> get(K key) {
-        return Mono.fromCallable(() -> backStorage.get(key));
+        return Mono.fromCallable(() -> storage.load(key));
     }
 
     @Override
     public Mono<Map<K, V>> getAll(Collection<K> keys) {
-        return Mono.fromCallable(() -> backStorage.getAll(keys));
+        return Mono.fromCallable(() -> storage.loadAll(keys));
     }
 
     @Override
     public Mono<Map<K, V>> getAll(K[] keys) {
-        return Mono.fromCallable(() -> backStorage.getAll(Arrays.asList(keys)));
+        return getAll(Arrays.asList(keys));
     }
 
     @Override
@@ -96,6 +118,38 @@ public class ReactiveLocalCache<K, V> implements ReactiveCache<K, V> {
         });
     }
 
+    @Override
+    public Mono<Boolean> putIfAbsent(K key, V value) {
+        return Mono.fromCallable(() -> backStorage.putIfAbsent(key, value))
+                .onErrorResume(CacheException.class, caex -> {
+                    log.error("Failed to put {}", key, caex);
+                    return Mono.just(false);
+                });
+    }
+
+    @Override
+    public Mono<Boolean> putIfNewer(K key, V value, ToLongFunction<V> version) {
+        return Mono.fromCallable(() -> backStorage.invoke(key, entry -> {
+            if (entry.exists() && version.applyAsLong(entry.getValue()) >= version.applyAsLong(value)) return false;
+            entry.setValue(value);
+            return true;
+        })).onErrorResume(CacheException.class, caex -> {
+            log.error("Failed to put {}", key, caex);
+            return Mono.just(false);
+        });
+    }
+
+    @Override
+    public Mono<Boolean> putAll(Map<K, V> keyValues) {
+        return Mono.fromCallable(() -> {
+            backStorage.putAll(keyValues);
+            return true;
+        }).onErrorResume(CacheException.class, caex -> {
+            log.error("Failed to put {} keys", keyValues.size(), caex);
+            return Mono.just(false);
+        });
+    }
+
     @Override
     public Mono<Long> remove(K[] keys) {
         return Mono.fromCallable(() -> {
@@ -121,4 +175,51 @@ public class ReactiveLocalCache<K, V> implements ReactiveCache<K, V> {
             return true;
         });
     }
+
+    @Override
+    public Mono<BulkInvalidation> removeByPrefix(String prefix) {
+        return Mono.fromCallable(() -> storage.removeByPrefix(prefix));
+    }
+
+    @Override
+    public Mono<BulkInvalidation> invalidateNamespace() {
+        return Mono.fromCallable(storage::invalidateNamespace);
+    }
+
+    /**
+     * Builds the back storage with the loader and the instrumentation, which records its hits, misses, evictions,
+     * load latencies and load failures.
+     */
+    @Setter
+    @Accessors(fluent = true, chain = true)
+    public static class Builder<K, V> {
+
+        /**
+         * The configured back storage, built with the loader and the eviction listener
+         */
+        private Cache2kBuilder<K, V> backStorage;
+        private SingleLoader<K, V> singleLoader;
+        private CacheInstrumentation instrumentation = CacheInstrumentation.NOOP;
+        /**
+         * Encodes the keys matched by {@link ReactiveLocalCache#removeByPrefix(String)}, none when null
+         */
+        private Codec<K> keyCodec;
+
+        public ReactiveLocalCache<K, V> build() {
+            if (backStorage == null) {
+                throw new IllegalStateException("Missing back storage of LOCAL reactive cache");
+            }
+
+            CacheInstrumentation capturedInstrumentation = instrumentation;
+            if (singleLoader != null) {
+                backStorage.loader(LocalStorage.timed(singleLoader, capturedInstrumentation)::load);
+            }
+
+            if (capturedInstrumentation != CacheInstrumentation.NOOP) {
+                backStorage.addListener((CacheEntryEvictedListener<K, V>) (evictingCache, entry) -> capturedInstrumentation.evictions(1));
+            }
+
+            return new ReactiveLocalCache<>(backStorage.build(), capturedInstrumentation, keyCodec);
+        }
+    }
 }
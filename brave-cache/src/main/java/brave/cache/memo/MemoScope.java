@@ -0,0 +1,92 @@
+package brave.cache.memo;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Values memoized by the {@link MemoizingCache} and {@link MemoizingReactiveCache} for the duration of
+ * a unit of work, typically an HTTP request.
+ * <br>
+ * Blocking code binds a scope to the current thread with {@link #open()} and closes it at the end of the work,
+ * reactive code binds it to the Reactor Context of a publisher with {@link #within(Mono)}.
+ * Without any scope, the memoizing caches forward every call.
+ */
+public class MemoScope implements AutoCloseable {
+
+    static final Object CONTEXT_KEY = MemoScope.class;
+
+    private static final ThreadLocal<MemoScope> CURRENT = new ThreadLocal<>();
+
+    private final Map<Object, Map<?, ?>> memos = new ConcurrentHashMap<>();
+    private final MemoScope parent;
+    private final boolean threadBound;
+
+    private MemoScope(MemoScope parent, boolean threadBound) {
+        this.parent = parent;
+        this.threadBound = threadBound;
+    }
+
+    /**
+     * Bind a new scope to the current thread, until it is closed.
+     */
+    public static MemoScope open() {
+        MemoScope scope = new MemoScope(CURRENT.get(), true);
+        CURRENT.set(scope);
+        return scope;
+    }
+
+    /**
+     * @return The scope bound to the current thread, or null
+     */
+    public static MemoScope current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Run {@param mono} within a new scope released when it terminates.
+     */
+    public static <T> Mono<T> within(Mono<T> mono) {
+        return Mono.using(() -> new MemoScope(null, false),
+                scope -> mono.contextWrite(context -> context.put(CONTEXT_KEY, scope)),
+                MemoScope::close);
+    }
+
+    /**
+     * Run {@param flux} within a new scope released when it terminates.
+     */
+    public static <T> Flux<T> within(Flux<T> flux) {
+        return Flux.using(() -> new MemoScope(null, false),
+                scope -> flux.contextWrite(context -> context.put(CONTEXT_KEY, scope)),
+                MemoScope::close);
+    }
+
+    /**
+     * @return The values memoized for {@param cache}
+     */
+    @SuppressWarnings("unchecked")
+    <K, V> Map<K, V> memo(Object cache) {
+        return (Map<K, V>) memos.computeIfAbsent(cache, c -> new ConcurrentHashMap<>());
+    }
+
+    public int size() {
+        return memos.values().stream().mapToInt(Map::size).sum();
+    }
+
+    /**
+     * Release the memoized values and restore the enclosing scope of the thread.
+     */
+    @Override
+    public void close() {
+        memos.clear();
+        if (threadBound && CURRENT.get() == this) {
+            if (parent != null) {
+                CURRENT.set(parent);
+            } else {
+                CURRENT.remove();
+            }
+        }
+    }
+}
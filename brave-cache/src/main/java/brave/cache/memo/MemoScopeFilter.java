@@ -0,0 +1,25 @@
+package brave.cache.memo;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Binds a {@link MemoScope} to the thread of each servlet request.
+ * <br>
+ * Not registered automatically, declare it as a bean of servlet applications.
+ */
+public class MemoScopeFilter extends OncePerRequestFilter {
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        try (MemoScope ignored = MemoScope.open()) {
+            filterChain.doFilter(request, response);
+        }
+    }
+}
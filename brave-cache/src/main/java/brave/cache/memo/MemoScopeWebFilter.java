@@ -0,0 +1,19 @@
+package brave.cache.memo;
+
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+/**
+ * Binds a {@link MemoScope} to the Reactor Context of each WebFlux exchange.
+ * <br>
+ * Not registered automatically, declare it as a bean of WebFlux applications.
+ */
+public class MemoScopeWebFilter implements WebFilter {
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        return MemoScope.within(chain.filter(exchange));
+    }
+}
@@ -0,0 +1,187 @@
+package brave.cache.memo;
+
+import brave.cache.BulkInvalidation;
+import brave.cache.Cache;
+import brave.cache.ForwardingCache;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Memoizes the values loaded through the decorated cache in the {@link MemoScope} bound to the current thread,
+ * so that loading the same key many times within a scope costs a single call to the decorated cache.
+ * <br>
+ * Bulk loads only forward the keys which are not memoized yet. Writes through this cache update the memoized values,
+ * writes through other caches or nodes are not seen until the scope ends.
+ *
+ * @param <K>
+ * @param <V>
+ */
+public class MemoizingCache<K, V> extends ForwardingCache<K, V> {
+
+    public MemoizingCache(Cache<K, V> delegate) {
+        super(delegate);
+    }
+
+    private Map<K, V> memo() {
+        MemoScope scope = MemoScope.current();
+        return scope != null ? scope.memo(this) : null;
+    }
+
+    @Override
+    public V load(K key) {
+        Map<K, V> memo = memo();
+        if (memo == null) return delegate.load(key);
+
+        V value = memo.get(key);
+        if (value != null) return value;
+
+        value = delegate.load(key);
+        if (value != null) memo.put(key, value);
+        return value;
+    }
+
+    @Override
+    public Map<K, V> loadAll(Collection<K> keys) {
+        Map<K, V> memo = memo();
+        if (memo == null) return delegate.loadAll(keys);
+
+        Map<K, V> keyValues = new HashMap<>();
+        List<K> missingKeys = new ArrayList<>();
+        for (K key : keys) {
+            V value = memo.get(key);
+            if (value != null) {
+                keyValues.put(key, value);
+            } else {
+                missingKeys.add(key);
+            }
+        }
+
+        if (!missingKeys.isEmpty()) {
+            Map<K, V> loaded = delegate.loadAll(missingKeys);
+            loaded.forEach((key, value) -> {
+                if (value != null) memo.put(key, value);
+            });
+            keyValues.putAll(loaded);
+        }
+
+        return keyValues;
+    }
+
+    @Override
+    public Map<K, V> loadAll(K[] keys) {
+        if (memo() == null) return delegate.loadAll(keys);
+        return loadAll(Arrays.asList(keys));
+    }
+
+    @Override
+    public V reloadIfExist(K key) {
+        V value = delegate.reloadIfExist(key);
+        remember(key, value);
+        return value;
+    }
+
+    @Override
+    public boolean put(K key, V value) {
+        boolean put = delegate.put(key, value);
+        remember(key, put ? value : null);
+        return put;
+    }
+
+    @Override
+    public boolean put(K key, V value, Duration timeToLive) {
+        boolean put = delegate.put(key, value, timeToLive);
+        remember(key, put ? value : null);
+        return put;
+    }
+
+    @Override
+    public boolean put(K key, V value, long expireAtTimestamp) {
+        boolean put = delegate.put(key, value, expireAtTimestamp);
+        remember(key, put ? value : null);
+        return put;
+    }
+
+    @Override
+    public boolean putIfAbsent(K key, V value) {
+        boolean put = delegate.putIfAbsent(key, value);
+        if (put) remember(key, value);
+        return put;
+    }
+
+    @Override
+    public boolean putIfNewer(K key, V value, ToLongFunction<V> version) {
+        boolean put = delegate.putIfNewer(key, value, version);
+        remember(key, put ? value : null);
+        return put;
+    }
+
+    @Override
+    public boolean putAll(Map<K, V> keyValues) {
+        boolean put = delegate.putAll(keyValues);
+        keyValues.forEach((key, value) -> remember(key, put ? value : null));
+        return put;
+    }
+
+    @Override
+    public boolean putAll(Map<K, V> keyValues, Function<V, Duration> timeToLive) {
+        boolean put = delegate.putAll(keyValues, timeToLive);
+        keyValues.forEach((key, value) -> remember(key, put ? value : null));
+        return put;
+    }
+
+    @Override
+    public long remove(K[] keys) {
+        for (K key : keys) {
+            remember(key, null);
+        }
+        return delegate.remove(keys);
+    }
+
+    @Override
+    public boolean remove(K key) {
+        remember(key, null);
+        return delegate.remove(key);
+    }
+
+    @Override
+    public boolean expireAt(K key, long timestamp) {
+        remember(key, null);
+        return delegate.expireAt(key, timestamp);
+    }
+
+    @Override
+    public BulkInvalidation removeByPrefix(String prefix) {
+        forgetAll();
+        return delegate.removeByPrefix(prefix);
+    }
+
+    @Override
+    public BulkInvalidation invalidateNamespace() {
+        forgetAll();
+        return delegate.invalidateNamespace();
+    }
+
+    private void remember(K key, V value) {
+        Map<K, V> memo = memo();
+        if (memo == null) return;
+
+        if (value != null) {
+            memo.put(key, value);
+        } else {
+            memo.remove(key);
+        }
+    }
+
+    private void forgetAll() {
+        Map<K, V> memo = memo();
+        if (memo != null) memo.clear();
+    }
+}
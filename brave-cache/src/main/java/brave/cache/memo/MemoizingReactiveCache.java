@@ -0,0 +1,224 @@
+package brave.cache.memo;
+
+import brave.cache.BulkInvalidation;
+import brave.cache.ReactiveCache;
+import reactor.core.publisher.Mono;
+import reactor.util.context.ContextView;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Memoizes the values read through the decorated cache in the {@link MemoScope} of the Reactor Context,
+ * see {@link MemoizingCache}.
+ *
+ * @param <K>
+ * @param <V>
+ */
+public class MemoizingReactiveCache<K, V> implements ReactiveCache<K, V> {
+
+    private final ReactiveCache<K, V> delegate;
+
+    public MemoizingReactiveCache(ReactiveCache<K, V> delegate) {
+        this.delegate = delegate;
+    }
+
+    private Map<K, V> memo(ContextView context) {
+        return context.<MemoScope>getOrEmpty(MemoScope.CONTEXT_KEY)
+                .map(scope -> scope.<K, V>memo(this))
+                .orElse(null);
+    }
+
+    @Override
+    public Mono<V> peek(K key) {
+        return memoized(key, delegate::peek);
+    }
+
+    @Override
+    public Mono<Map<K, V>> peekAll(Collection<K> keys) {
+        return memoizedAll(keys, delegate::peekAll);
+    }
+
+    @Override
+    public Mono<Map<K, V>> peekAll(K[] keys) {
+        return memoizedAll(Arrays.asList(keys), delegate::peekAll);
+    }
+
+    @Override
+    public Mono<V> get(K key) {
+        return memoized(key, delegate::get);
+    }
+
+    @Override
+    public Mono<Map<K, V>> getAll(Collection<K> keys) {
+        return memoizedAll(keys, delegate::getAll);
+    }
+
+    @Override
+    public Mono<Map<K, V>> getAll(K[] keys) {
+        return memoizedAll(Arrays.asList(keys), delegate::getAll);
+    }
+
+    private Mono<V> memoized(K key, Function<K, Mono<V>> read) {
+        return Mono.deferContextual(context -> {
+            Map<K, V> memo = memo(context);
+            if (memo == null) return read.apply(key);
+
+            V value = memo.get(key);
+            if (value != null) return Mono.just(value);
+
+            return read.apply(key).doOnNext(loaded -> memo.put(key, loaded));
+        });
+    }
+
+    private Mono<Map<K, V>> memoizedAll(Collection<K> keys, Function<Collection<K>, Mono<Map<K, V>>> readAll) {
+        return Mono.deferContextual(context -> {
+            Map<K, V> memo = memo(context);
+            if (memo == null) return readAll.apply(keys);
+
+            Map<K, V> keyValues = new HashMap<>();
+            List<K> missingKeys = new ArrayList<>();
+            for (K key : keys) {
+                V value = memo.get(key);
+                if (value != null) {
+                    keyValues.put(key, value);
+                } else {
+                    missingKeys.add(key);
+                }
+            }
+
+            if (missingKeys.isEmpty()) return Mono.just(keyValues);
+
+            return readAll.apply(missingKeys).map(loaded -> {
+                loaded.forEach((key, value) -> {
+                    if (value != null) memo.put(key, value);
+                });
+                keyValues.putAll(loaded);
+                return keyValues;
+            });
+        });
+    }
+
+    @Override
+    public Mono<V> reloadIfExist(K key) {
+        return delegate.reloadIfExist(key)
+                .flatMap(value -> remember(key, value).thenReturn(value))
+                .switchIfEmpty(Mono.defer(() -> remember(key, null).then(Mono.<V>empty())));
+    }
+
+    @Override
+    public Mono<Boolean> put(K key, V value) {
+        return delegate.put(key, value).flatMap(put -> remember(key, put ? value : null).thenReturn(put));
+    }
+
+    @Override
+    public Mono<Boolean> put(K key, V value, Duration timeToLive) {
+        return delegate.put(key, value, timeToLive).flatMap(put -> remember(key, put ? value : null).thenReturn(put));
+    }
+
+    @Override
+    public Mono<Boolean> put(K key, V value, long expireAtTimestamp) {
+        return delegate.put(key, value, expireAtTimestamp).flatMap(put -> remember(key, put ? value : null).thenReturn(put));
+    }
+
+    @Override
+    public Mono<Boolean> putIfAbsent(K key, V value) {
+        return delegate.putIfAbsent(key, value).flatMap(put -> put ? remember(key, value).thenReturn(true) : Mono.just(false));
+    }
+
+    @Override
+    public Mono<Boolean> putIfNewer(K key, V value, ToLongFunction<V> version) {
+        return delegate.putIfNewer(key, value, version).flatMap(put -> remember(key, put ? value : null).thenReturn(put));
+    }
+
+    @Override
+    public Mono<Boolean> putAll(Map<K, V> keyValues) {
+        return rememberAll(keyValues, delegate.putAll(keyValues));
+    }
+
+    @Override
+    public Mono<Boolean> putAll(Map<K, V> keyValues, Function<V, Duration> timeToLive) {
+        return rememberAll(keyValues, delegate.putAll(keyValues, timeToLive));
+    }
+
+    private Mono<Boolean> rememberAll(Map<K, V> keyValues, Mono<Boolean> putAll) {
+        return putAll.flatMap(put -> Mono.deferContextual(context -> {
+            Map<K, V> memo = memo(context);
+            if (memo != null) {
+                keyValues.forEach((key, value) -> {
+                    if (put) {
+                        memo.put(key, value);
+                    } else {
+                        memo.remove(key);
+                    }
+                });
+            }
+            return Mono.just(put);
+        }));
+    }
+
+    @Override
+    public Mono<Long> remove(K[] keys) {
+        return Mono.deferContextual(context -> {
+            Map<K, V> memo = memo(context);
+            if (memo != null) {
+                for (K key : keys) {
+                    memo.remove(key);
+                }
+            }
+            return delegate.remove(keys);
+        });
+    }
+
+    @Override
+    public Mono<Boolean> remove(K key) {
+        return remember(key, null).then(delegate.remove(key));
+    }
+
+    @Override
+    public Mono<Boolean> expireAt(K key, long timestampMillis) {
+        return remember(key, null).then(delegate.expireAt(key, timestampMillis));
+    }
+
+    /**
+     * Only the memo of the subscriber context is cleared, the ones of other contexts are released with their scope.
+     */
+    @Override
+    public Mono<BulkInvalidation> removeByPrefix(String prefix) {
+        return forgetAll().then(delegate.removeByPrefix(prefix));
+    }
+
+    @Override
+    public Mono<BulkInvalidation> invalidateNamespace() {
+        return forgetAll().then(delegate.invalidateNamespace());
+    }
+
+    private Mono<Void> remember(K key, V value) {
+        return Mono.deferContextual(context -> {
+            Map<K, V> memo = memo(context);
+            if (memo != null) {
+                if (value != null) {
+                    memo.put(key, value);
+                } else {
+                    memo.remove(key);
+                }
+            }
+            return Mono.empty();
+        });
+    }
+
+    private Mono<Void> forgetAll() {
+        return Mono.deferContextual(context -> {
+            Map<K, V> memo = memo(context);
+            if (memo != null) memo.clear();
+            return Mono.empty();
+        });
+    }
+}
@@ -0,0 +1,26 @@
+package brave.cache.metric;
+
+/**
+ * Receives the measurements of a cache, all methods are no-op by default.
+ * Implementations are called on the hot path and must be cheap and thread-safe.
+ */
+public interface CacheInstrumentation {
+
+    CacheInstrumentation NOOP = new CacheInstrumentation() {};
+
+    default void hits(long count) {}
+
+    default void misses(long count) {}
+
+    /**
+     * A failure of the cache, its loader or its writer.
+     */
+    default void error() {}
+
+    default void evictions(long count) {}
+
+    default void loadLatency(long nanos) {}
+
+    default void redisLatency(long nanos) {}
+
+}
@@ -0,0 +1,126 @@
+package brave.cache.metric;
+
+import brave.metric.CounterMetric;
+import brave.metric.DistributionSummaryMetric;
+import brave.metric.MetricsCollector;
+import io.micrometer.core.instrument.Tags;
+
+/**
+ * Records the measurements of a cache through a {@link MetricsCollector}, tagged by the cache name.
+ * <ul>
+ *     <li><code>brave.cache.gets</code> counts the hits and misses, tagged by <code>result</code></li>
+ *     <li><code>brave.cache.errors</code> counts the failures of redis, the loaders and the writers</li>
+ *     <li><code>brave.cache.evictions</code> counts the LOCAL entries evicted for capacity</li>
+ *     <li><code>brave.cache.load.latency</code> and <code>brave.cache.redis.latency</code> summarize the latencies in milliseconds</li>
+ * </ul>
+ */
+public class MetricsCacheInstrumentation implements CacheInstrumentation {
+
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+    private final MetricsCollector metricsCollector;
+    private final CounterMetric hits;
+    private final CounterMetric misses;
+    private final CounterMetric errors;
+    private final CounterMetric evictions;
+    private final DistributionSummaryMetric loadLatency;
+    private final DistributionSummaryMetric redisLatency;
+
+    public MetricsCacheInstrumentation(MetricsCollector metricsCollector, String cacheName) {
+        Tags cacheTags = Tags.of("cache", cacheName);
+        this.metricsCollector = metricsCollector;
+        this.hits = new CacheCounter("brave.cache.gets", cacheTags.and("result", "hit"));
+        this.misses = new CacheCounter("brave.cache.gets", cacheTags.and("result", "miss"));
+        this.errors = new CacheCounter("brave.cache.errors", cacheTags);
+        this.evictions = new CacheCounter("brave.cache.evictions", cacheTags);
+        this.loadLatency = new CacheLatency("brave.cache.load.latency", cacheTags);
+        this.redisLatency = new CacheLatency("brave.cache.redis.latency", cacheTags);
+    }
+
+    @Override
+    public void hits(long count) {
+        if (count > 0) metricsCollector.increase(hits, count);
+    }
+
+    @Override
+    public void misses(long count) {
+        if (count > 0) metricsCollector.increase(misses, count);
+    }
+
+    @Override
+    public void error() {
+        metricsCollector.increase(errors);
+    }
+
+    @Override
+    public void evictions(long count) {
+        if (count > 0) metricsCollector.increase(evictions, count);
+    }
+
+    @Override
+    public void loadLatency(long nanos) {
+        metricsCollector.collect(loadLatency, nanos / NANOS_PER_MILLI);
+    }
+
+    @Override
+    public void redisLatency(long nanos) {
+        metricsCollector.collect(redisLatency, nanos / NANOS_PER_MILLI);
+    }
+
+    private static class CacheCounter implements CounterMetric {
+
+        private final String metricName;
+        private final Tags tags;
+
+        CacheCounter(String metricName, Tags tags) {
+            this.metricName = metricName;
+            this.tags = tags;
+        }
+
+        @Override
+        public String metricName() {
+            return metricName;
+        }
+
+        @Override
+        public Tags tags() {
+            return tags;
+        }
+
+        @Override
+        public String toString() {
+            return metricName + tags;
+        }
+    }
+
+    private static class CacheLatency implements DistributionSummaryMetric {
+
+        private final String metricName;
+        private final Tags tags;
+
+        CacheLatency(String metricName, Tags tags) {
+            this.metricName = metricName;
+            this.tags = tags;
+        }
+
+        @Override
+        public String metricName() {
+            return metricName;
+        }
+
+        @Override
+        public Tags tags() {
+            return tags;
+        }
+
+        @Override
+        public String baseUnit() {
+            return "milliseconds";
+        }
+
+        @Override
+        public String toString() {
+            return metricName + tags;
+        }
+    }
+}
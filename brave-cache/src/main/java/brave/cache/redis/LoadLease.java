@@ -0,0 +1,69 @@
+package brave.cache.redis;
+
+import io.lettuce.core.SetArgs;
+import io.lettuce.core.codec.RedisCodec;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * Cross-node single-flight of the loader calls.
+ * <br>
+ * On a miss, a node tries to acquire the lease <code>&lt;key&gt;:lease</code> with <code>SET NX PX</code>.
+ * The winner loads and writes the value then releases the lease, the others poll the value every
+ * {@link #pollInterval} up to {@link #waitTime} then load it themselves.
+ * The lease expires after {@link #timeout} so that a crashed winner does not block everyone.
+ *
+ * @param <K>
+ */
+class LoadLease<K> {
+
+    static final String RELEASE_SCRIPT = "if redis.call('get', KEYS[1]) == ARGV[1] "
+            + "then return redis.call('del', KEYS[1]) else return 0 end";
+
+    private static final byte[] LEASE_SUFFIX = ":lease".getBytes(StandardCharsets.US_ASCII);
+
+    private final RedisCodec<K, ?> redisCodec;
+    private final SetArgs acquireArgs;
+    private final Duration pollInterval;
+    private final int polls;
+
+    LoadLease(RedisCodec<K, ?> redisCodec, Duration timeout, Duration waitTime, Duration pollInterval) {
+        if (timeout.isZero() || timeout.isNegative() || pollInterval.isZero() || pollInterval.isNegative()) {
+            throw new IllegalStateException("Invalid lease timeout " + timeout + " or poll interval " + pollInterval);
+        }
+        this.redisCodec = redisCodec;
+        this.acquireArgs = SetArgs.Builder.nx().px(timeout.toMillis());
+        this.pollInterval = pollInterval;
+        this.polls = (int) Math.max(waitTime.toMillis() / pollInterval.toMillis(), 0);
+    }
+
+    byte[] leaseKey(K key) {
+        ByteBuffer encodedKey = redisCodec.encodeKey(key);
+        byte[] leaseKey = new byte[encodedKey.remaining() + LEASE_SUFFIX.length];
+        encodedKey.get(leaseKey, 0, encodedKey.remaining());
+        System.arraycopy(LEASE_SUFFIX, 0, leaseKey, leaseKey.length - LEASE_SUFFIX.length, LEASE_SUFFIX.length);
+        return leaseKey;
+    }
+
+    byte[] newToken() {
+        return UUID.randomUUID().toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    SetArgs acquireArgs() {
+        return acquireArgs;
+    }
+
+    Duration pollInterval() {
+        return pollInterval;
+    }
+
+    /**
+     * @return How many times a node which lost the lease polls the value before loading it
+     */
+    int polls() {
+        return polls;
+    }
+}
@@ -0,0 +1,10 @@
+package brave.cache.redis;
+
+import brave.cache.util.LongObjectMap;
+
+@FunctionalInterface
+public interface LongMultiLoader<V> {
+
+    LongObjectMap<V> loadAll(long[] keys);
+
+}
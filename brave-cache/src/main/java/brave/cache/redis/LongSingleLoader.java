@@ -0,0 +1,8 @@
+package brave.cache.redis;
+
+@FunctionalInterface
+public interface LongSingleLoader<V> {
+
+    V load(long key);
+
+}
@@ -0,0 +1,87 @@
+package brave.cache.redis;
+
+import brave.cache.BulkInvalidation;
+import io.lettuce.core.KeyScanCursor;
+import io.lettuce.core.ScanArgs;
+import io.lettuce.core.ScanCursor;
+import io.lettuce.core.api.sync.RedisCommands;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Removes keys matching a pattern with cursor based <code>SCAN MATCH</code> and non-blocking <code>UNLINK</code>,
+ * batch by batch, without exceeding {@link #opsPerSecond} removed keys per second.
+ */
+@Slf4j
+class PrefixScanner {
+
+    private final Supplier<RedisCommands<byte[], byte[]>> commandsSupplier;
+    private final int batchSize;
+    private final int opsPerSecond;
+
+    PrefixScanner(Supplier<RedisCommands<byte[], byte[]>> commandsSupplier, int batchSize, int opsPerSecond) {
+        this.commandsSupplier = commandsSupplier;
+        this.batchSize = batchSize;
+        this.opsPerSecond = opsPerSecond;
+    }
+
+    void scanAndUnlink(BulkInvalidation progress) {
+        try {
+            RedisCommands<byte[], byte[]> commands = commandsSupplier.get();
+            ScanArgs scanArgs = ScanArgs.Builder.matches(progress.getPattern()).limit(batchSize);
+            ScanCursor cursor = ScanCursor.INITIAL;
+
+            do {
+                long batchStartNanos = System.nanoTime();
+                KeyScanCursor<byte[]> scanned = commands.scan(cursor, scanArgs);
+                List<byte[]> keys = scanned.getKeys();
+                progress.scanned(keys.size());
+
+                if (!keys.isEmpty()) {
+                    progress.removed(commands.unlink(keys.toArray(new byte[0][])));
+                }
+
+                TimeUnit.NANOSECONDS.sleep(pacingDelay(keys.size(), opsPerSecond, batchStartNanos).toNanos());
+                cursor = scanned;
+            } while (!cursor.isFinished() && !progress.isCancelled());
+
+            log.warn("Finished {}", progress);
+            progress.complete();
+        } catch (InterruptedException inex) {
+            Thread.currentThread().interrupt();
+            progress.fail(inex);
+        } catch (RuntimeException ex) {
+            log.error("Failed {}", progress, ex);
+            progress.fail(ex);
+        }
+    }
+
+    /**
+     * Escape the glob special characters of {@param prefix} then match anything after it.
+     */
+    static String matchPattern(String prefix) {
+        StringBuilder pattern = new StringBuilder(prefix.length() + 2);
+        for (char c : prefix.toCharArray()) {
+            if (c == '*' || c == '?' || c == '[' || c == ']' || c == '\\') {
+                pattern.append('\\');
+            }
+            pattern.append(c);
+        }
+        return pattern.append('*').toString();
+    }
+
+    /**
+     * @return How long to wait so that {@param ops} operations since {@param startNanos} stay within {@param opsPerSecond}
+     */
+    static Duration pacingDelay(int ops, int opsPerSecond, long startNanos) {
+        if (opsPerSecond <= 0) return Duration.ZERO;
+
+        long minimumNanos = TimeUnit.SECONDS.toNanos(Math.max(ops, 1)) / opsPerSecond;
+        long elapsedNanos = System.nanoTime() - startNanos;
+        return Duration.ofNanos(Math.max(minimumNanos - elapsedNanos, 0));
+    }
+}
@@ -1,14 +1,27 @@
 package brave.cache.redis;
 
+import brave.cache.BulkInvalidation;
 import brave.cache.ReactiveCache;
 import brave.cache.codec.Codec;
+import brave.cache.codec.NamespaceCodec;
+import brave.cache.metric.CacheInstrumentation;
 import brave.cache.util.CollectionUtil;
 import brave.cache.util.Tuple;
+import io.lettuce.core.KeyScanCursor;
 import io.lettuce.core.KeyValue;
+import io.lettuce.core.ReadFrom;
 import io.lettuce.core.RedisClient;
 import io.lettuce.core.RedisException;
+import io.lettuce.core.RedisURI;
+import io.lettuce.core.ScanArgs;
+import io.lettuce.core.ScanCursor;
+import io.lettuce.core.ScriptOutputType;
+import io.lettuce.core.SetArgs;
 import io.lettuce.core.api.StatefulRedisConnection;
 import io.lettuce.core.api.reactive.RedisReactiveCommands;
+import io.lettuce.core.codec.RedisCodec;
+import io.lettuce.core.masterreplica.MasterReplica;
+import io.lettuce.core.masterreplica.StatefulRedisMasterReplicaConnection;
 import lombok.RequiredArgsConstructor;
 import lombok.Setter;
 import lombok.experimental.Accessors;
@@ -16,10 +29,17 @@ import lombok.extern.slf4j.Slf4j;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
 
 import static java.util.Collections.emptyMap;
 
@@ -28,18 +48,150 @@ import static java.util.Collections.emptyMap;
 public class ReactiveRedisCache<K, V> implements ReactiveCache<K, V>, AutoCloseable {
 
     private final StatefulRedisConnection<K, V> connection;
+    private final StatefulRedisConnection<K, V> readConnection;
+    private final Supplier<StatefulRedisConnection<byte[], byte[]>> rawConnectionSupplier;
     private final ReactiveSingleLoader<K, V> singleLoader;
     private final ReactiveMultiLoader<K, V> multiLoader;
     private final Class<K> keyClass;
+    private final String keyNamespace;
     private final long defaultTimeToLiveMillis;
+    private final int scanBatchSize;
+    private final int invalidationOpsPerSecond;
+    private final CacheInstrumentation instrumentation;
+    private final boolean fallbackToPrimary;
+    private final LoadLease<K> loadLease;
+    private final ValueChunker<K, V> valueChunker;
+    private final RedisCodec<K, V> redisCodec;
+
+    private StatefulRedisConnection<byte[], byte[]> rawConnection;
 
     private RedisReactiveCommands<K, V> reactive() {
         return connection.reactive();
     }
 
+    private synchronized RedisReactiveCommands<byte[], byte[]> rawReactive() {
+        if (rawConnection == null) {
+            rawConnection = rawConnectionSupplier.get();
+        }
+
+        return rawConnection.reactive();
+    }
+
+    private <T> Mono<T> timed(Mono<T> command) {
+        return Mono.defer(() -> {
+            long startNanos = System.nanoTime();
+            return command.doFinally(signal -> instrumentation.redisLatency(System.nanoTime() - startNanos));
+        });
+    }
+
+    private <T> Flux<T> timed(Flux<T> command) {
+        return Flux.defer(() -> {
+            long startNanos = System.nanoTime();
+            return command.doFinally(signal -> instrumentation.redisLatency(System.nanoTime() - startNanos));
+        });
+    }
+
+    private void redisError(RedisException reex) {
+        instrumentation.error();
+    }
+
+    /**
+     * Run a read on the replicas, or on the primary without replica routing.
+     */
+    private <T> Mono<T> read(String commandName, Object keys, Function<RedisReactiveCommands<K, V>, Mono<T>> command) {
+        if (readConnection == null) return timed(command.apply(reactive()));
+
+        Mono<T> onReplica = timed(command.apply(readConnection.reactive()));
+        if (!fallbackToPrimary) return onReplica;
+
+        return onReplica.onErrorResume(RedisException.class, reex -> {
+            instrumentation.error();
+            log.warn("Failed to execute redis '{}' {} on replica, fall back to primary", commandName, keys, reex);
+            return timed(command.apply(reactive()));
+        });
+    }
+
+    private <T> Flux<T> readMany(String commandName, Object keys, Function<RedisReactiveCommands<K, V>, Flux<T>> command) {
+        if (readConnection == null) return timed(command.apply(reactive()));
+
+        Flux<T> onReplica = timed(command.apply(readConnection.reactive()));
+        if (!fallbackToPrimary) return onReplica;
+
+        return onReplica.onErrorResume(RedisException.class, reex -> {
+            instrumentation.error();
+            log.warn("Failed to execute redis '{}' {} on replica, fall back to primary", commandName, keys, reex);
+            return timed(command.apply(reactive()));
+        });
+    }
+
+    /**
+     * Chunked values are read from the primary, see {@link ValueChunker}.
+     */
+    private Mono<V> redisGet(K key) {
+        if (valueChunker != null) return timed(valueChunker.get(rawReactive(), key));
+        return read("get", key, commands -> commands.get(key));
+    }
+
+    private Flux<KeyValue<K, V>> redisMget(K[] keys) {
+        if (valueChunker != null) return timed(valueChunker.mget(rawReactive(), keys));
+        return readMany("mget", keys.length, commands -> commands.mget(keys));
+    }
+
+    /**
+     * Chunks are written first, see {@link ValueChunker#writeChunks}, and the version of the previous value dropped,
+     * see {@link RedisScript#PUT}.
+     */
+    private Mono<Boolean> redisPut(K key, long timeToLiveMillis, V value) {
+        byte[] encodedKey = encodeKey(key);
+        return timed(encodeValue(key, value, timeToLiveMillis)
+                .flatMap(encodedValue -> script(RedisScript.PUT).eval(rawReactive(), new byte[][]{encodedKey, RedisScript.versionKey(encodedKey)},
+                        encodedValue, RedisScript.argument(timeToLiveMillis)))
+                .map(reply -> reply == 1)
+                .defaultIfEmpty(false));
+    }
+
+    private byte[] encodeKey(K key) {
+        return RedisScript.toBytes(redisCodec.encodeKey(key));
+    }
+
+    private byte[][] encodeKeys(K[] keys) {
+        byte[][] encodedKeys = new byte[keys.length][];
+        for (int i = 0; i < keys.length; i++) {
+            encodedKeys[i] = encodeKey(keys[i]);
+        }
+        return encodedKeys;
+    }
+
+    /**
+     * @return {@param script} unlinking the replaced chunks when the values are chunked, see {@link RedisScript#chunked()}
+     */
+    private RedisScript script(RedisScript script) {
+        return valueChunker != null ? script.chunked() : script;
+    }
+
+    /**
+     * Apply {@param command} to {@param encodedKeys} and to their chunks, see {@link RedisScript#WITH_CHUNKS}.
+     */
+    private Mono<Long> withChunks(byte[][] encodedKeys, String command, byte[]... args) {
+        byte[][] scriptArgs = new byte[args.length + 1][];
+        scriptArgs[0] = command.getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(args, 0, scriptArgs, 1, args.length);
+        return timed(Mono.defer(() -> RedisScript.WITH_CHUNKS.eval(rawReactive(), encodedKeys, scriptArgs)))
+                .defaultIfEmpty(0L);
+    }
+
+    /**
+     * @return The bytes to write at {@param key}, see {@link ValueChunker#writeChunks}
+     */
+    private Mono<byte[]> encodeValue(K key, V value, long timeToLiveMillis) {
+        if (valueChunker != null) return timed(valueChunker.writeChunks(rawReactive(), key, timeToLiveMillis, value));
+        return Mono.fromSupplier(() -> RedisScript.toBytes(redisCodec.encodeValue(value)));
+    }
+
     @Override
     public Mono<V> peek(K key) {
-        return reactive().get(key)
+        return redisGet(key)
+                .doOnError(RedisException.class, this::redisError)
                 .onErrorResume(RedisException.class, reex -> {
                     log.error("Failed to execute redis 'get' {}", key, reex);
                     return Mono.empty();
@@ -54,9 +206,9 @@ public class ReactiveRedisCache<K, V> implements ReactiveCache<K, V>, AutoClosea
 
     @Override
     public Mono<Map<K, V>> peekAll(K[] keys) {
-        return reactive()
-                .mget(keys)
+        return redisMget(keys)
                 .collectMap(KeyValue::getKey, kv -> kv.getValueOrElse(null))
+                .doOnError(RedisException.class, this::redisError)
                 .onErrorResume(RedisException.class, reex -> {
                     log.error("Failed to execute redis 'mget' {} keys", keys.length, reex);
                     return Mono.just(emptyMap());
@@ -65,9 +217,13 @@ public class ReactiveRedisCache<K, V> implements ReactiveCache<K, V>, AutoClosea
 
     @Override
     public Mono<V> get(K key) {
-        return reactive()
-                .get(key)
-                .switchIfEmpty(Mono.defer(() -> loadAndCache(key)))
+        return redisGet(key)
+                .doOnNext(value -> instrumentation.hits(1))
+                .switchIfEmpty(Mono.defer(() -> {
+                    instrumentation.misses(1);
+                    return leasedLoadAndCache(key);
+                }))
+                .doOnError(RedisException.class, this::redisError)
                 .onErrorResume(RedisException.class, reex -> {
                     log.error("Failed to execute redis 'get' {}", key, reex);
                     return load(key);
@@ -82,18 +238,21 @@ public class ReactiveRedisCache<K, V> implements ReactiveCache<K, V>, AutoClosea
 
     @Override
     public Mono<Map<K, V>> getAll(K[] keys) {
-        Flux<KeyValue<K, V>> keyValuesF = reactive().mget(keys).cache();
+        Flux<KeyValue<K, V>> keyValuesF = redisMget(keys).cache();
 
         Flux<Tuple<K, V>> hittingKeyValuesF = keyValuesF.filter(KeyValue::hasValue)
+                .doOnNext(kv -> instrumentation.hits(1))
                 .map(Tuple::tuple);
 
         Flux<Tuple<K, V>> missingKeyValuesF = keyValuesF.filter(KeyValue::isEmpty)
                 .map(KeyValue::getKey)
                 .collectList()
+                .doOnNext(missingKeys -> instrumentation.misses(missingKeys.size()))
                 .flatMapMany(this::loadAllAndCache);
 
         return hittingKeyValuesF.concatWith(missingKeyValuesF)
                 .collectMap(Tuple::getKey, kv -> kv.getValueOrElse(null))
+                .doOnError(RedisException.class, this::redisError)
                 .onErrorResume(RedisException.class, reex -> {
                     log.error("Failed to execute redis 'mget' {} keys", keys.length, reex);
                     return loadAll(keys);
@@ -102,8 +261,9 @@ public class ReactiveRedisCache<K, V> implements ReactiveCache<K, V>, AutoClosea
 
     @Override
     public Mono<V> reloadIfExist(K key) {
-        return reactive().get(key)
-                .flatMap(oldValue -> loadAndCache(key))
+        return redisGet(key)
+                .flatMap(oldValue -> reloadAndCache(key))
+                .doOnError(RedisException.class, this::redisError)
                 .onErrorResume(RedisException.class, reex -> {
                     log.error("Failed to execute redis 'get' {}", key, reex);
                     return Mono.empty();
@@ -128,19 +288,94 @@ public class ReactiveRedisCache<K, V> implements ReactiveCache<K, V>, AutoClosea
     }
 
     private Mono<Boolean>  putTimeToLiveMillis(K key, V value, long timeToLiveMillis) {
-        return reactive()
-                .psetex(key, timeToLiveMillis, value)
-                .map("OK"::equals)
+        return redisPut(key, timeToLiveMillis, value)
+                .doOnError(RedisException.class, this::redisError)
+                .onErrorResume(RedisException.class, reex -> {
+                    log.error("Failed to execute redis 'evalsha' put {}", key, reex);
+                    return Mono.just(false);
+                });
+    }
+
+    @Override
+    public Mono<Boolean> putIfAbsent(K key, V value) {
+        byte[] encodedKey = encodeKey(key);
+        return encodeValue(key, value, defaultTimeToLiveMillis)
+                .flatMap(encodedValue -> valueChunker != null
+                        // The chunks of a value not written are unlinked right away
+                        ? timed(RedisScript.PUT_IF_ABSENT.chunked().eval(rawReactive(), new byte[][]{encodedKey},
+                                encodedValue, RedisScript.argument(defaultTimeToLiveMillis))).map(reply -> reply == 1)
+                        : timed(rawReactive().set(encodedKey, encodedValue, SetArgs.Builder.nx().px(defaultTimeToLiveMillis))).map("OK"::equals))
+                .defaultIfEmpty(false)
+                .doOnError(RedisException.class, this::redisError)
+                .onErrorResume(RedisException.class, reex -> {
+                    log.error("Failed to execute redis 'set' nx {}", key, reex);
+                    return Mono.just(false);
+                });
+    }
+
+    /**
+     * The version is kept in a sidecar key expiring with the value, see {@link RedisScript#PUT_IF_NEWER}.
+     */
+    @Override
+    public Mono<Boolean> putIfNewer(K key, V value, ToLongFunction<V> version) {
+        byte[] encodedKey = encodeKey(key);
+        return encodeValue(key, value, defaultTimeToLiveMillis)
+                .flatMap(encodedValue -> timed(script(RedisScript.PUT_IF_NEWER).eval(rawReactive(),
+                        new byte[][]{encodedKey, RedisScript.versionKey(encodedKey)},
+                        encodedValue, RedisScript.argument(version.applyAsLong(value)), RedisScript.argument(defaultTimeToLiveMillis))))
+                .map(reply -> reply == 1)
+                .defaultIfEmpty(false)
+                .doOnError(RedisException.class, this::redisError)
+                .onErrorResume(RedisException.class, reex -> {
+                    log.error("Failed to execute redis 'evalsha' put if newer {}", key, reex);
+                    return Mono.just(false);
+                });
+    }
+
+    @Override
+    public Mono<Boolean> putAll(Map<K, V> keyValues) {
+        return putAllTimeToLiveMillis(keyValues, value -> defaultTimeToLiveMillis);
+    }
+
+    /**
+     * Every value expires after its own time to live, within the same scripts as {@link #putAll(Map)}.
+     */
+    @Override
+    public Mono<Boolean> putAll(Map<K, V> keyValues, Function<V, Duration> timeToLive) {
+        return putAllTimeToLiveMillis(keyValues, value -> timeToLive.apply(value).toMillis());
+    }
+
+    private Mono<Boolean> putAllTimeToLiveMillis(Map<K, V> keyValues, ToLongFunction<V> timeToLiveMillis) {
+        if (keyValues.isEmpty()) return Mono.just(true);
+
+        List<K> keys = new ArrayList<>(keyValues.keySet());
+        long[] timeToLives = new long[keys.size()];
+        for (int i = 0; i < keys.size(); i++) {
+            timeToLives[i] = timeToLiveMillis.applyAsLong(keyValues.get(keys.get(i)));
+        }
+        return Flux.range(0, keys.size())
+                .concatMap(i -> encodeValue(keys.get(i), keyValues.get(keys.get(i)), timeToLives[i]))
+                .collectList()
+                .flatMap(encodedValues -> {
+                    byte[][] encodedKeys = new byte[keys.size()][];
+                    for (int i = 0; i < keys.size(); i++) {
+                        encodedKeys[i] = encodeKey(keys.get(i));
+                    }
+                    return timed(RedisScript.putAll(rawReactive(), valueChunker != null, encodedKeys, encodedValues.toArray(new byte[0][]), timeToLives));
+                })
+                .map(reply -> reply == keys.size())
+                .defaultIfEmpty(false)
+                .doOnError(RedisException.class, this::redisError)
                 .onErrorResume(RedisException.class, reex -> {
-                    log.error("Failed to execute redis 'psetex' {}", key, reex);
+                    log.error("Failed to execute redis 'evalsha' put all {} keys", keyValues.size(), reex);
                     return Mono.just(false);
                 });
     }
 
     @Override
     public Mono<Long> remove(K[] keys) {
-        return reactive()
-                .del(keys)
+        return (valueChunker != null ? withChunks(encodeKeys(keys), "del") : timed(reactive().del(keys)))
+                .doOnError(RedisException.class, this::redisError)
                 .onErrorResume(RedisException.class, reex -> {
                     log.error("Failed to execute redis 'del' {} keys", keys.length, reex);
                     return Mono.just(0L);
@@ -150,9 +385,9 @@ public class ReactiveRedisCache<K, V> implements ReactiveCache<K, V>, AutoClosea
     @Override
     public Mono<Boolean> remove(K key) {
         //noinspection unchecked
-        return reactive()
-                .del(key)
+        return (valueChunker != null ? withChunks(new byte[][]{encodeKey(key)}, "del") : timed(reactive().del(key)))
                 .map(deletedCount -> deletedCount == 1)
+                .doOnError(RedisException.class, this::redisError)
                 .onErrorResume(RedisException.class, reex -> {
                     log.error("Failed to execute redis 'del' {}", key, reex);
                     return Mono.just(false);
@@ -161,52 +396,215 @@ public class ReactiveRedisCache<K, V> implements ReactiveCache<K, V>, AutoClosea
 
     @Override
     public Mono<Boolean> expireAt(K key, long timestampMillis) {
-        return reactive()
-                .expireat(key, timestampMillis / 1000)
+        Mono<Boolean> expireat = valueChunker != null
+                ? withChunks(new byte[][]{encodeKey(key)}, "expireat", RedisScript.argument(timestampMillis / 1000)).map(reply -> reply == 1)
+                : timed(reactive().expireat(key, timestampMillis / 1000));
+        return expireat
+                .doOnError(RedisException.class, this::redisError)
                 .onErrorResume(RedisException.class, reex -> {
                     log.error("Failed to execute redis 'expireat' {}", key, reex);
                     return Mono.just(false);
                 });
     }
 
+    @Override
+    public Mono<BulkInvalidation> removeByPrefix(String prefix) {
+        return Mono.defer(() -> {
+            BulkInvalidation progress = new BulkInvalidation(PrefixScanner.matchPattern(prefix));
+            ScanArgs scanArgs = ScanArgs.Builder.matches(progress.getPattern()).limit(scanBatchSize);
+
+            return scanAndUnlink(progress, scanArgs, ScanCursor.INITIAL)
+                    .expand(scanned -> scanned.isFinished() || progress.isCancelled()
+                            ? Mono.empty()
+                            : scanAndUnlink(progress, scanArgs, scanned))
+                    .doOnCancel(progress::cancel)
+                    .doOnError(error -> {
+                        log.error("Failed {}", progress, error);
+                        progress.fail(error);
+                    })
+                    .then(Mono.fromSupplier(() -> {
+                        log.warn("Finished {}", progress);
+                        progress.complete();
+                        return progress;
+                    }));
+        });
+    }
+
+    @Override
+    public Mono<BulkInvalidation> invalidateNamespace() {
+        if (keyNamespace == null) {
+            return Mono.error(new IllegalStateException("Key codec of " + keyClass.getName() + " has no namespace"));
+        }
+        return removeByPrefix(keyNamespace + ":");
+    }
+
+    /**
+     * Scan and unlink one batch of keys from {@param cursor}, paced to {@code invalidationOpsPerSecond}.
+     *
+     * @return The cursor of the next batch
+     */
+    private Mono<KeyScanCursor<byte[]>> scanAndUnlink(BulkInvalidation progress, ScanArgs scanArgs, ScanCursor cursor) {
+        return Mono.defer(() -> {
+            long batchStartNanos = System.nanoTime();
+            return rawReactive()
+                    .scan(cursor, scanArgs)
+                    .flatMap(scanned -> unlink(progress, scanned)
+                            .then(Mono.delay(PrefixScanner.pacingDelay(scanned.getKeys().size(), invalidationOpsPerSecond, batchStartNanos)))
+                            .thenReturn(scanned));
+        });
+    }
+
+    private Mono<Long> unlink(BulkInvalidation progress, KeyScanCursor<byte[]> scanned) {
+        progress.scanned(scanned.getKeys().size());
+        if (scanned.getKeys().isEmpty()) return Mono.just(0L);
+
+        return rawReactive()
+                .unlink(scanned.getKeys().toArray(new byte[0][]))
+                .doOnNext(progress::removed);
+    }
+
     @Override
     public void close() {
         StatefulRedisConnection<K, V> capturedConnection = this.connection;
         if (capturedConnection.isOpen()) {
             capturedConnection.close();
         }
+        if (readConnection != null && readConnection.isOpen()) {
+            readConnection.close();
+        }
+
+        synchronized (this) {
+            if (rawConnection != null && rawConnection.isOpen()) {
+                rawConnection.close();
+            }
+            rawConnection = null;
+        }
+    }
+
+    private <T> Mono<T> timedLoad(Supplier<Mono<T>> loader) {
+        return Mono.defer(() -> {
+            long startNanos = System.nanoTime();
+            return loader.get()
+                    .doOnError(ex -> instrumentation.error())
+                    .doFinally(signal -> instrumentation.loadLatency(System.nanoTime() - startNanos));
+        });
+    }
+
+    private <T> Flux<T> timedLoadAll(Supplier<Flux<T>> loader) {
+        return Flux.defer(() -> {
+            long startNanos = System.nanoTime();
+            return loader.get()
+                    .doOnError(ex -> instrumentation.error())
+                    .doFinally(signal -> instrumentation.loadLatency(System.nanoTime() - startNanos));
+        });
     }
 
     private Mono<V> load(K key) {
         if (singleLoader == null) return Mono.empty();
-        return singleLoader.load(key);
+        return timedLoad(() -> singleLoader.load(key));
     }
 
+    /**
+     * The loaded value is only cached if the key is still absent, a concurrent put is fresher than the loader.
+     */
     private Mono<V> loadAndCache(K key) {
         if (singleLoader == null) return Mono.empty();
-        return singleLoader
-                .load(key)
+        return timedLoad(() -> singleLoader.load(key))
+                .doOnNext(value ->
+                        putIfAbsent(key, value).subscribe());
+    }
+
+    private Mono<V> reloadAndCache(K key) {
+        if (singleLoader == null) return Mono.empty();
+        return timedLoad(() -> singleLoader.load(key))
                 .doOnNext(value ->
                         put(key, value).subscribe());
     }
 
+    /**
+     * Load and cache {@param key} if this node wins the lease,
+     * otherwise wait for the winner to cache it, see {@link LoadLease}.
+     */
+    private Mono<V> leasedLoadAndCache(K key) {
+        if (singleLoader == null || loadLease == null) return loadAndCache(key);
+
+        byte[] leaseKey = loadLease.leaseKey(key);
+        byte[] token = loadLease.newToken();
+
+        return timed(rawReactive().set(leaseKey, token, loadLease.acquireArgs()))
+                .map("OK"::equals)
+                .defaultIfEmpty(false)
+                .doOnError(RedisException.class, this::redisError)
+                .onErrorResume(RedisException.class, reex -> {
+                    // Cannot coordinate with the other nodes, load it alone
+                    log.error("Failed to execute redis 'set' lease {}", key, reex);
+                    return Mono.just(true);
+                })
+                .flatMap(acquired -> acquired
+                        ? Mono.usingWhen(Mono.just(leaseKey), lk -> getOrLoadAndCache(key), lk -> releaseLease(key, lk, token))
+                        : awaitLeasedValue(key).switchIfEmpty(Mono.defer(() -> {
+                            log.warn("Lease of {} not fulfilled in time, loading it", key);
+                            return loadAndCache(key);
+                        })));
+    }
+
+    /**
+     * The previous holder of the lease may have cached the value between the miss and the lease.
+     */
+    private Mono<V> getOrLoadAndCache(K key) {
+        return redisGet(key)
+                .doOnError(RedisException.class, this::redisError)
+                .onErrorResume(RedisException.class, reex -> {
+                    log.error("Failed to execute redis 'get' {}", key, reex);
+                    return Mono.empty();
+                })
+                .switchIfEmpty(Mono.defer(() -> loadAndCacheAwaitingPut(key)));
+    }
+
+    private Mono<V> loadAndCacheAwaitingPut(K key) {
+        return timedLoad(() -> singleLoader.load(key))
+                .flatMap(value -> putIfAbsent(key, value).thenReturn(value));
+    }
+
+    private Mono<V> awaitLeasedValue(K key) {
+        return Flux.range(0, loadLease.polls())
+                .concatMap(poll -> Mono.delay(loadLease.pollInterval())
+                        .then(redisGet(key)))
+                .next()
+                .doOnError(RedisException.class, this::redisError)
+                .onErrorResume(RedisException.class, reex -> {
+                    log.error("Failed to execute redis 'get' {}", key, reex);
+                    return Mono.empty();
+                });
+    }
+
+    private Mono<Long> releaseLease(K key, byte[] leaseKey, byte[] token) {
+        return timed(rawReactive().<Long>eval(LoadLease.RELEASE_SCRIPT, ScriptOutputType.INTEGER, new byte[][]{leaseKey}, token))
+                .next()
+                .doOnError(RedisException.class, this::redisError)
+                .onErrorResume(RedisException.class, reex -> {
+                    log.error("Failed to execute redis 'eval' lease release {}", key, reex);
+                    return Mono.empty();
+                });
+    }
+
     private Mono<Map<K, V>> loadAll(K[] keys) {
         if (keys.length == 0 || multiLoader == null) return Mono.just(emptyMap());
 
-        return multiLoader
-                .loadAll(Arrays.asList(keys))
+        return timedLoadAll(() -> multiLoader.loadAll(Arrays.asList(keys)))
                 .collectMap(Tuple::getKey, t -> t.getValueOrElse(null));
     }
 
     private Flux<Tuple<K, V>> loadAllAndCache(Collection<K> keys) {
         if (keys.isEmpty() || multiLoader == null) return Flux.empty();
 
-        return multiLoader.loadAll(keys)
-                .doOnNext(t -> {
-                    if (t.hasValue()) {
-                        put(t.getKey(), t.getValue()).subscribe();
-                    }
-                });
+        return timedLoadAll(() -> multiLoader.loadAll(keys))
+                .collectList()
+                .doOnNext(loaded -> putAll(loaded.stream()
+                        .filter(Tuple::hasValue)
+                        .collect(Collectors.toMap(Tuple::getKey, Tuple::getValue, (first, second) -> second)))
+                        .subscribe())
+                .flatMapIterable(loaded -> loaded);
     }
 
     @Setter
@@ -219,6 +617,43 @@ public class ReactiveRedisCache<K, V> implements ReactiveCache<K, V>, AutoClosea
         private Codec<K> keyCodec;
         private Codec<V> valueCodec;
         private RedisClient redisClient;
+        private int scanBatchSize = 500;
+        private int invalidationOpsPerSecond = 5000;
+        private CacheInstrumentation instrumentation = CacheInstrumentation.NOOP;
+
+        /**
+         * Route the <code>GET</code>/<code>MGET</code> reads to the replicas of {@link #nodes},
+         * writes still go to the primary of {@link #redisClient}. Null means reading from the primary.
+         */
+        private ReadFrom readFrom;
+
+        /**
+         * Primary and replicas, or only the primary to discover its replicas.
+         */
+        private List<RedisURI> nodes = List.of();
+
+        /**
+         * Retry a read on the primary when it fails on the replicas.
+         */
+        private boolean fallbackToPrimary = true;
+
+        /**
+         * Expiry of the loader lease which allows a single node to load a missing key, null means no lease.
+         */
+        private Duration leaseTimeout;
+
+        /**
+         * How long the nodes which lost the lease wait for the value before loading it themselves.
+         */
+        private Duration leaseWait = Duration.ofSeconds(1);
+
+        private Duration leasePollInterval = Duration.ofMillis(50);
+
+        /**
+         * Encoded values larger than this number of bytes are split into chunks of this size, 0 means no chunking.
+         * The chunked values are always read from the primary.
+         */
+        private int chunkSize;
 
         public ReactiveRedisCache<K, V> build() {
             long defaultTimeToLiveMillis = defaultTimeToLive != null
@@ -226,14 +661,40 @@ public class ReactiveRedisCache<K, V> implements ReactiveCache<K, V>, AutoClosea
                     : Long.MAX_VALUE;
 
             RedisCodecImpl<K, V> redisCodec = new RedisCodecImpl<>(keyCodec, valueCodec);
+            String keyNamespace = keyCodec instanceof NamespaceCodec
+                    ? ((NamespaceCodec<K>) keyCodec).getNamespace()
+                    : null;
 
             return new ReactiveRedisCache<>(
                     redisClient.connect(redisCodec),
+                    readConnection(redisCodec),
+                    () -> redisClient.connect(io.lettuce.core.codec.ByteArrayCodec.INSTANCE),
                     singleLoader,
                     multiLoader,
                     keyCodec.getType(),
-                    defaultTimeToLiveMillis
+                    keyNamespace,
+                    defaultTimeToLiveMillis,
+                    scanBatchSize,
+                    invalidationOpsPerSecond,
+                    instrumentation,
+                    fallbackToPrimary,
+                    leaseTimeout != null ? new LoadLease<>(redisCodec, leaseTimeout, leaseWait, leasePollInterval) : null,
+                    chunkSize > 0 ? new ValueChunker<>(redisCodec, chunkSize) : null,
+                    redisCodec
             );
         }
+
+        private StatefulRedisConnection<K, V> readConnection(RedisCodecImpl<K, V> redisCodec) {
+            if (readFrom == null) return null;
+            if (nodes.isEmpty()) {
+                throw new IllegalStateException("Reading from " + readFrom + " requires the redis nodes");
+            }
+
+            StatefulRedisMasterReplicaConnection<K, V> readConnection = nodes.size() == 1
+                    ? MasterReplica.connect(redisClient, redisCodec, nodes.get(0))
+                    : MasterReplica.connect(redisClient, redisCodec, nodes);
+            readConnection.setReadFrom(readFrom);
+            return readConnection;
+        }
     }
 }
@@ -1,13 +1,23 @@
 package brave.cache.redis;
 
+import brave.cache.BulkInvalidation;
 import brave.cache.Cache;
 import brave.cache.codec.Codec;
+import brave.cache.codec.NamespaceCodec;
+import brave.cache.metric.CacheInstrumentation;
 import brave.cache.util.CollectionUtil;
 import io.lettuce.core.KeyValue;
+import io.lettuce.core.ReadFrom;
 import io.lettuce.core.RedisClient;
 import io.lettuce.core.RedisException;
+import io.lettuce.core.RedisURI;
+import io.lettuce.core.ScriptOutputType;
+import io.lettuce.core.SetArgs;
 import io.lettuce.core.api.StatefulRedisConnection;
 import io.lettuce.core.api.sync.RedisCommands;
+import io.lettuce.core.codec.RedisCodec;
+import io.lettuce.core.masterreplica.MasterReplica;
+import io.lettuce.core.masterreplica.StatefulRedisMasterReplicaConnection;
 import lombok.RequiredArgsConstructor;
 import lombok.Setter;
 import lombok.SneakyThrows;
@@ -15,9 +25,15 @@ import lombok.experimental.Accessors;
 import lombok.extern.slf4j.Slf4j;
 import reactor.util.annotation.NonNull;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
 
 import static java.util.Collections.emptyMap;
 
@@ -26,13 +42,27 @@ import static java.util.Collections.emptyMap;
 public class RedisCache<K, V> implements Cache<K, V>, AutoCloseable{
 
     private final Supplier<StatefulRedisConnection<K, V>> redisConnectionSupplier;
+    private final Supplier<StatefulRedisConnection<K, V>> readConnectionSupplier;
+    private final Supplier<StatefulRedisConnection<byte[], byte[]>> rawConnectionSupplier;
     private final SingleLoader<K, V> singleLoader;
     private final MultiLoader<K, V> multiLoader;
     private final Class<K> keyClass;
+    private final String keyNamespace;
     private final long defaultTimeToLiveMillis;
+    private final int scanBatchSize;
+    private final int invalidationOpsPerSecond;
+    private final CacheInstrumentation instrumentation;
+    private final boolean fallbackToPrimary;
+    private final LoadLease<K> loadLease;
+    private final ValueChunker<K, V> valueChunker;
+    private final RedisCodec<K, V> redisCodec;
 
     private StatefulRedisConnection<K, V> connection;
     private RedisCommands<K, V> syncCommands;
+    private StatefulRedisConnection<K, V> readConnection;
+    private RedisCommands<K, V> readCommands;
+    private StatefulRedisConnection<byte[], byte[]> rawConnection;
+    private ExecutorService invalidationExecutor;
 
     @NonNull
     @SneakyThrows
@@ -54,16 +84,167 @@ public class RedisCache<K, V> implements Cache<K, V>, AutoCloseable{
         return syncCommands;
     }
 
+    /**
+     * @return The commands routed to the replicas, or to the primary without replica routing
+     */
+    @NonNull
+    private RedisCommands<K, V> readCommands() {
+        if (readConnectionSupplier == null) return syncCommands();
+
+        if (readCommands == null) {
+            readConnection = readConnectionSupplier.get();
+            readCommands = readConnection.sync();
+        }
+
+        return readCommands;
+    }
+
+    private <T> T read(String commandName, Object keys, Function<RedisCommands<K, V>, T> command) {
+        long startNanos = System.nanoTime();
+        try {
+            T reply = command.apply(readCommands());
+            redisLatency(startNanos);
+            return reply;
+        } catch (RedisException reex) {
+            if (readConnectionSupplier == null || !fallbackToPrimary) throw reex;
+
+            instrumentation.error();
+            log.warn("Failed to execute redis '{}' {} on replica, fall back to primary", commandName, keys, reex);
+            startNanos = System.nanoTime();
+            T reply = command.apply(syncCommands());
+            redisLatency(startNanos);
+            return reply;
+        }
+    }
+
+    @NonNull
+    private synchronized StatefulRedisConnection<byte[], byte[]> rawConnection() {
+        if (rawConnection == null) {
+            rawConnection = rawConnectionSupplier.get();
+        }
+
+        return rawConnection;
+    }
+
+    @NonNull
+    private RedisCommands<byte[], byte[]> rawCommands() {
+        return rawConnection().sync();
+    }
+
+    /**
+     * Chunked values are read from the primary, see {@link ValueChunker}.
+     */
+    private V redisGet(K key) {
+        if (valueChunker == null) return read("get", key, commands -> commands.get(key));
+
+        long startNanos = System.nanoTime();
+        V value = valueChunker.get(rawCommands(), key);
+        redisLatency(startNanos);
+        return value;
+    }
+
+    private List<KeyValue<K, V>> redisMget(K[] keys) {
+        if (valueChunker == null) return read("mget", keys.length, commands -> commands.mget(keys));
+
+        long startNanos = System.nanoTime();
+        List<KeyValue<K, V>> keyValues = valueChunker.mget(rawCommands(), keys);
+        redisLatency(startNanos);
+        return keyValues;
+    }
+
+    /**
+     * Chunks are written first, see {@link ValueChunker#writeChunks}, and the version of the previous value dropped,
+     * see {@link RedisScript#PUT}.
+     */
+    private boolean redisPut(K key, long timeToLiveMillis, V value) {
+        long startNanos = System.nanoTime();
+        byte[] encodedKey = encodeKey(key);
+        byte[] encodedValue = encodeValue(key, value, timeToLiveMillis);
+        Long reply = script(RedisScript.PUT).eval(rawCommands(), new byte[][]{encodedKey, RedisScript.versionKey(encodedKey)},
+                encodedValue, RedisScript.argument(timeToLiveMillis));
+        redisLatency(startNanos);
+        return reply != null && reply == 1;
+    }
+
+    /**
+     * @return {@param script} unlinking the replaced chunks when the values are chunked, see {@link RedisScript#chunked()}
+     */
+    private RedisScript script(RedisScript script) {
+        return valueChunker != null ? script.chunked() : script;
+    }
+
+    /**
+     * Apply {@param command} to {@param encodedKeys} and to their chunks, see {@link RedisScript#WITH_CHUNKS}.
+     */
+    private long withChunks(byte[][] encodedKeys, String command, byte[]... args) {
+        byte[][] scriptArgs = new byte[args.length + 1][];
+        scriptArgs[0] = command.getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(args, 0, scriptArgs, 1, args.length);
+
+        long startNanos = System.nanoTime();
+        Long reply = RedisScript.WITH_CHUNKS.eval(rawCommands(), encodedKeys, scriptArgs);
+        redisLatency(startNanos);
+        return reply == null ? 0L : reply;
+    }
+
+    private byte[] encodeKey(K key) {
+        return RedisScript.toBytes(redisCodec.encodeKey(key));
+    }
+
+    private byte[][] encodeKeys(K[] keys) {
+        byte[][] encodedKeys = new byte[keys.length][];
+        for (int i = 0; i < keys.length; i++) {
+            encodedKeys[i] = encodeKey(keys[i]);
+        }
+        return encodedKeys;
+    }
+
+    /**
+     * @return The bytes to write at {@param key}, see {@link ValueChunker#writeChunks}
+     */
+    private byte[] encodeValue(K key, V value, long timeToLiveMillis) {
+        if (valueChunker == null) return RedisScript.toBytes(redisCodec.encodeValue(value));
+
+        StatefulRedisConnection<byte[], byte[]> connection = rawConnection();
+        return valueChunker.writeChunks(connection.async(), key, timeToLiveMillis, value, connection.getTimeout());
+    }
+
+    @NonNull
+    private synchronized ExecutorService invalidationExecutor() {
+        if (invalidationExecutor == null) {
+            invalidationExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "redis-cache-invalidation");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        return invalidationExecutor;
+    }
+
+    /**
+     * Record the latency of a successful command, inline rather than around a lambda to keep the hot path allocation free.
+     */
+    private void redisLatency(long startNanos) {
+        instrumentation.redisLatency(System.nanoTime() - startNanos);
+    }
+
     @Override
     public V load(K key) {
         V value = null;
         try {
-            value = syncCommands().get(key);
+            value = redisGet(key);
         } catch (RedisException reex) {
+            instrumentation.error();
             log.error("Failed to execute redis 'get' {}", key, reex);
         }
-        if (value != null) return value;
-        return loadAndCache(key);
+        if (value != null) {
+            instrumentation.hits(1);
+            return value;
+        }
+
+        instrumentation.misses(1);
+        return leasedLoadAndCache(key);
     }
 
     @Override
@@ -80,7 +261,7 @@ public class RedisCache<K, V> implements Cache<K, V>, AutoCloseable{
         try {
             keyValues = new HashMap<>();
             missingKeys = new ArrayList<>();
-            for (KeyValue<K, V> kv : syncCommands().mget(keys)) {
+            for (KeyValue<K, V> kv : redisMget(keys)) {
                 K k = kv.getKey();
                 if (kv.hasValue()) {
                     keyValues.put(k, kv.getValue());
@@ -89,11 +270,15 @@ public class RedisCache<K, V> implements Cache<K, V>, AutoCloseable{
                 }
             }
         } catch (RedisException reex) {
+            instrumentation.error();
             log.error("Failed to execute redis 'mget' {} keys", keys.length, reex);
             keyValues = new HashMap<>();
             missingKeys = Arrays.asList(keys);
         }
 
+        instrumentation.hits(keyValues.size());
+        instrumentation.misses(missingKeys.size());
+
         if (missingKeys.size() > 0) {
             keyValues.putAll(loadAndCache(missingKeys));
         }
@@ -106,40 +291,116 @@ public class RedisCache<K, V> implements Cache<K, V>, AutoCloseable{
         V value = null;
 
         try {
-            value = syncCommands().get(key);
+            value = redisGet(key);
         } catch (RedisException reex) {
+            instrumentation.error();
             log.error("Failed to execute redis 'get' {}", key, reex);
         }
 
-        if (value != null) return loadAndCache(key);
-        return null;
+        if (value == null || singleLoader == null) return null;
+
+        V reloaded = timedLoad(() -> singleLoader.load(key));
+        if (reloaded != null) put(key, reloaded);
+        return reloaded;
     }
 
+    /**
+     * The loaded value is only cached if the key is still absent, a concurrent put is fresher than the loader.
+     */
     private V loadAndCache(K key) {
         if (singleLoader == null) return null;
 
-        V value = singleLoader.load(key);
+        V value = timedLoad(() -> singleLoader.load(key));
         if (value == null) return null;
 
-        put(key, value);
+        putIfAbsent(key, value);
         return value;
     }
 
-    private Map<K, V> loadAndCache(List<K> missingKeys) {
-        if (multiLoader == null) return emptyMap();
-        Map<K, V> keyValues = multiLoader.loadAll(missingKeys);
+    /**
+     * Load and cache {@param key} if this node wins the lease,
+     * otherwise wait for the winner to cache it, see {@link LoadLease}.
+     */
+    private V leasedLoadAndCache(K key) {
+        if (singleLoader == null || loadLease == null) return loadAndCache(key);
 
+        byte[] leaseKey = loadLease.leaseKey(key);
+        byte[] token = loadLease.newToken();
+        String reply;
         try {
-            for (var kv : keyValues.entrySet()) {
-                syncCommands().psetex(kv.getKey(), defaultTimeToLiveMillis, kv.getValue());
+            long startNanos = System.nanoTime();
+            reply = rawCommands().set(leaseKey, token, loadLease.acquireArgs());
+            redisLatency(startNanos);
+        } catch (RedisException reex) {
+            instrumentation.error();
+            log.error("Failed to execute redis 'set' lease {}", key, reex);
+            return loadAndCache(key);
+        }
+
+        if ("OK".equals(reply)) {
+            try {
+                // The previous holder may have cached the value between the miss and the lease
+                try {
+                    V value = redisGet(key);
+                    if (value != null) return value;
+                } catch (RedisException reex) {
+                    instrumentation.error();
+                    log.error("Failed to execute redis 'get' {}", key, reex);
+                }
+                return loadAndCache(key);
+            } finally {
+                releaseLease(key, leaseKey, token);
+            }
+        }
+
+        try {
+            for (int poll = 0; poll < loadLease.polls(); poll++) {
+                TimeUnit.MILLISECONDS.sleep(loadLease.pollInterval().toMillis());
+                V value = redisGet(key);
+                if (value != null) return value;
             }
+        } catch (InterruptedException inex) {
+            Thread.currentThread().interrupt();
         } catch (RedisException reex) {
-            log.error("Failed to execute redis 'psetex' {} keys", missingKeys.size(), reex);
+            instrumentation.error();
+            log.error("Failed to execute redis 'get' {}", key, reex);
         }
 
+        log.warn("Lease of {} not fulfilled in time, loading it", key);
+        return loadAndCache(key);
+    }
+
+    private void releaseLease(K key, byte[] leaseKey, byte[] token) {
+        try {
+            long startNanos = System.nanoTime();
+            rawCommands().<Long>eval(LoadLease.RELEASE_SCRIPT, ScriptOutputType.INTEGER, new byte[][]{leaseKey}, token);
+            redisLatency(startNanos);
+        } catch (RedisException reex) {
+            instrumentation.error();
+            log.error("Failed to execute redis 'eval' lease release {}", key, reex);
+        }
+    }
+
+    private Map<K, V> loadAndCache(List<K> missingKeys) {
+        if (multiLoader == null) return emptyMap();
+        Map<K, V> keyValues = timedLoad(() -> multiLoader.loadAll(missingKeys));
+
+        putAll(keyValues);
         return keyValues;
     }
 
+    private <T> T timedLoad(Supplier<T> loader) {
+        long startNanos = System.nanoTime();
+        try {
+            return loader.get();
+        } catch (RuntimeException ex) {
+            instrumentation.error();
+            throw ex;
+        } finally {
+            instrumentation.loadLatency(System.nanoTime() - startNanos);
+        }
+    }
+
     @Override
     public boolean put(K key, V value) {
         return putTimeToLiveMillis(key, value, defaultTimeToLiveMillis);
@@ -158,20 +419,108 @@ public class RedisCache<K, V> implements Cache<K, V>, AutoCloseable{
 
     private boolean putTimeToLiveMillis(K key, V value, long timeToLiveMillis) {
         try {
-            String reply = syncCommands().psetex(key, timeToLiveMillis, value);
-            if ("OK".equals(reply)) return true;
-            log.warn("Failed to execute redis 'psetex' {}: {}", key, reply);
+            return redisPut(key, timeToLiveMillis, value);
+        } catch (RedisException reex) {
+            instrumentation.error();
+            log.error("Failed to execute redis 'evalsha' put {}", key, reex);
+            return false;
+        }
+    }
+
+    @Override
+    public boolean putIfAbsent(K key, V value) {
+        try {
+            byte[] encodedKey = encodeKey(key);
+            byte[] encodedValue = encodeValue(key, value, defaultTimeToLiveMillis);
+            long startNanos = System.nanoTime();
+            boolean written;
+            if (valueChunker != null) {
+                // The chunks of a value not written are unlinked right away
+                Long reply = RedisScript.PUT_IF_ABSENT.chunked().eval(rawCommands(), new byte[][]{encodedKey},
+                        encodedValue, RedisScript.argument(defaultTimeToLiveMillis));
+                written = reply != null && reply == 1;
+            } else {
+                written = "OK".equals(rawCommands().set(encodedKey, encodedValue, SetArgs.Builder.nx().px(defaultTimeToLiveMillis)));
+            }
+            redisLatency(startNanos);
+            return written;
+        } catch (RedisException reex) {
+            instrumentation.error();
+            log.error("Failed to execute redis 'set' nx {}", key, reex);
+            return false;
+        }
+    }
+
+    /**
+     * The version is kept in a sidecar key expiring with the value, see {@link RedisScript#PUT_IF_NEWER}.
+     */
+    @Override
+    public boolean putIfNewer(K key, V value, ToLongFunction<V> version) {
+        try {
+            byte[] encodedKey = encodeKey(key);
+            byte[] encodedValue = encodeValue(key, value, defaultTimeToLiveMillis);
+            long startNanos = System.nanoTime();
+            Long reply = script(RedisScript.PUT_IF_NEWER).eval(rawCommands(),
+                    new byte[][]{encodedKey, RedisScript.versionKey(encodedKey)},
+                    encodedValue, RedisScript.argument(version.applyAsLong(value)), RedisScript.argument(defaultTimeToLiveMillis));
+            redisLatency(startNanos);
+            return reply != null && reply == 1;
         } catch (RedisException reex) {
-            log.error("Failed to execute redis 'psetex' {}", key, reex);
+            instrumentation.error();
+            log.error("Failed to execute redis 'evalsha' put if newer {}", key, reex);
+            return false;
+        }
+    }
+
+    @Override
+    public boolean putAll(Map<K, V> keyValues) {
+        return putAllTimeToLiveMillis(keyValues, value -> defaultTimeToLiveMillis);
+    }
+
+    /**
+     * Every value expires after its own time to live, within the same scripts as {@link #putAll(Map)}.
+     */
+    @Override
+    public boolean putAll(Map<K, V> keyValues, Function<V, Duration> timeToLive) {
+        return putAllTimeToLiveMillis(keyValues, value -> timeToLive.apply(value).toMillis());
+    }
+
+    private boolean putAllTimeToLiveMillis(Map<K, V> keyValues, ToLongFunction<V> timeToLiveMillis) {
+        if (keyValues.isEmpty()) return true;
+
+        try {
+            byte[][] keys = new byte[keyValues.size()][];
+            byte[][] values = new byte[keyValues.size()][];
+            long[] timeToLives = new long[keyValues.size()];
+            int i = 0;
+            for (Map.Entry<K, V> kv : keyValues.entrySet()) {
+                keys[i] = encodeKey(kv.getKey());
+                timeToLives[i] = timeToLiveMillis.applyAsLong(kv.getValue());
+                values[i] = encodeValue(kv.getKey(), kv.getValue(), timeToLives[i]);
+                i++;
+            }
+
+            long startNanos = System.nanoTime();
+            long written = RedisScript.putAll(rawCommands(), valueChunker != null, keys, values, timeToLives);
+            redisLatency(startNanos);
+            return written == keys.length;
+        } catch (RedisException reex) {
+            instrumentation.error();
+            log.error("Failed to execute redis 'evalsha' put all {} keys", keyValues.size(), reex);
+            return false;
         }
-        return false;
     }
 
     @Override
     public boolean expireAt(K key, long timestamp) {
         try {
-            return syncCommands().expireat(key, timestamp);
+            if (valueChunker != null) return withChunks(new byte[][]{encodeKey(key)}, "expireat", RedisScript.argument(timestamp)) == 1;
+            long startNanos = System.nanoTime();
+            boolean expiring = syncCommands().expireat(key, timestamp);
+            redisLatency(startNanos);
+            return expiring;
         }  catch (RedisException reex) {
+            instrumentation.error();
             log.error("Failed to execute redis 'expireat' {}", key, reex);
             return false;
         }
@@ -180,8 +529,13 @@ public class RedisCache<K, V> implements Cache<K, V>, AutoCloseable{
     @Override
     public final long remove(K[] keys) {
         try {
-            return syncCommands().del(keys);
+            if (valueChunker != null) return withChunks(encodeKeys(keys), "del");
+            long startNanos = System.nanoTime();
+            long removed = syncCommands().del(keys);
+            redisLatency(startNanos);
+            return removed;
         } catch (RedisException reex) {
+            instrumentation.error();
             log.error("Failed to execute redis 'del' {} keys", keys.length, reex);
             return 0L;
         }
@@ -190,21 +544,60 @@ public class RedisCache<K, V> implements Cache<K, V>, AutoCloseable{
     @Override
     public boolean remove(K key) {
         try {
+            if (valueChunker != null) return withChunks(new byte[][]{encodeKey(key)}, "del") == 1;
+            long startNanos = System.nanoTime();
             //noinspection unchecked
-            return syncCommands().del(key) == 1;
+            long removed = syncCommands().del(key);
+            redisLatency(startNanos);
+            return removed == 1;
         } catch (RedisException reex) {
+            instrumentation.error();
             log.error("Failed to execute redis 'del' {}", key, reex);
             return false;
         }
     }
 
+    @Override
+    public BulkInvalidation removeByPrefix(String prefix) {
+        BulkInvalidation progress = new BulkInvalidation(PrefixScanner.matchPattern(prefix));
+        PrefixScanner prefixScanner = new PrefixScanner(this::rawCommands, scanBatchSize, invalidationOpsPerSecond);
+        invalidationExecutor().execute(() -> prefixScanner.scanAndUnlink(progress));
+        return progress;
+    }
+
+    @Override
+    public BulkInvalidation invalidateNamespace() {
+        if (keyNamespace == null) {
+            throw new IllegalStateException("Key codec of " + keyClass.getName() + " has no namespace");
+        }
+        return removeByPrefix(keyNamespace + ":");
+    }
+
     @Override
     public void close() {
         StatefulRedisConnection<K, V> capturedConnection = this.connection;
         this.connection = null;
-        if (capturedConnection.isOpen()) {
+        if (capturedConnection != null && capturedConnection.isOpen()) {
             capturedConnection.close();
         }
+
+        StatefulRedisConnection<K, V> capturedReadConnection = this.readConnection;
+        this.readConnection = null;
+        this.readCommands = null;
+        if (capturedReadConnection != null && capturedReadConnection.isOpen()) {
+            capturedReadConnection.close();
+        }
+
+        synchronized (this) {
+            if (invalidationExecutor != null) {
+                invalidationExecutor.shutdownNow();
+                invalidationExecutor = null;
+            }
+            if (rawConnection != null && rawConnection.isOpen()) {
+                rawConnection.close();
+            }
+            rawConnection = null;
+        }
     }
 
     /**
@@ -225,6 +618,43 @@ public class RedisCache<K, V> implements Cache<K, V>, AutoCloseable{
         private Codec<K> keyCodec;
         private Codec<V> valueCodec;
         private RedisClient redisClient;
+        private int scanBatchSize = 500;
+        private int invalidationOpsPerSecond = 5000;
+        private CacheInstrumentation instrumentation = CacheInstrumentation.NOOP;
+
+        /**
+         * Route the <code>GET</code>/<code>MGET</code> reads to the replicas of {@link #nodes},
+         * writes still go to the primary of {@link #redisClient}. Null means reading from the primary.
+         */
+        private ReadFrom readFrom;
+
+        /**
+         * Primary and replicas, or only the primary to discover its replicas.
+         */
+        private List<RedisURI> nodes = List.of();
+
+        /**
+         * Retry a read on the primary when it fails on the replicas.
+         */
+        private boolean fallbackToPrimary = true;
+
+        /**
+         * Expiry of the loader lease which allows a single node to load a missing key, null means no lease.
+         */
+        private Duration leaseTimeout;
+
+        /**
+         * How long the nodes which lost the lease wait for the value before loading it themselves.
+         */
+        private Duration leaseWait = Duration.ofSeconds(1);
+
+        private Duration leasePollInterval = Duration.ofMillis(50);
+
+        /**
+         * Encoded values larger than this number of bytes are split into chunks of this size, 0 means no chunking.
+         * The chunked values are always read from the primary.
+         */
+        private int chunkSize;
 
         public RedisCache<K, V> build() {
             long defaultTimeToLiveMillis = defaultTimeToLive != null
@@ -232,15 +662,43 @@ public class RedisCache<K, V> implements Cache<K, V>, AutoCloseable{
                     : Long.MAX_VALUE;
 
             RedisCodecImpl<K, V> redisCodec = new RedisCodecImpl<>(keyCodec, valueCodec);
+            String keyNamespace = keyCodec instanceof NamespaceCodec
+                    ? ((NamespaceCodec<K>) keyCodec).getNamespace()
+                    : null;
 
             return new RedisCache<>(
                     () -> redisClient.connect(redisCodec),
+                    readConnectionSupplier(redisCodec),
+                    () -> redisClient.connect(io.lettuce.core.codec.ByteArrayCodec.INSTANCE),
                     singleLoader,
                     multiLoader,
                     keyCodec.getType(),
-                    defaultTimeToLiveMillis
+                    keyNamespace,
+                    defaultTimeToLiveMillis,
+                    scanBatchSize,
+                    invalidationOpsPerSecond,
+                    instrumentation,
+                    fallbackToPrimary,
+                    leaseTimeout != null ? new LoadLease<>(redisCodec, leaseTimeout, leaseWait, leasePollInterval) : null,
+                    chunkSize > 0 ? new ValueChunker<>(redisCodec, chunkSize) : null,
+                    redisCodec
             );
         }
+
+        private Supplier<StatefulRedisConnection<K, V>> readConnectionSupplier(RedisCodecImpl<K, V> redisCodec) {
+            if (readFrom == null) return null;
+            if (nodes.isEmpty()) {
+                throw new IllegalStateException("Reading from " + readFrom + " requires the redis nodes");
+            }
+
+            return () -> {
+                StatefulRedisMasterReplicaConnection<K, V> readConnection = nodes.size() == 1
+                        ? MasterReplica.connect(redisClient, redisCodec, nodes.get(0))
+                        : MasterReplica.connect(redisClient, redisCodec, nodes);
+                readConnection.setReadFrom(readFrom);
+                return readConnection;
+            };
+        }
     }
 
 }
@@ -0,0 +1,422 @@
+package brave.cache.redis;
+
+import brave.cache.BulkInvalidation;
+import brave.cache.LongKeyCache;
+import brave.cache.codec.Codec;
+import brave.cache.codec.LongNamespaceCodec;
+import brave.cache.metric.CacheInstrumentation;
+import brave.cache.util.LongObjectMap;
+import io.lettuce.core.KeyValue;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisException;
+import io.lettuce.core.SetArgs;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.sync.RedisCommands;
+import io.lettuce.core.codec.ByteArrayCodec;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import lombok.experimental.Accessors;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * REDIS {@link LongKeyCache} working on raw bytes: keys are encoded by {@link LongNamespaceCodec#encodeLong(long)}
+ * and the values of <code>MGET</code> are matched to the keys by index, so the keys are never boxed nor decoded.
+ *
+ * @param <V>
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class RedisLongKeyCache<V> implements LongKeyCache<V>, AutoCloseable {
+
+    private final Supplier<StatefulRedisConnection<byte[], byte[]>> connectionSupplier;
+    private final LongNamespaceCodec keyCodec;
+    private final Codec<V> valueCodec;
+    private final LongSingleLoader<V> singleLoader;
+    private final LongMultiLoader<V> multiLoader;
+    private final long defaultTimeToLiveMillis;
+    private final int scanBatchSize;
+    private final int invalidationOpsPerSecond;
+    private final CacheInstrumentation instrumentation;
+
+    private StatefulRedisConnection<byte[], byte[]> connection;
+    private ExecutorService invalidationExecutor;
+
+    private synchronized RedisCommands<byte[], byte[]> commands() {
+        if (connection == null) {
+            connection = connectionSupplier.get();
+        }
+
+        return connection.sync();
+    }
+
+    private synchronized ExecutorService invalidationExecutor() {
+        if (invalidationExecutor == null) {
+            invalidationExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "redis-cache-invalidation");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        return invalidationExecutor;
+    }
+
+    private <T> T timed(Supplier<T> command) {
+        long startNanos = System.nanoTime();
+        try {
+            return command.get();
+        } finally {
+            instrumentation.redisLatency(System.nanoTime() - startNanos);
+        }
+    }
+
+    @Override
+    public V load(long key) {
+        byte[] rawKey = keyCodec.encodeLong(key);
+        byte[] rawValue = null;
+        try {
+            rawValue = timed(() -> commands().get(rawKey));
+        } catch (RedisException reex) {
+            instrumentation.error();
+            log.error("Failed to execute redis 'get' {}", key, reex);
+        }
+        if (rawValue != null) {
+            instrumentation.hits(1);
+            return decodeValue(rawValue);
+        }
+
+        instrumentation.misses(1);
+        if (singleLoader == null) return null;
+
+        V value = timedLoad(() -> singleLoader.load(key));
+        if (value != null) putIfAbsent(rawKey, key, value);
+        return value;
+    }
+
+    @Override
+    public LongObjectMap<V> loadAll(long[] keys) {
+        LongObjectMap<V> keyValues = new LongObjectMap<>(keys.length);
+        if (keys.length == 0) return keyValues;
+
+        byte[][] rawKeys = new byte[keys.length][];
+        for (int i = 0; i < keys.length; i++) {
+            rawKeys[i] = keyCodec.encodeLong(keys[i]);
+        }
+
+        long[] missingKeys = new long[keys.length];
+        int missingCount = 0;
+        try {
+            List<KeyValue<byte[], byte[]>> rawKeyValues = timed(() -> commands().mget(rawKeys));
+            for (int i = 0; i < keys.length; i++) {
+                KeyValue<byte[], byte[]> rawKeyValue = rawKeyValues.get(i);
+                if (rawKeyValue.hasValue()) {
+                    keyValues.put(keys[i], decodeValue(rawKeyValue.getValue()));
+                } else {
+                    missingKeys[missingCount++] = keys[i];
+                }
+            }
+        } catch (RedisException reex) {
+            instrumentation.error();
+            log.error("Failed to execute redis 'mget' {} keys", keys.length, reex);
+            keyValues.clear();
+            missingKeys = keys;
+            missingCount = keys.length;
+        }
+
+        instrumentation.hits(keyValues.size());
+        instrumentation.misses(missingCount);
+        if (missingCount == 0 || multiLoader == null) return keyValues;
+
+        long[] loadingKeys = Arrays.copyOf(missingKeys, missingCount);
+        LongObjectMap<V> loadedKeyValues = timedLoad(() -> multiLoader.loadAll(loadingKeys));
+        byte[][] loadedRawKeys = new byte[loadedKeyValues.size()][];
+        byte[][] loadedRawValues = new byte[loadedKeyValues.size()][];
+        int[] loadedCount = {0};
+        loadedKeyValues.forEach((key, value) -> {
+            if (value == null) return;
+            keyValues.put(key, value);
+            loadedRawKeys[loadedCount[0]] = keyCodec.encodeLong(key);
+            loadedRawValues[loadedCount[0]++] = encodeValue(value);
+        });
+        putAll(loadedRawKeys, loadedRawValues, loadedCount[0]);
+        return keyValues;
+    }
+
+    private <T> T timedLoad(Supplier<T> loader) {
+        long startNanos = System.nanoTime();
+        try {
+            return loader.get();
+        } catch (RuntimeException ex) {
+            instrumentation.error();
+            throw ex;
+        } finally {
+            instrumentation.loadLatency(System.nanoTime() - startNanos);
+        }
+    }
+
+    @Override
+    public boolean put(long key, V value) {
+        return putTimeToLiveMillis(keyCodec.encodeLong(key), key, value, defaultTimeToLiveMillis);
+    }
+
+    @Override
+    public boolean put(long key, V value, Duration timeToLive) {
+        return putTimeToLiveMillis(keyCodec.encodeLong(key), key, value, timeToLive.toMillis());
+    }
+
+    private boolean putTimeToLiveMillis(byte[] rawKey, long key, V value, long timeToLiveMillis) {
+        try {
+            Long reply = timed(() -> RedisScript.PUT.eval(commands(), new byte[][]{rawKey, RedisScript.versionKey(rawKey)},
+                    encodeValue(value), RedisScript.argument(timeToLiveMillis)));
+            return reply != null && reply == 1;
+        } catch (RedisException reex) {
+            instrumentation.error();
+            log.error("Failed to execute redis 'evalsha' put {}", key, reex);
+            return false;
+        }
+    }
+
+    @Override
+    public boolean remove(long key) {
+        try {
+            return timed(() -> commands().del(keyCodec.encodeLong(key))) == 1;
+        } catch (RedisException reex) {
+            instrumentation.error();
+            log.error("Failed to execute redis 'del' {}", key, reex);
+            return false;
+        }
+    }
+
+    private V decodeValue(byte[] rawValue) {
+        return valueCodec.decode(ByteBuffer.wrap(rawValue));
+    }
+
+    private byte[] encodeValue(V value) {
+        ByteBuffer encoded = valueCodec.encode(value).duplicate();
+        if (encoded.hasArray() && encoded.arrayOffset() == 0 && encoded.position() == 0
+                && encoded.remaining() == encoded.array().length) {
+            return encoded.array();
+        }
+        byte[] bytes = new byte[encoded.remaining()];
+        encoded.get(bytes);
+        return bytes;
+    }
+
+    @Override
+    public V load(Long key) {
+        return load(key.longValue());
+    }
+
+    @Override
+    public Map<Long, V> loadAll(Collection<Long> keys) {
+        return loadAll(keys.stream().mapToLong(Long::longValue).toArray()).toMap();
+    }
+
+    @Override
+    public Map<Long, V> loadAll(Long[] keys) {
+        long[] primitiveKeys = new long[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            primitiveKeys[i] = keys[i];
+        }
+        return loadAll(primitiveKeys).toMap();
+    }
+
+    @Override
+    public V reloadIfExist(Long key) {
+        byte[] rawKey = keyCodec.encodeLong(key);
+        Long exists = null;
+        try {
+            exists = timed(() -> commands().exists(rawKey));
+        } catch (RedisException reex) {
+            instrumentation.error();
+            log.error("Failed to execute redis 'exists' {}", key, reex);
+        }
+
+        if (exists == null || exists == 0 || singleLoader == null) return null;
+
+        V value = timedLoad(() -> singleLoader.load(key));
+        if (value != null) putTimeToLiveMillis(rawKey, key, value, defaultTimeToLiveMillis);
+        return value;
+    }
+
+    @Override
+    public boolean put(Long key, V value) {
+        return put(key.longValue(), value);
+    }
+
+    @Override
+    public boolean put(Long key, V value, Duration timeToLive) {
+        return put(key.longValue(), value, timeToLive);
+    }
+
+    @Override
+    public boolean put(Long key, V value, long expireAtTimestamp) {
+        long timeToLiveMillis = Math.max(expireAtTimestamp - System.currentTimeMillis(), 1);
+        return putTimeToLiveMillis(keyCodec.encodeLong(key), key, value, timeToLiveMillis);
+    }
+
+    @Override
+    public boolean putIfAbsent(Long key, V value) {
+        return putIfAbsent(keyCodec.encodeLong(key), key, value);
+    }
+
+    /**
+     * The loaded values are only cached if their key is still absent, a concurrent put is fresher than the loader.
+     */
+    private boolean putIfAbsent(byte[] rawKey, long key, V value) {
+        try {
+            String reply = timed(() -> commands().set(rawKey, encodeValue(value), SetArgs.Builder.nx().px(defaultTimeToLiveMillis)));
+            return "OK".equals(reply);
+        } catch (RedisException reex) {
+            instrumentation.error();
+            log.error("Failed to execute redis 'set' nx {}", key, reex);
+            return false;
+        }
+    }
+
+    @Override
+    public boolean putIfNewer(Long key, V value, ToLongFunction<V> version) {
+        byte[] rawKey = keyCodec.encodeLong(key);
+        try {
+            Long reply = timed(() -> RedisScript.PUT_IF_NEWER.eval(commands(),
+                    new byte[][]{rawKey, RedisScript.versionKey(rawKey)},
+                    encodeValue(value), RedisScript.argument(version.applyAsLong(value)), RedisScript.argument(defaultTimeToLiveMillis)));
+            return reply != null && reply == 1;
+        } catch (RedisException reex) {
+            instrumentation.error();
+            log.error("Failed to execute redis 'evalsha' put if newer {}", key, reex);
+            return false;
+        }
+    }
+
+    @Override
+    public boolean putAll(Map<Long, V> keyValues) {
+        byte[][] rawKeys = new byte[keyValues.size()][];
+        byte[][] rawValues = new byte[keyValues.size()][];
+        int i = 0;
+        for (Map.Entry<Long, V> kv : keyValues.entrySet()) {
+            rawKeys[i] = keyCodec.encodeLong(kv.getKey());
+            rawValues[i++] = encodeValue(kv.getValue());
+        }
+        return putAll(rawKeys, rawValues, rawKeys.length);
+    }
+
+    /**
+     * Write the first {@param count} raw key values, in a round trip per {@link RedisScript#PUT_ALL_BATCH}.
+     */
+    private boolean putAll(byte[][] rawKeys, byte[][] rawValues, int count) {
+        if (count == 0) return true;
+
+        byte[][] keys = count == rawKeys.length ? rawKeys : Arrays.copyOf(rawKeys, count);
+        byte[][] values = count == rawValues.length ? rawValues : Arrays.copyOf(rawValues, count);
+        try {
+            long written = timed(() -> RedisScript.putAll(commands(), false, keys, values, defaultTimeToLiveMillis));
+            return written == count;
+        } catch (RedisException reex) {
+            instrumentation.error();
+            log.error("Failed to execute redis 'evalsha' put all {} keys", count, reex);
+            return false;
+        }
+    }
+
+    @Override
+    public long remove(Long[] keys) {
+        byte[][] rawKeys = new byte[keys.length][];
+        for (int i = 0; i < keys.length; i++) {
+            rawKeys[i] = keyCodec.encodeLong(keys[i]);
+        }
+
+        try {
+            return timed(() -> commands().del(rawKeys));
+        } catch (RedisException reex) {
+            instrumentation.error();
+            log.error("Failed to execute redis 'del' {} keys", keys.length, reex);
+            return 0L;
+        }
+    }
+
+    @Override
+    public boolean remove(Long key) {
+        return remove(key.longValue());
+    }
+
+    @Override
+    public boolean expireAt(Long key, long timestamp) {
+        try {
+            return timed(() -> commands().pexpireat(keyCodec.encodeLong(key), timestamp));
+        } catch (RedisException reex) {
+            instrumentation.error();
+            log.error("Failed to execute redis 'pexpireat' {}", key, reex);
+            return false;
+        }
+    }
+
+    @Override
+    public BulkInvalidation removeByPrefix(String prefix) {
+        BulkInvalidation progress = new BulkInvalidation(PrefixScanner.matchPattern(prefix));
+        PrefixScanner prefixScanner = new PrefixScanner(this::commands, scanBatchSize, invalidationOpsPerSecond);
+        invalidationExecutor().execute(() -> prefixScanner.scanAndUnlink(progress));
+        return progress;
+    }
+
+    @Override
+    public BulkInvalidation invalidateNamespace() {
+        return removeByPrefix(keyCodec.getNamespace() + ":");
+    }
+
+    @Override
+    public synchronized void close() {
+        if (invalidationExecutor != null) {
+            invalidationExecutor.shutdownNow();
+            invalidationExecutor = null;
+        }
+        if (connection != null && connection.isOpen()) {
+            connection.close();
+        }
+        connection = null;
+    }
+
+    @Setter
+    @Accessors(fluent = true, chain = true)
+    public static class Builder<V> {
+
+        private Duration defaultTimeToLive;
+        private LongSingleLoader<V> singleLoader;
+        private LongMultiLoader<V> multiLoader;
+        private LongNamespaceCodec keyCodec;
+        private Codec<V> valueCodec;
+        private RedisClient redisClient;
+        private int scanBatchSize = 500;
+        private int invalidationOpsPerSecond = 5000;
+        private CacheInstrumentation instrumentation = CacheInstrumentation.NOOP;
+
+        public RedisLongKeyCache<V> build() {
+            long defaultTimeToLiveMillis = defaultTimeToLive != null
+                    ? defaultTimeToLive.toMillis()
+                    : Long.MAX_VALUE;
+
+            return new RedisLongKeyCache<>(
+                    () -> redisClient.connect(ByteArrayCodec.INSTANCE),
+                    keyCodec,
+                    valueCodec,
+                    singleLoader,
+                    multiLoader,
+                    defaultTimeToLiveMillis,
+                    scanBatchSize,
+                    invalidationOpsPerSecond,
+                    instrumentation
+            );
+        }
+    }
+}
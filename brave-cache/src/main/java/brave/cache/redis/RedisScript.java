@@ -0,0 +1,271 @@
+package brave.cache.redis;
+
+import io.lettuce.core.RedisCommandExecutionException;
+import io.lettuce.core.ScriptOutputType;
+import io.lettuce.core.api.reactive.RedisReactiveCommands;
+import io.lettuce.core.api.sync.RedisCommands;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * Lua script running a conditional or bulk write in a single round trip, on raw keys and arguments.
+ * <br>
+ * A script is called by its SHA1 with <code>EVALSHA</code>, and sent with <code>EVAL</code>
+ * only when the server does not know it yet, e.g. on first use or after a restart, which also caches it on the server.
+ */
+final class RedisScript {
+
+    /**
+     * Lua functions of the chunked values, see {@link ValueChunker}: <code>storedManifest(key)</code> reads the manifest
+     * held by a key, if any, without reading a larger value, <code>chunkKeys(key, manifest)</code> lists its chunks
+     * and <code>unlinkChunks(key, manifest)</code> drops them.
+     */
+    private static final String CHUNKS = "local function storedManifest(key) "
+            + "return redis.call('strlen', key) == 17 and redis.call('get', key) "
+            + "end "
+            + "local function chunkKeys(key, manifest) "
+            + "local keys = {} "
+            + "if manifest and string.len(manifest) == 17 and string.byte(manifest, 1) == 1 then "
+            + "local version = '' "
+            + "for b = 2, 9 do version = version .. string.format('%02x', string.byte(manifest, b)) end "
+            + "local count = 0 "
+            + "for b = 10, 13 do count = count * 256 + string.byte(manifest, b) end "
+            + "for c = 0, count - 1 do keys[#keys + 1] = key .. ':chunk:' .. version .. ':' .. c end "
+            + "end "
+            + "return keys "
+            + "end "
+            + "local function unlinkChunks(key, manifest) "
+            + "for _, chunkKey in ipairs(chunkKeys(key, manifest)) do redis.call('unlink', chunkKey) end "
+            + "end ";
+
+    /**
+     * The same functions for the values written without chunks, which are never read as manifests.
+     */
+    private static final String NO_CHUNKS = "local function storedManifest(key) return false end "
+            + "local function unlinkChunks(key, manifest) end ";
+
+    /**
+     * Set <code>KEYS[1]</code> to <code>ARGV[1]</code> unless it holds a version, in the sidecar key <code>KEYS[2]</code>,
+     * greater or equal to <code>ARGV[2]</code>. Both keys expire after <code>ARGV[3]</code> milliseconds.
+     * The sidecar of an expired or removed value is ignored, the unconditional writes {@link #PUT} and {@link #PUT_ALL} drop it.
+     * Versions are compared as Lua numbers, so they are exact up to 2^53, e.g. timestamps or counters.
+     */
+    static final RedisScript PUT_IF_NEWER = new RedisScript(
+            "if redis.call('exists', KEYS[1]) == 1 then "
+                    + "local current = redis.call('get', KEYS[2]) "
+                    + "if current and tonumber(current) >= tonumber(ARGV[2]) then "
+                    + "unlinkChunks(KEYS[1], ARGV[1]) "
+                    + "return 0 "
+                    + "end "
+                    + "end "
+                    + "unlinkChunks(KEYS[1], storedManifest(KEYS[1])) "
+                    + "redis.call('set', KEYS[1], ARGV[1], 'PX', ARGV[3]) "
+                    + "redis.call('set', KEYS[2], ARGV[2], 'PX', ARGV[3]) "
+                    + "return 1");
+
+    /**
+     * Set <code>KEYS[1]</code> to <code>ARGV[1]</code> expiring after <code>ARGV[2]</code> milliseconds
+     * and drop the version of the previous value, in the sidecar key <code>KEYS[2]</code>, see {@link #PUT_IF_NEWER}.
+     */
+    static final RedisScript PUT = new RedisScript(
+            "unlinkChunks(KEYS[1], storedManifest(KEYS[1])) "
+                    + "redis.call('set', KEYS[1], ARGV[1], 'PX', ARGV[2]) "
+                    + "redis.call('del', KEYS[2]) "
+                    + "return 1");
+
+    /**
+     * Set every <code>KEYS[2i-1]</code> to <code>ARGV[2i-1]</code> expiring after <code>ARGV[2i]</code> milliseconds
+     * and drop the version of its previous value, in the sidecar key <code>KEYS[2i]</code>.
+     * Called with at most {@link #PUT_ALL_BATCH} key values, so that a large write does not block the server.
+     */
+    static final RedisScript PUT_ALL = new RedisScript(
+            "for i = 1, #KEYS / 2 do "
+                    + "unlinkChunks(KEYS[2 * i - 1], storedManifest(KEYS[2 * i - 1])) "
+                    + "redis.call('set', KEYS[2 * i - 1], ARGV[2 * i - 1], 'PX', ARGV[2 * i]) "
+                    + "redis.call('del', KEYS[2 * i]) "
+                    + "end "
+                    + "return #KEYS / 2");
+
+    static final int PUT_ALL_BATCH = 128;
+
+    /**
+     * Set <code>KEYS[1]</code> to <code>ARGV[1]</code> expiring after <code>ARGV[2]</code> milliseconds unless it exists,
+     * like <code>SET NX</code>.
+     */
+    static final RedisScript PUT_IF_ABSENT = new RedisScript(
+            "if redis.call('exists', KEYS[1]) == 1 then "
+                    + "unlinkChunks(KEYS[1], ARGV[1]) "
+                    + "return 0 "
+                    + "end "
+                    + "redis.call('set', KEYS[1], ARGV[1], 'PX', ARGV[2]) "
+                    + "return 1");
+
+    /**
+     * Apply the command <code>ARGV[1]</code>, e.g. <code>del</code> or <code>expireat</code>, with the arguments
+     * <code>ARGV[2..]</code> to every <code>KEYS[i]</code> and, when it holds a manifest, to its chunks,
+     * see {@link ValueChunker}. Only a value of the manifest size is read.
+     *
+     * @return The sum of the replies for <code>KEYS</code>
+     */
+    static final RedisScript WITH_CHUNKS = new RedisScript(CHUNKS
+            + "local reply = 0 "
+            + "for k = 1, #KEYS do "
+            + "local manifest = storedManifest(KEYS[k]) "
+            + "reply = reply + redis.call(ARGV[1], KEYS[k], unpack(ARGV, 2)) "
+            + "for _, chunkKey in ipairs(chunkKeys(KEYS[k], manifest)) do redis.call(ARGV[1], chunkKey, unpack(ARGV, 2)) end "
+            + "end "
+            + "return reply", null);
+
+    private static final byte[] VERSION_SUFFIX = ":version".getBytes(StandardCharsets.US_ASCII);
+
+    private final String source;
+    private final String sha;
+    private final RedisScript chunked;
+
+    /**
+     * A script written once for both plain and chunked values, see {@link #chunked()}.
+     */
+    private RedisScript(String body) {
+        this(NO_CHUNKS + body, new RedisScript(CHUNKS + body, null));
+    }
+
+    private RedisScript(String source, RedisScript chunked) {
+        this.source = source;
+        this.sha = sha1(source);
+        this.chunked = chunked != null ? chunked : this;
+    }
+
+    /**
+     * @return This script for a cache writing through a {@link ValueChunker}: it also unlinks the chunks of the value it replaces,
+     * or of the value it does not write
+     */
+    RedisScript chunked() {
+        return chunked;
+    }
+
+    /**
+     * @return The integer reply of the script
+     */
+    Long eval(RedisCommands<byte[], byte[]> commands, byte[][] keys, byte[]... args) {
+        try {
+            return commands.evalsha(sha, ScriptOutputType.INTEGER, keys, args);
+        } catch (RedisCommandExecutionException rceex) {
+            if (!isNoScript(rceex)) throw rceex;
+            return commands.eval(source, ScriptOutputType.INTEGER, keys, args);
+        }
+    }
+
+    Mono<Long> eval(RedisReactiveCommands<byte[], byte[]> commands, byte[][] keys, byte[]... args) {
+        return commands.<Long>evalsha(sha, ScriptOutputType.INTEGER, keys, args)
+                .next()
+                .onErrorResume(RedisCommandExecutionException.class, rceex -> isNoScript(rceex)
+                        ? commands.<Long>eval(source, ScriptOutputType.INTEGER, keys, args).next()
+                        : Mono.error(rceex));
+    }
+
+    /**
+     * Write the {@param encodedKeys} with their {@param encodedValues} in batches of {@link #PUT_ALL_BATCH}.
+     *
+     * @return The number of written keys
+     */
+    static long putAll(RedisCommands<byte[], byte[]> commands, boolean chunked, byte[][] encodedKeys, byte[][] encodedValues, long timeToLiveMillis) {
+        return putAll(commands, chunked, encodedKeys, encodedValues, uniform(encodedKeys.length, timeToLiveMillis));
+    }
+
+    /**
+     * Write the {@param encodedKeys} with their {@param encodedValues}, each expiring after its own time to live.
+     *
+     * @return The number of written keys
+     */
+    static long putAll(RedisCommands<byte[], byte[]> commands, boolean chunked, byte[][] encodedKeys, byte[][] encodedValues, long[] timeToLiveMillis) {
+        RedisScript script = chunked ? PUT_ALL.chunked() : PUT_ALL;
+        long written = 0;
+        for (int from = 0; from < encodedKeys.length; from += PUT_ALL_BATCH) {
+            int to = Math.min(from + PUT_ALL_BATCH, encodedKeys.length);
+            Long reply = script.eval(commands, putAllKeys(encodedKeys, from, to), putAllArgs(encodedValues, from, to, timeToLiveMillis));
+            written += reply == null ? 0 : reply;
+        }
+        return written;
+    }
+
+    static Mono<Long> putAll(RedisReactiveCommands<byte[], byte[]> commands, boolean chunked, byte[][] encodedKeys, byte[][] encodedValues, long timeToLiveMillis) {
+        return putAll(commands, chunked, encodedKeys, encodedValues, uniform(encodedKeys.length, timeToLiveMillis));
+    }
+
+    static Mono<Long> putAll(RedisReactiveCommands<byte[], byte[]> commands, boolean chunked, byte[][] encodedKeys, byte[][] encodedValues, long[] timeToLiveMillis) {
+        RedisScript script = chunked ? PUT_ALL.chunked() : PUT_ALL;
+        return Flux.range(0, (encodedKeys.length + PUT_ALL_BATCH - 1) / PUT_ALL_BATCH)
+                .concatMap(batch -> {
+                    int from = batch * PUT_ALL_BATCH;
+                    int to = Math.min(from + PUT_ALL_BATCH, encodedKeys.length);
+                    return script.eval(commands, putAllKeys(encodedKeys, from, to), putAllArgs(encodedValues, from, to, timeToLiveMillis));
+                })
+                .reduce(0L, Long::sum);
+    }
+
+    private static byte[][] putAllKeys(byte[][] encodedKeys, int from, int to) {
+        byte[][] keys = new byte[(to - from) * 2][];
+        for (int i = from; i < to; i++) {
+            keys[2 * (i - from)] = encodedKeys[i];
+            keys[2 * (i - from) + 1] = versionKey(encodedKeys[i]);
+        }
+        return keys;
+    }
+
+    private static byte[][] putAllArgs(byte[][] encodedValues, int from, int to, long[] timeToLiveMillis) {
+        byte[][] args = new byte[(to - from) * 2][];
+        for (int i = from; i < to; i++) {
+            args[2 * (i - from)] = encodedValues[i];
+            args[2 * (i - from) + 1] = argument(timeToLiveMillis[i]);
+        }
+        return args;
+    }
+
+    private static long[] uniform(int length, long timeToLiveMillis) {
+        long[] timeToLives = new long[length];
+        Arrays.fill(timeToLives, timeToLiveMillis);
+        return timeToLives;
+    }
+
+    /**
+     * @return The sidecar key holding the version of {@param encodedKey}, see {@link #PUT_IF_NEWER}
+     */
+    static byte[] versionKey(byte[] encodedKey) {
+        byte[] versionKey = Arrays.copyOf(encodedKey, encodedKey.length + VERSION_SUFFIX.length);
+        System.arraycopy(VERSION_SUFFIX, 0, versionKey, encodedKey.length, VERSION_SUFFIX.length);
+        return versionKey;
+    }
+
+    static byte[] argument(long number) {
+        return Long.toString(number).getBytes(StandardCharsets.US_ASCII);
+    }
+
+    static byte[] toBytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private static boolean isNoScript(RedisCommandExecutionException rceex) {
+        return rceex.getMessage() != null && rceex.getMessage().startsWith("NOSCRIPT");
+    }
+
+    private static String sha1(String source) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(source.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException nsaex) {
+            throw new IllegalStateException("SHA-1 is not available", nsaex);
+        }
+    }
+}
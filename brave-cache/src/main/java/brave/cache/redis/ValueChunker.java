@@ -0,0 +1,251 @@
+package brave.cache.redis;
+
+import io.lettuce.core.KeyValue;
+import io.lettuce.core.LettuceFutures;
+import io.lettuce.core.RedisCommandTimeoutException;
+import io.lettuce.core.RedisException;
+import io.lettuce.core.RedisFuture;
+import io.lettuce.core.api.async.RedisAsyncCommands;
+import io.lettuce.core.api.reactive.RedisReactiveCommands;
+import io.lettuce.core.api.sync.RedisCommands;
+import io.lettuce.core.codec.RedisCodec;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+
+/**
+ * Splits the encoded values larger than {@link #chunkSize} into chunk keys
+ * <code>&lt;key&gt;:chunk:&lt;version&gt;:&lt;index&gt;</code>, the key itself holds a manifest of the chunks.
+ * <br>
+ * Every write of a large value gets a new version, so a reader always gets the chunks of the manifest it read
+ * rather than a mix of two writes. Chunks are written, in a single pipeline, before the manifest
+ * and expire with it. A missing chunk makes the whole value a miss. The script writing the manifest unlinks the chunks
+ * of the manifest it replaces, or of its own when it does not write it, see {@link RedisScript#chunked()}.
+ * <br>
+ * Every value written through the chunker starts with a marker byte, {@link #PLAIN} or {@link #MANIFEST},
+ * so that no encoded value is ever read as a manifest. Removing or expiring a key applies to its chunks too,
+ * in the same script, see {@link RedisScript#WITH_CHUNKS}.
+ *
+ * @param <K>
+ * @param <V>
+ */
+class ValueChunker<K, V> {
+
+    private static final byte PLAIN = 0;
+    private static final byte MANIFEST = 1;
+    private static final int MANIFEST_SIZE = 1 + 8 + 4 + 4;
+
+    private final RedisCodec<K, V> redisCodec;
+    private final int chunkSize;
+
+    ValueChunker(RedisCodec<K, V> redisCodec, int chunkSize) {
+        if (chunkSize <= MANIFEST_SIZE) {
+            throw new IllegalStateException("Invalid chunk size " + chunkSize);
+        }
+        this.redisCodec = redisCodec;
+        this.chunkSize = chunkSize;
+    }
+
+    V get(RedisCommands<byte[], byte[]> commands, K key) {
+        byte[] encodedKey = encodeKey(key);
+        List<KeyValue<byte[], byte[]>> stored = Collections.singletonList(KeyValue.fromNullable(encodedKey, commands.get(encodedKey)));
+        List<KeyValue<K, V>> keyValues = join(Collections.singletonList(key), stored, readChunks(commands, stored));
+        return keyValues.get(0).getValueOrElse(null);
+    }
+
+    List<KeyValue<K, V>> mget(RedisCommands<byte[], byte[]> commands, K[] keys) {
+        List<KeyValue<byte[], byte[]>> stored = commands.mget(encodeKeys(keys));
+        return join(Arrays.asList(keys), stored, readChunks(commands, stored));
+    }
+
+    /**
+     * Write the chunks of {@param value} when it is larger than a chunk, before the write of {@param key}.
+     * The chunks of a value which finally is not written, e.g. on a failure between both writes, expire on their own.
+     *
+     * @return The bytes to write at {@param key}: the encoded value or the manifest of its chunks
+     */
+    byte[] writeChunks(RedisAsyncCommands<byte[], byte[]> commands, K key, long timeToLiveMillis, V value, Duration timeout) {
+        List<KeyValue<byte[], byte[]>> keyValues = split(key, value);
+        List<RedisFuture<String>> replies = keyValues.subList(0, keyValues.size() - 1).stream()
+                .map(kv -> commands.psetex(kv.getKey(), timeToLiveMillis, kv.getValue()))
+                .collect(Collectors.toList());
+
+        if (!LettuceFutures.awaitAll(timeout, replies.toArray(new RedisFuture[0]))) {
+            throw new RedisCommandTimeoutException("Command timed out after " + timeout);
+        }
+
+        for (RedisFuture<String> reply : replies) {
+            String status = reply.toCompletableFuture().join();
+            if (!"OK".equals(status)) throw new RedisException("Failed to write a chunk of " + key + ": " + status);
+        }
+        return keyValues.get(keyValues.size() - 1).getValue();
+    }
+
+    Mono<V> get(RedisReactiveCommands<byte[], byte[]> commands, K key) {
+        byte[] encodedKey = encodeKey(key);
+        return commands.get(encodedKey)
+                .map(value -> KeyValue.just(encodedKey, value))
+                .defaultIfEmpty(KeyValue.empty(encodedKey))
+                .map(Collections::singletonList)
+                .flatMap(stored -> readChunks(commands, stored)
+                        .map(chunks -> join(Collections.singletonList(key), stored, chunks)))
+                .flatMap(keyValues -> Mono.justOrEmpty(keyValues.get(0).getValueOrElse(null)));
+    }
+
+    Flux<KeyValue<K, V>> mget(RedisReactiveCommands<byte[], byte[]> commands, K[] keys) {
+        return commands.mget(encodeKeys(keys))
+                .collectList()
+                .flatMap(stored -> readChunks(commands, stored)
+                        .map(chunks -> join(Arrays.asList(keys), stored, chunks)))
+                .flatMapIterable(keyValues -> keyValues);
+    }
+
+    Mono<byte[]> writeChunks(RedisReactiveCommands<byte[], byte[]> commands, K key, long timeToLiveMillis, V value) {
+        return Mono.defer(() -> {
+            List<KeyValue<byte[], byte[]>> keyValues = split(key, value);
+            return Flux.fromIterable(keyValues.subList(0, keyValues.size() - 1))
+                    .flatMap(kv -> commands.psetex(kv.getKey(), timeToLiveMillis, kv.getValue()))
+                    .filter(status -> !"OK".equals(status))
+                    .next()
+                    .flatMap(status -> Mono.<byte[]>error(new RedisException("Failed to write a chunk of " + key + ": " + status)))
+                    .switchIfEmpty(Mono.fromSupplier(() -> keyValues.get(keyValues.size() - 1).getValue()));
+        });
+    }
+
+    /**
+     * @return The key values to write for {@param key}, the manifest last so that it never refers to unwritten chunks
+     */
+    List<KeyValue<byte[], byte[]>> split(K key, V value) {
+        byte[] encodedKey = encodeKey(key);
+        ByteBuffer encodedBuffer = redisCodec.encodeValue(value);
+        if (encodedBuffer.remaining() < chunkSize) {
+            byte[] plain = new byte[1 + encodedBuffer.remaining()];
+            plain[0] = PLAIN;
+            encodedBuffer.get(plain, 1, plain.length - 1);
+            return List.of(KeyValue.just(encodedKey, plain));
+        }
+        byte[] encodedValue = toBytes(encodedBuffer);
+
+        long version = ThreadLocalRandom.current().nextLong();
+        int chunkCount = (encodedValue.length + chunkSize - 1) / chunkSize;
+        List<KeyValue<byte[], byte[]>> keyValues = new ArrayList<>(chunkCount + 1);
+        for (int i = 0; i < chunkCount; i++) {
+            int from = i * chunkSize;
+            byte[] chunk = Arrays.copyOfRange(encodedValue, from, Math.min(from + chunkSize, encodedValue.length));
+            keyValues.add(KeyValue.just(chunkKey(encodedKey, version, i), chunk));
+        }
+
+        ByteBuffer manifest = ByteBuffer.allocate(MANIFEST_SIZE)
+                .put(MANIFEST)
+                .putLong(version)
+                .putInt(chunkCount)
+                .putInt(encodedValue.length);
+        keyValues.add(KeyValue.just(encodedKey, manifest.array()));
+        return keyValues;
+    }
+
+    private List<KeyValue<byte[], byte[]>> readChunks(RedisCommands<byte[], byte[]> commands, List<KeyValue<byte[], byte[]>> stored) {
+        byte[][] chunkKeys = chunkKeys(stored);
+        return chunkKeys.length == 0 ? List.of() : commands.mget(chunkKeys);
+    }
+
+    private Mono<List<KeyValue<byte[], byte[]>>> readChunks(RedisReactiveCommands<byte[], byte[]> commands, List<KeyValue<byte[], byte[]>> stored) {
+        byte[][] chunkKeys = chunkKeys(stored);
+        return chunkKeys.length == 0 ? Mono.just(List.of()) : commands.mget(chunkKeys).collectList();
+    }
+
+    /**
+     * @return The keys of the chunks of all the manifests in {@param stored}, in order
+     */
+    private byte[][] chunkKeys(List<KeyValue<byte[], byte[]>> stored) {
+        List<byte[]> chunkKeys = new ArrayList<>();
+        for (KeyValue<byte[], byte[]> kv : stored) {
+            if (!kv.hasValue() || !isManifest(kv.getValue())) continue;
+
+            ByteBuffer manifest = ByteBuffer.wrap(kv.getValue(), 1, MANIFEST_SIZE - 1);
+            long version = manifest.getLong();
+            int chunkCount = manifest.getInt();
+            for (int i = 0; i < chunkCount; i++) {
+                chunkKeys.add(chunkKey(kv.getKey(), version, i));
+            }
+        }
+        return chunkKeys.toArray(new byte[0][]);
+    }
+
+    /**
+     * Decode the plain values and reassemble the chunked ones, {@param chunks} being read for {@link #chunkKeys(List)}.
+     */
+    private List<KeyValue<K, V>> join(List<K> keys, List<KeyValue<byte[], byte[]>> stored, List<KeyValue<byte[], byte[]>> chunks) {
+        List<KeyValue<K, V>> keyValues = new ArrayList<>(keys.size());
+        Iterator<KeyValue<byte[], byte[]>> chunkIterator = chunks.iterator();
+
+        for (int i = 0; i < keys.size(); i++) {
+            K key = keys.get(i);
+            KeyValue<byte[], byte[]> kv = stored.get(i);
+            if (!kv.hasValue() || kv.getValue().length == 0) {
+                // Nothing or a value written without the chunker
+                keyValues.add(KeyValue.empty(key));
+            } else if (kv.getValue()[0] == PLAIN) {
+                keyValues.add(KeyValue.just(key, redisCodec.decodeValue(ByteBuffer.wrap(kv.getValue(), 1, kv.getValue().length - 1).slice())));
+            } else if (!isManifest(kv.getValue())) {
+                keyValues.add(KeyValue.empty(key));
+            } else {
+                ByteBuffer manifest = ByteBuffer.wrap(kv.getValue(), 9, MANIFEST_SIZE - 9);
+                int chunkCount = manifest.getInt();
+                ByteBuffer value = ByteBuffer.allocate(manifest.getInt());
+                boolean complete = true;
+                for (int c = 0; c < chunkCount; c++) {
+                    KeyValue<byte[], byte[]> chunk = chunkIterator.next();
+                    if (!chunk.hasValue() || chunk.getValue().length > value.remaining()) {
+                        complete = false;
+                    } else if (complete) {
+                        value.put(chunk.getValue());
+                    }
+                }
+                keyValues.add(complete && !value.hasRemaining()
+                        ? KeyValue.just(key, redisCodec.decodeValue(value.flip()))
+                        : KeyValue.empty(key));
+            }
+        }
+        return keyValues;
+    }
+
+    private static boolean isManifest(byte[] value) {
+        return value.length == MANIFEST_SIZE && value[0] == MANIFEST;
+    }
+
+    private byte[] encodeKey(K key) {
+        return toBytes(redisCodec.encodeKey(key));
+    }
+
+    private byte[][] encodeKeys(K[] keys) {
+        byte[][] encodedKeys = new byte[keys.length][];
+        for (int i = 0; i < keys.length; i++) {
+            encodedKeys[i] = encodeKey(keys[i]);
+        }
+        return encodedKeys;
+    }
+
+    private static byte[] chunkKey(byte[] encodedKey, long version, int index) {
+        byte[] suffix = (":chunk:" + String.format("%016x", version) + ":" + index).getBytes(StandardCharsets.US_ASCII);
+        byte[] chunkKey = Arrays.copyOf(encodedKey, encodedKey.length + suffix.length);
+        System.arraycopy(suffix, 0, chunkKey, encodedKey.length, suffix.length);
+        return chunkKey;
+    }
+
+    private static byte[] toBytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+}
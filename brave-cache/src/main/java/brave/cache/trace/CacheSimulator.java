@@ -0,0 +1,185 @@
+package brave.cache.trace;
+
+import lombok.Value;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Replays a trace recorded by {@link TraceRecorder} against a simulated cache,
+ * to estimate the hit ratio and the loader calls of a capacity, a time to live and a policy.
+ * <br>
+ * Each read that misses is counted as a loader call whose value is then cached, as a LOCAL cache
+ * with a loader or a REDIS cache with a {@link brave.cache.redis.SingleLoader} would do.
+ * Capacities are given for the whole traffic and scaled down by the sample rate of the trace.
+ * <pre>
+ * java brave.cache.trace.CacheSimulator trace.bin 10000,50000,100000 PT5M,PT1H
+ * </pre>
+ */
+public class CacheSimulator {
+
+    public enum EvictionPolicy {
+        LRU,
+        FIFO
+    }
+
+    public enum AdmissionPolicy {
+        /**
+         * Every missing key is cached
+         */
+        ALWAYS,
+        /**
+         * A missing key is cached only if it was accessed more often than the key it would evict
+         */
+        TINY_LFU
+    }
+
+    private final long capacity;
+    private final long timeToLiveMillis;
+    private final EvictionPolicy evictionPolicy;
+    private final AdmissionPolicy admissionPolicy;
+
+    private final LinkedHashMap<Integer, Long> entries;
+    private final FrequencySketch sketch;
+
+    private long reads;
+    private long hits;
+    private long loaderCalls;
+
+    public CacheSimulator(long capacity, Duration timeToLive, EvictionPolicy evictionPolicy, AdmissionPolicy admissionPolicy) {
+        if (capacity <= 0) {
+            throw new IllegalStateException("Invalid simulated capacity " + capacity);
+        }
+        this.capacity = capacity;
+        this.timeToLiveMillis = timeToLive == null || timeToLive.isZero() ? Long.MAX_VALUE : timeToLive.toMillis();
+        this.evictionPolicy = evictionPolicy;
+        this.admissionPolicy = admissionPolicy;
+        this.entries = new LinkedHashMap<>(16, 0.75f, evictionPolicy == EvictionPolicy.LRU);
+        this.sketch = admissionPolicy == AdmissionPolicy.TINY_LFU ? new FrequencySketch(capacity) : null;
+    }
+
+    public void replay(TraceRecord record) {
+        int keyHash = record.getKeyHash();
+        if (sketch != null && record.getOp() != TraceOp.REMOVE) {
+            sketch.increment(keyHash);
+        }
+
+        switch (record.getOp()) {
+            case READ:
+                reads += 1;
+                Long expireAt = entries.get(keyHash);
+                if (expireAt != null && expireAt > record.getTimestamp()) {
+                    hits += 1;
+                    return;
+                }
+                loaderCalls += 1;
+                admit(keyHash, record.getTimestamp());
+                return;
+            case WRITE:
+                admit(keyHash, record.getTimestamp());
+                return;
+            case REMOVE:
+                entries.remove(keyHash);
+        }
+    }
+
+    private void admit(int keyHash, long timestamp) {
+        long expireAt = timeToLiveMillis == Long.MAX_VALUE ? Long.MAX_VALUE : timestamp + timeToLiveMillis;
+        if (entries.containsKey(keyHash) || entries.size() < capacity) {
+            entries.put(keyHash, expireAt);
+            return;
+        }
+
+        Iterator<Map.Entry<Integer, Long>> eldest = entries.entrySet().iterator();
+        Map.Entry<Integer, Long> victim = eldest.next();
+        boolean victimExpired = victim.getValue() <= timestamp;
+        if (!victimExpired && sketch != null && sketch.frequency(keyHash) <= sketch.frequency(victim.getKey())) {
+            return;
+        }
+
+        eldest.remove();
+        entries.put(keyHash, expireAt);
+    }
+
+    public Result result() {
+        return new Result(evictionPolicy, admissionPolicy, capacity, timeToLiveMillis, reads, hits, loaderCalls);
+    }
+
+    @Value
+    public static class Result {
+
+        EvictionPolicy evictionPolicy;
+        AdmissionPolicy admissionPolicy;
+        long capacity;
+        long timeToLiveMillis;
+        long reads;
+        long hits;
+        long loaderCalls;
+
+        public double hitRatio() {
+            return reads == 0 ? 0 : (double) hits / reads;
+        }
+    }
+
+    /**
+     * Simulate every combination of the capacities, times to live and policies in a single pass over the trace.
+     *
+     * @param capacities Capacities for the whole traffic, scaled down by the trace sample rate
+     */
+    public static List<Result> simulate(TraceReader trace, long[] capacities, Duration[] timeToLives) {
+        List<CacheSimulator> simulators = new ArrayList<>();
+        for (long capacity : capacities) {
+            long sampledCapacity = Math.max((long) (capacity * trace.getSampleRate()), 1);
+            for (Duration timeToLive : timeToLives) {
+                for (EvictionPolicy evictionPolicy : EvictionPolicy.values()) {
+                    for (AdmissionPolicy admissionPolicy : AdmissionPolicy.values()) {
+                        simulators.add(new CacheSimulator(sampledCapacity, timeToLive, evictionPolicy, admissionPolicy));
+                    }
+                }
+            }
+        }
+
+        trace.forEach(record -> {
+            for (CacheSimulator simulator : simulators) {
+                simulator.replay(record);
+            }
+        });
+
+        return simulators.stream()
+                .map(CacheSimulator::result)
+                .collect(Collectors.toList());
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.err.println("Usage: CacheSimulator <trace file> <capacities, e.g. 10000,50000> [times to live, e.g. PT5M,PT1H]");
+            System.exit(1);
+        }
+
+        TraceReader trace = new TraceReader(Path.of(args[0]));
+        long[] capacities = Arrays.stream(args[1].split(",")).mapToLong(Long::parseLong).toArray();
+        Duration[] timeToLives = args.length > 2
+                ? Arrays.stream(args[2].split(",")).map(Duration::parse).toArray(Duration[]::new)
+                : new Duration[] { Duration.ZERO };
+
+        List<Result> results = simulate(trace, capacities, timeToLives);
+        double sampleRate = trace.getSampleRate();
+
+        System.out.printf("%-6s %-9s %12s %12s %10s %16s%n", "policy", "admission", "capacity", "ttl", "hit ratio", "loader calls");
+        for (int i = 0; i < results.size(); i++) {
+            Result result = results.get(i);
+            long capacity = capacities[i / (timeToLives.length * EvictionPolicy.values().length * AdmissionPolicy.values().length)];
+            String timeToLive = result.getTimeToLiveMillis() == Long.MAX_VALUE ? "none" : Duration.ofMillis(result.getTimeToLiveMillis()).toString();
+            System.out.printf("%-6s %-9s %12d %12s %9.2f%% %16d%n",
+                    result.getEvictionPolicy(), result.getAdmissionPolicy(), capacity, timeToLive,
+                    result.hitRatio() * 100, (long) (result.getLoaderCalls() / sampleRate));
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package brave.cache.trace;
+
+/**
+ * Count-min sketch of the recent access frequency of the key hashes, with 4 bits counters
+ * halved periodically so that old popularity fades, as used by the TinyLFU admission policy.
+ */
+class FrequencySketch {
+
+    private static final int[] SEEDS = { 0x97cb3127, 0xb3b5f2d1, 0x5ea35b1d, 0x3c6ef372 };
+    private static final int MAX_COUNT = 15;
+
+    private final int[][] table;
+    private final int mask;
+    private final int sampleSize;
+    private int samples;
+
+    FrequencySketch(long capacity) {
+        int width = Integer.highestOneBit((int) Math.min(Math.max(capacity, 8), 1 << 28) * 2);
+        this.table = new int[SEEDS.length][width];
+        this.mask = width - 1;
+        this.sampleSize = width * 10;
+    }
+
+    void increment(int keyHash) {
+        for (int row = 0; row < SEEDS.length; row++) {
+            int index = index(keyHash, row);
+            if (table[row][index] < MAX_COUNT) {
+                table[row][index] += 1;
+            }
+        }
+
+        if (++samples >= sampleSize) {
+            reset();
+        }
+    }
+
+    int frequency(int keyHash) {
+        int frequency = MAX_COUNT;
+        for (int row = 0; row < SEEDS.length; row++) {
+            frequency = Math.min(frequency, table[row][index(keyHash, row)]);
+        }
+        return frequency;
+    }
+
+    private int index(int keyHash, int row) {
+        int h = keyHash * SEEDS[row];
+        h ^= h >>> 17;
+        return h & mask;
+    }
+
+    private void reset() {
+        for (int[] row : table) {
+            for (int i = 0; i < row.length; i++) {
+                row[i] >>>= 1;
+            }
+        }
+        samples /= 2;
+    }
+}
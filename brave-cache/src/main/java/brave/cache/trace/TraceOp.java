@@ -0,0 +1,17 @@
+package brave.cache.trace;
+
+public enum TraceOp {
+
+    READ,
+    WRITE,
+    REMOVE;
+
+    private static final TraceOp[] VALUES = values();
+
+    static TraceOp of(int ordinal) {
+        if (ordinal < 0 || ordinal >= VALUES.length) {
+            throw new IllegalStateException("Unknown trace op " + ordinal);
+        }
+        return VALUES[ordinal];
+    }
+}
@@ -0,0 +1,178 @@
+package brave.cache.trace;
+
+import lombok.Getter;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+
+/**
+ * Reads the trace files written by {@link TraceRecorder}, whose start timestamp is the one of the first segment.
+ * <br>
+ * The blocks of the recording threads are written in the file out of order by at most {@link TraceRecorder#MAX_DISORDER_MILLIS},
+ * so records are held back for {@link #REORDER_WINDOW_MILLIS} to be replayed in time order.
+ */
+@Getter
+public class TraceReader {
+
+    /**
+     * More than {@link TraceRecorder#MAX_DISORDER_MILLIS}, leaving some slack for a late flush timer
+     */
+    static final long REORDER_WINDOW_MILLIS = 2 * TraceRecorder.FLUSH_INTERVAL_MILLIS;
+
+    private final Path tracePath;
+    private final long startMillis;
+    private final double sampleRate;
+
+    public TraceReader(Path tracePath) {
+        this.tracePath = tracePath;
+        try (DataInputStream input = open()) {
+            this.startMillis = input.readLong();
+            this.sampleRate = input.readDouble();
+        } catch (EOFException eofex) {
+            throw new IllegalStateException("Truncated cache trace " + tracePath, eofex);
+        } catch (IOException ioex) {
+            throw new UncheckedIOException("Cannot read cache trace " + tracePath, ioex);
+        }
+    }
+
+    /**
+     * Replay all the records of the trace in time order, segment after segment.
+     * Records of the same timestamp keep their order in the file.
+     *
+     * @return The number of records read
+     */
+    public long forEach(Consumer<TraceRecord> consumer) {
+        try (DataInputStream input = open()) {
+            long segmentStartMillis = input.readLong();
+            input.readDouble();
+
+            ByteBuffer block = ByteBuffer.allocate(TraceRecorder.BLOCK_SIZE);
+            Reordering reordering = new Reordering(consumer);
+            while (true) {
+                int length;
+                try {
+                    length = input.readInt();
+                    if (length == TraceRecorder.MAGIC) {
+                        reordering.drain();
+                        segmentStartMillis = readSegmentHeader(input);
+                        continue;
+                    }
+                    if (length <= 0 || length > TraceRecorder.BLOCK_SIZE) {
+                        throw new IllegalStateException("Corrupted block of " + length + " bytes in cache trace " + tracePath);
+                    }
+                    input.readFully(block.array(), 0, length);
+                } catch (EOFException eofex) {
+                    // The last block of a trace whose recorder was not closed may be truncated
+                    reordering.drain();
+                    return reordering.count;
+                }
+
+                block.clear().limit(length);
+                while (block.hasRemaining()) {
+                    int keyHash = block.getInt();
+                    int opOrdinal = block.get();
+                    long elapsedMillis = getVarLong(block);
+                    reordering.add(new TraceRecord(keyHash, TraceOp.of(opOrdinal), segmentStartMillis + elapsedMillis));
+                }
+            }
+        } catch (IOException ioex) {
+            throw new UncheckedIOException("Cannot read cache trace " + tracePath, ioex);
+        }
+    }
+
+    /**
+     * @return The start timestamp of the segment appended by another recorder, after its magic
+     */
+    private long readSegmentHeader(DataInputStream input) throws IOException {
+        int version = input.readInt();
+        if (version != TraceRecorder.FORMAT_VERSION) {
+            throw new IllegalStateException("Unsupported version " + version + " of cache trace " + tracePath);
+        }
+        long segmentStartMillis = input.readLong();
+        double segmentSampleRate = input.readDouble();
+        if (segmentSampleRate != sampleRate) {
+            throw new IllegalStateException("Sample rate " + segmentSampleRate + " differs from " + sampleRate + " in cache trace " + tracePath);
+        }
+        return segmentStartMillis;
+    }
+
+    /**
+     * Hold records until no record older than them can still be read.
+     */
+    private static final class Reordering {
+
+        private final Consumer<TraceRecord> consumer;
+        private final PriorityQueue<Sequenced> pending = new PriorityQueue<>(
+                Comparator.comparingLong((Sequenced sequenced) -> sequenced.record.getTimestamp()).thenComparingLong(sequenced -> sequenced.sequence));
+        private long maxTimestamp = Long.MIN_VALUE;
+        private long count;
+
+        private Reordering(Consumer<TraceRecord> consumer) {
+            this.consumer = consumer;
+        }
+
+        private void add(TraceRecord record) {
+            pending.add(new Sequenced(record, count++));
+            maxTimestamp = Math.max(maxTimestamp, record.getTimestamp());
+            while (pending.peek().record.getTimestamp() <= maxTimestamp - REORDER_WINDOW_MILLIS) {
+                consumer.accept(pending.poll().record);
+            }
+        }
+
+        private void drain() {
+            while (!pending.isEmpty()) {
+                consumer.accept(pending.poll().record);
+            }
+            maxTimestamp = Long.MIN_VALUE;
+        }
+    }
+
+    private static final class Sequenced {
+
+        private final TraceRecord record;
+        private final long sequence;
+
+        private Sequenced(TraceRecord record, long sequence) {
+            this.record = record;
+            this.sequence = sequence;
+        }
+    }
+
+    static long getVarLong(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+    }
+
+    /**
+     * @return The input positioned after magic and version
+     */
+    private DataInputStream open() throws IOException {
+        DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(tracePath), 64 * 1024));
+        try {
+            if (input.readInt() != TraceRecorder.MAGIC) {
+                throw new IllegalStateException(tracePath + " is not a cache trace");
+            }
+            int version = input.readInt();
+            if (version != TraceRecorder.FORMAT_VERSION) {
+                throw new IllegalStateException("Unsupported version " + version + " of cache trace " + tracePath);
+            }
+            return input;
+        } catch (IOException | RuntimeException ex) {
+            input.close();
+            throw ex;
+        }
+    }
+}
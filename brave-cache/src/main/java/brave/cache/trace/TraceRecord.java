@@ -0,0 +1,12 @@
+package brave.cache.trace;
+
+import lombok.Value;
+
+@Value
+public class TraceRecord {
+
+    int keyHash;
+    TraceOp op;
+    long timestamp;
+
+}
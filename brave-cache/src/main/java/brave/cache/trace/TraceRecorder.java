@@ -0,0 +1,271 @@
+package brave.cache.trace;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes sampled cache accesses into a compact binary trace file.
+ * <br>
+ * Sampling is done on the key hash, so a sampled key has all its accesses recorded,
+ * which keeps the hit ratio of the trace close to the one of the whole traffic.
+ * <br>
+ * Each thread records into its own block, written to the file when full, once its first record is {@link #FLUSH_INTERVAL_MILLIS} old
+ * or on close, so recording does not contend between threads. Blocks of idle threads are written by a timer, so that the records
+ * of a segment are out of order by at most {@link #MAX_DISORDER_MILLIS}, which {@link TraceReader} reorders. A recorder appends a segment to an existing trace
+ * of the same format and sample rate, e.g. after a restart, and otherwise moves it aside to <code>&lt;path&gt;.&lt;epoch millis&gt;</code>.
+ * <pre>
+ * segment: magic (int), version (int), start timestamp (long), sample rate (double), blocks
+ * block: length (int), records
+ * record: key hash (int), op (byte), milliseconds since the segment start (unsigned varint)
+ * </pre>
+ */
+@Slf4j
+public class TraceRecorder implements AutoCloseable {
+
+    static final int MAGIC = 0x42435452;
+    static final int FORMAT_VERSION = 2;
+    static final int SEGMENT_HEADER_SIZE = 4 + 4 + 8 + 8;
+    static final int BLOCK_SIZE = 8 * 1024;
+    static final long FLUSH_INTERVAL_MILLIS = 1000;
+    /**
+     * A record is written at most one flush interval and one timer period after it was recorded
+     */
+    static final long MAX_DISORDER_MILLIS = FLUSH_INTERVAL_MILLIS + FLUSH_INTERVAL_MILLIS / 2;
+
+    private static final int MAX_RECORD_SIZE = 4 + 1 + 10;
+
+    private final Path tracePath;
+    private final long sampleThreshold;
+    private final long startMillis;
+    private final FileChannel output;
+    private final ThreadLocal<Block> threadBlock = ThreadLocal.withInitial(this::newBlock);
+    private final Queue<Block> blocks = new ConcurrentLinkedQueue<>();
+    private final ScheduledExecutorService flusher;
+    private volatile boolean closed;
+
+    public TraceRecorder(Path tracePath, double sampleRate) {
+        if (sampleRate <= 0 || sampleRate > 1) {
+            throw new IllegalStateException("Invalid trace sample rate " + sampleRate);
+        }
+
+        this.tracePath = tracePath;
+        this.sampleThreshold = (long) (sampleRate * (1L << 32));
+        this.startMillis = System.currentTimeMillis();
+
+        try {
+            Path parent = tracePath.toAbsolutePath().getParent();
+            if (parent != null) Files.createDirectories(parent);
+
+            long appendAt = Files.exists(tracePath) ? appendPosition(tracePath, sampleRate) : 0;
+            if (appendAt < 0) {
+                rollAside(tracePath);
+                appendAt = 0;
+            }
+
+            this.output = FileChannel.open(tracePath, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            if (appendAt < output.size()) {
+                log.warn("Truncated trace {} after its last complete block at {}", tracePath, appendAt);
+                output.truncate(appendAt);
+            }
+            output.position(appendAt);
+
+            ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_SIZE)
+                    .putInt(MAGIC)
+                    .putInt(FORMAT_VERSION)
+                    .putLong(startMillis)
+                    .putDouble(sampleRate)
+                    .flip();
+            write(header);
+        } catch (IOException ioex) {
+            throw new UncheckedIOException("Cannot create trace file " + tracePath, ioex);
+        }
+
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cache-trace-" + tracePath.getFileName());
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushStaleBlocks, FLUSH_INTERVAL_MILLIS / 2, FLUSH_INTERVAL_MILLIS / 2, TimeUnit.MILLISECONDS);
+    }
+
+    public void record(Object key, TraceOp op) {
+        int keyHash = keyHash(key);
+        if (Integer.toUnsignedLong(keyHash) >= sampleThreshold) return;
+
+        long elapsedMillis = System.currentTimeMillis() - startMillis;
+        Block block = threadBlock.get();
+        // Only contended by close() and by the timer writing stale blocks
+        synchronized (block) {
+            if (closed) return;
+
+            if (block.isEmpty()) block.firstElapsedMillis = elapsedMillis;
+            block.buffer.putInt(keyHash);
+            block.buffer.put((byte) op.ordinal());
+            putVarLong(block.buffer, elapsedMillis);
+
+            if (block.buffer.remaining() < MAX_RECORD_SIZE || elapsedMillis - block.firstElapsedMillis >= FLUSH_INTERVAL_MILLIS) {
+                flush(block);
+            }
+        }
+    }
+
+    /**
+     * Spread the bits of {@link Object#hashCode()} so that sampling does not depend on the key distribution.
+     */
+    static int keyHash(Object key) {
+        int h = key == null ? 0 : key.hashCode();
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    static void putVarLong(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+
+        flusher.shutdownNow();
+        for (Block block : blocks) {
+            synchronized (block) {
+                flush(block);
+            }
+        }
+        closeQuietly();
+        log.warn("Closed trace {}", tracePath);
+    }
+
+    private Block newBlock() {
+        Block block = new Block(Thread.currentThread());
+        blocks.add(block);
+        return block;
+    }
+
+    /**
+     * Write the block with its length in its first 4 bytes.
+     */
+    private void flush(Block block) {
+        if (block.isEmpty()) return;
+
+        ByteBuffer buffer = block.buffer;
+        buffer.putInt(0, buffer.position() - Integer.BYTES).flip();
+        try {
+            write(buffer);
+        } catch (IOException ioex) {
+            log.error("Failed to write trace into {}, stop tracing", tracePath, ioex);
+            closed = true;
+            closeQuietly();
+        } finally {
+            buffer.clear().position(Integer.BYTES);
+        }
+    }
+
+    /**
+     * Write the blocks whose first record is older than {@link #FLUSH_INTERVAL_MILLIS}, e.g. of idle threads,
+     * and drop the blocks of terminated threads.
+     */
+    private void flushStaleBlocks() {
+        long elapsedMillis = System.currentTimeMillis() - startMillis;
+        for (Iterator<Block> it = blocks.iterator(); it.hasNext(); ) {
+            Block block = it.next();
+            boolean alive = block.owner.isAlive();
+            synchronized (block) {
+                if (closed) return;
+                if (!alive || elapsedMillis - block.firstElapsedMillis >= FLUSH_INTERVAL_MILLIS) flush(block);
+            }
+            if (!alive) it.remove();
+        }
+    }
+
+    private void write(ByteBuffer buffer) throws IOException {
+        synchronized (output) {
+            while (buffer.hasRemaining()) {
+                output.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * @return The end of the last complete block of the existing trace, -1 when it cannot be appended to
+     */
+    private static long appendPosition(Path tracePath, double sampleRate) throws IOException {
+        try (FileChannel input = FileChannel.open(tracePath, StandardOpenOption.READ)) {
+            long size = input.size();
+            ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_SIZE);
+            long position = 0;
+            while (position < size) {
+                header.clear().limit(Integer.BYTES);
+                if (input.read(header, position) < Integer.BYTES) return position;
+
+                int length = header.getInt(0);
+                if (length == MAGIC) {
+                    header.clear();
+                    if (input.read(header, position) < SEGMENT_HEADER_SIZE) return position;
+                    if (header.getInt(4) != FORMAT_VERSION || header.getDouble(16) != sampleRate) return -1;
+                    position += SEGMENT_HEADER_SIZE;
+                } else if (position == 0) {
+                    return -1;
+                } else if (length <= 0 || length > BLOCK_SIZE || position + Integer.BYTES + length > size) {
+                    // Torn write of a recorder that was not closed
+                    return position;
+                } else {
+                    position += Integer.BYTES + length;
+                }
+            }
+            return position;
+        }
+    }
+
+    private static void rollAside(Path tracePath) throws IOException {
+        Path rolledPath = tracePath.resolveSibling(tracePath.getFileName() + "." + Files.getLastModifiedTime(tracePath).toMillis());
+        Files.move(tracePath, rolledPath, StandardCopyOption.REPLACE_EXISTING);
+        log.warn("Moved trace {} of another format or sample rate to {}", tracePath, rolledPath);
+    }
+
+    private void closeQuietly() {
+        try {
+            output.close();
+        } catch (IOException ioex) {
+            log.error("Failed to close trace {}", tracePath, ioex);
+        }
+    }
+
+    private static final class Block {
+
+        private final Thread owner;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BLOCK_SIZE).position(Integer.BYTES);
+        private long firstElapsedMillis;
+
+        private Block(Thread owner) {
+            this.owner = owner;
+        }
+
+        private boolean isEmpty() {
+            return buffer.position() == Integer.BYTES;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package brave.cache.trace;
+
+import brave.cache.Cache;
+import brave.cache.ForwardingCache;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Records the accesses to the decorated cache with a {@link TraceRecorder}.
+ *
+ * @param <K>
+ * @param <V>
+ */
+public class TracingCache<K, V> extends ForwardingCache<K, V> {
+
+    private final TraceRecorder recorder;
+
+    public TracingCache(Cache<K, V> delegate, TraceRecorder recorder) {
+        super(delegate);
+        this.recorder = recorder;
+    }
+
+    @Override
+    public V load(K key) {
+        recorder.record(key, TraceOp.READ);
+        return delegate.load(key);
+    }
+
+    @Override
+    public Map<K, V> loadAll(Collection<K> keys) {
+        for (K key : keys) {
+            recorder.record(key, TraceOp.READ);
+        }
+        return delegate.loadAll(keys);
+    }
+
+    @Override
+    public Map<K, V> loadAll(K[] keys) {
+        for (K key : keys) {
+            recorder.record(key, TraceOp.READ);
+        }
+        return delegate.loadAll(keys);
+    }
+
+    @Override
+    public boolean put(K key, V value) {
+        recorder.record(key, TraceOp.WRITE);
+        return delegate.put(key, value);
+    }
+
+    @Override
+    public boolean put(K key, V value, Duration timeToLive) {
+        recorder.record(key, TraceOp.WRITE);
+        return delegate.put(key, value, timeToLive);
+    }
+
+    @Override
+    public boolean put(K key, V value, long expireAtTimestamp) {
+        recorder.record(key, TraceOp.WRITE);
+        return delegate.put(key, value, expireAtTimestamp);
+    }
+
+    @Override
+    public boolean putIfAbsent(K key, V value) {
+        recorder.record(key, TraceOp.WRITE);
+        return delegate.putIfAbsent(key, value);
+    }
+
+    @Override
+    public boolean putIfNewer(K key, V value, ToLongFunction<V> version) {
+        recorder.record(key, TraceOp.WRITE);
+        return delegate.putIfNewer(key, value, version);
+    }
+
+    @Override
+    public boolean putAll(Map<K, V> keyValues) {
+        for (K key : keyValues.keySet()) {
+            recorder.record(key, TraceOp.WRITE);
+        }
+        return delegate.putAll(keyValues);
+    }
+
+    @Override
+    public boolean putAll(Map<K, V> keyValues, Function<V, Duration> timeToLive) {
+        for (K key : keyValues.keySet()) {
+            recorder.record(key, TraceOp.WRITE);
+        }
+        return delegate.putAll(keyValues, timeToLive);
+    }
+
+    @Override
+    public long remove(K[] keys) {
+        for (K key : keys) {
+            recorder.record(key, TraceOp.REMOVE);
+        }
+        return delegate.remove(keys);
+    }
+
+    @Override
+    public boolean remove(K key) {
+        recorder.record(key, TraceOp.REMOVE);
+        return delegate.remove(key);
+    }
+}
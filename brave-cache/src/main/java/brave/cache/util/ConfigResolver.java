@@ -1,17 +1,14 @@
 package brave.cache.util;
 
+import brave.config.PropertyIndex;
 import lombok.RequiredArgsConstructor;
 import org.springframework.core.env.AbstractEnvironment;
-import org.springframework.core.env.EnumerablePropertySource;
-import org.springframework.core.env.MutablePropertySources;
 import org.springframework.expression.ExpressionParser;
 import org.springframework.util.StringValueResolver;
 
 import java.lang.reflect.InvocationTargetException;
 import java.time.Duration;
-import java.util.Arrays;
 import java.util.Properties;
-import java.util.stream.StreamSupport;
 
 @RequiredArgsConstructor
 public class ConfigResolver {
@@ -21,23 +18,7 @@ public class ConfigResolver {
     private final AbstractEnvironment environment;
 
     public Properties getProperties(String path) {
-        Properties properties = new Properties();
-        MutablePropertySources propertySources = environment.getPropertySources();
-        String pathPrefix = path + ".";
-
-        //noinspection rawtypes
-        StreamSupport.stream(propertySources.spliterator(), false)
-                .filter(propSource -> propSource instanceof EnumerablePropertySource)
-                .map(propSource -> ((EnumerablePropertySource) propSource).getPropertyNames())
-                .flatMap(Arrays::stream)
-                .filter(propName -> propName.startsWith(pathPrefix))
-                .forEach(propName -> {
-                    String key = propName.substring(pathPrefix.length());
-                    String value = environment.getProperty(propName);
-                    properties.put(key, value);
-                });
-
-        return properties;
+        return PropertyIndex.of(environment).getProperties(path);
     }
 
     public String getString(String expression) {
@@ -0,0 +1,21 @@
+package brave.cache.writebehind;
+
+import java.util.Map;
+
+/**
+ * Writes the values put into a write-behind cache to the system of record.
+ * Implemented by the {@link brave.cache.annotation.Cacheable} beans, same as the loaders.
+ *
+ * @param <K>
+ * @param <V>
+ */
+@FunctionalInterface
+public interface CacheWriter<K, V> {
+
+    /**
+     * Write a batch of coalesced values, only the latest value of each key is present.
+     * Throwing makes the whole batch retried.
+     */
+    void writeAll(Map<K, V> keyValues);
+
+}
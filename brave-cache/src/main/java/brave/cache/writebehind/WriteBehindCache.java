@@ -0,0 +1,317 @@
+package brave.cache.writebehind;
+
+import brave.cache.Cache;
+import brave.cache.ForwardingCache;
+import brave.cache.metric.CacheInstrumentation;
+import lombok.Setter;
+import lombok.experimental.Accessors;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToLongFunction;
+
+/**
+ * Absorbs the puts in the decorated cache and writes them to the system of record
+ * through a {@link CacheWriter} in background.
+ * <br>
+ * Puts are coalesced per key in a bounded queue, which is flushed when it holds {@link Builder#batchSize} keys
+ * or every {@link Builder#flushInterval}. A failed batch is retried {@link Builder#maxRetries} times then dropped.
+ * When the queue is full, puts of new keys block up to {@link Builder#offerTimeout} then fail.
+ * <br>
+ * A put is queued before it reaches the decorated cache, and throws an {@link IllegalStateException} when it cannot be,
+ * i.e. the queue stayed full, the thread was interrupted or the cache is closed, so that the cache never serves
+ * a value which will not be written and the caller cannot miss the lost write.
+ *
+ * @param <K>
+ * @param <V>
+ */
+@Slf4j
+public class WriteBehindCache<K, V> extends ForwardingCache<K, V> implements AutoCloseable {
+
+    private final CacheWriter<K, V> writer;
+    private final int queueCapacity;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final int maxRetries;
+    private final long retryBackoffMillis;
+    private final long offerTimeoutNanos;
+    private final CacheInstrumentation instrumentation;
+
+    private final LinkedHashMap<K, V> pending = new LinkedHashMap<>();
+    private int reserved;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private final Condition flushNeeded = lock.newCondition();
+    private final Thread flusherThread;
+    private volatile boolean closed;
+
+    private WriteBehindCache(Builder<K, V> builder) {
+        super(builder.cache);
+        this.writer = builder.writer;
+        this.queueCapacity = builder.queueCapacity;
+        this.batchSize = builder.batchSize;
+        this.flushIntervalNanos = builder.flushInterval.toNanos();
+        this.maxRetries = builder.maxRetries;
+        this.retryBackoffMillis = builder.retryBackoff.toMillis();
+        this.offerTimeoutNanos = builder.offerTimeout.toNanos();
+        this.instrumentation = builder.instrumentation;
+
+        this.flusherThread = new Thread(this::flushContinuously, "cache-write-behind-" + builder.name);
+        this.flusherThread.setDaemon(true);
+        this.flusherThread.start();
+    }
+
+    @Override
+    public boolean put(K key, V value) {
+        enqueue(key, value);
+        return delegate.put(key, value);
+    }
+
+    @Override
+    public boolean put(K key, V value, Duration timeToLive) {
+        enqueue(key, value);
+        return delegate.put(key, value, timeToLive);
+    }
+
+    @Override
+    public boolean put(K key, V value, long expireAtTimestamp) {
+        enqueue(key, value);
+        return delegate.put(key, value, expireAtTimestamp);
+    }
+
+    /**
+     * Only the value which made it to the decorated cache is written behind, in the place reserved before trying it.
+     */
+    @Override
+    public boolean putIfAbsent(K key, V value) {
+        reserve(key);
+        return enqueueReservedIf(delegate.putIfAbsent(key, value), key, value);
+    }
+
+    @Override
+    public boolean putIfNewer(K key, V value, ToLongFunction<V> version) {
+        reserve(key);
+        return enqueueReservedIf(delegate.putIfNewer(key, value, version), key, value);
+    }
+
+    /**
+     * The values queued before a failure are written without being cached, they are loaded again when read.
+     */
+    @Override
+    public boolean putAll(Map<K, V> keyValues) {
+        for (Map.Entry<K, V> kv : keyValues.entrySet()) {
+            enqueue(kv.getKey(), kv.getValue());
+        }
+        return delegate.putAll(keyValues);
+    }
+
+    @Override
+    public boolean putAll(Map<K, V> keyValues, Function<V, Duration> timeToLive) {
+        for (Map.Entry<K, V> kv : keyValues.entrySet()) {
+            enqueue(kv.getKey(), kv.getValue());
+        }
+        return delegate.putAll(keyValues, timeToLive);
+    }
+
+    /**
+     * @return Number of keys waiting to be written
+     */
+    public int pendingWrites() {
+        lock.lock();
+        try {
+            return pending.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void enqueue(K key, V value) {
+        lock.lock();
+        try {
+            awaitCapacity(key);
+            putPending(key, value);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Reserve a place in the queue for {@param key}, to be taken or released once the conditional put is done.
+     */
+    private void reserve(K key) {
+        lock.lock();
+        try {
+            awaitCapacity(key);
+            reserved++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean enqueueReservedIf(boolean put, K key, V value) {
+        lock.lock();
+        try {
+            reserved--;
+            if (put) {
+                putPending(key, value);
+            } else {
+                notFull.signalAll();
+            }
+            if (closed) {
+                // The flusher waits for the reserved places before stopping
+                flushNeeded.signal();
+            }
+            return put;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Wait until the queue has room for {@param key}, must hold the lock.
+     */
+    private void awaitCapacity(K key) {
+        try {
+            long remainingNanos = offerTimeoutNanos;
+            while (!closed && pending.size() + reserved >= queueCapacity && !pending.containsKey(key)) {
+                if (remainingNanos <= 0) {
+                    instrumentation.error();
+                    throw new IllegalStateException("Cannot write " + key + " behind, " + pending.size() + " writes are pending");
+                }
+                remainingNanos = notFull.awaitNanos(remainingNanos);
+            }
+        } catch (InterruptedException inex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting to write " + key + " behind", inex);
+        }
+
+        if (closed) {
+            throw new IllegalStateException("Cannot write " + key + " behind, cache is closed");
+        }
+    }
+
+    private void putPending(K key, V value) {
+        pending.put(key, value);
+        if (pending.size() >= batchSize) {
+            flushNeeded.signal();
+        }
+    }
+
+    private void flushContinuously() {
+        while (true) {
+            Map<K, V> batch = nextBatch();
+            if (batch == null) return;
+            if (!batch.isEmpty()) {
+                writeWithRetry(batch);
+            }
+        }
+    }
+
+    /**
+     * @return The next batch to be written, or null when closed and fully flushed
+     */
+    private Map<K, V> nextBatch() {
+        lock.lock();
+        try {
+            long remainingNanos = flushIntervalNanos;
+            while (!closed && pending.size() < batchSize && remainingNanos > 0) {
+                remainingNanos = flushNeeded.awaitNanos(remainingNanos);
+            }
+            while (closed && pending.isEmpty() && reserved > 0) {
+                flushNeeded.await();
+            }
+
+            if (closed && pending.isEmpty()) return null;
+
+            Map<K, V> batch = new LinkedHashMap<>();
+            Iterator<Map.Entry<K, V>> iterator = pending.entrySet().iterator();
+            while (iterator.hasNext() && batch.size() < batchSize) {
+                Map.Entry<K, V> entry = iterator.next();
+                batch.put(entry.getKey(), entry.getValue());
+                iterator.remove();
+            }
+
+            notFull.signalAll();
+            return batch;
+        } catch (InterruptedException inex) {
+            Thread.currentThread().interrupt();
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void writeWithRetry(Map<K, V> batch) {
+        for (int attempt = 0; attempt <= maxRetries; attempt++) {
+            try {
+                writer.writeAll(batch);
+                return;
+            } catch (RuntimeException ex) {
+                instrumentation.error();
+                if (attempt == maxRetries) {
+                    log.error("Dropping {} writes after {} attempts", batch.size(), attempt + 1, ex);
+                    return;
+                }
+
+                log.warn("Failed to write {} keys, attempt {}/{}", batch.size(), attempt + 1, maxRetries + 1, ex);
+                try {
+                    TimeUnit.MILLISECONDS.sleep(retryBackoffMillis * (attempt + 1));
+                } catch (InterruptedException inex) {
+                    Thread.currentThread().interrupt();
+                    log.error("Dropping {} writes, interrupted while retrying", batch.size());
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Flush all the pending writes then stop the flusher.
+     */
+    @Override
+    public void close() throws InterruptedException {
+        lock.lock();
+        try {
+            closed = true;
+            flushNeeded.signal();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
+        flusherThread.join();
+    }
+
+    @Setter
+    @Accessors(fluent = true, chain = true)
+    public static class Builder<K, V> {
+
+        private String name = "";
+        private Cache<K, V> cache;
+        private CacheWriter<K, V> writer;
+        private int queueCapacity = 10000;
+        private int batchSize = 100;
+        private Duration flushInterval = Duration.ofSeconds(1);
+        private int maxRetries = 3;
+        private Duration retryBackoff = Duration.ofMillis(500);
+        private Duration offerTimeout = Duration.ofSeconds(5);
+        private CacheInstrumentation instrumentation = CacheInstrumentation.NOOP;
+
+        public WriteBehindCache<K, V> build() {
+            if (cache == null || writer == null) {
+                throw new IllegalStateException("Write-behind cache requires both a cache and a writer");
+            }
+            if (batchSize <= 0 || queueCapacity < batchSize) {
+                throw new IllegalStateException("Invalid write-behind batch size " + batchSize + " for queue capacity " + queueCapacity);
+            }
+            return new WriteBehindCache<>(this);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package gardentest;
+
+import brave.cache.local.LocalCache;
+import brave.cache.local.ReactiveLocalCache;
+import brave.cache.metric.CacheInstrumentation;
+import brave.cache.metric.MetricsCacheInstrumentation;
+import brave.metric.MetricsCollector;
+import garden.Fruit;
+import garden.Seed;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.cache2k.Cache2kBuilder;
+import org.cache2k.io.CacheLoaderException;
+import org.junit.jupiter.api.Test;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class CacheInstrumentationTest {
+
+    @Test
+    void localCache_shouldRecordHitsMissesAndLoadLatency() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        MetricsCacheInstrumentation instrumentation = new MetricsCacheInstrumentation(new MetricsCollector(registry, 16), "meteredGarden");
+        LocalCache<Seed, Fruit> cache = new LocalCache<>(Cache2kBuilder.of(Seed.class, Fruit.class)
+                .name("meteredGarden")
+                .expireAfterWrite(5, TimeUnit.MINUTES)
+                .loader(seed -> {
+                    long startNanos = System.nanoTime();
+                    try {
+                        return new Fruit(seed);
+                    } finally {
+                        instrumentation.loadLatency(System.nanoTime() - startNanos);
+                    }
+                })
+                .build(), instrumentation);
+
+        Seed apple = new Seed("apple");
+        Seed banana = new Seed("banana");
+
+        // When
+        cache.load(apple);
+        cache.load(apple);
+        cache.loadAll(List.of(apple, banana));
+
+        // Then
+        assertThat(registry.get("brave.cache.gets").tag("cache", "meteredGarden").tag("result", "hit").counter().count())
+                .isEqualTo(2);
+        assertThat(registry.get("brave.cache.gets").tag("cache", "meteredGarden").tag("result", "miss").counter().count())
+                .isEqualTo(2);
+        assertThat(registry.get("brave.cache.load.latency").tag("cache", "meteredGarden").summary().count())
+                .isEqualTo(2);
+    }
+
+    @Test
+    void localCache_shouldFailLoadsTheSameWay_withOrWithoutMetrics() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        List<CacheInstrumentation> instrumentations = List.of(CacheInstrumentation.NOOP,
+                new MetricsCacheInstrumentation(new MetricsCollector(registry, 16), "rottenGarden"));
+        Seed apple = new Seed("apple");
+        Seed banana = new Seed("banana");
+
+        for (int i = 0; i < instrumentations.size(); i++) {
+            LocalCache<Seed, Fruit> cache = new LocalCache<>(Cache2kBuilder.of(Seed.class, Fruit.class)
+                    .name("rottenGarden" + i)
+                    .loader(seed -> {
+                        throw new IllegalStateException("Rotten " + seed.getName());
+                    })
+                    .build(), instrumentations.get(i));
+
+            // Then
+            assertThatThrownBy(() -> cache.load(apple))
+                    .isInstanceOf(CacheLoaderException.class)
+                    .hasRootCauseInstanceOf(IllegalStateException.class);
+            assertThatThrownBy(() -> cache.loadAll(List.of(apple, banana)))
+                    .isInstanceOf(CacheLoaderException.class);
+        }
+
+        assertThat(registry.get("brave.cache.gets").tag("cache", "rottenGarden").tag("result", "miss").counter().count())
+                .isEqualTo(3);
+    }
+
+    @Test
+    void reactiveLocalCache_shouldRecordHitsMissesAndLoadLatency_throughItsBuilder() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ReactiveLocalCache<Seed, Fruit> cache = new ReactiveLocalCache.Builder<Seed, Fruit>()
+                .backStorage(Cache2kBuilder.of(Seed.class, Fruit.class)
+                        .name("reactiveMeteredGarden")
+                        .expireAfterWrite(5, TimeUnit.MINUTES))
+                .singleLoader(Fruit::new)
+                .instrumentation(new MetricsCacheInstrumentation(new MetricsCollector(registry, 16), "reactiveMeteredGarden"))
+                .build();
+
+        Seed apple = new Seed("apple");
+        Seed banana = new Seed("banana");
+
+        // When
+        StepVerifier.create(cache.get(apple).then(cache.get(apple)).then(cache.getAll(List.of(apple, banana))))
+                .assertNext(fruits -> assertThat(fruits).containsOnlyKeys(apple, banana))
+                .verifyComplete();
+
+        // Then
+        assertThat(registry.get("brave.cache.gets").tag("cache", "reactiveMeteredGarden").tag("result", "hit").counter().count())
+                .isEqualTo(2);
+        assertThat(registry.get("brave.cache.gets").tag("cache", "reactiveMeteredGarden").tag("result", "miss").counter().count())
+                .isEqualTo(2);
+        assertThat(registry.get("brave.cache.load.latency").tag("cache", "reactiveMeteredGarden").summary().count())
+                .isEqualTo(2);
+    }
+}
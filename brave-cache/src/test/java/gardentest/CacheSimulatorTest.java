@@ -0,0 +1,158 @@
+package gardentest;
+
+import brave.cache.local.LocalCache;
+import brave.cache.trace.CacheSimulator;
+import brave.cache.trace.CacheSimulator.AdmissionPolicy;
+import brave.cache.trace.CacheSimulator.EvictionPolicy;
+import brave.cache.trace.TraceOp;
+import brave.cache.trace.TraceReader;
+import brave.cache.trace.TraceRecord;
+import brave.cache.trace.TraceRecorder;
+import brave.cache.trace.TracingCache;
+import org.cache2k.Cache2kBuilder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CacheSimulatorTest {
+
+    @TempDir
+    Path traceDir;
+
+    @Test
+    void simulate_shouldReplayRecordedAccesses() {
+        Path tracePath = traceDir.resolve("garden.trace");
+        org.cache2k.Cache<Integer, String> backStorage = Cache2kBuilder.of(Integer.class, String.class)
+                .name("tracedGarden")
+                .expireAfterWrite(5, TimeUnit.MINUTES)
+                .loader(String::valueOf)
+                .build();
+
+        // Given 2 cycles over 10 keys
+        try (TraceRecorder recorder = new TraceRecorder(tracePath, 1.0)) {
+            TracingCache<Integer, String> cache = new TracingCache<>(new LocalCache<>(backStorage), recorder);
+            for (int cycle = 0; cycle < 2; cycle++) {
+                for (int key = 0; key < 10; key++) {
+                    cache.load(key);
+                }
+            }
+        } finally {
+            backStorage.close();
+        }
+
+        // When
+        TraceReader trace = new TraceReader(tracePath);
+        List<CacheSimulator.Result> results = CacheSimulator.simulate(trace, new long[] { 10, 5 }, new Duration[] { Duration.ZERO });
+
+        // Then
+        assertThat(trace.getSampleRate()).isEqualTo(1.0);
+        assertThat(results).hasSize(2 * EvictionPolicy.values().length * AdmissionPolicy.values().length);
+        assertThat(results).allSatisfy(result -> assertThat(result.getReads()).isEqualTo(20));
+
+        CacheSimulator.Result fitting = results.get(0);
+        assertThat(fitting.getCapacity()).isEqualTo(10);
+        assertThat(fitting.getHits()).isEqualTo(10);
+        assertThat(fitting.getLoaderCalls()).isEqualTo(10);
+
+        CacheSimulator.Result thrashing = results.stream()
+                .filter(result -> result.getCapacity() == 5)
+                .filter(result -> result.getEvictionPolicy() == EvictionPolicy.LRU)
+                .filter(result -> result.getAdmissionPolicy() == AdmissionPolicy.ALWAYS)
+                .findFirst()
+                .orElseThrow();
+        assertThat(thrashing.hitRatio()).isZero();
+    }
+
+    @Test
+    void recorder_shouldAppendToExistingTrace() throws Exception {
+        Path tracePath = traceDir.resolve("restarted.trace");
+
+        // Given a trace whose recorder was not closed, i.e. with a torn last block
+        try (TraceRecorder recorder = new TraceRecorder(tracePath, 1.0)) {
+            for (int key = 0; key < 3; key++) {
+                recorder.record(key, TraceOp.READ);
+            }
+        }
+        try (TraceRecorder recorder = new TraceRecorder(tracePath, 1.0)) {
+            recorder.record(3, TraceOp.WRITE);
+        }
+        try (FileChannel trace = FileChannel.open(tracePath, StandardOpenOption.WRITE)) {
+            trace.truncate(trace.size() - 1);
+        }
+
+        // When restarting
+        try (TraceRecorder recorder = new TraceRecorder(tracePath, 1.0)) {
+            recorder.record(4, TraceOp.REMOVE);
+        }
+
+        // Then
+        List<TraceRecord> records = new ArrayList<>();
+        assertThat(new TraceReader(tracePath).forEach(records::add)).isEqualTo(4);
+        assertThat(records).extracting(TraceRecord::getOp)
+                .containsExactly(TraceOp.READ, TraceOp.READ, TraceOp.READ, TraceOp.REMOVE);
+
+        // And a trace of another sample rate is moved aside
+        try (TraceRecorder recorder = new TraceRecorder(tracePath, 0.5)) {
+            assertThat(new TraceReader(tracePath).getSampleRate()).isEqualTo(0.5);
+        }
+        try (Stream<Path> traces = Files.list(traceDir)) {
+            assertThat(traces).hasSize(2);
+        }
+    }
+
+    @Test
+    void recorder_shouldWriteIdleThreadBlocks_andReaderReplayInTimeOrder() throws Exception {
+        Path tracePath = traceDir.resolve("interleaved.trace");
+
+        try (TraceRecorder recorder = new TraceRecorder(tracePath, 1.0)) {
+            // Given a thread recording once then staying idle
+            CountDownLatch recorded = new CountDownLatch(1);
+            CountDownLatch done = new CountDownLatch(1);
+            Thread idle = new Thread(() -> {
+                recorder.record(-1, TraceOp.WRITE);
+                recorded.countDown();
+                try {
+                    done.await();
+                } catch (InterruptedException iex) {
+                    Thread.currentThread().interrupt();
+                }
+            }, "idle-gardener");
+            idle.start();
+            recorded.await();
+            Thread.sleep(5);
+
+            // And a busy thread recording for longer than the flush interval
+            long endMillis = System.currentTimeMillis() + 2500;
+            for (int key = 0; System.currentTimeMillis() < endMillis; key++) {
+                recorder.record(key, TraceOp.READ);
+                Thread.sleep(20);
+            }
+
+            // Then the block of the idle thread is written before close
+            List<TraceRecord> written = new ArrayList<>();
+            new TraceReader(tracePath).forEach(written::add);
+            assertThat(written).extracting(TraceRecord::getOp).contains(TraceOp.WRITE, TraceOp.READ);
+
+            done.countDown();
+            idle.join();
+        }
+
+        // And records are replayed in time order
+        List<TraceRecord> records = new ArrayList<>();
+        new TraceReader(tracePath).forEach(records::add);
+        assertThat(records.get(0).getOp()).isEqualTo(TraceOp.WRITE);
+        assertThat(records).extracting(TraceRecord::getTimestamp).isSorted();
+    }
+}
@@ -0,0 +1,23 @@
+package gardentest;
+
+import brave.cache.annotation.CacheableIndex;
+import garden.GardenRepo;
+import garden.Seed;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CacheableIndexTest {
+
+    @Test
+    void index_shouldListCacheableTypesAndInjectFields() {
+        CacheableIndex index = CacheableIndex.load(getClass().getClassLoader());
+
+        assertThat(index.isPresent()).isTrue();
+        assertThat(index.injectFields(GardenRepo.class.getName())).isEqualTo(List.of("cache"));
+        assertThat(index.contains(Seed.class.getName())).isFalse();
+        assertThat(index.injectFields(Seed.class.getName())).isNull();
+    }
+}
@@ -0,0 +1,62 @@
+package gardentest;
+
+import brave.cache.invalidation.KafkaInvalidationBus;
+import brave.cache.local.LocalCache;
+import garden.Fruit;
+import garden.Seed;
+import garden.SeedCodec;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.common.TopicPartition;
+import org.cache2k.Cache2kBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class KafkaInvalidationBusTest {
+
+    private static final String TOPIC = "cache.invalidation";
+
+    @Test
+    void remoteInvalidations_shouldRemoveLocalKeys() {
+        KafkaInvalidationBus bus = new KafkaInvalidationBus(TOPIC, new Properties(), new Properties());
+        LocalCache<Seed, Fruit> cache = new LocalCache<>(Cache2kBuilder.of(Seed.class, Fruit.class)
+                .name("invalidatedGarden")
+                .expireAfterWrite(5, TimeUnit.MINUTES)
+                .build());
+        bus.register("invalidatedGarden", new SeedCodec(), cache);
+
+        Seed apple = new Seed("apple");
+        Seed banana = new Seed("banana");
+        cache.put(apple, new Fruit(apple));
+        cache.put(banana, new Fruit(banana));
+
+        // When
+        TopicPartition partition = new TopicPartition(TOPIC, 0);
+        bus.applyInvalidations(new ConsumerRecords<>(Map.of(partition, List.of(
+                invalidation("invalidatedGarden", apple, 0),
+                invalidation("invalidatedGarden", apple, 1),
+                invalidation("unknownGarden", banana, 2)
+        ))));
+
+        // Then
+        assertThat(cache.load(apple)).isNull();
+        assertThat(cache.load(banana)).isEqualTo(new Fruit(banana));
+    }
+
+    private ConsumerRecord<byte[], byte[]> invalidation(String cacheName, Seed seed, long offset) {
+        ByteBuffer encodedSeed = new SeedCodec().encode(seed);
+        byte[] cacheNameBytes = cacheName.getBytes(UTF_8);
+        byte[] key = new byte[cacheNameBytes.length + 1 + encodedSeed.remaining()];
+        System.arraycopy(cacheNameBytes, 0, key, 0, cacheNameBytes.length);
+        encodedSeed.get(key, cacheNameBytes.length + 1, encodedSeed.remaining());
+        return new ConsumerRecord<>(TOPIC, 0, offset, key, "remote-node".getBytes(UTF_8));
+    }
+}
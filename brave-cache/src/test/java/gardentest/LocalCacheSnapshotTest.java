@@ -0,0 +1,81 @@
+package gardentest;
+
+import brave.cache.local.LocalCacheSnapshot;
+import garden.Fruit;
+import garden.FruitCodec;
+import garden.Seed;
+import garden.SeedCodec;
+import org.cache2k.Cache;
+import org.cache2k.Cache2kBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LocalCacheSnapshotTest {
+
+    @TempDir
+    Path snapshotDir;
+
+    Cache<Seed, Fruit> cache;
+
+    @BeforeEach
+    void beforeEach() {
+        cache = newCache("snapshotGarden");
+    }
+
+    @AfterEach
+    void afterEach() {
+        cache.close();
+    }
+
+    @Test
+    void restore_shouldLoadNonExpiredEntries() throws Exception {
+        Path snapshotPath = snapshotDir.resolve("garden.snapshot");
+        Seed apple = new Seed("apple");
+        Seed banana = new Seed("banana");
+        Seed cherry = new Seed("cherry");
+
+        // Given
+        cache.put(apple, new Fruit(apple));
+        cache.put(banana, new Fruit(banana));
+        cache.put(cherry, new Fruit(cherry));
+        cache.expireAt(cherry, System.currentTimeMillis() + 300);
+
+        LocalCacheSnapshot<Seed, Fruit> snapshot = new LocalCacheSnapshot<>(cache, new SeedCodec(), new FruitCodec(), snapshotPath);
+        assertThat(snapshot.dump()).isEqualTo(3);
+
+        Thread.sleep(500);
+
+        // When
+        Cache<Seed, Fruit> restartedCache = newCache("restartedGarden");
+        int restored = new LocalCacheSnapshot<>(restartedCache, new SeedCodec(), new FruitCodec(), snapshotPath).restore();
+
+        // Then
+        assertThat(restored).isEqualTo(2);
+        assertThat(restartedCache.peek(apple)).isEqualTo(new Fruit(apple));
+        assertThat(restartedCache.peek(banana)).isEqualTo(new Fruit(banana));
+        assertThat(restartedCache.peek(cherry)).isNull();
+
+        restartedCache.close();
+    }
+
+    @Test
+    void restore_withoutSnapshotFile_shouldBeEmpty() {
+        int restored = new LocalCacheSnapshot<>(cache, new SeedCodec(), new FruitCodec(), snapshotDir.resolve("missing")).restore();
+
+        assertThat(restored).isZero();
+    }
+
+    private Cache<Seed, Fruit> newCache(String name) {
+        return Cache2kBuilder.of(Seed.class, Fruit.class)
+                .name(name)
+                .expireAfterWrite(5, TimeUnit.MINUTES)
+                .build();
+    }
+}
@@ -0,0 +1,72 @@
+package gardentest;
+
+import brave.cache.BulkInvalidation;
+import brave.cache.local.LocalCache;
+import brave.cache.local.ReactiveLocalCache;
+import brave.cache.metric.CacheInstrumentation;
+import garden.Fruit;
+import garden.Seed;
+import garden.SeedCodec;
+import org.cache2k.Cache;
+import org.cache2k.Cache2kBuilder;
+import org.junit.jupiter.api.Test;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class LocalCacheTest {
+
+    @Test
+    void removeByPrefix_shouldRemoveMatchingEncodedKeys() {
+        Cache<Seed, Fruit> backStorage = backStorage("prefixedGarden");
+        LocalCache<Seed, Fruit> cache = new LocalCache<>(backStorage, CacheInstrumentation.NOOP, new SeedCodec());
+        List<Seed> toBeRemoved = List.of(new Seed("pecan nut"), new Seed("pecan pie"), new Seed("pecan*"));
+        List<Seed> toBeKept = List.of(new Seed("peanut"), new Seed("pear"));
+        toBeRemoved.forEach(seed -> cache.put(seed, new Fruit(seed)));
+        toBeKept.forEach(seed -> cache.put(seed, new Fruit(seed)));
+
+        // When
+        BulkInvalidation invalidation = cache.removeByPrefix("experiment:seed/pecan");
+
+        // Then
+        assertThat(invalidation.isDone()).isTrue();
+        assertThat(invalidation.getScannedKeys()).isEqualTo(5);
+        assertThat(invalidation.getRemovedKeys()).isEqualTo(3);
+        assertThat(backStorage.peekAll(toBeRemoved)).isEmpty();
+        assertThat(backStorage.peekAll(toBeKept)).hasSize(2);
+    }
+
+    @Test
+    void removeByPrefix_shouldRequireKeyCodec() {
+        LocalCache<Seed, Fruit> cache = new LocalCache<>(backStorage("unprefixedGarden"));
+
+        assertThatThrownBy(() -> cache.removeByPrefix("experiment:seed/pecan"))
+                .isInstanceOf(UnsupportedOperationException.class);
+    }
+
+    @Test
+    void reactive_removeByPrefix_shouldRemoveMatchingEncodedKeys() {
+        Cache<Seed, Fruit> backStorage = backStorage("reactivePrefixedGarden");
+        ReactiveLocalCache<Seed, Fruit> cache = new ReactiveLocalCache<>(backStorage, CacheInstrumentation.NOOP, new SeedCodec());
+        backStorage.put(new Seed("pecan nut"), new Fruit(new Seed("pecan nut")));
+        backStorage.put(new Seed("pear"), new Fruit(new Seed("pear")));
+
+        StepVerifier.create(cache.removeByPrefix("experiment:seed/pecan"))
+                .assertNext(invalidation -> assertThat(invalidation.getRemovedKeys()).isEqualTo(1))
+                .verifyComplete();
+
+        assertThat(backStorage.containsKey(new Seed("pecan nut"))).isFalse();
+        assertThat(backStorage.containsKey(new Seed("pear"))).isTrue();
+    }
+
+    private static Cache<Seed, Fruit> backStorage(String name) {
+        return Cache2kBuilder.of(Seed.class, Fruit.class)
+                .name(name)
+                .expireAfterWrite(5, TimeUnit.MINUTES)
+                .build();
+    }
+}
@@ -0,0 +1,181 @@
+package gardentest;
+
+import brave.cache.BulkInvalidation;
+import brave.cache.codec.LongNamespaceCodec;
+import brave.cache.codec.NamespaceCodec;
+import brave.cache.local.LocalLongKeyCache;
+import brave.cache.util.LongObjectMap;
+import garden.Fruit;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class LongKeyCacheTest {
+
+    @Test
+    void longNamespaceCodec_shouldEncodeAsNamespaceCodec() {
+        LongNamespaceCodec codec = new LongNamespaceCodec("garden");
+
+        for (long key : new long[] { 0, 7, -42, 1234567890123L, Long.MAX_VALUE, Long.MIN_VALUE }) {
+            byte[] encoded = codec.encodeLong(key);
+            assertThat(new String(encoded, StandardCharsets.US_ASCII)).isEqualTo("garden:" + key);
+            assertThat(codec.decodeLong(ByteBuffer.wrap(encoded))).isEqualTo(key);
+        }
+    }
+
+    @Test
+    void longNamespaceCodec_shouldEncodeNonAsciiNamespaceAsNamespaceCodec() {
+        LongNamespaceCodec codec = new LongNamespaceCodec("jardín", StandardCharsets.UTF_8);
+        NamespaceCodec<String> stringCodec = new NamespaceCodec<>("jardín", StandardCharsets.UTF_8) {
+            @Override
+            public Class<String> getType() {
+                return String.class;
+            }
+
+            @Override
+            public String serialize(String obj) {
+                return obj;
+            }
+
+            @Override
+            public String deserialize(String serializedObj) {
+                return serializedObj;
+            }
+        };
+
+        assertThat(ByteBuffer.wrap(codec.encodeLong(42))).isEqualTo(stringCodec.encode("42"));
+        assertThatThrownBy(() -> codec.decodeLong(ByteBuffer.wrap("garden:42".getBytes(StandardCharsets.UTF_8))))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void longObjectMap_shouldSurviveRemovalsAndResizes() {
+        LongObjectMap<String> map = new LongObjectMap<>(4);
+        for (long key = -100; key <= 100; key++) {
+            map.put(key, String.valueOf(key));
+        }
+        for (long key = -100; key <= 100; key += 2) {
+            map.remove(key);
+        }
+
+        assertThat(map.size()).isEqualTo(100);
+        for (long key = -100; key <= 100; key++) {
+            assertThat(map.get(key)).isEqualTo(key % 2 == 0 ? null : String.valueOf(key));
+        }
+    }
+
+    @Test
+    void localLongKeyCache_shouldLoadMissingKeysOnce() {
+        AtomicInteger loaderCalls = new AtomicInteger();
+        LocalLongKeyCache<Fruit> cache = new LocalLongKeyCache.Builder<Fruit>()
+                .name("longKeyGarden")
+                .entryCapacity(2)
+                .defaultTimeToLive(Duration.ofMinutes(5))
+                .singleLoader(key -> {
+                    loaderCalls.incrementAndGet();
+                    return new Fruit("fruit-" + key, 0);
+                })
+                .build();
+
+        // When
+        cache.load(1L);
+        LongObjectMap<Fruit> fruits = cache.loadAll(new long[] { 1L, 2L });
+        cache.load(3L);
+
+        // Then
+        assertThat(loaderCalls.get()).isEqualTo(3);
+        assertThat(fruits.get(1L)).isEqualTo(new Fruit("fruit-1", 0));
+        assertThat(fruits.get(2L)).isEqualTo(new Fruit("fruit-2", 0));
+        assertThat(cache.invalidateNamespace().getRemovedKeys()).isEqualTo(2);
+    }
+
+    @Test
+    void localLongKeyCache_shouldRemoveByPrefix() {
+        LocalLongKeyCache<Fruit> cache = new LocalLongKeyCache.Builder<Fruit>()
+                .name("prefixedLongKeyGarden")
+                .keyCodec(new LongNamespaceCodec("garden"))
+                .build();
+        for (long key = 1; key <= 30; key++) {
+            cache.put(key, new Fruit("fruit-" + key, 0));
+        }
+
+        // When
+        BulkInvalidation invalidation = cache.removeByPrefix("garden:1");
+
+        // Then
+        assertThat(invalidation.isDone()).isTrue();
+        assertThat(invalidation.getScannedKeys()).isEqualTo(30);
+        assertThat(invalidation.getRemovedKeys()).isEqualTo(11);
+        assertThat(cache.load(1L)).isNull();
+        assertThat(cache.load(15L)).isNull();
+        assertThat(cache.load(2L)).isEqualTo(new Fruit("fruit-2", 0));
+        assertThat(cache.load(21L)).isEqualTo(new Fruit("fruit-21", 0));
+    }
+
+    @Test
+    void localLongKeyCache_shouldPurgeExpiredEntries() throws InterruptedException {
+        LocalLongKeyCache<Fruit> cache = new LocalLongKeyCache.Builder<Fruit>()
+                .name("expiringLongKeyGarden")
+                .build();
+        for (long key = 1; key <= 1000; key++) {
+            cache.put(key, new Fruit("fruit-" + key, 0), Duration.ofMillis(1));
+        }
+        Thread.sleep(10);
+
+        // When
+        for (long key = 1; key <= 10; key++) {
+            assertThat(cache.load(key)).isNull();
+        }
+        for (long key = 1001; key <= 2000; key++) {
+            cache.put(key, new Fruit("fruit-" + key, 0));
+        }
+
+        // Then
+        assertThat(cache.invalidateNamespace().getRemovedKeys()).isBetween(1000L, 1100L);
+    }
+
+    @Test
+    void localLongKeyCache_shouldCacheNullValues_whenPermitted() {
+        AtomicInteger loaderCalls = new AtomicInteger();
+        LocalLongKeyCache<Fruit> cache = new LocalLongKeyCache.Builder<Fruit>()
+                .name("nullLongKeyGarden")
+                .permitNullValues(true)
+                .singleLoader(key -> {
+                    loaderCalls.incrementAndGet();
+                    return null;
+                })
+                .build();
+
+        // When
+        cache.load(1L);
+        LongObjectMap<Fruit> fruits = cache.loadAll(new long[] { 1L });
+
+        // Then
+        assertThat(loaderCalls.get()).isEqualTo(1);
+        assertThat(fruits.isEmpty()).isTrue();
+    }
+
+    @Test
+    void localLongKeyCache_putIfNewer_shouldReplaceCachedNullValue() {
+        LocalLongKeyCache<Fruit> cache = new LocalLongKeyCache.Builder<Fruit>()
+                .name("nullVersionedLongKeyGarden")
+                .permitNullValues(true)
+                .singleLoader(key -> null)
+                .build();
+
+        // Given a cached null value
+        assertThat(cache.load(2L)).isNull();
+
+        // When
+        assertThat(cache.putIfNewer(2L, new Fruit("apple"), Fruit::getGeneration)).isTrue();
+
+        // Then
+        assertThat(cache.load(2L)).isEqualTo(new Fruit("apple"));
+    }
+}
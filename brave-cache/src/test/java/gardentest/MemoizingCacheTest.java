@@ -0,0 +1,159 @@
+package gardentest;
+
+import brave.cache.Cache;
+import brave.cache.ForwardingCache;
+import brave.cache.local.LocalCache;
+import brave.cache.local.ReactiveLocalCache;
+import brave.cache.memo.MemoScope;
+import brave.cache.memo.MemoizingCache;
+import brave.cache.memo.MemoizingReactiveCache;
+import garden.Fruit;
+import garden.Seed;
+import org.cache2k.Cache2kBuilder;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MemoizingCacheTest {
+
+    @Test
+    void loads_withinScope_shouldReachCacheOnce() {
+        List<Object> reads = new ArrayList<>();
+        MemoizingCache<Seed, Fruit> cache = new MemoizingCache<>(countingCache("memoGarden", reads));
+        Seed apple = new Seed("apple");
+        Seed banana = new Seed("banana");
+        Seed cherry = new Seed("cherry");
+
+        // When
+        try (MemoScope scope = MemoScope.open()) {
+            assertThat(cache.load(apple)).isEqualTo(new Fruit(apple));
+            assertThat(cache.load(apple)).isEqualTo(new Fruit(apple));
+            assertThat(cache.loadAll(List.of(apple, banana, cherry))).hasSize(3);
+            assertThat(cache.loadAll(new Seed[]{banana, cherry})).hasSize(2);
+            assertThat(scope.size()).isEqualTo(3);
+        }
+
+        // Then
+        assertThat(reads).containsExactly(apple, List.of(banana, cherry));
+        assertThat(MemoScope.current()).isNull();
+    }
+
+    @Test
+    void loads_outsideScope_shouldBeForwarded() {
+        List<Object> reads = new ArrayList<>();
+        MemoizingCache<Seed, Fruit> cache = new MemoizingCache<>(countingCache("unscopedGarden", reads));
+        Seed apple = new Seed("apple");
+
+        cache.load(apple);
+        cache.load(apple);
+
+        assertThat(reads).containsExactly(apple, apple);
+    }
+
+    @Test
+    void put_withinScope_shouldUpdateMemo() {
+        List<Object> reads = new ArrayList<>();
+        MemoizingCache<Seed, Fruit> cache = new MemoizingCache<>(countingCache("rewrittenGarden", reads));
+        Seed apple = new Seed("apple");
+
+        try (MemoScope ignored = MemoScope.open()) {
+            cache.load(apple);
+            cache.put(apple, new Fruit(apple, 1));
+
+            assertThat(cache.load(apple)).isEqualTo(new Fruit(apple, 1));
+        }
+        assertThat(reads).containsExactly(apple);
+    }
+
+    @Test
+    void reactiveGets_withinScope_shouldBeMemoized() {
+        org.cache2k.Cache<Seed, Fruit> backStorage = Cache2kBuilder.of(Seed.class, Fruit.class)
+                .name("reactiveMemoGarden")
+                .expireAfterWrite(5, TimeUnit.MINUTES)
+                .loader(Fruit::new)
+                .build();
+        MemoizingReactiveCache<Seed, Fruit> cache = new MemoizingReactiveCache<>(new ReactiveLocalCache<>(backStorage));
+        Seed apple = new Seed("apple");
+
+        Mono<Fruit> getRewriteGet = cache.get(apple)
+                .then(Mono.fromRunnable(() -> backStorage.put(apple, new Fruit(apple, 1))))
+                .then(cache.get(apple));
+
+        StepVerifier.create(MemoScope.within(getRewriteGet))
+                .expectNext(new Fruit(apple, 0))
+                .verifyComplete();
+
+        StepVerifier.create(getRewriteGet)
+                .expectNext(new Fruit(apple, 1))
+                .verifyComplete();
+    }
+
+    @Test
+    void invalidateNamespace_withinScope_shouldClearMemo() {
+        org.cache2k.Cache<Seed, Fruit> backStorage = Cache2kBuilder.of(Seed.class, Fruit.class)
+                .name("invalidatedMemoGarden")
+                .expireAfterWrite(5, TimeUnit.MINUTES)
+                .loader(Fruit::new)
+                .build();
+        MemoizingCache<Seed, Fruit> cache = new MemoizingCache<>(new LocalCache<>(backStorage));
+        Seed apple = new Seed("apple");
+
+        try (MemoScope ignored = MemoScope.open()) {
+            cache.load(apple);
+            cache.invalidateNamespace();
+            backStorage.put(apple, new Fruit(apple, 1));
+
+            assertThat(cache.load(apple)).isEqualTo(new Fruit(apple, 1));
+        }
+    }
+
+    @Test
+    void reactiveInvalidateNamespace_withinScope_shouldClearMemo() {
+        org.cache2k.Cache<Seed, Fruit> backStorage = Cache2kBuilder.of(Seed.class, Fruit.class)
+                .name("reactiveInvalidatedMemoGarden")
+                .expireAfterWrite(5, TimeUnit.MINUTES)
+                .loader(Fruit::new)
+                .build();
+        MemoizingReactiveCache<Seed, Fruit> cache = new MemoizingReactiveCache<>(new ReactiveLocalCache<>(backStorage));
+        Seed apple = new Seed("apple");
+
+        Mono<Fruit> getInvalidateRewriteGet = cache.get(apple)
+                .then(cache.invalidateNamespace())
+                .then(Mono.fromRunnable(() -> backStorage.put(apple, new Fruit(apple, 1))))
+                .then(cache.get(apple));
+
+        StepVerifier.create(MemoScope.within(getInvalidateRewriteGet))
+                .expectNext(new Fruit(apple, 1))
+                .verifyComplete();
+    }
+
+    private Cache<Seed, Fruit> countingCache(String name, List<Object> reads) {
+        LocalCache<Seed, Fruit> localCache = new LocalCache<>(Cache2kBuilder.of(Seed.class, Fruit.class)
+                .name(name)
+                .expireAfterWrite(5, TimeUnit.MINUTES)
+                .loader(Fruit::new)
+                .build());
+
+        return new ForwardingCache<>(localCache) {
+            @Override
+            public Fruit load(Seed key) {
+                reads.add(key);
+                return delegate.load(key);
+            }
+
+            @Override
+            public Map<Seed, Fruit> loadAll(Collection<Seed> keys) {
+                reads.add(List.copyOf(keys));
+                return delegate.loadAll(keys);
+            }
+        };
+    }
+}
@@ -1,5 +1,6 @@
 package gardentest;
 
+import brave.cache.BulkInvalidation;
 import brave.cache.redis.ReactiveRedisCache;
 import brave.cache.util.Tuple;
 import brave.extension.RedisServerExtension;
@@ -384,5 +385,34 @@ public class ReactiveRedisCacheTest {
                 .verifyComplete();
     }
 
-}
+    @Test
+    void testRemoveByPrefix() throws Exception {
+        List<Seed> toBeRemoved = List.of(new Seed("pecan nut"), new Seed("pecan pie"), new Seed("pecan*"));
+        List<Seed> toBeKept = List.of(new Seed("peanut"), new Seed("pear"));
+
+        // Given
+        for (Seed seed : Stream.of(toBeRemoved, toBeKept).flatMap(List::stream).collect(Collectors.toList())) {
+            StepVerifier.create(cache.put(seed, new Fruit(seed))).expectNext(true).verifyComplete();
+        }
+
+        // When
+        BulkInvalidation invalidation = cache.removeByPrefix("experiment:seed/pecan").block(Duration.ofSeconds(5));
+
+        // Then
+        assertThat(invalidation.isDone()).isTrue();
+        assertThat(invalidation.getRemovedKeys()).isEqualTo(toBeRemoved.size());
+        assertThat(invalidation.getScannedKeys()).isEqualTo(toBeRemoved.size());
+
+        StepVerifier.create(cache.peekAll(Stream.of(toBeRemoved, toBeKept).flatMap(List::stream).collect(Collectors.toList())))
+                .assertNext(fruits -> {
+                    for (Seed removed : toBeRemoved) {
+                        assertThat(fruits.get(removed)).isNull();
+                    }
+                    for (Seed kept : toBeKept) {
+                        assertThat(fruits.get(kept)).isNotNull();
+                    }
+                })
+                .verifyComplete();
+    }
 
+}
@@ -0,0 +1,164 @@
+package gardentest;
+
+import brave.cache.redis.ReactiveRedisCache;
+import brave.cache.redis.RedisCache;
+import brave.extension.RedisServerExtension;
+import garden.Fruit;
+import garden.FruitCodec;
+import garden.Seed;
+import garden.SeedCodec;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.sync.RedisCommands;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import reactor.test.StepVerifier;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(classes = AppConfig.class)
+@ExtendWith({SpringExtension.class, RedisServerExtension.class})
+public class RedisAtomicWritesTest {
+
+    @Autowired
+    RedisClient redisClient;
+
+    @Test
+    void putIfAbsent_shouldKeepExistingValue() {
+        RedisCache<Seed, Fruit> cache = redisCache(0);
+        Seed apple = new Seed("absent apple");
+
+        assertThat(cache.putIfAbsent(apple, new Fruit(apple, 1))).isTrue();
+        assertThat(cache.putIfAbsent(apple, new Fruit(apple, 2))).isFalse();
+
+        assertThat(cache.load(apple)).isEqualTo(new Fruit(apple, 1));
+
+        cache.close();
+    }
+
+    @Test
+    void putIfNewer_shouldKeepNewerVersion() {
+        RedisCache<Seed, Fruit> cache = redisCache(0);
+        Seed banana = new Seed("versioned banana");
+
+        assertThat(cache.putIfNewer(banana, new Fruit(banana, 2), Fruit::getGeneration)).isTrue();
+        assertThat(cache.putIfNewer(banana, new Fruit(banana, 1), Fruit::getGeneration)).isFalse();
+        assertThat(cache.putIfNewer(banana, new Fruit(banana, 2), Fruit::getGeneration)).isFalse();
+        assertThat(cache.load(banana)).isEqualTo(new Fruit(banana, 2));
+
+        assertThat(cache.putIfNewer(banana, new Fruit(banana, 3), Fruit::getGeneration)).isTrue();
+        assertThat(cache.load(banana)).isEqualTo(new Fruit(banana, 3));
+
+        // The version of a removed value is ignored
+        cache.remove(banana);
+        assertThat(cache.putIfNewer(banana, new Fruit(banana, 1), Fruit::getGeneration)).isTrue();
+
+        // So is the version of a value overwritten by a plain put
+        assertThat(cache.putIfNewer(banana, new Fruit(banana, 5), Fruit::getGeneration)).isTrue();
+        cache.put(banana, new Fruit(banana, 0));
+        assertThat(cache.putIfNewer(banana, new Fruit(banana, 4), Fruit::getGeneration)).isTrue();
+        assertThat(cache.putIfNewer(banana, new Fruit(banana, 5), Fruit::getGeneration)).isTrue();
+        cache.putAll(Map.of(banana, new Fruit(banana, 0)));
+        assertThat(cache.putIfNewer(banana, new Fruit(banana, 4), Fruit::getGeneration)).isTrue();
+
+        cache.close();
+    }
+
+    @Test
+    void putAll_shouldWriteEveryKey_afterScriptFlush() {
+        RedisCache<Seed, Fruit> cache = redisCache(0);
+        Seed cherry = new Seed("bulk cherry");
+        Seed durian = new Seed("bulk durian");
+
+        try (StatefulRedisConnection<String, String> connection = redisClient.connect()) {
+            connection.sync().scriptFlush();
+        }
+
+        assertThat(cache.putAll(Map.of(cherry, new Fruit(cherry), durian, new Fruit(durian)))).isTrue();
+
+        assertThat(cache.loadAll(List.of(cherry, durian)))
+                .containsEntry(cherry, new Fruit(cherry))
+                .containsEntry(durian, new Fruit(durian));
+
+        cache.close();
+    }
+
+    @Test
+    void putAll_withTimeToLivePerValue_shouldExpireEveryKeyOnItsOwn() {
+        RedisCache<Seed, Fruit> cache = redisCache(0);
+        Seed lemon = new Seed("short lived lemon");
+        Seed mango = new Seed("long lived mango");
+
+        assertThat(cache.putAll(Map.of(lemon, new Fruit(lemon, 0), mango, new Fruit(mango, 1)),
+                fruit -> fruit.getGeneration() == 0 ? Duration.ofMinutes(1) : Duration.ofHours(1))).isTrue();
+
+        try (StatefulRedisConnection<String, String> connection = redisClient.connect()) {
+            RedisCommands<String, String> commands = connection.sync();
+            assertThat(commands.pttl(encodedKey(lemon))).isBetween(1L, Duration.ofMinutes(1).toMillis());
+            assertThat(commands.pttl(encodedKey(mango))).isBetween(Duration.ofMinutes(59).toMillis(), Duration.ofHours(1).toMillis());
+        }
+
+        cache.close();
+    }
+
+    @Test
+    void putIfAbsent_ofChunkedValue_shouldKeepExistingValue() {
+        RedisCache<Seed, Fruit> cache = redisCache(64);
+        Seed fig = new Seed("absent chunked fig");
+        Fruit largeFig = new Fruit("fig".repeat(100));
+
+        assertThat(cache.putIfAbsent(fig, largeFig)).isTrue();
+        assertThat(cache.putIfAbsent(fig, new Fruit("fig".repeat(200)))).isFalse();
+
+        assertThat(cache.load(fig)).isEqualTo(largeFig);
+
+        cache.close();
+    }
+
+    @Test
+    void reactive_conditionalWrites_shouldKeepExistingValues() {
+        ReactiveRedisCache<Seed, Fruit> cache = new ReactiveRedisCache.Builder<Seed, Fruit>()
+                .keyCodec(new SeedCodec())
+                .valueCodec(new FruitCodec())
+                .defaultTimeToLive(Duration.ofMinutes(5))
+                .redisClient(redisClient)
+                .build();
+        Seed grape = new Seed("reactive versioned grape");
+        Seed kiwi = new Seed("reactive absent kiwi");
+
+        StepVerifier.create(cache.putIfNewer(grape, new Fruit(grape, 2), Fruit::getGeneration)
+                        .concatWith(cache.putIfNewer(grape, new Fruit(grape, 1), Fruit::getGeneration))
+                        .concatWith(cache.putIfAbsent(kiwi, new Fruit(kiwi, 1)))
+                        .concatWith(cache.putIfAbsent(kiwi, new Fruit(kiwi, 2))))
+                .expectNext(true, false, true, false)
+                .verifyComplete();
+
+        StepVerifier.create(cache.peekAll(List.of(grape, kiwi)))
+                .expectNext(Map.of(grape, new Fruit(grape, 2), kiwi, new Fruit(kiwi, 1)))
+                .verifyComplete();
+
+        cache.close();
+    }
+
+    private static String encodedKey(Seed seed) {
+        return StandardCharsets.UTF_8.decode(new SeedCodec().encode(seed)).toString();
+    }
+
+    private RedisCache<Seed, Fruit> redisCache(int chunkSize) {
+        return new RedisCache.Builder<Seed, Fruit>()
+                .keyCodec(new SeedCodec())
+                .valueCodec(new FruitCodec())
+                .defaultTimeToLive(Duration.ofMinutes(5))
+                .redisClient(redisClient)
+                .chunkSize(chunkSize)
+                .build();
+    }
+}
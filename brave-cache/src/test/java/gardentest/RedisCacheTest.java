@@ -0,0 +1,76 @@
+package gardentest;
+
+import brave.cache.BulkInvalidation;
+import brave.cache.redis.RedisCache;
+import brave.extension.RedisServerExtension;
+import garden.Fruit;
+import garden.FruitCodec;
+import garden.Seed;
+import garden.SeedCodec;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.sync.RedisCommands;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(classes = AppConfig.class)
+@ExtendWith({SpringExtension.class, RedisServerExtension.class})
+public class RedisCacheTest {
+
+    @Autowired
+    RedisClient redisClient;
+
+    @Test
+    void removeByPrefix_shouldUnlinkMatchingKeysInBackground() throws Exception {
+        RedisCache<Seed, Fruit> cache = new RedisCache.Builder<Seed, Fruit>()
+                .keyCodec(new SeedCodec())
+                .valueCodec(new FruitCodec())
+                .defaultTimeToLive(Duration.ofMinutes(5))
+                .redisClient(redisClient)
+                .build();
+        List<Seed> toBeRemoved = List.of(new Seed("hazel nut"), new Seed("hazel pie"), new Seed("hazel*"));
+        List<Seed> toBeKept = List.of(new Seed("hawthorn"), new Seed("haskap"));
+        List<Seed> allSeeds = Stream.of(toBeRemoved, toBeKept).flatMap(List::stream).collect(Collectors.toList());
+
+        // Given
+        for (Seed seed : allSeeds) {
+            assertThat(cache.put(seed, new Fruit(seed))).isTrue();
+        }
+
+        // When
+        BulkInvalidation invalidation = cache.removeByPrefix("experiment:seed/hazel");
+        long removed = invalidation.await(Duration.ofSeconds(5));
+
+        // Then
+        assertThat(invalidation.isDone()).isTrue();
+        assertThat(removed).isEqualTo(toBeRemoved.size());
+        assertThat(invalidation.getScannedKeys()).isEqualTo(toBeRemoved.size());
+
+        try (StatefulRedisConnection<String, String> connection = redisClient.connect()) {
+            RedisCommands<String, String> commands = connection.sync();
+            for (Seed removedSeed : toBeRemoved) {
+                assertThat(commands.exists(encodedKey(removedSeed))).isZero();
+            }
+            for (Seed keptSeed : toBeKept) {
+                assertThat(commands.exists(encodedKey(keptSeed))).isOne();
+            }
+        }
+
+        cache.close();
+    }
+
+    private static String encodedKey(Seed seed) {
+        return StandardCharsets.UTF_8.decode(new SeedCodec().encode(seed)).toString();
+    }
+}
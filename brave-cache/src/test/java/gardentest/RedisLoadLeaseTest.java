@@ -0,0 +1,176 @@
+package gardentest;
+
+import brave.cache.metric.CacheInstrumentation;
+import brave.cache.redis.RedisCache;
+import brave.cache.redis.SingleLoader;
+import brave.extension.RedisServerExtension;
+import garden.Fruit;
+import garden.FruitCodec;
+import garden.Seed;
+import garden.SeedCodec;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.SetArgs;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.sync.RedisCommands;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(classes = AppConfig.class)
+@ExtendWith({SpringExtension.class, RedisServerExtension.class})
+public class RedisLoadLeaseTest {
+
+    @Autowired
+    RedisClient redisClient;
+
+    @Test
+    void concurrentMisses_acrossNodes_shouldLoadOnce() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        List<RedisCache<Seed, Fruit>> nodes = List.of(newNode(loads, Duration.ofSeconds(5)), newNode(loads, Duration.ofSeconds(5)));
+        Seed apple = new Seed("leased apple");
+
+        // When
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Fruit>> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            RedisCache<Seed, Fruit> node = nodes.get(i % nodes.size());
+            results.add(executor.submit(() -> node.load(apple)));
+        }
+
+        // Then
+        for (Future<Fruit> result : results) {
+            assertThat(result.get()).isEqualTo(new Fruit(apple));
+        }
+        assertThat(loads.get()).isEqualTo(1);
+
+        executor.shutdown();
+        nodes.forEach(RedisCache::close);
+    }
+
+    @Test
+    void expiredLease_shouldNotBlockOtherNodes() throws Exception {
+        Seed banana = new Seed("leased banana");
+        String leaseKey = StandardCharsets.UTF_8.decode(new SeedCodec().encode(banana)) + ":lease";
+
+        try (StatefulRedisConnection<String, String> connection = redisClient.connect()) {
+            RedisCommands<String, String> commands = connection.sync();
+            AtomicReference<String> leaseHolder = new AtomicReference<>();
+            RedisCache<Seed, Fruit> node = newNode(seed -> {
+                leaseHolder.set(commands.get(leaseKey));
+                return new Fruit(seed);
+            }, Duration.ofSeconds(5));
+
+            // Given a lease held by a crashed node
+            commands.set(leaseKey, "crashed", SetArgs.Builder.px(200));
+            assertThat(commands.pttl(leaseKey)).isPositive();
+
+            // When it expired
+            Thread.sleep(300);
+            Fruit banana0 = node.load(banana);
+
+            // Then the node acquired the lease, loaded and released it
+            assertThat(banana0).isEqualTo(new Fruit(banana));
+            assertThat(leaseHolder.get()).isNotNull().isNotEqualTo("crashed");
+            assertThat(commands.exists(leaseKey)).isZero();
+
+            node.close();
+        }
+    }
+
+    @Test
+    void heldLease_shouldNotBlockOtherNodesLongerThanLeaseWait() {
+        AtomicInteger loads = new AtomicInteger();
+        RedisCache<Seed, Fruit> node = newNode(loads, Duration.ofMillis(100));
+        Seed cherry = new Seed("leased cherry");
+
+        try (StatefulRedisConnection<String, String> connection = redisClient.connect()) {
+            // Given a lease held by a stalled node
+            String leaseKey = StandardCharsets.UTF_8.decode(new SeedCodec().encode(cherry)) + ":lease";
+            connection.sync().set(leaseKey, "stalled", SetArgs.Builder.px(5000));
+
+            // When
+            Fruit cherry0 = node.load(cherry);
+
+            // Then
+            assertThat(cherry0).isEqualTo(new Fruit(cherry));
+            assertThat(loads.get()).isEqualTo(1);
+        }
+
+        node.close();
+    }
+
+    @Test
+    void valueCachedBeforeLease_shouldReleaseLease() {
+        AtomicInteger loads = new AtomicInteger();
+        RedisCache<Seed, Fruit> otherNode = newNode(loads, Duration.ofSeconds(5));
+        Seed durian = new Seed("leased durian");
+        String leaseKey = StandardCharsets.UTF_8.decode(new SeedCodec().encode(durian)) + ":lease";
+
+        // Given another node caching the value between the miss and the lease
+        RedisCache<Seed, Fruit> node = newNodeBuilder(seed -> {
+            loads.incrementAndGet();
+            return new Fruit(seed);
+        }, Duration.ofSeconds(5))
+                .instrumentation(new CacheInstrumentation() {
+                    @Override
+                    public void misses(long count) {
+                        otherNode.put(durian, new Fruit(durian, 7));
+                    }
+                })
+                .build();
+
+        // When
+        Fruit durian0 = node.load(durian);
+
+        // Then the value was read again instead of loaded, and the lease released
+        assertThat(durian0).isEqualTo(new Fruit(durian, 7));
+        assertThat(loads.get()).isZero();
+        try (StatefulRedisConnection<String, String> connection = redisClient.connect()) {
+            assertThat(connection.sync().exists(leaseKey)).isZero();
+        }
+
+        node.close();
+        otherNode.close();
+    }
+
+    private RedisCache<Seed, Fruit> newNode(AtomicInteger loads, Duration leaseWait) {
+        return newNode(seed -> {
+            loads.incrementAndGet();
+            try {
+                Thread.sleep(300);
+            } catch (InterruptedException inex) {
+                Thread.currentThread().interrupt();
+            }
+            return new Fruit(seed);
+        }, leaseWait);
+    }
+
+    private RedisCache<Seed, Fruit> newNode(SingleLoader<Seed, Fruit> loader, Duration leaseWait) {
+        return newNodeBuilder(loader, leaseWait).build();
+    }
+
+    private RedisCache.Builder<Seed, Fruit> newNodeBuilder(SingleLoader<Seed, Fruit> loader, Duration leaseWait) {
+        return new RedisCache.Builder<Seed, Fruit>()
+                .keyCodec(new SeedCodec())
+                .valueCodec(new FruitCodec())
+                .defaultTimeToLive(Duration.ofMinutes(5))
+                .singleLoader(loader)
+                .redisClient(redisClient)
+                .leaseTimeout(Duration.ofSeconds(5))
+                .leaseWait(leaseWait);
+    }
+}
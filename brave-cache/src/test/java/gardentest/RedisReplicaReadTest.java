@@ -0,0 +1,100 @@
+package gardentest;
+
+import brave.cache.redis.RedisCache;
+import brave.extension.RedisServerExtension;
+import garden.Fruit;
+import garden.FruitCodec;
+import garden.Seed;
+import garden.SeedCodec;
+import io.lettuce.core.ReadFrom;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisURI;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import redis.embedded.RedisServer;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest(classes = AppConfig.class)
+@ExtendWith({SpringExtension.class, RedisServerExtension.class})
+public class RedisReplicaReadTest {
+
+    static final int REPLICA_PORT = 6790;
+    static RedisServer replicaServer;
+
+    @Autowired
+    AppConfig appConfig;
+
+    @Autowired
+    RedisClient redisClient;
+
+    @BeforeAll
+    static void beforeAll() {
+        replicaServer = RedisServer.builder()
+                .port(REPLICA_PORT)
+                .slaveOf("localhost", 6789)
+                .build();
+        replicaServer.start();
+    }
+
+    @AfterAll
+    static void afterAll() {
+        if (replicaServer.isActive()) {
+            replicaServer.stop();
+        }
+    }
+
+    @Test
+    void load_shouldReadFromReplicaThenFallBackToPrimary() throws Exception {
+        RedisCache<Seed, Fruit> cache = new RedisCache.Builder<Seed, Fruit>()
+                .keyCodec(new SeedCodec())
+                .valueCodec(new FruitCodec())
+                .defaultTimeToLive(Duration.ofMinutes(5))
+                .redisClient(redisClient)
+                .readFrom(ReadFrom.REPLICA)
+                .nodes(List.of(
+                        RedisURI.create("redis://localhost:" + appConfig.redisPort()),
+                        RedisURI.create("redis://localhost:" + REPLICA_PORT)))
+                .build();
+
+        Seed apple = new Seed("replicated apple");
+        assertThat(cache.put(apple, new Fruit(apple))).isTrue();
+
+        // Replication is asynchronous
+        Fruit replicated = null;
+        for (int attempt = 0; attempt < 50 && replicated == null; attempt++) {
+            Thread.sleep(100);
+            replicated = cache.load(apple);
+        }
+        assertThat(replicated).isEqualTo(new Fruit(apple));
+
+        // When
+        replicaServer.stop();
+
+        // Then
+        assertThat(cache.load(apple)).isEqualTo(new Fruit(apple));
+        assertThat(cache.loadAll(List.of(apple))).containsEntry(apple, new Fruit(apple));
+
+        cache.close();
+    }
+
+    @Test
+    void readFrom_withoutNodes_shouldFail() {
+        assertThatThrownBy(() -> new RedisCache.Builder<Seed, Fruit>()
+                .keyCodec(new SeedCodec())
+                .valueCodec(new FruitCodec())
+                .redisClient(redisClient)
+                .readFrom(ReadFrom.REPLICA_PREFERRED)
+                .build())
+                .isInstanceOf(IllegalStateException.class);
+    }
+}
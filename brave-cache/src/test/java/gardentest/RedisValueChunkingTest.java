@@ -0,0 +1,200 @@
+package gardentest;
+
+import brave.cache.redis.ReactiveRedisCache;
+import brave.cache.redis.RedisCache;
+import brave.extension.RedisServerExtension;
+import garden.Fruit;
+import garden.FruitCodec;
+import garden.Seed;
+import garden.SeedCodec;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.api.StatefulRedisConnection;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import reactor.test.StepVerifier;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(classes = AppConfig.class)
+@ExtendWith({SpringExtension.class, RedisServerExtension.class})
+public class RedisValueChunkingTest {
+
+    @Autowired
+    RedisClient redisClient;
+
+    @Test
+    void largeValues_shouldBeChunkedTransparently() {
+        RedisCache<Seed, Fruit> cache = new RedisCache.Builder<Seed, Fruit>()
+                .keyCodec(new SeedCodec())
+                .valueCodec(new FruitCodec())
+                .defaultTimeToLive(Duration.ofMinutes(5))
+                .redisClient(redisClient)
+                .chunkSize(64)
+                .build();
+
+        Seed durian = new Seed("chunked durian");
+        Seed fig = new Seed("chunked fig");
+        Fruit largeDurian = new Fruit("durian".repeat(100));
+
+        // When
+        assertThat(cache.put(durian, largeDurian)).isTrue();
+        assertThat(cache.put(fig, new Fruit(fig))).isTrue();
+
+        // Then
+        assertThat(chunkKeys(durian)).hasSize(10);
+        assertThat(cache.load(durian)).isEqualTo(largeDurian);
+        assertThat(cache.loadAll(List.of(durian, fig, new Seed("chunked nothing"))))
+                .containsEntry(durian, largeDurian)
+                .containsEntry(fig, new Fruit(fig))
+                .hasSize(2);
+
+        cache.close();
+    }
+
+    @Test
+    void missingChunk_shouldBeMiss() {
+        RedisCache<Seed, Fruit> cache = new RedisCache.Builder<Seed, Fruit>()
+                .keyCodec(new SeedCodec())
+                .valueCodec(new FruitCodec())
+                .defaultTimeToLive(Duration.ofMinutes(5))
+                .redisClient(redisClient)
+                .chunkSize(64)
+                .build();
+
+        Seed jackfruit = new Seed("chunked jackfruit");
+        cache.put(jackfruit, new Fruit("jackfruit".repeat(100)));
+
+        // When
+        try (StatefulRedisConnection<String, String> connection = redisClient.connect()) {
+            connection.sync().del(chunkKeys(jackfruit).get(0));
+        }
+
+        // Then
+        assertThat(cache.load(jackfruit)).isNull();
+
+        cache.close();
+    }
+
+    @Test
+    void expireAndRemove_shouldApplyToChunks() {
+        RedisCache<Seed, Fruit> cache = new RedisCache.Builder<Seed, Fruit>()
+                .keyCodec(new SeedCodec())
+                .valueCodec(new FruitCodec())
+                .defaultTimeToLive(Duration.ofMinutes(5))
+                .redisClient(redisClient)
+                .chunkSize(64)
+                .build();
+
+        Seed papaya = new Seed("chunked papaya");
+        cache.put(papaya, new Fruit("papaya".repeat(100)));
+
+        // When
+        long inAnHour = System.currentTimeMillis() / 1000 + 3600;
+        assertThat(cache.expireAt(papaya, inAnHour)).isTrue();
+
+        // Then
+        try (StatefulRedisConnection<String, String> connection = redisClient.connect()) {
+            assertThat(chunkKeys(papaya))
+                    .hasSize(10)
+                    .allSatisfy(chunkKey -> assertThat(connection.sync().ttl(chunkKey)).isGreaterThan(Duration.ofMinutes(5).toSeconds()));
+        }
+
+        // When
+        assertThat(cache.remove(papaya)).isTrue();
+
+        // Then
+        assertThat(chunkKeys(papaya)).isEmpty();
+        assertThat(cache.load(papaya)).isNull();
+
+        cache.close();
+    }
+
+    @Test
+    void overwrite_shouldUnlinkPreviousChunks() {
+        RedisCache<Seed, Fruit> cache = new RedisCache.Builder<Seed, Fruit>()
+                .keyCodec(new SeedCodec())
+                .valueCodec(new FruitCodec())
+                .defaultTimeToLive(Duration.ofMinutes(5))
+                .redisClient(redisClient)
+                .chunkSize(64)
+                .build();
+
+        Seed lychee = new Seed("chunked lychee");
+        Fruit largeLychee = new Fruit("lychee".repeat(100));
+        cache.put(lychee, new Fruit("lychee".repeat(200)));
+        List<String> previousChunkKeys = chunkKeys(lychee);
+
+        // When
+        assertThat(cache.put(lychee, largeLychee)).isTrue();
+
+        // Then
+        assertThat(chunkKeys(lychee)).hasSize(10).doesNotContainAnyElementsOf(previousChunkKeys);
+
+        // When
+        assertThat(cache.putAll(Map.of(lychee, new Fruit("lychee".repeat(150))))).isTrue();
+        assertThat(cache.putIfNewer(lychee, largeLychee, Fruit::getGeneration)).isTrue();
+
+        // Then
+        assertThat(chunkKeys(lychee)).hasSize(10);
+        assertThat(cache.load(lychee)).isEqualTo(largeLychee);
+
+        // When the conditional writes are rejected
+        assertThat(cache.putIfNewer(lychee, new Fruit("lychee".repeat(120)), Fruit::getGeneration)).isFalse();
+        assertThat(cache.putIfAbsent(lychee, new Fruit("lychee".repeat(120)))).isFalse();
+
+        // Then
+        assertThat(chunkKeys(lychee)).hasSize(10);
+        assertThat(cache.load(lychee)).isEqualTo(largeLychee);
+
+        // When a plain value replaces the chunked one
+        assertThat(cache.put(lychee, new Fruit(lychee))).isTrue();
+
+        // Then
+        assertThat(chunkKeys(lychee)).isEmpty();
+
+        cache.close();
+    }
+
+    @Test
+    void reactive_largeValues_shouldBeChunkedTransparently() {
+        ReactiveRedisCache<Seed, Fruit> cache = new ReactiveRedisCache.Builder<Seed, Fruit>()
+                .keyCodec(new SeedCodec())
+                .valueCodec(new FruitCodec())
+                .defaultTimeToLive(Duration.ofMinutes(5))
+                .redisClient(redisClient)
+                .chunkSize(64)
+                .build();
+
+        Seed mango = new Seed("reactive chunked mango");
+        Fruit largeMango = new Fruit("mango".repeat(100));
+
+        StepVerifier.create(cache.put(mango, largeMango))
+                .expectNext(true)
+                .verifyComplete();
+
+        StepVerifier.create(cache.peek(mango))
+                .expectNext(largeMango)
+                .verifyComplete();
+
+        StepVerifier.create(cache.peekAll(List.of(mango)))
+                .expectNextMatches(keyValues -> largeMango.equals(keyValues.get(mango)))
+                .verifyComplete();
+
+        cache.close();
+    }
+
+    private List<String> chunkKeys(Seed seed) {
+        String key = StandardCharsets.UTF_8.decode(new SeedCodec().encode(seed)).toString();
+        try (StatefulRedisConnection<String, String> connection = redisClient.connect()) {
+            return connection.sync().keys(key + ":chunk:*");
+        }
+    }
+}
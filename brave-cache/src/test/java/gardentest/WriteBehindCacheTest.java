@@ -0,0 +1,116 @@
+package gardentest;
+
+import brave.cache.local.LocalCache;
+import brave.cache.writebehind.WriteBehindCache;
+import garden.Fruit;
+import garden.Seed;
+import org.cache2k.Cache2kBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class WriteBehindCacheTest {
+
+    @Test
+    void puts_shouldBeCoalescedAndWrittenInBatches() throws Exception {
+        List<Map<Seed, Fruit>> writtenBatches = new CopyOnWriteArrayList<>();
+        WriteBehindCache<Seed, Fruit> cache = new WriteBehindCache.Builder<Seed, Fruit>()
+                .name("writeBehindGarden")
+                .cache(newLocalCache("writeBehindGarden"))
+                .writer(keyValues -> writtenBatches.add(Map.copyOf(keyValues)))
+                .batchSize(2)
+                .flushInterval(Duration.ofMinutes(1))
+                .build();
+
+        Seed apple = new Seed("apple");
+        Seed banana = new Seed("banana");
+
+        // When
+        cache.put(apple, new Fruit(apple, 0));
+        cache.put(apple, new Fruit(apple, 1));
+        cache.put(banana, new Fruit(banana, 0));
+        cache.close();
+
+        // Then
+        assertThat(cache.load(apple)).isEqualTo(new Fruit(apple, 1));
+        assertThat(writtenBatches).containsExactly(Map.of(
+                apple, new Fruit(apple, 1),
+                banana, new Fruit(banana, 0)
+        ));
+    }
+
+    @Test
+    void failedBatch_shouldBeRetried() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        WriteBehindCache<Seed, Fruit> cache = new WriteBehindCache.Builder<Seed, Fruit>()
+                .name("retriedGarden")
+                .cache(newLocalCache("retriedGarden"))
+                .writer(keyValues -> {
+                    if (attempts.incrementAndGet() < 3) throw new IllegalStateException("Database is down");
+                })
+                .flushInterval(Duration.ofMillis(50))
+                .retryBackoff(Duration.ofMillis(10))
+                .build();
+
+        // When
+        cache.put(new Seed("cherry"), new Fruit("cherry"));
+        cache.close();
+
+        // Then
+        assertThat(attempts.get()).isEqualTo(3);
+        assertThat(cache.pendingWrites()).isZero();
+    }
+
+    @Test
+    void putOnFullQueue_shouldThrow_withoutCachingTheValue() throws Exception {
+        CountDownLatch writerReleased = new CountDownLatch(1);
+        WriteBehindCache<Seed, Fruit> cache = new WriteBehindCache.Builder<Seed, Fruit>()
+                .name("fullGarden")
+                .cache(newLocalCache("fullGarden"))
+                .writer(keyValues -> {
+                    try {
+                        writerReleased.await();
+                    } catch (InterruptedException inex) {
+                        Thread.currentThread().interrupt();
+                    }
+                })
+                .queueCapacity(1)
+                .batchSize(1)
+                .offerTimeout(Duration.ofMillis(50))
+                .build();
+
+        Seed durian = new Seed("durian");
+        Seed fig = new Seed("fig");
+        Seed grape = new Seed("grape");
+
+        // When the writer holds the first value and the queue the second one
+        cache.put(durian, new Fruit(durian));
+        for (int i = 0; i < 100 && cache.pendingWrites() > 0; i++) {
+            TimeUnit.MILLISECONDS.sleep(50);
+        }
+        cache.put(fig, new Fruit(fig));
+
+        // Then
+        assertThatThrownBy(() -> cache.put(grape, new Fruit(grape))).isInstanceOf(IllegalStateException.class);
+        assertThat(cache.load(grape)).isNull();
+
+        writerReleased.countDown();
+        cache.close();
+    }
+
+    private LocalCache<Seed, Fruit> newLocalCache(String name) {
+        return new LocalCache<>(Cache2kBuilder.of(Seed.class, Fruit.class)
+                .name(name)
+                .expireAfterWrite(5, TimeUnit.MINUTES)
+                .build());
+    }
+}
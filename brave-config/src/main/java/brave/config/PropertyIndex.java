@@ -0,0 +1,151 @@
+package brave.config;
+
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.EnumerablePropertySource;
+import org.springframework.core.env.PropertySource;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.WeakHashMap;
+
+/**
+ * Prefix tree of the property names of an environment, split on dots, so that looking up
+ * the properties under a path costs the number of matching properties rather than all of them.
+ * <br>
+ * The tree is built on first use and rebuilt when the property sources of the environment are added, removed or replaced.
+ * Properties added to an existing mutable source are only seen after {@link #invalidate()}.
+ * Values are always read from the environment, so the precedence of the property sources applies.
+ * <br>
+ * The index only holds its environment weakly, so that the shared index of a closed context is released with its environment.
+ */
+public class PropertyIndex {
+
+    private static final Map<ConfigurableEnvironment, PropertyIndex> SHARED = new WeakHashMap<>();
+
+    private final WeakReference<ConfigurableEnvironment> environmentRef;
+    private volatile Snapshot snapshot;
+
+    public PropertyIndex(ConfigurableEnvironment environment) {
+        this.environmentRef = new WeakReference<>(environment);
+    }
+
+    /**
+     * @return The index shared by all the callers of the same {@param environment}
+     */
+    public static PropertyIndex of(ConfigurableEnvironment environment) {
+        synchronized (SHARED) {
+            return SHARED.computeIfAbsent(environment, PropertyIndex::new);
+        }
+    }
+
+    /**
+     * @return The properties whose name starts with <code>{@param path}.</code>, keyed by the rest of their name
+     */
+    public Properties getProperties(String path) {
+        ConfigurableEnvironment environment = environment();
+        Properties properties = new Properties();
+        Node node = snapshot(environment).root;
+        for (String segment : path.split("\\.")) {
+            node = node.children.get(segment);
+            if (node == null) return properties;
+        }
+
+        List<String> propertyNames = new ArrayList<>();
+        for (Node child : node.children.values()) {
+            child.collect(propertyNames);
+        }
+
+        int prefixLength = path.length() + 1;
+        for (String propertyName : propertyNames) {
+            String value = environment.getProperty(propertyName);
+            if (value != null) {
+                properties.put(propertyName.substring(prefixLength), value);
+            }
+        }
+        return properties;
+    }
+
+    /**
+     * Rebuild the tree on next lookup, e.g. after a refresh of the environment.
+     */
+    public void invalidate() {
+        snapshot = null;
+    }
+
+    private ConfigurableEnvironment environment() {
+        ConfigurableEnvironment environment = environmentRef.get();
+        if (environment == null) {
+            throw new IllegalStateException("The environment of this property index was garbage collected");
+        }
+        return environment;
+    }
+
+    private Snapshot snapshot(ConfigurableEnvironment environment) {
+        List<Object> fingerprint = fingerprint(environment);
+        Snapshot current = snapshot;
+        if (current != null && current.fingerprint.equals(fingerprint)) return current;
+
+        synchronized (this) {
+            current = snapshot;
+            if (current != null && current.fingerprint.equals(fingerprint)) return current;
+
+            current = new Snapshot(fingerprint, build(environment));
+            snapshot = current;
+            return current;
+        }
+    }
+
+    /**
+     * @return The identities of the property sources and of their underlying sources, in order
+     */
+    private static List<Object> fingerprint(ConfigurableEnvironment environment) {
+        List<Object> fingerprint = new ArrayList<>();
+        for (PropertySource<?> propertySource : environment.getPropertySources()) {
+            fingerprint.add(System.identityHashCode(propertySource));
+            fingerprint.add(System.identityHashCode(propertySource.getSource()));
+        }
+        return fingerprint;
+    }
+
+    private static Node build(ConfigurableEnvironment environment) {
+        Node root = new Node();
+        for (PropertySource<?> propertySource : environment.getPropertySources()) {
+            if (!(propertySource instanceof EnumerablePropertySource)) continue;
+
+            for (String propertyName : ((EnumerablePropertySource<?>) propertySource).getPropertyNames()) {
+                Node node = root;
+                for (String segment : propertyName.split("\\.")) {
+                    node = node.children.computeIfAbsent(segment, s -> new Node());
+                }
+                node.propertyName = propertyName;
+            }
+        }
+        return root;
+    }
+
+    private static class Snapshot {
+        final List<Object> fingerprint;
+        final Node root;
+
+        Snapshot(List<Object> fingerprint, Node root) {
+            this.fingerprint = fingerprint;
+            this.root = root;
+        }
+    }
+
+    private static class Node {
+        final Map<String, Node> children = new HashMap<>();
+        String propertyName;
+
+        void collect(List<String> propertyNames) {
+            if (propertyName != null) propertyNames.add(propertyName);
+            for (Node child : children.values()) {
+                child.collect(propertyNames);
+            }
+        }
+    }
+}
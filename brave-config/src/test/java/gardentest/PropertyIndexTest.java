@@ -0,0 +1,67 @@
+package gardentest;
+
+import brave.config.PropertyIndex;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.StandardEnvironment;
+
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PropertyIndexTest {
+
+    @Test
+    void getProperties_shouldMatchWholeSegmentsWithPrecedence() {
+        StandardEnvironment environment = new StandardEnvironment();
+        environment.getPropertySources().addFirst(new MapPropertySource("low", Map.of(
+                "garden.watcher.group.id", "low",
+                "garden.watcher.max.poll.records", "100")));
+        environment.getPropertySources().addFirst(new MapPropertySource("high", Map.of(
+                "garden.watcher.group.id", "high",
+                "garden.watchers.group.id", "other")));
+
+        Properties properties = PropertyIndex.of(environment).getProperties("garden.watcher");
+
+        assertThat(properties).containsOnly(
+                Map.entry("group.id", "high"),
+                Map.entry("max.poll.records", "100"));
+        assertThat(PropertyIndex.of(environment).getProperties("garden.nothing")).isEmpty();
+    }
+
+    @Test
+    void getProperties_shouldFollowPropertySourceChanges() {
+        StandardEnvironment environment = new StandardEnvironment();
+        Map<String, Object> mutableSource = new HashMap<>(Map.of("garden.repo.name", "apple"));
+        environment.getPropertySources().addFirst(new MapPropertySource("mutable", mutableSource));
+        PropertyIndex index = PropertyIndex.of(environment);
+        assertThat(index.getProperties("garden.repo")).hasSize(1);
+
+        // Added source is picked up
+        environment.getPropertySources().addFirst(new MapPropertySource("added", Map.of("garden.repo.size", "3")));
+        assertThat(index.getProperties("garden.repo")).hasSize(2);
+
+        // Mutated source requires an invalidation
+        mutableSource.put("garden.repo.color", "red");
+        index.invalidate();
+        assertThat(index.getProperties("garden.repo")).containsEntry("color", "red").hasSize(3);
+    }
+
+    @Test
+    void sharedIndex_shouldNotRetainItsEnvironment() throws InterruptedException {
+        StandardEnvironment environment = new StandardEnvironment();
+        PropertyIndex.of(environment).getProperties("garden.repo");
+        WeakReference<StandardEnvironment> environmentRef = new WeakReference<>(environment);
+
+        environment = null;
+        for (int i = 0; i < 50 && environmentRef.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+
+        assertThat(environmentRef.get()).isNull();
+    }
+}
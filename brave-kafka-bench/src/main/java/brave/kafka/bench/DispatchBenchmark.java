@@ -0,0 +1,81 @@
+package brave.kafka.bench;
+
+import brave.kafka.RecordHandler;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per record cost of calling a handler method, reflectively as the consumers did before,
+ * through the {@link RecordHandler} bound at startup, and directly as a lower bound.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DispatchBenchmark {
+
+    private Watcher watcher;
+    private Method method;
+    private Method methodWithConsumer;
+    private RecordHandler handler;
+    private RecordHandler.WithConsumer handlerWithConsumer;
+    private ConsumerRecord<String, String> record;
+
+    @Setup
+    public void setup() throws NoSuchMethodException {
+        watcher = new Watcher();
+        method = Watcher.class.getMethod("handle", ConsumerRecord.class);
+        methodWithConsumer = Watcher.class.getMethod("handle", ConsumerRecord.class, Object.class);
+        handler = RecordHandler.bind(watcher, method);
+        handlerWithConsumer = RecordHandler.bindWithConsumer(watcher, methodWithConsumer);
+        record = new ConsumerRecord<>("bench", 0, 42, "key", "value");
+    }
+
+    @Benchmark
+    public long reflective() throws Exception {
+        method.invoke(watcher, new Object[]{record});
+        return watcher.offsets;
+    }
+
+    @Benchmark
+    public long reflectiveWithConsumer() throws Exception {
+        methodWithConsumer.invoke(watcher, new Object[]{record, watcher});
+        return watcher.offsets;
+    }
+
+    @Benchmark
+    public long bound() throws Throwable {
+        handler.handle(record);
+        return watcher.offsets;
+    }
+
+    @Benchmark
+    public long boundWithConsumer() throws Throwable {
+        handlerWithConsumer.handle(record, watcher);
+        return watcher.offsets;
+    }
+
+    @Benchmark
+    public long direct() {
+        watcher.handle(record);
+        return watcher.offsets;
+    }
+
+    public static class Watcher {
+
+        long offsets;
+
+        public void handle(ConsumerRecord<String, String> record) {
+            offsets += record.offset();
+        }
+
+        public void handle(ConsumerRecord<String, String> record, Object consumer) {
+            offsets += record.offset();
+        }
+    }
+}
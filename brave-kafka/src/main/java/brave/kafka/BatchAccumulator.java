@@ -0,0 +1,130 @@
+package brave.kafka;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.common.TopicPartition;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Buffers the records of a batch handler across polls, until {@code minRecords} records are buffered
+ * or the oldest one waited {@code maxWait}, then hands them out in batches of at most {@code maxRecords},
+ * in order of each partition. With the defaults, every poll is a batch as is.
+ * <br>
+ * At most {@code minRecords} minus one plus one poll of records are buffered, as the ready batches are drained after each poll.
+ * Not thread-safe, used by the poll thread only.
+ */
+class BatchAccumulator<K, V> {
+
+    private final int minRecords;
+    private final int maxRecords;
+    private final long maxWaitNanos;
+    private final Map<TopicPartition, Deque<ConsumerRecord<K, V>>> buffered = new LinkedHashMap<>();
+    private int count;
+    private long oldestNanos;
+
+    /**
+     * @param minRecords 1 or less to hand out every poll
+     * @param maxRecords 0 or less for batches of any size
+     */
+    BatchAccumulator(int minRecords, int maxRecords, Duration maxWait) {
+        this.minRecords = Math.max(1, minRecords);
+        this.maxRecords = maxRecords > 0 ? maxRecords : Integer.MAX_VALUE;
+        this.maxWaitNanos = maxWait.toNanos();
+    }
+
+    void add(ConsumerRecords<K, V> consumerRecords) {
+        if (consumerRecords.isEmpty()) return;
+
+        if (count == 0) oldestNanos = System.nanoTime();
+        for (TopicPartition partition : consumerRecords.partitions()) {
+            buffered.computeIfAbsent(partition, p -> new ArrayDeque<>()).addAll(consumerRecords.records(partition));
+        }
+        count += consumerRecords.count();
+    }
+
+    boolean isReady() {
+        return count >= minRecords || (count > 0 && System.nanoTime() - oldestNanos >= maxWaitNanos);
+    }
+
+    boolean isEmpty() {
+        return count == 0;
+    }
+
+    boolean isEmpty(Collection<TopicPartition> partitions) {
+        return partitions.stream().noneMatch(buffered::containsKey);
+    }
+
+    /**
+     * @return The {@param pollingTimeout} shortened to the time left before the buffered records are due
+     */
+    Duration pollingTimeout(Duration pollingTimeout) {
+        if (count == 0) return pollingTimeout;
+
+        long remainingNanos = maxWaitNanos - (System.nanoTime() - oldestNanos);
+        return Duration.ofNanos(Math.max(0, Math.min(remainingNanos, pollingTimeout.toNanos())));
+    }
+
+    /**
+     * @return The next batch of at most {@code maxRecords} records, the remaining ones stay due as soon as the oldest was
+     */
+    ConsumerRecords<K, V> drain() {
+        return drain(partition -> true);
+    }
+
+    /**
+     * @return The next batch of the records of {@param partitions} only, e.g. before they are revoked
+     */
+    ConsumerRecords<K, V> drain(Collection<TopicPartition> partitions) {
+        return drain(partitions::contains);
+    }
+
+    /**
+     * Drop the records of {@param partitions}, e.g. when they were lost to another consumer.
+     */
+    void discard(Collection<TopicPartition> partitions) {
+        for (TopicPartition partition : partitions) {
+            Deque<ConsumerRecord<K, V>> records = buffered.remove(partition);
+            if (records != null) count -= records.size();
+        }
+    }
+
+    /**
+     * Drop all the records, e.g. when the consumer stops after a failure.
+     */
+    void discard() {
+        buffered.clear();
+        count = 0;
+    }
+
+    private ConsumerRecords<K, V> drain(Predicate<TopicPartition> drained) {
+        Map<TopicPartition, List<ConsumerRecord<K, V>>> batch = new LinkedHashMap<>();
+        int batchCount = 0;
+        Iterator<Map.Entry<TopicPartition, Deque<ConsumerRecord<K, V>>>> partitions = buffered.entrySet().iterator();
+        while (partitions.hasNext() && batchCount < maxRecords) {
+            Map.Entry<TopicPartition, Deque<ConsumerRecord<K, V>>> partition = partitions.next();
+            if (!drained.test(partition.getKey())) continue;
+
+            Deque<ConsumerRecord<K, V>> records = partition.getValue();
+            List<ConsumerRecord<K, V>> partitionBatch = new ArrayList<>(Math.min(records.size(), maxRecords - batchCount));
+            while (!records.isEmpty() && batchCount < maxRecords) {
+                partitionBatch.add(records.poll());
+                batchCount++;
+            }
+            batch.put(partition.getKey(), partitionBatch);
+            if (records.isEmpty()) partitions.remove();
+        }
+
+        count -= batchCount;
+        return new ConsumerRecords<>(batch);
+    }
+}
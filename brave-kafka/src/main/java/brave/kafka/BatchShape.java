@@ -0,0 +1,109 @@
+package brave.kafka;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.common.TopicPartition;
+
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The first parameter of a batch handler, built from the polled {@link ConsumerRecords}.
+ */
+enum BatchShape {
+
+    /**
+     * <code>ConsumerRecords&lt;K, V&gt;</code> as polled
+     */
+    RECORDS {
+        @Override
+        Object argument(ConsumerRecords<?, ?> consumerRecords) {
+            return consumerRecords;
+        }
+    },
+
+    /**
+     * <code>List&lt;ConsumerRecord&lt;K, V&gt;&gt;</code> in order of each partition
+     */
+    RECORD_LIST {
+        @Override
+        Object argument(ConsumerRecords<?, ?> consumerRecords) {
+            List<ConsumerRecord<?, ?>> records = new ArrayList<>(consumerRecords.count());
+            consumerRecords.forEach(records::add);
+            return records;
+        }
+    },
+
+    /**
+     * <code>List&lt;V&gt;</code> in order of each partition
+     */
+    VALUE_LIST {
+        @Override
+        Object argument(ConsumerRecords<?, ?> consumerRecords) {
+            List<Object> values = new ArrayList<>(consumerRecords.count());
+            consumerRecords.forEach(record -> values.add(record.value()));
+            return values;
+        }
+    },
+
+    /**
+     * <code>Map&lt;K, V&gt;</code> of the latest value of each key, ordered by their latest record, superseded values are dropped.
+     * A latest null value, i.e. a tombstone, is kept. Records without key are compacted together under the null key.
+     */
+    LATEST_VALUE_BY_KEY {
+        @Override
+        Object argument(ConsumerRecords<?, ?> consumerRecords) {
+            Map<Object, Object> latestValues = new LinkedHashMap<>(2 * consumerRecords.count());
+            consumerRecords.forEach(record -> {
+                latestValues.remove(record.key());
+                latestValues.put(record.key(), record.value());
+            });
+            return latestValues;
+        }
+    },
+
+    /**
+     * <code>Map&lt;TopicPartition, List&lt;ConsumerRecord&lt;K, V&gt;&gt;&gt;</code> of the records of each partition
+     */
+    PARTITION_RECORDS {
+        @Override
+        Object argument(ConsumerRecords<?, ?> consumerRecords) {
+            Map<TopicPartition, List<? extends ConsumerRecord<?, ?>>> partitionRecords = new LinkedHashMap<>();
+            for (TopicPartition partition : consumerRecords.partitions()) {
+                partitionRecords.put(partition, consumerRecords.records(partition));
+            }
+            return partitionRecords;
+        }
+    };
+
+    abstract Object argument(ConsumerRecords<?, ?> consumerRecords);
+
+    /**
+     * @return The shape of a batch handler taking {@param parameterType}, null when it is not a batch
+     */
+    static BatchShape of(Type parameterType) {
+        Class<?> rawType = rawType(parameterType);
+        if (rawType == ConsumerRecords.class) return RECORDS;
+
+        Type[] typeArguments = parameterType instanceof ParameterizedType
+                ? ((ParameterizedType) parameterType).getActualTypeArguments()
+                : new Type[0];
+        if (rawType == List.class) {
+            return typeArguments.length == 1 && rawType(typeArguments[0]) == ConsumerRecord.class ? RECORD_LIST : VALUE_LIST;
+        }
+        if (rawType == Map.class) {
+            return typeArguments.length == 2 && rawType(typeArguments[0]) == TopicPartition.class ? PARTITION_RECORDS : LATEST_VALUE_BY_KEY;
+        }
+        return null;
+    }
+
+    private static Class<?> rawType(Type type) {
+        if (type instanceof Class) return (Class<?>) type;
+        if (type instanceof ParameterizedType) return rawType(((ParameterizedType) type).getRawType());
+        return Object.class;
+    }
+}
@@ -1,7 +1,16 @@
 package brave.kafka;
 
+import brave.kafka.metric.ConsumerInstrumentation;
+import brave.kafka.metric.MetricsConsumerInstrumentation;
+import brave.metric.MetricsCollector;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import org.apache.kafka.clients.consumer.*;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
 import org.apache.kafka.common.serialization.Deserializer;
 import org.springframework.boot.actuate.health.HealthIndicator;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
@@ -9,9 +18,11 @@ import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.lang.reflect.Method;
 import java.time.Duration;
 import java.util.*;
+import java.util.stream.Collectors;
 
 import static brave.kafka.PropertyUtil.isEmpty;
 import static brave.kafka.ReflectionUtil.name;
@@ -25,9 +36,16 @@ import static org.apache.kafka.clients.consumer.ConsumerConfig.*;
 @RequiredArgsConstructor
 class ConsumerAnnotationProcessor {
 
+    private static final int MAXIMUM_METRICS_PER_HANDLER = 32;
+    private static final Duration RETRY_PRODUCER_CLOSE_TIMEOUT = Duration.ofSeconds(10);
+
     private final KafkaConfig config;
     private final KafkaConfigResolver resolver;
     private final Map<String, SimpleConsumerGroup<?, ?>> consumerGroups = new LinkedHashMap<>();
+    /**
+     * Retry producers by their properties, shared by the handlers of the same cluster
+     */
+    private final Map<Properties, Producer<byte[], byte[]>> retryProducers = new HashMap<>();
 
     @PostConstruct
     void initialize() {
@@ -45,6 +63,16 @@ class ConsumerAnnotationProcessor {
         consumerGroups.values().forEach(SimpleConsumerGroup::start);
     }
 
+    /**
+     * Stop the consumers before closing the retry producers they publish with.
+     */
+    @PreDestroy
+    void destroy() {
+        consumerGroups.values().forEach(SimpleConsumerGroup::stop);
+        retryProducers.values().forEach(producer -> producer.close(RETRY_PRODUCER_CLOSE_TIMEOUT));
+        retryProducers.clear();
+    }
+
     class ConsumersBuilder {
 
         private final Object target;
@@ -66,10 +94,7 @@ class ConsumerAnnotationProcessor {
                 Consumers.Handler handlerAnnotation = method.getAnnotation(Consumers.Handler.class);
                 if (handlerAnnotation == null) continue;
 
-                String consumerGroupName = signature(method);
-                SimpleConsumerGroup<Object, Object> consumerGroup = getConsumerGroup(method, handlerAnnotation);
-                consumerGroups.put(consumerGroupName, consumerGroup);
-
+                putConsumerGroups(method, handlerAnnotation, consumerGroups);
             }
             return consumerGroups;
         }
@@ -115,10 +140,19 @@ class ConsumerAnnotationProcessor {
                 props.put(SESSION_TIMEOUT_MS_CONFIG, braveConsumers.sessionTimeoutMillis());
             }
 
+            if (isEmpty(props, PARTITION_ASSIGNMENT_STRATEGY_CONFIG)) {
+                props.setProperty(PARTITION_ASSIGNMENT_STRATEGY_CONFIG, Arrays.stream(braveConsumers.partitionAssignmentStrategy())
+                        .map(Class::getName)
+                        .collect(Collectors.joining(",")));
+            }
+
             return props;
         }
 
-        private SimpleConsumerGroup<Object, Object> getConsumerGroup(Method method, Consumers.Handler recordConsumer) {
+        /**
+         * Put the consumer group of the handler {@param method}, and the consumer groups of its retry topics if any.
+         */
+        private void putConsumerGroups(Method method, Consumers.Handler recordConsumer, Map<String, SimpleConsumerGroup<?, ?>> consumerGroups) {
             Consumers.Handler.Config cfg = getRecordConsumerConfig(recordConsumer);
 
             if (method.getParameterCount() == 0 || method.getParameterCount() > 2) {
@@ -127,12 +161,13 @@ class ConsumerAnnotationProcessor {
             }
 
             Class<?> firstParamType = method.getParameterTypes()[0];
-            if (firstParamType != ConsumerRecords.class && firstParamType != ConsumerRecord.class) {
+            BatchShape batchShape = BatchShape.of(method.getGenericParameterTypes()[0]);
+            if (batchShape == null && firstParamType != ConsumerRecord.class) {
                 throw new IllegalStateException(
                         "Unrecognized record handler " + name(method) + " with first param as " + firstParamType.getName());
             }
 
-            boolean isBatchProcessing = firstParamType == ConsumerRecords.class;
+            boolean isBatchProcessing = batchShape != null;
             boolean injectConsumer = false;
 
             if (method.getParameterCount() == 2) {
@@ -144,27 +179,157 @@ class ConsumerAnnotationProcessor {
                 injectConsumer = true;
             }
 
+            Properties consumerProperties = properties;
+            int handoffCapacity = 0;
+            if (cfg.getConcurrency() > 1 || cfg.getHandoffCapacity() > 0) {
+                if (cfg.getConcurrency() > 1 && isBatchProcessing) {
+                    throw new IllegalStateException(
+                            "Record handler " + name(method) + " with concurrency must take a single ConsumerRecord");
+                }
+                if (injectConsumer) {
+                    throw new IllegalStateException(
+                            "Record handler " + name(method) + " with a handoff cannot take the Consumer, it is not thread-safe");
+                }
+
+                handoffCapacity = cfg.getHandoffCapacity() > 0
+                        ? cfg.getHandoffCapacity()
+                        : 2 * parseInt(String.valueOf(properties.get(MAX_POLL_RECORDS_CONFIG)));
+            }
+
+            RetryRouter retryRouter = null;
+            Deserializer<Object> keyDeserializer = cfg.getKeyDeserializer();
+            Deserializer<Object> valueDeserializer = cfg.getValueDeserializer();
+            if (!cfg.getRetryDelays().isEmpty() || isNotBlank(cfg.getDeadLetterTopic())) {
+                if (isBatchProcessing || injectConsumer) {
+                    throw new IllegalStateException(
+                            "Record handler " + name(method) + " with retries must take a single ConsumerRecord");
+                }
+
+                retryRouter = new RetryRouter(getRetryProducer(), cfg.getRetryDelays(), cfg.getDeadLetterTopic());
+                // Records are deserialized by the dispatcher, to publish them again as they were consumed
+                keyDeserializer = rawDeserializer();
+                valueDeserializer = rawDeserializer();
+            }
+
+            boolean accumulating = cfg.getMinBatchRecords() > 1 || cfg.getMaxBatchRecords() > 0;
+            if (accumulating && (!isBatchProcessing || injectConsumer)) {
+                throw new IllegalStateException(
+                        "Record handler " + name(method) + " accumulating batches must take a batch without the Consumer");
+            }
+
+            if (cfg.getMaxThreadsCount() > 0 && cfg.getMaxThreadsCount() < Math.max(1, cfg.getMinThreadsCount())) {
+                throw new IllegalStateException(
+                        "Record handler " + name(method) + " scaling threads must have max-threads-count of at least min-threads-count");
+            }
+
+            boolean managedCommit = handoffCapacity > 0 || retryRouter != null || accumulating
+                    || cfg.getCommit() == Consumers.Handler.Commit.MANAGED;
+            if (managedCommit) {
+                // Offsets are committed once processed, not once polled
+                consumerProperties = new Properties();
+                consumerProperties.putAll(properties);
+                consumerProperties.put(ENABLE_AUTO_COMMIT_CONFIG, false);
+            }
+
+            ConsumerInstrumentation instrumentation = setupInstrumentation(method, cfg);
+            ConsumerRecordsDispatcher<Object, Object> recordProcessor = ConsumerRecordsDispatcher.builder()
+                    .ignoreException(cfg.isIgnoreException())
+                    .isBatchProcessing(isBatchProcessing)
+                    .batchShape(batchShape)
+                    .injectConsumer(injectConsumer)
+                    .target(target)
+                    .method(method)
+                    .retryRouter(retryRouter)
+                    .keyDeserializer(cfg.getKeyDeserializer())
+                    .valueDeserializer(cfg.getValueDeserializer())
+                    .instrumentation(instrumentation)
+                    .build();
+
+            Properties handlerProperties = consumerProperties;
+            Deserializer<Object> handlerKeyDeserializer = keyDeserializer;
+            Deserializer<Object> handlerValueDeserializer = valueDeserializer;
             SimpleConsumerGroup<Object, Object> consumerGroup = SimpleConsumerGroup.builder()
-                    .consumerSupplier(() -> new KafkaConsumer<>(properties, cfg.getKeyDeserializer(), cfg.getValueDeserializer()))
+                    .consumerSupplier(() -> new KafkaConsumer<>(handlerProperties, handlerKeyDeserializer, handlerValueDeserializer))
                     .topics(cfg.getTopics())
                     .threadsCount(cfg.getThreadsCount())
                     .pollingTimeout(cfg.getPollingTimeout())
-                    .recordProcessor(ConsumerRecordsDispatcher.builder()
-                            .ignoreException(cfg.isIgnoreException())
-                            .isBatchProcessing(isBatchProcessing)
-                            .injectConsumer(injectConsumer)
-                            .target(target)
-                            .method(method)
-                            .build()
-                    )
+                    .concurrency(cfg.getConcurrency())
+                    .ordering(cfg.getOrdering())
+                    .handoffCapacity(handoffCapacity)
+                    .managedCommit(managedCommit)
+                    .commitRecords(cfg.getCommitRecords())
+                    .commitInterval(cfg.getCommitInterval())
+                    .minBatchRecords(cfg.getMinBatchRecords())
+                    .maxBatchRecords(cfg.getMaxBatchRecords())
+                    .maxBatchWait(cfg.getMaxBatchWait())
+                    .minThreadsCount(cfg.getMinThreadsCount())
+                    .maxThreadsCount(cfg.getMaxThreadsCount())
+                    .scaleCooldown(cfg.getScaleCooldown())
+                    .scaleUpLag(cfg.getScaleUpLag())
+                    .instrumentation(instrumentation)
+                    .partitionListener(target instanceof PartitionListener ? (PartitionListener) target : PartitionListener.NOOP)
+                    .recordProcessor(recordProcessor)
                     .build();
 
             if (cfg.isReportHealthCheck()) {
                 ConsumerAnnotationProcessor.this.config.registerBean(signature(method), (HealthIndicator) consumerGroup::health);
             }
+            consumerGroups.put(signature(method), consumerGroup);
+
+            for (int attempt = 1; retryRouter != null && attempt <= retryRouter.retryTiers(); attempt++) {
+                int retryAttempt = attempt;
+                Properties retryProperties = new Properties();
+                retryProperties.putAll(handlerProperties);
+                retryProperties.setProperty(GROUP_ID_CONFIG, properties.getProperty(GROUP_ID_CONFIG) + ".retry." + attempt);
+                // Retry topics may be created after the consumer subscribed, e.g. by the first failure
+                retryProperties.setProperty(AUTO_OFFSET_RESET_CONFIG, "earliest");
+
+                SimpleConsumerGroup<Object, Object> retryGroup = SimpleConsumerGroup.builder()
+                        .consumerSupplier(() -> new KafkaConsumer<>(retryProperties, handlerKeyDeserializer, handlerValueDeserializer))
+                        .topics(cfg.getTopics().stream().map(topic -> RetryRouter.retryTopic(topic, retryAttempt)).collect(Collectors.toList()))
+                        .threadsCount(1)
+                        .pollingTimeout(cfg.getPollingTimeout())
+                        .managedCommit(true)
+                        .commitRecords(cfg.getCommitRecords())
+                        .commitInterval(cfg.getCommitInterval())
+                        .delayed(true)
+                        .recordProcessor(recordProcessor)
+                        .build();
+                consumerGroups.put(signature(method) + ".retry." + attempt, retryGroup);
+            }
+        }
+
+        private Producer<byte[], byte[]> getRetryProducer() {
+            Properties producerProperties = new Properties();
+            properties.forEach((name, value) -> {
+                if (ProducerConfig.configNames().contains(String.valueOf(name))) producerProperties.put(name, value);
+            });
+            producerProperties.remove(ProducerConfig.CLIENT_ID_CONFIG);
+            producerProperties.put(ProducerConfig.ACKS_CONFIG, "all");
+            return retryProducers.computeIfAbsent(producerProperties,
+                    props -> new KafkaProducer<>(props, new ByteArraySerializer(), new ByteArraySerializer()));
+        }
+
+        @SuppressWarnings("unchecked")
+        private Deserializer<Object> rawDeserializer() {
+            return (Deserializer<Object>) (Deserializer<?>) new ByteArrayDeserializer();
+        }
+    }
+
+    private ConsumerInstrumentation setupInstrumentation(Method method, Consumers.Handler.Config cfg) {
+        if (!cfg.isMetrics()) return ConsumerInstrumentation.NOOP;
 
-            return consumerGroup;
+        MetricsCollector metricsCollector = config.getContext().getBeanProvider(MetricsCollector.class).getIfAvailable();
+        if (metricsCollector == null) {
+            MeterRegistry meterRegistry = config.getContext().getBeanProvider(MeterRegistry.class).getIfAvailable();
+            if (meterRegistry == null) {
+                throw new IllegalStateException("Metrics of record handler " + name(method) + " require either a "
+                        + MetricsCollector.class.getName() + " or a " + MeterRegistry.class.getName());
+            }
+            metricsCollector = new MetricsCollector(meterRegistry, MAXIMUM_METRICS_PER_HANDLER);
         }
+
+        return new MetricsConsumerInstrumentation(metricsCollector, signature(method));
     }
 
     private Consumers.Handler.Config getRecordConsumerConfig(Consumers.Handler recordConsumer) {
@@ -205,6 +370,70 @@ class ConsumerAnnotationProcessor {
                 ? resolver.getInstance(recordConsumer.valueDeserializer())
                 : resolver.getInstance(props.getProperty("value-deserializer"), Deserializer.class);
 
+        int concurrency = isEmpty(props, "concurrency")
+                ? recordConsumer.concurrency()
+                : parseInt(props.getProperty("concurrency"));
+
+        Consumers.Handler.Ordering ordering = isEmpty(props, "ordering")
+                ? recordConsumer.ordering()
+                : Consumers.Handler.Ordering.valueOf(props.getProperty("ordering").toUpperCase());
+
+        int handoffCapacity = isEmpty(props, "handoff-capacity")
+                ? recordConsumer.handoffCapacity()
+                : parseInt(props.getProperty("handoff-capacity"));
+
+        boolean metrics = isEmpty(props, "metrics")
+                ? Boolean.parseBoolean(resolver.getString(recordConsumer.metrics()))
+                : Boolean.parseBoolean(props.getProperty("metrics"));
+
+        Consumers.Handler.Commit commit = isEmpty(props, "commit")
+                ? recordConsumer.commit()
+                : Consumers.Handler.Commit.valueOf(props.getProperty("commit").toUpperCase());
+
+        int commitRecords = isEmpty(props, "commit-records")
+                ? recordConsumer.commitRecords()
+                : parseInt(props.getProperty("commit-records"));
+
+        Duration commitInterval = isEmpty(props, "commit-interval")
+                ? Duration.ofMillis(recordConsumer.commitIntervalMillis())
+                : Duration.parse(props.getProperty("commit-interval"));
+
+        List<Duration> retryDelays = isEmpty(props, "retry-delays")
+                ? Arrays.stream(recordConsumer.retryDelaysMillis()).mapToObj(Duration::ofMillis).collect(Collectors.toList())
+                : Arrays.stream(props.getProperty("retry-delays").split(",")).map(String::trim).map(Duration::parse).collect(Collectors.toList());
+
+        String deadLetterTopic = isEmpty(props, "dead-letter-topic")
+                ? isBlank(recordConsumer.deadLetterTopic()) ? "" : resolver.getString(recordConsumer.deadLetterTopic())
+                : props.getProperty("dead-letter-topic");
+
+        int minBatchRecords = isEmpty(props, "min-batch-records")
+                ? recordConsumer.minBatchRecords()
+                : parseInt(props.getProperty("min-batch-records"));
+
+        int maxBatchRecords = isEmpty(props, "max-batch-records")
+                ? recordConsumer.maxBatchRecords()
+                : parseInt(props.getProperty("max-batch-records"));
+
+        Duration maxBatchWait = isEmpty(props, "max-batch-wait")
+                ? Duration.ofMillis(recordConsumer.maxBatchWaitMillis())
+                : Duration.parse(props.getProperty("max-batch-wait"));
+
+        int minThreadsCount = isEmpty(props, "min-threads-count")
+                ? recordConsumer.minThreadsCount()
+                : parseInt(props.getProperty("min-threads-count"));
+
+        int maxThreadsCount = isEmpty(props, "max-threads-count")
+                ? recordConsumer.maxThreadsCount()
+                : parseInt(props.getProperty("max-threads-count"));
+
+        Duration scaleCooldown = isEmpty(props, "scale-cooldown")
+                ? Duration.ofMillis(recordConsumer.scaleCooldownMillis())
+                : Duration.parse(props.getProperty("scale-cooldown"));
+
+        long scaleUpLag = isEmpty(props, "scale-up-lag")
+                ? recordConsumer.scaleUpLag()
+                : Long.parseLong(props.getProperty("scale-up-lag"));
+
         return Consumers.Handler.Config.builder()
                 .topics(Arrays.asList(topics))
                 .threadsCount(threadsCount)
@@ -213,6 +442,22 @@ class ConsumerAnnotationProcessor {
                 .reportHealthCheck(reportHealthCheck)
                 .keyDeserializer(keyDeserializer)
                 .valueDeserializer(valueDeserializer)
+                .concurrency(concurrency)
+                .ordering(ordering)
+                .handoffCapacity(handoffCapacity)
+                .metrics(metrics)
+                .commit(commit)
+                .commitRecords(commitRecords)
+                .commitInterval(commitInterval)
+                .retryDelays(retryDelays)
+                .deadLetterTopic(deadLetterTopic)
+                .minBatchRecords(minBatchRecords)
+                .maxBatchRecords(maxBatchRecords)
+                .maxBatchWait(maxBatchWait)
+                .minThreadsCount(minThreadsCount)
+                .maxThreadsCount(maxThreadsCount)
+                .scaleCooldown(scaleCooldown)
+                .scaleUpLag(scaleUpLag)
                 .build();
     }
 }
@@ -1,5 +1,6 @@
 package brave.kafka;
 
+import brave.kafka.metric.ConsumerInstrumentation;
 import lombok.Builder;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
@@ -7,41 +8,65 @@ import org.apache.kafka.clients.consumer.Consumer;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.Deserializer;
 
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.List;
-
-import static brave.kafka.ReflectionUtil.name;
+import java.util.stream.Collectors;
 
 @Slf4j
-@Builder
 class ConsumerRecordsDispatcher<K, V> {
 
     private final boolean ignoreException;
     private final boolean isBatchProcessing;
+    private final BatchShape batchShape;
     private final boolean injectConsumer;
-    private final Object target;
-    private final Method method;
+    private final RecordHandler handler;
+    private final RecordHandler.WithConsumer handlerWithConsumer;
+    private final RetryRouter retryRouter;
+    private final Deserializer<Object> keyDeserializer;
+    private final Deserializer<Object> valueDeserializer;
+    private final ConsumerInstrumentation instrumentation;
+
+    /**
+     * Binds the handler {@param method} of {@param target} once, see {@link RecordHandler}.
+     * With a {@param retryRouter}, the records are consumed raw and deserialized here, so that a failed record,
+     * including one failing to deserialize, can be published again as is.
+     */
+    @Builder
+    ConsumerRecordsDispatcher(boolean ignoreException, boolean isBatchProcessing, BatchShape batchShape, boolean injectConsumer,
+                              Object target, Method method, RetryRouter retryRouter,
+                              Deserializer<Object> keyDeserializer, Deserializer<Object> valueDeserializer,
+                              ConsumerInstrumentation instrumentation) {
+        this.ignoreException = ignoreException;
+        this.isBatchProcessing = isBatchProcessing;
+        this.batchShape = batchShape == null ? BatchShape.RECORDS : batchShape;
+        this.injectConsumer = injectConsumer;
+        this.handler = injectConsumer ? null : RecordHandler.bind(target, method);
+        this.handlerWithConsumer = injectConsumer ? RecordHandler.bindWithConsumer(target, method) : null;
+        this.retryRouter = retryRouter;
+        this.keyDeserializer = keyDeserializer;
+        this.valueDeserializer = valueDeserializer;
+        this.instrumentation = instrumentation == null ? ConsumerInstrumentation.NOOP : instrumentation;
+    }
 
     @SneakyThrows
     void process(ConsumerRecords<K, V> consumerRecords, Consumer<K, V> consumer) {
         if (isBatchProcessing) {
-            Object[] params = injectConsumer
-                    ? new Object[]{consumerRecords, consumer}
-                    : new Object[]{consumerRecords};
-
+            long startNanos = System.nanoTime();
             try {
-                method.invoke(target, params);
-            } catch (InvocationTargetException itex) {
+                invoke(batchShape.argument(consumerRecords), consumer);
+            } catch (Throwable th) {
                 if (ignoreException) {
                     String errorMessage = String.format("Failed to process %s records", consumerRecords.count());
-                    log.warn(errorMessage, itex.getTargetException());
+                    log.warn(errorMessage, th);
                 } else {
-                    throw itex.getTargetException();
+                    throw th;
+                }
+            } finally {
+                if (!consumerRecords.isEmpty()) {
+                    instrumentation.handled(topic(consumerRecords), consumerRecords.count(), System.nanoTime() - startNanos);
                 }
-            } catch (IllegalAccessException iaex) {
-                throw new IllegalStateException("Cannot access method " + target.getClass().getName() + "." + method.getName(), iaex);
             }
         } else {
             for (TopicPartition partition : consumerRecords.partitions()) {
@@ -49,25 +74,70 @@ class ConsumerRecordsDispatcher<K, V> {
                 if (partitionRecords.size() == 0) continue;
 
                 for (ConsumerRecord<K, V> pr : partitionRecords) {
-                    Object[] params = injectConsumer
-                            ? new Object[]{pr, consumer}
-                            : new Object[]{pr};
-
-                    try {
-                        method.invoke(target, params);
-                    } catch (InvocationTargetException itex) {
-                        if (ignoreException) {
-                            String errorMessage = String.format("Failed to process record %s-%d:%d", pr.topic(), pr.partition(), pr.offset());
-                            log.warn(errorMessage, itex.getTargetException());
-                        } else {
-                            throw itex.getTargetException();
-                        }
-                    } catch (IllegalAccessException iaex) {
-                        throw new IllegalStateException("Cannot access method " + name(method), iaex);
-                    }
+                    processRecord(pr, consumer);
                 }
             }
         }
     }
 
+    @SneakyThrows
+    void processRecord(ConsumerRecord<K, V> pr, Consumer<K, V> consumer) {
+        long startNanos = System.nanoTime();
+        try {
+            if (retryRouter != null) {
+                //noinspection unchecked
+                processOrRoute((ConsumerRecord<byte[], byte[]>) pr, consumer);
+            } else {
+                invoke(pr, consumer);
+            }
+        } catch (Throwable th) {
+            if (ignoreException) {
+                String errorMessage = String.format("Failed to process record %s-%d:%d", pr.topic(), pr.partition(), pr.offset());
+                log.warn(errorMessage, th);
+            } else {
+                throw th;
+            }
+        } finally {
+            instrumentation.handled(pr.topic(), 1, System.nanoTime() - startNanos);
+        }
+    }
+
+    boolean isBatchProcessing() {
+        return isBatchProcessing;
+    }
+
+    /**
+     * @return The topic of a batch, or its topics joined by comma when it spans several
+     */
+    private String topic(ConsumerRecords<K, V> consumerRecords) {
+        return consumerRecords.partitions().stream()
+                .map(TopicPartition::topic)
+                .distinct()
+                .sorted()
+                .collect(Collectors.joining(","));
+    }
+
+    private void processOrRoute(ConsumerRecord<byte[], byte[]> raw, Consumer<K, V> consumer) {
+        try {
+            invoke(deserialize(raw), consumer);
+        } catch (Throwable th) {
+            retryRouter.route(raw, th);
+        }
+    }
+
+    private ConsumerRecord<Object, Object> deserialize(ConsumerRecord<byte[], byte[]> raw) {
+        Object key = keyDeserializer.deserialize(raw.topic(), raw.headers(), raw.key());
+        Object value = valueDeserializer.deserialize(raw.topic(), raw.headers(), raw.value());
+        return new ConsumerRecord<>(raw.topic(), raw.partition(), raw.offset(), raw.timestamp(), raw.timestampType(),
+                raw.serializedKeySize(), raw.serializedValueSize(), key, value, raw.headers(), raw.leaderEpoch());
+    }
+
+    private void invoke(Object records, Consumer<K, V> consumer) throws Throwable {
+        if (injectConsumer) {
+            handlerWithConsumer.handle(records, consumer);
+        } else {
+            handler.handle(records);
+        }
+    }
+
 }
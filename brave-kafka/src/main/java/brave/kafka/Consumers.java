@@ -3,6 +3,9 @@ package brave.kafka;
 import lombok.Builder;
 import lombok.Getter;
 import lombok.Setter;
+import org.apache.kafka.clients.consumer.ConsumerPartitionAssignor;
+import org.apache.kafka.clients.consumer.CooperativeStickyAssignor;
+import org.apache.kafka.clients.consumer.RangeAssignor;
 import org.apache.kafka.common.serialization.ByteArrayDeserializer;
 import org.apache.kafka.common.serialization.Deserializer;
 
@@ -27,6 +30,15 @@ public @interface Consumers {
     int maxPollRecords() default 512;
     int sessionTimeoutMillis() default 10000;
 
+    /**
+     * Assignors of the consumers, in order of preference. The cooperative sticky assignor moves only the partitions
+     * changing owner on a rebalance, the other partitions keep being consumed, e.g. during a rolling restart.
+     * The default keeps the eager {@link RangeAssignor} of the existing groups, so that members of both versions can join
+     * the same group during an upgrade, and lists the cooperative one so that a group switches to it
+     * in a single rolling restart with <code>{CooperativeStickyAssignor.class}</code> only.
+     */
+    Class<? extends ConsumerPartitionAssignor>[] partitionAssignmentStrategy() default {RangeAssignor.class, CooperativeStickyAssignor.class};
+
     @Target(ElementType.METHOD)
     @Retention(RetentionPolicy.RUNTIME)
     @interface Handler {
@@ -40,6 +52,92 @@ public @interface Consumers {
         Class<? extends Deserializer> keyDeserializer() default ByteArrayDeserializer.class;
         Class<? extends Deserializer> valueDeserializer() default ByteArrayDeserializer.class;
 
+        /**
+         * Number of threads processing the records polled by each consumer thread, 1 means processing them on the consumer thread.
+         * Records of the same {@link #ordering()} key are processed in order by the same thread,
+         * and the offsets are committed by the framework up to the lowest record not processed yet of each partition.
+         */
+        int concurrency() default 1;
+        Ordering ordering() default Ordering.KEY;
+
+        /**
+         * Maximum number of records handed over by each consumer thread to the processing threads and not processed yet,
+         * the partitions are paused beyond it. 0 means twice {@code max.poll.records} with concurrency, no handoff without.
+         * With a handoff, the poll loop never waits for the handler and the offsets are committed by the framework.
+         */
+        int handoffCapacity() default 0;
+
+        /**
+         * Record the metrics of the handler, either true or false, or a placeholder/expression resolving to it.
+         */
+        String metrics() default "false";
+
+        /**
+         * {@link Commit#MANAGED} to let the framework commit the offsets of the records processed successfully,
+         * the handler then does not commit by itself and auto-commit is disabled. Always managed with a handoff.
+         */
+        Commit commit() default Commit.CONSUMER;
+
+        /**
+         * A managed commit is sent asynchronously, after a poll, once either this many records were processed
+         * or {@link #commitIntervalMillis()} elapsed since the previous one.
+         * Pending offsets are always committed synchronously before a rebalance and on shutdown.
+         */
+        int commitRecords() default 1000;
+        int commitIntervalMillis() default 1000;
+
+        /**
+         * Delays of the retry tiers. A record whose processing failed is published to <code>&lt;topic&gt;.retry.1</code>,
+         * where a consumer managed by the framework processes it again once the first delay elapsed without blocking
+         * the original partition, then to <code>&lt;topic&gt;.retry.2</code> and so on, then to the {@link #deadLetterTopic()}.
+         * Retries take a single ConsumerRecord, and their offsets are always managed.
+         */
+        int[] retryDelaysMillis() default {};
+
+        /**
+         * Topic receiving the records which failed all their retries, with the error in their headers,
+         * <code>&lt;topic&gt;.dlq</code> by default. Setting it without retry delays publishes failed records to it directly.
+         */
+        String deadLetterTopic() default "";
+
+        /**
+         * Accumulate the records of a batch handler across polls until there are this many of them,
+         * or until the oldest one waited {@link #maxBatchWaitMillis()}, e.g. to make bulk writes efficient at low traffic.
+         * Batches are then split to at most {@link #maxBatchRecords()} records, 0 meaning any size.
+         * The consumer keeps polling meanwhile, and only the offsets of the records handed to the handler are committed,
+         * so accumulating requires managed commits and a handler which does not take the Consumer.
+         */
+        int minBatchRecords() default 0;
+        int maxBatchRecords() default 0;
+        int maxBatchWaitMillis() default 1000;
+
+        /**
+         * Scale the consumer threads between these bounds instead of the fixed {@link #threadsCount()}, 0 meaning no scaling.
+         * A thread is added while the group lags by {@link #scaleUpLag()} records or more and its threads are busy,
+         * never beyond the partitions assigned, and removed while its threads are mostly idle without lag.
+         * Each scaling waits {@link #scaleCooldownMillis()} after the previous one, as it rebalances the group.
+         */
+        int minThreadsCount() default 1;
+        int maxThreadsCount() default 0;
+        int scaleCooldownMillis() default 60000;
+        long scaleUpLag() default 1000;
+
+        enum Commit {
+            /**
+             * Offsets are committed by the consumer, i.e. auto-commit, or by the handler.
+             */
+            CONSUMER,
+            MANAGED
+        }
+
+        enum Ordering {
+            /**
+             * Records with the same key are processed in order, records without key in order of their partition.
+             */
+            KEY,
+            PARTITION
+        }
+
         @Setter
         @Getter
         @Builder
@@ -52,6 +150,22 @@ public @interface Consumers {
             private boolean reportHealthCheck;
             private Deserializer<Object> keyDeserializer;
             private Deserializer<Object> valueDeserializer;
+            private int concurrency;
+            private Ordering ordering;
+            private int handoffCapacity;
+            private boolean metrics;
+            private Commit commit;
+            private int commitRecords;
+            private Duration commitInterval;
+            private List<Duration> retryDelays;
+            private String deadLetterTopic;
+            private int minBatchRecords;
+            private int maxBatchRecords;
+            private Duration maxBatchWait;
+            private int minThreadsCount;
+            private int maxThreadsCount;
+            private Duration scaleCooldown;
+            private long scaleUpLag;
 
         }
     }
@@ -1,19 +1,16 @@
 package brave.kafka;
 
+import brave.config.PropertyIndex;
 import lombok.RequiredArgsConstructor;
 import org.apache.kafka.common.config.ConfigDef;
 import org.springframework.core.env.AbstractEnvironment;
-import org.springframework.core.env.EnumerablePropertySource;
-import org.springframework.core.env.MutablePropertySources;
 import org.springframework.expression.ExpressionParser;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringValueResolver;
 
 import java.lang.reflect.InvocationTargetException;
 import java.time.Duration;
-import java.util.Arrays;
 import java.util.Properties;
-import java.util.stream.StreamSupport;
 
 import static org.apache.commons.lang3.StringUtils.isBlank;
 
@@ -29,23 +26,7 @@ public class KafkaConfigResolver {
         if (isBlank(path))
             return new Properties();
 
-        Properties properties = new Properties();
-        MutablePropertySources propertySources = environment.getPropertySources();
-        String pathPrefix = path + ".";
-
-        //noinspection rawtypes
-        StreamSupport.stream(propertySources.spliterator(), false)
-                .filter(propSource -> propSource instanceof EnumerablePropertySource)
-                .map(propSource -> ((EnumerablePropertySource) propSource).getPropertyNames())
-                .flatMap(Arrays::stream)
-                .filter(propName -> propName.startsWith(pathPrefix))
-                .forEach(propName -> {
-                    String key = propName.substring(pathPrefix.length());
-                    String value = environment.getProperty(propName);
-                    properties.put(key, value);
-                });
-
-        return properties;
+        return PropertyIndex.of(environment).getProperties(path);
     }
 
     public Properties getProperties(String path, ConfigDef configDef) {
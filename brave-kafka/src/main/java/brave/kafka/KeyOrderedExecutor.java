@@ -0,0 +1,88 @@
+package brave.kafka;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the tasks on a fixed number of single threaded lanes, the tasks of the same ordering key always run
+ * on the same lane so they run in submission order, while the tasks of different keys run in parallel.
+ * <br>
+ * The lanes queue the tasks without bound, the caller limits what it hands over, e.g. by pausing its consumer.
+ */
+@Slf4j
+class KeyOrderedExecutor implements AutoCloseable {
+
+    private final ThreadPoolExecutor[] lanes;
+
+    KeyOrderedExecutor(String name, int concurrency) {
+        this.lanes = new ThreadPoolExecutor[concurrency];
+        for (int i = 0; i < concurrency; i++) {
+            String threadName = name + "-" + i;
+            lanes[i] = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<>(),
+                    runnable -> new Thread(runnable, threadName));
+        }
+    }
+
+    void execute(Object orderingKey, Runnable task) {
+        lanes[lane(orderingKey)].execute(task);
+    }
+
+    /**
+     * Wait for the tasks submitted so far on every lane.
+     */
+    void drain() {
+        CompletableFuture<?>[] barriers = new CompletableFuture[lanes.length];
+        for (int i = 0; i < lanes.length; i++) {
+            barriers[i] = CompletableFuture.runAsync(() -> { }, lanes[i]);
+        }
+        CompletableFuture.allOf(barriers).join();
+    }
+
+    /**
+     * Discard the tasks queued on every lane and accept no more, the running ones complete without interruption.
+     */
+    void shutdownNow() {
+        for (ThreadPoolExecutor lane : lanes) {
+            lane.shutdown();
+            lane.getQueue().clear();
+        }
+    }
+
+    /**
+     * @return Whether the executor accepts no more tasks, after {@link #shutdownNow()} or {@link #close()}
+     */
+    boolean isShutdown() {
+        return lanes[0].isShutdown();
+    }
+
+    private int lane(Object orderingKey) {
+        int hash = orderingKey instanceof byte[]
+                ? Arrays.hashCode((byte[]) orderingKey)
+                : Objects.hashCode(orderingKey);
+        return Math.floorMod(hash ^ (hash >>> 16), lanes.length);
+    }
+
+    @Override
+    public void close() {
+        for (ThreadPoolExecutor lane : lanes) {
+            lane.shutdown();
+        }
+        try {
+            for (ThreadPoolExecutor lane : lanes) {
+                if (!lane.awaitTermination(30, TimeUnit.SECONDS)) {
+                    log.warn("Lane did not finish its {} pending tasks in time", lane.getQueue().size());
+                    lane.shutdownNow();
+                }
+            }
+        } catch (InterruptedException inex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package brave.kafka;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.InterruptException;
+import org.apache.kafka.common.errors.WakeupException;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Commits the offsets of the records processed successfully, for at-least-once delivery without auto-commit.
+ * <br>
+ * Records are marked dispatched in poll order and completed by whichever thread processes them.
+ * The poll thread commits asynchronously every {@code commitRecords} completed records or {@code commitInterval},
+ * and synchronously before its partitions are revoked and before closing.
+ * Must be committed from the poll thread only, the consumer is not thread-safe.
+ */
+@Slf4j
+class OffsetCommitter {
+
+    private final OffsetTracker offsetTracker = new OffsetTracker();
+    private final AtomicInteger uncommittedRecords = new AtomicInteger();
+    private final Consumer<?, ?> consumer;
+    private final int commitRecords;
+    private final long commitIntervalNanos;
+    private long lastCommitNanos = System.nanoTime();
+
+    OffsetCommitter(Consumer<?, ?> consumer, int commitRecords, Duration commitInterval) {
+        this.consumer = consumer;
+        this.commitRecords = commitRecords;
+        this.commitIntervalNanos = commitInterval.toNanos();
+    }
+
+    void dispatched(TopicPartition partition, long offset) {
+        offsetTracker.dispatched(partition, offset);
+    }
+
+    void completed(TopicPartition partition, long offset) {
+        offsetTracker.completed(partition, offset);
+        uncommittedRecords.incrementAndGet();
+    }
+
+    /**
+     * Commit asynchronously when enough records were completed or enough time elapsed since the last commit.
+     */
+    void maybeCommitAsync() {
+        if (uncommittedRecords.get() < commitRecords && System.nanoTime() - lastCommitNanos < commitIntervalNanos) return;
+
+        Map<TopicPartition, OffsetAndMetadata> offsets = committable();
+        if (offsets.isEmpty()) return;
+        consumer.commitAsync(offsets, (committed, ex) -> {
+            if (ex != null) log.warn("Failed to commit offsets {}", committed, ex);
+        });
+    }
+
+    /**
+     * A failed commit is only logged, the records after the last committed offsets will be processed again.
+     */
+    void commitSync() {
+        Map<TopicPartition, OffsetAndMetadata> offsets = committable();
+        if (offsets.isEmpty()) return;
+        try {
+            commitSync(offsets);
+        } catch (WakeupException waex) {
+            // A wakeup is thrown only once, e.g. when stopping outside of a poll, commit again before propagating it
+            commitSync(offsets);
+            throw waex;
+        }
+    }
+
+    /**
+     * Commit what was completed of {@param revokedPartitions} and stop tracking them.
+     */
+    void revoked(Collection<TopicPartition> revokedPartitions) {
+        commitSync();
+        offsetTracker.forget(revokedPartitions);
+    }
+
+    /**
+     * Stop tracking {@param lostPartitions} without committing, they may already belong to another consumer.
+     */
+    void lost(Collection<TopicPartition> lostPartitions) {
+        offsetTracker.forget(lostPartitions);
+    }
+
+    boolean isCompleted(Collection<TopicPartition> partitions) {
+        return offsetTracker.isCompleted(partitions);
+    }
+
+    private void commitSync(Map<TopicPartition, OffsetAndMetadata> offsets) {
+        try {
+            consumer.commitSync(offsets);
+        } catch (WakeupException | InterruptException ex) {
+            throw ex;
+        } catch (KafkaException kaex) {
+            log.warn("Failed to commit offsets {}", offsets, kaex);
+        }
+    }
+
+    private Map<TopicPartition, OffsetAndMetadata> committable() {
+        uncommittedRecords.set(0);
+        lastCommitNanos = System.nanoTime();
+        return offsetTracker.committable();
+    }
+}
@@ -0,0 +1,89 @@
+package brave.kafka;
+
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tracks the records dispatched and completed out of order, to commit each partition
+ * only up to its lowest record not completed yet: everything before a committed offset has been processed.
+ */
+class OffsetTracker {
+
+    private final Map<TopicPartition, PartitionOffsets> partitions = new ConcurrentHashMap<>();
+
+    void dispatched(TopicPartition partition, long offset) {
+        partitions.computeIfAbsent(partition, p -> new PartitionOffsets()).dispatched(offset);
+    }
+
+    void completed(TopicPartition partition, long offset) {
+        PartitionOffsets offsets = partitions.get(partition);
+        if (offsets != null) offsets.completed(offset);
+    }
+
+    /**
+     * @return The offsets to commit of the partitions which progressed since the last call
+     */
+    Map<TopicPartition, OffsetAndMetadata> committable() {
+        Map<TopicPartition, OffsetAndMetadata> committable = new HashMap<>();
+        partitions.forEach((partition, offsets) -> {
+            long offset = offsets.advance();
+            if (offset >= 0) committable.put(partition, new OffsetAndMetadata(offset));
+        });
+        return committable;
+    }
+
+    /**
+     * @return Whether every record dispatched of {@param partitions} completed
+     */
+    boolean isCompleted(Collection<TopicPartition> partitions) {
+        for (TopicPartition partition : partitions) {
+            PartitionOffsets offsets = this.partitions.get(partition);
+            if (offsets != null && !offsets.isCompleted()) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Stop tracking {@param revokedPartitions}, the records still pending on them will not be committed.
+     */
+    void forget(Collection<TopicPartition> revokedPartitions) {
+        revokedPartitions.forEach(partitions::remove);
+    }
+
+    private static class PartitionOffsets {
+
+        private final TreeSet<Long> pending = new TreeSet<>();
+        private long nextOffset = -1;
+        private long committedOffset = -1;
+
+        synchronized void dispatched(long offset) {
+            pending.add(offset);
+            nextOffset = offset + 1;
+        }
+
+        synchronized void completed(long offset) {
+            pending.remove(offset);
+        }
+
+        synchronized boolean isCompleted() {
+            return pending.isEmpty();
+        }
+
+        /**
+         * @return The new offset to commit, -1 when it did not progress
+         */
+        synchronized long advance() {
+            long offset = pending.isEmpty() ? nextOffset : pending.first();
+            if (offset <= committedOffset) return -1;
+
+            committedOffset = offset;
+            return offset;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package brave.kafka;
+
+import org.apache.kafka.common.TopicPartition;
+
+import java.util.Collection;
+
+/**
+ * Implemented by a {@link Consumers} bean keeping state per partition, e.g. aggregates of the keys of a partition,
+ * to load it when partitions are assigned and to flush or drop it when they are revoked.
+ * <br>
+ * Called on the consumer thread owning the partitions, for the topics of each handler of the bean.
+ * With the cooperative assignor, only the partitions moving to or from this consumer are passed, the others keep flowing.
+ * Before revoking, the records of the revoked partitions already polled are processed and, with managed commits,
+ * their offsets committed.
+ */
+public interface PartitionListener {
+
+    PartitionListener NOOP = new PartitionListener() {};
+
+    default void onPartitionsAssigned(Collection<TopicPartition> partitions) {}
+
+    default void onPartitionsRevoked(Collection<TopicPartition> partitions) {}
+
+    /**
+     * The partitions were lost without being revoked, e.g. after a session timeout,
+     * another consumer may already own them and their pending offsets were not committed.
+     */
+    default void onPartitionsLost(Collection<TopicPartition> partitions) {
+        onPartitionsRevoked(partitions);
+    }
+}
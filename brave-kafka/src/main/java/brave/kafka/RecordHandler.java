@@ -0,0 +1,62 @@
+package brave.kafka;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+
+import static brave.kafka.ReflectionUtil.name;
+
+/**
+ * A {@link Consumers.Handler} method bound once to its bean by {@link LambdaMetafactory}, so that dispatching
+ * a record is a plain interface call the JIT can inline, without the argument array and the access checks of
+ * {@link Method#invoke}. The exceptions of the handler are thrown as is, not wrapped.
+ * <br>
+ * Public because the generated implementations are defined next to the handler beans, in their own package.
+ */
+@FunctionalInterface
+public interface RecordHandler {
+
+    void handle(Object records) throws Throwable;
+
+    @FunctionalInterface
+    interface WithConsumer {
+
+        void handle(Object records, Object consumer) throws Throwable;
+    }
+
+    /**
+     * @return The handler calling {@param method} of {@param target} with a single parameter
+     */
+    static RecordHandler bind(Object target, Method method) {
+        return bind(RecordHandler.class, target, method, Object.class);
+    }
+
+    /**
+     * @return The handler calling {@param method} of {@param target} with the records and the consumer
+     */
+    static WithConsumer bindWithConsumer(Object target, Method method) {
+        return bind(WithConsumer.class, target, method, Object.class, Object.class);
+    }
+
+    private static <T> T bind(Class<T> handlerType, Object target, Method method, Class<?>... erasedParameterTypes) {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(method.getDeclaringClass(), MethodHandles.lookup());
+            MethodHandle implementation = lookup.unreflect(method);
+            CallSite callSite = LambdaMetafactory.metafactory(
+                    lookup,
+                    "handle",
+                    MethodType.methodType(handlerType, method.getDeclaringClass()),
+                    MethodType.methodType(void.class, erasedParameterTypes),
+                    implementation,
+                    implementation.type().dropParameterTypes(0, 1).changeReturnType(void.class));
+            return handlerType.cast(callSite.getTarget().invoke(target));
+        } catch (IllegalAccessException iaex) {
+            throw new IllegalStateException("Cannot access method " + name(method), iaex);
+        } catch (Throwable th) {
+            throw new IllegalStateException("Cannot bind method " + name(method), th);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package brave.kafka;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Publishes a record whose processing failed to the next retry topic, <code>&lt;topic&gt;.retry.&lt;attempt&gt;</code>,
+ * and after the last one to the dead letter topic, so that the partition of the record keeps flowing.
+ * <br>
+ * The record is published with its raw key, value and headers, plus the headers below, and waits for the acknowledgement
+ * so that its offset can be committed afterwards without losing it.
+ * <ul>
+ *     <li><code>brave.retry.attempt</code> the number of failed attempts</li>
+ *     <li><code>brave.retry.due</code> the epoch millis before which a retry topic consumer must not process it</li>
+ *     <li><code>brave.original.topic</code>, <code>brave.original.partition</code> and <code>brave.original.offset</code></li>
+ *     <li><code>brave.error.class</code> and <code>brave.error.message</code> of the last failure</li>
+ * </ul>
+ */
+@Slf4j
+class RetryRouter {
+
+    static final String ATTEMPT_HEADER = "brave.retry.attempt";
+    static final String DUE_HEADER = "brave.retry.due";
+    static final String ORIGINAL_TOPIC_HEADER = "brave.original.topic";
+    static final String ORIGINAL_PARTITION_HEADER = "brave.original.partition";
+    static final String ORIGINAL_OFFSET_HEADER = "brave.original.offset";
+    static final String ERROR_CLASS_HEADER = "brave.error.class";
+    static final String ERROR_MESSAGE_HEADER = "brave.error.message";
+
+    private final Producer<byte[], byte[]> producer;
+    private final List<Duration> retryDelays;
+    private final String deadLetterTopic;
+
+    /**
+     * @param deadLetterTopic The dead letter topic, <code>&lt;topic&gt;.dlq</code> of the original topic when blank
+     */
+    RetryRouter(Producer<byte[], byte[]> producer, List<Duration> retryDelays, String deadLetterTopic) {
+        this.producer = producer;
+        this.retryDelays = retryDelays;
+        this.deadLetterTopic = deadLetterTopic;
+    }
+
+    static String retryTopic(String topic, int attempt) {
+        return topic + ".retry." + attempt;
+    }
+
+    int retryTiers() {
+        return retryDelays.size();
+    }
+
+    /**
+     * @return The epoch millis before which {@param record} must not be processed, 0 when not delayed or unreadable
+     */
+    static long dueTime(ConsumerRecord<?, ?> record) {
+        String due = header(record.headers(), DUE_HEADER);
+        if (due == null) return 0;
+
+        try {
+            return Long.parseLong(due);
+        } catch (NumberFormatException nfex) {
+            log.warn("Invalid {} header '{}' on record {}-{}:{}, processing it now",
+                    DUE_HEADER, due, record.topic(), record.partition(), record.offset());
+            return 0;
+        }
+    }
+
+    void route(ConsumerRecord<byte[], byte[]> record, Throwable error) {
+        String attemptHeader = header(record.headers(), ATTEMPT_HEADER);
+        int attempt = attemptHeader == null ? 1 : Integer.parseInt(attemptHeader) + 1;
+        String originalTopic = attemptHeader == null ? record.topic() : header(record.headers(), ORIGINAL_TOPIC_HEADER);
+
+        Headers headers = new RecordHeaders(record.headers().toArray());
+        if (attemptHeader == null) {
+            setHeader(headers, ORIGINAL_TOPIC_HEADER, record.topic());
+            setHeader(headers, ORIGINAL_PARTITION_HEADER, String.valueOf(record.partition()));
+            setHeader(headers, ORIGINAL_OFFSET_HEADER, String.valueOf(record.offset()));
+        }
+        setHeader(headers, ATTEMPT_HEADER, String.valueOf(attempt));
+        setHeader(headers, ERROR_CLASS_HEADER, error.getClass().getName());
+        setHeader(headers, ERROR_MESSAGE_HEADER, String.valueOf(error.getMessage()));
+
+        String topic;
+        if (attempt <= retryDelays.size()) {
+            topic = retryTopic(originalTopic, attempt);
+            setHeader(headers, DUE_HEADER, String.valueOf(System.currentTimeMillis() + retryDelays.get(attempt - 1).toMillis()));
+        } else {
+            topic = deadLetterTopic.isBlank() ? originalTopic + ".dlq" : deadLetterTopic;
+            headers.remove(DUE_HEADER);
+        }
+
+        log.warn("Failed to process record {}-{}:{} on attempt {}, publishing it to {}",
+                record.topic(), record.partition(), record.offset(), attempt, topic, error);
+        try {
+            producer.send(new ProducerRecord<>(topic, null, record.key(), record.value(), headers)).get();
+        } catch (InterruptedException inex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while publishing record to " + topic, inex);
+        } catch (ExecutionException exex) {
+            throw new IllegalStateException("Failed to publish record to " + topic, exex.getCause());
+        }
+    }
+
+    private static String header(Headers headers, String key) {
+        Header header = headers.lastHeader(key);
+        return header == null || header.value() == null ? null : new String(header.value(), StandardCharsets.UTF_8);
+    }
+
+    private static void setHeader(Headers headers, String key, String value) {
+        headers.remove(key);
+        headers.add(key, value.getBytes(StandardCharsets.UTF_8));
+    }
+}
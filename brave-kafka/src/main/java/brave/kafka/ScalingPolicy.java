@@ -0,0 +1,48 @@
+package brave.kafka;
+
+import java.time.Duration;
+
+/**
+ * Decides whether a consumer group adds or removes a consumer thread.
+ * <br>
+ * A thread is added when the group lags by {@code scaleUpLag} records or more while its threads are busy,
+ * i.e. more threads can catch up, and removed when its threads are mostly idle and it does not lag.
+ * Threads stay between {@code minThreads} and {@code maxThreads}, and no more than the assigned partitions,
+ * as extra consumers would be left without partition. Scaling waits {@code cooldown} after the previous one,
+ * for the group to rebalance and the measurements to settle.
+ */
+class ScalingPolicy {
+
+    static final double SCALE_UP_UTILISATION = 0.75;
+    static final double SCALE_DOWN_UTILISATION = 0.25;
+
+    private final int minThreads;
+    private final int maxThreads;
+    private final long scaleUpLag;
+    private final long cooldownNanos;
+
+    ScalingPolicy(int minThreads, int maxThreads, long scaleUpLag, Duration cooldown) {
+        this.minThreads = Math.max(1, minThreads);
+        this.maxThreads = maxThreads;
+        this.scaleUpLag = scaleUpLag;
+        this.cooldownNanos = cooldown.toNanos();
+    }
+
+    /**
+     * @param utilisation        The average share of time the threads were busy, between 0 and 1
+     * @param sinceLastScaleNanos The time elapsed since the group started or last scaled
+     * @return 1 to add a thread, -1 to remove one, 0 to keep them
+     */
+    int decide(int threads, double lag, double utilisation, int assignedPartitions, long sinceLastScaleNanos) {
+        if (sinceLastScaleNanos < cooldownNanos) return 0;
+
+        if (lag >= scaleUpLag && utilisation >= SCALE_UP_UTILISATION
+                && threads < maxThreads && threads < assignedPartitions) {
+            return 1;
+        }
+        if (lag < scaleUpLag && utilisation <= SCALE_DOWN_UTILISATION && threads > minThreads) {
+            return -1;
+        }
+        return 0;
+    }
+}
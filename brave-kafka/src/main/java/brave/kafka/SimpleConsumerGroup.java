@@ -1,46 +1,173 @@
 package brave.kafka;
 
+import brave.kafka.metric.ConsumerInstrumentation;
 import lombok.Builder;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.TopicPartition;
 import org.apache.kafka.common.errors.WakeupException;
 import org.springframework.boot.actuate.health.Health;
 
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
 import java.util.function.Supplier;
 
 @Slf4j
 @Builder
 class SimpleConsumerGroup<K, V> {
 
-    private final List<SimpleConsumer> consumers = new ArrayList<>();
+    private static final Duration SCALE_CHECK_INTERVAL = Duration.ofSeconds(10);
+    private static final long REVOKE_CHECK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final List<SimpleConsumer> consumers = new CopyOnWriteArrayList<>();
     private final Supplier<Consumer<K, V>> consumerSupplier;
     private final List<String> topics;
     private final Integer threadsCount;
     private final Duration pollingTimeout;
     private final ConsumerRecordsDispatcher<K, V> recordProcessor;
+    private final int concurrency;
+    private final Consumers.Handler.Ordering ordering;
+    private final int handoffCapacity;
+    private final boolean managedCommit;
+    private final int commitRecords;
+    private final Duration commitInterval;
+    private final boolean delayed;
+    private final int minBatchRecords;
+    private final int maxBatchRecords;
+    private final Duration maxBatchWait;
+    private final int minThreadsCount;
+    private final int maxThreadsCount;
+    private final Duration scaleCooldown;
+    private final long scaleUpLag;
+    @Builder.Default
+    private final ConsumerInstrumentation instrumentation = ConsumerInstrumentation.NOOP;
+    @Builder.Default
+    private final PartitionListener partitionListener = PartitionListener.NOOP;
+    private final AtomicReference<ScheduledExecutorService> scaler = new AtomicReference<>();
+    private final AtomicLong lastScaleNanos = new AtomicLong();
+    /**
+     * Set under the lock of this group, so that a running autoscale does not add a consumer once stopped
+     */
+    private final AtomicBoolean stopped = new AtomicBoolean();
+    private final Set<TopicPartition> laggingPartitions = ConcurrentHashMap.newKeySet();
 
     public void start() {
-        for (int i = 0; i < threadsCount; i++) {
+        int initialThreadsCount = isAutoscaling()
+                ? Math.max(minThreadsCount, Math.min(maxThreadsCount, threadsCount))
+                : threadsCount;
+        for (int i = 0; i < initialThreadsCount; i++) {
             consumers.add(new SimpleConsumer(consumerSupplier.get()));
         }
 
+        if (handoffCapacity > 0) {
+            instrumentation.handoffDepth(() -> consumers.stream().mapToInt(c -> c.handedOver.get()).sum());
+        }
         log.warn("Starting {} consumer threads", consumers.size());
         consumers.forEach(SimpleConsumer::start);
         log.warn("Started {} consumer threads", consumers.size());
+
+        if (isAutoscaling()) {
+            instrumentation.threads(consumers::size);
+            lastScaleNanos.set(System.nanoTime());
+            long checkMillis = Math.min(SCALE_CHECK_INTERVAL.toMillis(), Math.max(1, scaleCooldown.toMillis()));
+            ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "consumers-scaler{" + String.join(",", topics) + "}");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scaler.set(executor);
+            ScalingPolicy scalingPolicy = new ScalingPolicy(minThreadsCount, maxThreadsCount, scaleUpLag, scaleCooldown);
+            executor.scheduleWithFixedDelay(() -> autoscale(scalingPolicy), checkMillis, checkMillis, TimeUnit.MILLISECONDS);
+        }
     }
 
     public void stop() {
+        ScheduledExecutorService executor = scaler.getAndSet(null);
+        if (executor != null) executor.shutdownNow();
+        synchronized (this) {
+            stopped.set(true);
+        }
         log.warn("Stopping {} consumer threads", consumers.size());
         consumers.forEach(SimpleConsumer::stop);
         log.warn("Stopped {} consumer threads", consumers.size());
     }
 
+    private boolean isAutoscaling() {
+        return maxThreadsCount > 0;
+    }
+
+    /**
+     * Register the lag of {@param partition} when first assigned to a consumer of the group,
+     * it is sampled from whichever consumer owns it then, and 0 once revoked from the group.
+     */
+    private void registerLag(TopicPartition partition) {
+        if (laggingPartitions.add(partition)) {
+            instrumentation.lag(partition.topic(), partition.partition(),
+                    () -> consumers.stream().mapToDouble(c -> c.lag(partition)).sum());
+        }
+    }
+
+    /**
+     * Add or remove a consumer thread, see {@link ScalingPolicy}.
+     */
+    private synchronized void autoscale(ScalingPolicy scalingPolicy) {
+        if (stopped.get()) return;
+
+        try {
+            double lag = 0;
+            double utilisation = 0;
+            int assignedPartitions = 0;
+            for (SimpleConsumer simpleConsumer : consumers) {
+                for (String topic : topics) {
+                    lag += simpleConsumer.lag(topic);
+                }
+                utilisation += simpleConsumer.takeUtilisation();
+                assignedPartitions += simpleConsumer.assignedPartitions;
+            }
+            int threads = consumers.size();
+            utilisation /= Math.max(1, threads);
+
+            int decision = scalingPolicy.decide(threads, lag, utilisation, assignedPartitions, System.nanoTime() - lastScaleNanos.get());
+            if (decision > 0) {
+                log.warn("Scaling up consumer threads of {} from {} to {}, lag {} utilisation {}", topics, threads, threads + 1, lag, utilisation);
+                SimpleConsumer simpleConsumer = new SimpleConsumer(consumerSupplier.get());
+                consumers.add(simpleConsumer);
+                simpleConsumer.start();
+                instrumentation.scaled(true);
+                lastScaleNanos.set(System.nanoTime());
+            } else if (decision < 0) {
+                log.warn("Scaling down consumer threads of {} from {} to {}, lag {} utilisation {}", topics, threads, threads - 1, lag, utilisation);
+                SimpleConsumer simpleConsumer = consumers.remove(threads - 1);
+                simpleConsumer.stop();
+                instrumentation.scaled(false);
+                lastScaleNanos.set(System.nanoTime());
+            }
+        } catch (RuntimeException rex) {
+            log.warn("Failed to scale consumer threads of {}", topics, rex);
+        }
+    }
+
     public Health health() {
         String healthKey = "consumers{" + String.join(",", topics) + "}";
         long aliveInvalidatorsCount = consumers.stream().filter(SimpleConsumer::isAlive).count();
@@ -62,8 +189,14 @@ class SimpleConsumerGroup<K, V> {
     private class SimpleConsumer {
 
         private final AtomicBoolean closed = new AtomicBoolean(false);
+        private final AtomicInteger handedOver = new AtomicInteger();
         private final Consumer<K, V> consumer;
         private final Thread consumerThread = new Thread(this::consumeMessages);
+        private long lastPollNanos = -1;
+        private volatile long busyNanos;
+        private volatile int assignedPartitions;
+        private long sampledBusyNanos;
+        private long sampledNanos = System.nanoTime();
 
         public void start() {
             consumerThread.start();
@@ -75,10 +208,35 @@ class SimpleConsumerGroup<K, V> {
 
         private void consumeMessages() {
             try {
-                consumer.subscribe(topics);
+                if (handoffCapacity > 0) {
+                    consumeDecoupled();
+                    return;
+                }
+                if (managedCommit) {
+                    consumeCommitting();
+                    return;
+                }
+
+                // Offsets are committed by the handler, or by the consumer before a revoke with auto-commit
+                consumer.subscribe(topics, new ConsumerRebalanceListener() {
+                    @Override
+                    public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+                        revoked(partitions);
+                    }
+
+                    @Override
+                    public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+                        assigned(partitions);
+                    }
+
+                    @Override
+                    public void onPartitionsLost(Collection<TopicPartition> partitions) {
+                        lost(partitions);
+                    }
+                });
 
                 while (!closed.get()) {
-                    ConsumerRecords<K, V> consumerRecords = consumer.poll(pollingTimeout);
+                    ConsumerRecords<K, V> consumerRecords = poll();
                     recordProcessor.process(consumerRecords, consumer);
                 }
             } catch (WakeupException waex) {
@@ -88,6 +246,353 @@ class SimpleConsumerGroup<K, V> {
             }
         }
 
+        /**
+         * Process the polled records on the consumer thread and commit those processed successfully.
+         * A failure stops the consumer after committing the records processed before it.
+         * <br>
+         * When {@code delayed}, e.g. on retry topics, a partition whose next record is not due yet is paused and rewound
+         * until then, the other partitions keep flowing. Records of a partition are due in order as they share the same delay.
+         * <br>
+         * Batches accumulated across polls are processed before their partitions are revoked and before closing,
+         * the records of the partitions kept by a cooperative rebalance stay accumulated. After a failure they are dropped.
+         */
+        private void consumeCommitting() {
+            OffsetCommitter committer = new OffsetCommitter(consumer, commitRecords, commitInterval);
+            BatchAccumulator<K, V> accumulator = batchAccumulator();
+            Map<TopicPartition, Long> delayedPartitions = new HashMap<>();
+            consumer.subscribe(topics, new ConsumerRebalanceListener() {
+                @Override
+                public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+                    while (!accumulator.isEmpty(partitions)) {
+                        processBatch(accumulator.drain(partitions), committer);
+                    }
+                    committer.revoked(partitions);
+                    delayedPartitions.keySet().removeAll(partitions);
+                    revoked(partitions);
+                }
+
+                @Override
+                public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+                    assigned(partitions);
+                }
+
+                @Override
+                public void onPartitionsLost(Collection<TopicPartition> partitions) {
+                    accumulator.discard(partitions);
+                    committer.lost(partitions);
+                    delayedPartitions.keySet().removeAll(partitions);
+                    lost(partitions);
+                }
+            });
+
+            try {
+                pollAndProcess(committer, accumulator, delayedPartitions);
+                while (!accumulator.isEmpty()) {
+                    processBatch(accumulator.drain(), committer);
+                }
+            } finally {
+                // After a failure, the batches accumulated past it must not be processed when revoked on close
+                accumulator.discard();
+                committer.commitSync();
+            }
+        }
+
+        private void pollAndProcess(OffsetCommitter committer, BatchAccumulator<K, V> accumulator,
+                                    Map<TopicPartition, Long> delayedPartitions) {
+            try {
+                while (!closed.get()) {
+                    ConsumerRecords<K, V> consumerRecords = poll(accumulator.pollingTimeout(pollingTimeout));
+                    if (recordProcessor.isBatchProcessing()) {
+                        consumerRecords.forEach(record -> committer.dispatched(partition(record), record.offset()));
+                        accumulator.add(consumerRecords);
+                        while (accumulator.isReady()) {
+                            processBatch(accumulator.drain(), committer);
+                        }
+                    } else {
+                        for (TopicPartition partition : consumerRecords.partitions()) {
+                            for (ConsumerRecord<K, V> record : consumerRecords.records(partition)) {
+                                if (delayed && postpone(record, partition, delayedPartitions)) break;
+
+                                committer.dispatched(partition, record.offset());
+                                recordProcessor.processRecord(record, consumer);
+                                committer.completed(partition, record.offset());
+                            }
+                        }
+                    }
+                    committer.maybeCommitAsync();
+                    resumeDue(delayedPartitions);
+                }
+            } catch (WakeupException waex) {
+                if (!closed.get()) throw waex;
+            }
+        }
+
+        private void processBatch(ConsumerRecords<K, V> batch, OffsetCommitter committer) {
+            recordProcessor.process(batch, consumer);
+            batch.forEach(record -> committer.completed(partition(record), record.offset()));
+        }
+
+        private BatchAccumulator<K, V> batchAccumulator() {
+            return new BatchAccumulator<>(minBatchRecords, maxBatchRecords, maxBatchWait == null ? Duration.ZERO : maxBatchWait);
+        }
+
+        /**
+         * Hand the polled records over to the lanes of a {@link KeyOrderedExecutor} and commit what they completed,
+         * so that a slow handler does not delay the next poll and the consumer stays in its group.
+         * <br>
+         * When {@code handoffCapacity} records are handed over and not processed yet, the assigned partitions are paused:
+         * the consumer keeps polling, without fetching, until the handoff is drained to half its capacity.
+         * At most the capacity plus one poll of records are held in memory.
+         * <br>
+         * The pending records are drained and committed before the partitions are revoked and before closing.
+         * On a cooperative rebalance, only the records of the revoked partitions are waited for, the others keep processing.
+         * A failure stops the consumer, its record and the following ones of its partition are not committed,
+         * and the records handed over after it are skipped, so that those of the same key are not processed past it.
+         */
+        private void consumeDecoupled() {
+            OffsetCommitter committer = new OffsetCommitter(consumer, commitRecords, commitInterval);
+            BatchAccumulator<K, V> accumulator = batchAccumulator();
+            AtomicReference<Throwable> failure = new AtomicReference<>();
+            long[] pausedSince = {-1};
+
+            try (KeyOrderedExecutor executor = new KeyOrderedExecutor(consumerThread.getName() + "-worker", concurrency)) {
+                consumer.subscribe(topics, new ConsumerRebalanceListener() {
+                    @Override
+                    public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+                        // Once stopping, e.g. when revoked by closing the consumer, nothing is handed over anymore
+                        if (executor.isShutdown()) {
+                            committer.revoked(partitions);
+                            revoked(partitions);
+                            return;
+                        }
+                        while (!accumulator.isEmpty(partitions)) {
+                            handOverBatch(accumulator.drain(partitions), executor, committer, failure);
+                        }
+                        while (failure.get() == null && !committer.isCompleted(partitions)) {
+                            LockSupport.parkNanos(REVOKE_CHECK_NANOS);
+                        }
+                        committer.revoked(partitions);
+                        revoked(partitions);
+                    }
+
+                    @Override
+                    public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+                        // Partitions are resumed when assigned, keep the new ones paused as well
+                        if (pausedSince[0] >= 0) consumer.pause(partitions);
+                        assigned(partitions);
+                    }
+
+                    @Override
+                    public void onPartitionsLost(Collection<TopicPartition> partitions) {
+                        // Records of the lost partitions still running complete unnoticed, the new owner processes them again
+                        accumulator.discard(partitions);
+                        committer.lost(partitions);
+                        lost(partitions);
+                    }
+                });
+
+                try {
+                    while (!closed.get() && failure.get() == null) {
+                        ConsumerRecords<K, V> consumerRecords = poll(accumulator.pollingTimeout(pollingTimeout));
+                        if (recordProcessor.isBatchProcessing()) {
+                            consumerRecords.forEach(record -> committer.dispatched(partition(record), record.offset()));
+                            accumulator.add(consumerRecords);
+                            while (accumulator.isReady()) {
+                                handOverBatch(accumulator.drain(), executor, committer, failure);
+                            }
+                        } else {
+                            for (ConsumerRecord<K, V> record : consumerRecords) {
+                                handOver(record, executor, committer, failure);
+                            }
+                        }
+                        committer.maybeCommitAsync();
+
+                        int depth = handedOver.get();
+                        if (pausedSince[0] < 0 && depth >= handoffCapacity) {
+                            consumer.pause(consumer.assignment());
+                            pausedSince[0] = System.nanoTime();
+                        } else if (pausedSince[0] >= 0 && depth <= handoffCapacity / 2) {
+                            consumer.resume(consumer.paused());
+                            instrumentation.paused(System.nanoTime() - pausedSince[0]);
+                            pausedSince[0] = -1;
+                        }
+                    }
+                } catch (WakeupException waex) {
+                    if (!closed.get()) throw waex;
+                }
+
+                while (failure.get() == null && !accumulator.isEmpty()) {
+                    handOverBatch(accumulator.drain(), executor, committer, failure);
+                }
+                if (failure.get() == null) {
+                    executor.drain();
+                } else {
+                    // The records queued or accumulated after a failure must not run,
+                    // they would be processed out of order when redelivered
+                    accumulator.discard();
+                    executor.shutdownNow();
+                }
+                committer.commitSync();
+            } finally {
+                accumulator.discard();
+            }
+
+            if (failure.get() != null) {
+                throw new IllegalStateException("Failed to process records of " + topics, failure.get());
+            }
+        }
+
+        private void handOver(ConsumerRecord<K, V> record, KeyOrderedExecutor executor,
+                              OffsetCommitter committer, AtomicReference<Throwable> failure) {
+            TopicPartition partition = partition(record);
+            committer.dispatched(partition, record.offset());
+            handedOver.incrementAndGet();
+            executor.execute(orderingKey(record, partition), () -> {
+                try {
+                    if (failure.get() != null) return;
+
+                    recordProcessor.processRecord(record, null);
+                    committer.completed(partition, record.offset());
+                } catch (Throwable th) {
+                    failure.compareAndSet(null, th);
+                } finally {
+                    handedOver.decrementAndGet();
+                }
+            });
+        }
+
+        /**
+         * A batch runs on a single lane, in poll order, and completes all its offsets at once.
+         * Its offsets are dispatched once polled, as it may be accumulated over several polls.
+         */
+        private void handOverBatch(ConsumerRecords<K, V> consumerRecords, KeyOrderedExecutor executor,
+                                   OffsetCommitter committer, AtomicReference<Throwable> failure) {
+            if (consumerRecords.isEmpty()) return;
+
+            int count = consumerRecords.count();
+            handedOver.addAndGet(count);
+            executor.execute(null, () -> {
+                try {
+                    if (failure.get() != null) return;
+
+                    recordProcessor.process(consumerRecords, null);
+                    consumerRecords.forEach(record -> committer.completed(partition(record), record.offset()));
+                } catch (Throwable th) {
+                    failure.compareAndSet(null, th);
+                } finally {
+                    handedOver.addAndGet(-count);
+                }
+            });
+        }
+
+        private ConsumerRecords<K, V> poll() {
+            return poll(pollingTimeout);
+        }
+
+        private ConsumerRecords<K, V> poll(Duration timeout) {
+            long pollNanos = System.nanoTime();
+            if (lastPollNanos >= 0) {
+                busyNanos += pollNanos - lastPollNanos;
+                instrumentation.pollInterval(pollNanos - lastPollNanos);
+            }
+
+            ConsumerRecords<K, V> consumerRecords = consumer.poll(timeout);
+            lastPollNanos = System.nanoTime();
+            assignedPartitions = consumer.assignment().size();
+            instrumentation.pollLatency(lastPollNanos - pollNanos);
+            return consumerRecords;
+        }
+
+        /**
+         * @return The share of time spent processing since the previous call, outside of poll on the consumer thread,
+         * or filling the handoff when the processing is handed over. Called by the scaler only.
+         */
+        double takeUtilisation() {
+            long now = System.nanoTime();
+            long busy = busyNanos;
+            double utilisation = (double) (busy - sampledBusyNanos) / Math.max(1, now - sampledNanos);
+            sampledBusyNanos = busy;
+            sampledNanos = now;
+
+            if (handoffCapacity > 0) {
+                utilisation = Math.max(utilisation, (double) handedOver.get() / handoffCapacity);
+            }
+            return Math.min(1, utilisation);
+        }
+
+        /**
+         * @return The records of {@param topic} not fetched yet by this consumer, from the <code>records-lag</code> metric
+         * of its fetcher, updated on each fetch. Reading the client metrics is thread-safe and costs no request.
+         */
+        double lag(String topic) {
+            return lag(topic, null);
+        }
+
+        double lag(TopicPartition partition) {
+            return lag(partition.topic(), String.valueOf(partition.partition()));
+        }
+
+        /**
+         * @param partition The partition number, any when null
+         */
+        private double lag(String topic, String partition) {
+            double lag = 0;
+            for (Map.Entry<MetricName, ? extends Metric> metric : consumer.metrics().entrySet()) {
+                MetricName metricName = metric.getKey();
+                if (!"records-lag".equals(metricName.name()) || !topic.equals(metricName.tags().get("topic"))) continue;
+                if (partition != null && !partition.equals(metricName.tags().get("partition"))) continue;
+
+                Object value = metric.getValue().metricValue();
+                if (value instanceof Number && !Double.isNaN(((Number) value).doubleValue())) {
+                    lag += ((Number) value).doubleValue();
+                }
+            }
+            return lag;
+        }
+
+        /**
+         * @return Whether {@param record} is not due yet, its partition is then paused and rewound to it
+         */
+        private boolean postpone(ConsumerRecord<K, V> record, TopicPartition partition, Map<TopicPartition, Long> delayedPartitions) {
+            long dueTime = RetryRouter.dueTime(record);
+            if (dueTime <= System.currentTimeMillis()) return false;
+
+            consumer.seek(partition, record.offset());
+            consumer.pause(List.of(partition));
+            delayedPartitions.put(partition, dueTime);
+            return true;
+        }
+
+        private void resumeDue(Map<TopicPartition, Long> delayedPartitions) {
+            if (delayedPartitions.isEmpty()) return;
+
+            long now = System.currentTimeMillis();
+            List<TopicPartition> duePartitions = new ArrayList<>();
+            delayedPartitions.entrySet().removeIf(delayed -> delayed.getValue() <= now && duePartitions.add(delayed.getKey()));
+            consumer.resume(duePartitions);
+        }
+
+        private void assigned(Collection<TopicPartition> partitions) {
+            partitions.forEach(SimpleConsumerGroup.this::registerLag);
+            if (!partitions.isEmpty()) partitionListener.onPartitionsAssigned(partitions);
+        }
+
+        private void revoked(Collection<TopicPartition> partitions) {
+            if (!partitions.isEmpty()) partitionListener.onPartitionsRevoked(partitions);
+        }
+
+        private void lost(Collection<TopicPartition> partitions) {
+            if (!partitions.isEmpty()) partitionListener.onPartitionsLost(partitions);
+        }
+
+        private Object orderingKey(ConsumerRecord<K, V> record, TopicPartition partition) {
+            return ordering == Consumers.Handler.Ordering.KEY && record.key() != null ? record.key() : partition;
+        }
+
+        private TopicPartition partition(ConsumerRecord<K, V> record) {
+            return new TopicPartition(record.topic(), record.partition());
+        }
+
         public void stop() {
             closed.set(true);
             consumer.wakeup();
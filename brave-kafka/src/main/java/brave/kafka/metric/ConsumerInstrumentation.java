@@ -0,0 +1,58 @@
+package brave.kafka.metric;
+
+import java.util.function.DoubleSupplier;
+import java.util.function.IntSupplier;
+
+/**
+ * Receives the measurements of a consumer group, all methods are no-op by default.
+ * Implementations are called on the hot path and must be cheap and thread-safe.
+ */
+public interface ConsumerInstrumentation {
+
+    ConsumerInstrumentation NOOP = new ConsumerInstrumentation() {};
+
+    /**
+     * Register the number of records handed over by the poll threads and not processed yet,
+     * it is sampled when the metrics are published.
+     */
+    default void handoffDepth(IntSupplier depth) {}
+
+    /**
+     * The partitions of a consumer were paused for {@param nanos} because the handoff was full.
+     */
+    default void paused(long nanos) {}
+
+    /**
+     * The handler processed {@param records} of {@param topic}, one or a batch, in {@param nanos} including failures.
+     */
+    default void handled(String topic, int records, long nanos) {}
+
+    /**
+     * A poll of a consumer took {@param nanos}, including the polling timeout when there was nothing to fetch.
+     */
+    default void pollLatency(long nanos) {}
+
+    /**
+     * A consumer spent {@param nanos} outside of poll since its previous one, i.e. processing and committing.
+     * It must stay below <code>max.poll.interval.ms</code>.
+     */
+    default void pollInterval(long nanos) {}
+
+    /**
+     * Register the number of records of a partition not consumed yet by the group, once the partition is first assigned,
+     * it is sampled when the metrics are published.
+     */
+    default void lag(String topic, int partition, DoubleSupplier lag) {}
+
+    /**
+     * Register the number of consumer threads of a group scaled on its lag,
+     * it is sampled when the metrics are published.
+     */
+    default void threads(IntSupplier threads) {}
+
+    /**
+     * A consumer thread was added to the group when {@param up}, or removed.
+     */
+    default void scaled(boolean up) {}
+
+}
@@ -0,0 +1,206 @@
+package brave.kafka.metric;
+
+import brave.metric.CounterMetric;
+import brave.metric.DistributionSummaryMetric;
+import brave.metric.GaugeMetric;
+import brave.metric.MetricsCollector;
+import io.micrometer.core.instrument.Tags;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.DoubleSupplier;
+import java.util.function.IntSupplier;
+
+/**
+ * Records the measurements of a consumer group through a {@link MetricsCollector}, tagged by the handler signature.
+ * <ul>
+ *     <li><code>brave.kafka.handoff.depth</code> samples the records handed over and not processed yet</li>
+ *     <li><code>brave.kafka.paused</code> summarizes how long the partitions were paused in milliseconds</li>
+ *     <li><code>brave.kafka.records</code> counts the records handled, tagged by <code>topic</code></li>
+ *     <li><code>brave.kafka.handler.latency</code> summarizes the handler latency in milliseconds, tagged by <code>topic</code></li>
+ *     <li><code>brave.kafka.poll.latency</code> and <code>brave.kafka.poll.interval</code> summarize the time spent
+ *     in and between polls in milliseconds</li>
+ *     <li><code>brave.kafka.lag</code> samples the records not consumed yet, tagged by <code>topic</code> and <code>partition</code>.
+ *     These gauges are not counted against the maximum metrics of the collector, a topic may have many partitions</li>
+ *     <li><code>brave.kafka.topic.lag</code> samples the records not consumed yet of the partitions of a topic assigned so far,
+ *     tagged by <code>topic</code></li>
+ *     <li><code>brave.kafka.threads</code> samples the consumer threads of a group scaled on its lag</li>
+ *     <li><code>brave.kafka.scale.events</code> counts the threads added and removed, tagged by <code>direction</code></li>
+ * </ul>
+ */
+public class MetricsConsumerInstrumentation implements ConsumerInstrumentation {
+
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+    private final MetricsCollector metricsCollector;
+    private final Tags handlerTags;
+    private final DistributionSummaryMetric paused;
+    private final DistributionSummaryMetric pollLatency;
+    private final DistributionSummaryMetric pollInterval;
+    private final CounterMetric scaledUp;
+    private final CounterMetric scaledDown;
+    private final Map<String, TopicMetrics> topicMetrics = new ConcurrentHashMap<>();
+    private final Map<String, Map<Integer, DoubleSupplier>> partitionLags = new ConcurrentHashMap<>();
+
+    public MetricsConsumerInstrumentation(MetricsCollector metricsCollector, String handler) {
+        this.metricsCollector = metricsCollector;
+        this.handlerTags = Tags.of("handler", handler);
+        this.paused = new ConsumerLatency("brave.kafka.paused", handlerTags);
+        this.pollLatency = new ConsumerLatency("brave.kafka.poll.latency", handlerTags);
+        this.pollInterval = new ConsumerLatency("brave.kafka.poll.interval", handlerTags);
+        this.scaledUp = new ConsumerCounter("brave.kafka.scale.events", handlerTags.and("direction", "up"));
+        this.scaledDown = new ConsumerCounter("brave.kafka.scale.events", handlerTags.and("direction", "down"));
+    }
+
+    @Override
+    public void handoffDepth(IntSupplier depth) {
+        metricsCollector.gauge(new ConsumerGauge("brave.kafka.handoff.depth", handlerTags), depth, IntSupplier::getAsInt);
+    }
+
+    @Override
+    public void paused(long nanos) {
+        metricsCollector.collect(paused, nanos / NANOS_PER_MILLI);
+    }
+
+    @Override
+    public void handled(String topic, int records, long nanos) {
+        TopicMetrics metrics = topicMetrics.computeIfAbsent(topic, this::topicMetrics);
+        metricsCollector.increase(metrics.records, records);
+        metricsCollector.collect(metrics.handlerLatency, nanos / NANOS_PER_MILLI);
+    }
+
+    @Override
+    public void pollLatency(long nanos) {
+        metricsCollector.collect(pollLatency, nanos / NANOS_PER_MILLI);
+    }
+
+    @Override
+    public void pollInterval(long nanos) {
+        metricsCollector.collect(pollInterval, nanos / NANOS_PER_MILLI);
+    }
+
+    @Override
+    public void lag(String topic, int partition, DoubleSupplier lag) {
+        Map<Integer, DoubleSupplier> topicLags = partitionLags.computeIfAbsent(topic, t -> {
+            Map<Integer, DoubleSupplier> lags = new ConcurrentHashMap<>();
+            metricsCollector.gauge(new ConsumerGauge("brave.kafka.topic.lag", handlerTags.and("topic", t)), lags,
+                    l -> l.values().stream().mapToDouble(DoubleSupplier::getAsDouble).sum());
+            return lags;
+        });
+        topicLags.putIfAbsent(partition, lag);
+
+        Tags partitionTags = handlerTags.and("topic", topic, "partition", String.valueOf(partition));
+        metricsCollector.uncountedGauge(new ConsumerGauge("brave.kafka.lag", partitionTags), lag, DoubleSupplier::getAsDouble);
+    }
+
+    @Override
+    public void threads(IntSupplier threads) {
+        metricsCollector.gauge(new ConsumerGauge("brave.kafka.threads", handlerTags), threads, IntSupplier::getAsInt);
+    }
+
+    @Override
+    public void scaled(boolean up) {
+        metricsCollector.increase(up ? scaledUp : scaledDown, 1);
+    }
+
+    private TopicMetrics topicMetrics(String topic) {
+        Tags topicTags = handlerTags.and("topic", topic);
+        return new TopicMetrics(
+                new ConsumerCounter("brave.kafka.records", topicTags),
+                new ConsumerLatency("brave.kafka.handler.latency", topicTags));
+    }
+
+    private static class TopicMetrics {
+
+        private final CounterMetric records;
+        private final DistributionSummaryMetric handlerLatency;
+
+        TopicMetrics(CounterMetric records, DistributionSummaryMetric handlerLatency) {
+            this.records = records;
+            this.handlerLatency = handlerLatency;
+        }
+    }
+
+    private static class ConsumerCounter implements CounterMetric {
+
+        private final String metricName;
+        private final Tags tags;
+
+        ConsumerCounter(String metricName, Tags tags) {
+            this.metricName = metricName;
+            this.tags = tags;
+        }
+
+        @Override
+        public String metricName() {
+            return metricName;
+        }
+
+        @Override
+        public Tags tags() {
+            return tags;
+        }
+
+        @Override
+        public String toString() {
+            return metricName + tags;
+        }
+    }
+
+    private static class ConsumerGauge implements GaugeMetric {
+
+        private final String metricName;
+        private final Tags tags;
+
+        ConsumerGauge(String metricName, Tags tags) {
+            this.metricName = metricName;
+            this.tags = tags;
+        }
+
+        @Override
+        public String metricName() {
+            return metricName;
+        }
+
+        @Override
+        public Tags tags() {
+            return tags;
+        }
+
+        @Override
+        public String toString() {
+            return metricName + tags;
+        }
+    }
+
+    private static class ConsumerLatency implements DistributionSummaryMetric {
+
+        private final String metricName;
+        private final Tags tags;
+
+        ConsumerLatency(String metricName, Tags tags) {
+            this.metricName = metricName;
+            this.tags = tags;
+        }
+
+        @Override
+        public String metricName() {
+            return metricName;
+        }
+
+        @Override
+        public Tags tags() {
+            return tags;
+        }
+
+        @Override
+        public String baseUnit() {
+            return "milliseconds";
+        }
+
+        @Override
+        public String toString() {
+            return metricName + tags;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package brave.kafka;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ScalingPolicyTest {
+
+    private static final long AFTER_COOLDOWN = Duration.ofMinutes(2).toNanos();
+
+    private final ScalingPolicy policy = new ScalingPolicy(2, 4, 1000, Duration.ofMinutes(1));
+
+    @Test
+    void laggingBusyGroup_shouldScaleUp() {
+        assertThat(policy.decide(2, 1000, 0.75, 8, AFTER_COOLDOWN)).isEqualTo(1);
+        assertThat(policy.decide(3, 5000, 1, 8, AFTER_COOLDOWN)).isEqualTo(1);
+    }
+
+    @Test
+    void laggingIdleGroup_shouldNotScaleUp() {
+        // The group is not busy, e.g. slowed down by the broker rather than by its handlers
+        assertThat(policy.decide(2, 5000, 0.74, 8, AFTER_COOLDOWN)).isZero();
+    }
+
+    @Test
+    void busyGroupBelowLag_shouldNotScale() {
+        assertThat(policy.decide(3, 999, 1, 8, AFTER_COOLDOWN)).isZero();
+    }
+
+    @Test
+    void idleGroupBelowLag_shouldScaleDown() {
+        assertThat(policy.decide(3, 999, 0.25, 8, AFTER_COOLDOWN)).isEqualTo(-1);
+        assertThat(policy.decide(4, 0, 0, 8, AFTER_COOLDOWN)).isEqualTo(-1);
+    }
+
+    @Test
+    void idleGroupLagging_shouldNotScaleDown() {
+        assertThat(policy.decide(3, 1000, 0.1, 8, AFTER_COOLDOWN)).isZero();
+    }
+
+    @Test
+    void scaling_shouldWaitForCooldown() {
+        long beforeCooldown = Duration.ofSeconds(59).toNanos();
+
+        assertThat(policy.decide(2, 5000, 1, 8, beforeCooldown)).isZero();
+        assertThat(policy.decide(3, 0, 0, 8, beforeCooldown)).isZero();
+        assertThat(policy.decide(2, 5000, 1, 8, Duration.ofMinutes(1).toNanos())).isEqualTo(1);
+    }
+
+    @Test
+    void scaling_shouldStayWithinBounds() {
+        assertThat(policy.decide(4, 5000, 1, 8, AFTER_COOLDOWN)).isZero();
+        assertThat(policy.decide(2, 0, 0, 8, AFTER_COOLDOWN)).isZero();
+    }
+
+    @Test
+    void scalingUp_shouldNotExceedAssignedPartitions() {
+        assertThat(policy.decide(3, 5000, 1, 3, AFTER_COOLDOWN)).isZero();
+        assertThat(policy.decide(3, 5000, 1, 4, AFTER_COOLDOWN)).isEqualTo(1);
+    }
+
+    @Test
+    void scalingDown_shouldKeepOneThread() {
+        ScalingPolicy unboundedPolicy = new ScalingPolicy(0, 4, 1000, Duration.ZERO);
+
+        assertThat(unboundedPolicy.decide(1, 0, 0, 8, 0)).isZero();
+        assertThat(unboundedPolicy.decide(2, 0, 0, 8, 0)).isEqualTo(-1);
+    }
+}
@@ -0,0 +1,45 @@
+package garden;
+
+
+import brave.kafka.Consumers;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+@Slf4j
+@Component
+@Consumers(
+        bootstrapServers = "${kafka.bootstrap.servers}",
+        groupId = "garden-compacted-watcher",
+        autoOffsetReset = "earliest"
+)
+public class GardenWatcherCompacted {
+
+    private final CountDownLatch fullGardenLatch = new CountDownLatch(1);
+    private volatile Map<Seed, Fruit> latestFruits;
+
+    @Consumers.Handler(
+            topics = "connect.garden.changes.compacted",
+            minBatchRecords = 5,
+            maxBatchWaitMillis = 3000,
+            keyDeserializer = garden.SeedDeserializer.class,
+            valueDeserializer = garden.FruitDeserializer.class
+    )
+    public void processLatestFruits(Map<Seed, Fruit> latestFruits) {
+        log.warn("Got latest fruits {}", latestFruits);
+        this.latestFruits = latestFruits;
+        fullGardenLatch.countDown();
+    }
+
+    public boolean waitUntilGardenIsFull(Duration duration) throws InterruptedException {
+        return fullGardenLatch.await(duration.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public Map<Seed, Fruit> getLatestFruits() {
+        return latestFruits;
+    }
+}
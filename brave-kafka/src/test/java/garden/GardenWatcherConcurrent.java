@@ -0,0 +1,50 @@
+package garden;
+
+
+import brave.kafka.Consumers;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+@Slf4j
+@Component
+@Consumers(
+        bootstrapServers = "${kafka.bootstrap.servers}",
+        groupId = "garden-concurrent-watcher",
+        autoOffsetReset = "earliest"
+)
+public class GardenWatcherConcurrent {
+
+    private final CountDownLatch fullGardenLatch = new CountDownLatch(20);
+    private final Map<Seed, List<Fruit>> harvestedFruits = new ConcurrentHashMap<>();
+
+    @Consumers.Handler(
+            topics = "connect.garden.changes.concurrent",
+            concurrency = 4,
+            keyDeserializer = garden.SeedDeserializer.class,
+            valueDeserializer = garden.FruitDeserializer.class
+    )
+    public void handleGardenChangeConcurrently(ConsumerRecord<Seed, Fruit> cr) throws InterruptedException {
+        log.warn("Got seed {} flower {} on {}", cr.key(), cr.value(), Thread.currentThread().getName());
+        TimeUnit.MILLISECONDS.sleep(5);
+
+        harvestedFruits.computeIfAbsent(cr.key(), seed -> new CopyOnWriteArrayList<>()).add(cr.value());
+        fullGardenLatch.countDown();
+    }
+
+    public boolean waitUntilGardenIsFull(Duration duration) throws InterruptedException {
+        return fullGardenLatch.await(duration.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public Map<Seed, List<Fruit>> getHarvestedFruits() {
+        return harvestedFruits;
+    }
+}
@@ -0,0 +1,50 @@
+package garden;
+
+
+import brave.kafka.Consumers;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+@Slf4j
+@Component
+@Consumers(
+        bootstrapServers = "${kafka.bootstrap.servers}",
+        groupId = "garden-handoff-watcher",
+        autoOffsetReset = "earliest",
+        maxPollRecords = 2
+)
+public class GardenWatcherHandoff {
+
+    private final CountDownLatch fullGardenLatch = new CountDownLatch(12);
+    private final List<Fruit> harvestedFruits = new CopyOnWriteArrayList<>();
+
+    @Consumers.Handler(
+            topics = "connect.garden.changes.handoff",
+            handoffCapacity = 4,
+            pollingTimeoutMillis = 50,
+            keyDeserializer = garden.SeedDeserializer.class,
+            valueDeserializer = garden.FruitDeserializer.class
+    )
+    public void handleGardenChangeSlowly(ConsumerRecord<Seed, Fruit> cr) throws InterruptedException {
+        log.warn("Got seed {} flower {} on {}", cr.key(), cr.value(), Thread.currentThread().getName());
+        TimeUnit.MILLISECONDS.sleep(50);
+
+        harvestedFruits.add(cr.value());
+        fullGardenLatch.countDown();
+    }
+
+    public boolean waitUntilGardenIsFull(Duration duration) throws InterruptedException {
+        return fullGardenLatch.await(duration.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public List<Fruit> getHarvestedFruits() {
+        return harvestedFruits;
+    }
+}
@@ -0,0 +1,58 @@
+package garden;
+
+
+import brave.kafka.Consumers;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+@Slf4j
+@Component
+@Consumers(
+        bootstrapServers = "${kafka.bootstrap.servers}",
+        groupId = "garden-micro-batch-watcher",
+        autoOffsetReset = "earliest",
+        maxPollRecords = 2
+)
+public class GardenWatcherMicroBatch {
+
+    private final CountDownLatch fullGardenLatch = new CountDownLatch(12);
+    private final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+    private final List<Fruit> harvestedFruits = new CopyOnWriteArrayList<>();
+
+    @Consumers.Handler(
+            topics = "connect.garden.changes.microbatch",
+            minBatchRecords = 5,
+            maxBatchRecords = 5,
+            maxBatchWaitMillis = 3000,
+            keyDeserializer = garden.SeedDeserializer.class,
+            valueDeserializer = garden.FruitDeserializer.class
+    )
+    public void processMicroBatch(ConsumerRecords<Seed, Fruit> consumerRecords) {
+        log.warn("Got batch of {} fruits", consumerRecords.count());
+        batchSizes.add(consumerRecords.count());
+        for (ConsumerRecord<Seed, Fruit> cr : consumerRecords) {
+            harvestedFruits.add(cr.value());
+            fullGardenLatch.countDown();
+        }
+    }
+
+    public boolean waitUntilGardenIsFull(Duration duration) throws InterruptedException {
+        return fullGardenLatch.await(duration.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public List<Integer> getBatchSizes() {
+        return batchSizes;
+    }
+
+    public List<Fruit> getHarvestedFruits() {
+        return harvestedFruits;
+    }
+}
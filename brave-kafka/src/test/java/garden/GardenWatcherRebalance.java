@@ -0,0 +1,75 @@
+package garden;
+
+
+import brave.kafka.Consumers;
+import brave.kafka.PartitionListener;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+@Slf4j
+@Component
+@Consumers(
+        bootstrapServers = "${kafka.bootstrap.servers}",
+        groupId = "garden-rebalance-watcher",
+        autoOffsetReset = "earliest"
+)
+public class GardenWatcherRebalance implements PartitionListener {
+
+    private final CountDownLatch fullGardenLatch = new CountDownLatch(4);
+    private final List<TopicPartition> assignedPartitions = new CopyOnWriteArrayList<>();
+    private final List<TopicPartition> revokedPartitions = new CopyOnWriteArrayList<>();
+    private final Map<TopicPartition, List<Fruit>> fruitsByPartition = new ConcurrentHashMap<>();
+
+    @Consumers.Handler(
+            topics = "connect.garden.changes.rebalance",
+            commit = Consumers.Handler.Commit.MANAGED,
+            keyDeserializer = garden.SeedDeserializer.class,
+            valueDeserializer = garden.FruitDeserializer.class
+    )
+    public void processFruit(ConsumerRecord<Seed, Fruit> consumerRecord) {
+        TopicPartition partition = new TopicPartition(consumerRecord.topic(), consumerRecord.partition());
+        fruitsByPartition.get(partition).add(consumerRecord.value());
+        fullGardenLatch.countDown();
+    }
+
+    @Override
+    public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+        log.warn("Assigned partitions {}", partitions);
+        assignedPartitions.addAll(partitions);
+        partitions.forEach(partition -> fruitsByPartition.put(partition, new CopyOnWriteArrayList<>()));
+    }
+
+    @Override
+    public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+        log.warn("Revoked partitions {}", partitions);
+        revokedPartitions.addAll(partitions);
+        partitions.forEach(fruitsByPartition::remove);
+    }
+
+    public boolean waitUntilGardenIsFull(Duration duration) throws InterruptedException {
+        return fullGardenLatch.await(duration.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public List<TopicPartition> getAssignedPartitions() {
+        return assignedPartitions;
+    }
+
+    public List<TopicPartition> getRevokedPartitions() {
+        return revokedPartitions;
+    }
+
+    public Map<TopicPartition, List<Fruit>> getFruitsByPartition() {
+        return fruitsByPartition;
+    }
+}
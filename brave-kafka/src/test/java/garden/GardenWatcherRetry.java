@@ -0,0 +1,75 @@
+package garden;
+
+
+import brave.kafka.Consumers;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Header;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Slf4j
+@Component
+@Consumers(
+        bootstrapServers = "${kafka.bootstrap.servers}",
+        groupId = "garden-retry-watcher",
+        autoOffsetReset = "earliest"
+)
+public class GardenWatcherRetry {
+
+    private final CountDownLatch fullGardenLatch = new CountDownLatch(4);
+    private final List<Fruit> harvestedFruits = new CopyOnWriteArrayList<>();
+    private final Map<Fruit, String> rottenFruits = new ConcurrentHashMap<>();
+    private final AtomicInteger grapeAttempts = new AtomicInteger();
+
+    @Consumers.Handler(
+            topics = "connect.garden.changes.retry",
+            retryDelaysMillis = {100, 200},
+            keyDeserializer = garden.SeedDeserializer.class,
+            valueDeserializer = garden.FruitDeserializer.class
+    )
+    public void handleGardenChange(ConsumerRecord<Seed, Fruit> cr) {
+        log.warn("Got seed {} flower {} from {}", cr.key(), cr.value(), cr.topic());
+        if (cr.value().getName().startsWith("Rotten")) {
+            throw new IllegalStateException("Cannot harvest " + cr.value());
+        }
+        if (cr.value().getName().equals("Grape 1") && grapeAttempts.getAndIncrement() == 0) {
+            throw new IllegalStateException("Not ripe yet " + cr.value());
+        }
+
+        harvestedFruits.add(cr.value());
+        fullGardenLatch.countDown();
+    }
+
+    @Consumers.Handler(
+            topics = "connect.garden.changes.retry.dlq",
+            keyDeserializer = garden.SeedDeserializer.class,
+            valueDeserializer = garden.FruitDeserializer.class
+    )
+    public void handleRottenFruit(ConsumerRecord<Seed, Fruit> cr) {
+        Header attempt = cr.headers().lastHeader("brave.retry.attempt");
+        rottenFruits.put(cr.value(), new String(attempt.value(), StandardCharsets.UTF_8));
+        fullGardenLatch.countDown();
+    }
+
+    public boolean waitUntilGardenIsFull(Duration duration) throws InterruptedException {
+        return fullGardenLatch.await(duration.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public List<Fruit> getHarvestedFruits() {
+        return harvestedFruits;
+    }
+
+    public Map<Fruit, String> getRottenFruits() {
+        return rottenFruits;
+    }
+}
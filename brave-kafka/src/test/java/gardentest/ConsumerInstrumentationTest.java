@@ -0,0 +1,64 @@
+package gardentest;
+
+import brave.kafka.metric.MetricsConsumerInstrumentation;
+import brave.metric.MetricsCollector;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ConsumerInstrumentationTest {
+
+    @Test
+    void handler_shouldRecordThroughputLatenciesAndLag() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        MetricsConsumerInstrumentation instrumentation = new MetricsConsumerInstrumentation(new MetricsCollector(registry, 32), "garden.watch()");
+        double[] lag = {42, 3};
+
+        // When
+        instrumentation.handled("connect.garden.changes", 1, TimeUnit.MILLISECONDS.toNanos(2));
+        instrumentation.handled("connect.garden.changes", 3, TimeUnit.MILLISECONDS.toNanos(4));
+        instrumentation.pollLatency(TimeUnit.MILLISECONDS.toNanos(10));
+        instrumentation.pollInterval(TimeUnit.MILLISECONDS.toNanos(6));
+        instrumentation.lag("connect.garden.changes", 0, () -> lag[0]);
+        instrumentation.lag("connect.garden.changes", 1, () -> lag[1]);
+        lag[0] = 7;
+
+        // Then
+        assertThat(registry.get("brave.kafka.records").tag("handler", "garden.watch()").tag("topic", "connect.garden.changes").counter().count())
+                .isEqualTo(4);
+        assertThat(registry.get("brave.kafka.handler.latency").tag("topic", "connect.garden.changes").summary().max())
+                .isEqualTo(4);
+        assertThat(registry.get("brave.kafka.poll.latency").tag("handler", "garden.watch()").summary().count())
+                .isEqualTo(1);
+        assertThat(registry.get("brave.kafka.poll.interval").tag("handler", "garden.watch()").summary().totalAmount())
+                .isEqualTo(6);
+        assertThat(registry.get("brave.kafka.lag").tag("topic", "connect.garden.changes").tag("partition", "0").gauge().value())
+                .isEqualTo(7);
+        assertThat(registry.get("brave.kafka.lag").tag("topic", "connect.garden.changes").tag("partition", "1").gauge().value())
+                .isEqualTo(3);
+        assertThat(registry.get("brave.kafka.topic.lag").tag("topic", "connect.garden.changes").gauge().value())
+                .isEqualTo(10);
+    }
+
+    @Test
+    void lagOfManyPartitions_shouldNotCrowdOutTheOtherMetrics() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        MetricsConsumerInstrumentation instrumentation = new MetricsConsumerInstrumentation(new MetricsCollector(registry, 32), "garden.watch()");
+
+        // When the partitions are assigned before the first poll completes
+        for (int partition = 0; partition < 64; partition++) {
+            instrumentation.lag("connect.garden.changes", partition, () -> 1);
+        }
+        instrumentation.pollLatency(TimeUnit.MILLISECONDS.toNanos(10));
+        instrumentation.handled("connect.garden.changes", 1, TimeUnit.MILLISECONDS.toNanos(2));
+
+        // Then
+        assertThat(registry.get("brave.kafka.lag").gauges()).hasSize(64);
+        assertThat(registry.get("brave.kafka.topic.lag").gauge().value()).isEqualTo(64);
+        assertThat(registry.get("brave.kafka.poll.latency").summary().count()).isEqualTo(1);
+        assertThat(registry.get("brave.kafka.records").counter().count()).isEqualTo(1);
+    }
+}
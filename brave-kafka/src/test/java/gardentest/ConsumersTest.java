@@ -3,13 +3,24 @@ package gardentest;
 import brave.extension.KafkaExtension;
 import brave.extension.KafkaStub;
 import garden.*;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.CooperativeStickyAssignor;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.RangeAssignor;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
 import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -26,12 +37,36 @@ public class ConsumersTest {
     @Autowired
     GardenWatcherBatch gardenWatcherBatch;
 
+    @Autowired
+    GardenWatcherBatchManaged gardenWatcherBatchManaged;
+
     @Autowired
     GardenWatcherAutoCommit gardenWatcherAutoCommit;
 
     @Autowired
     GardenWatcherBatchAutoCommit gardenWatcherBatchAutoCommit;
 
+    @Autowired
+    GardenWatcherConcurrent gardenWatcherConcurrent;
+
+    @Autowired
+    GardenWatcherHandoff gardenWatcherHandoff;
+
+    @Autowired
+    GardenWatcherRetry gardenWatcherRetry;
+
+    @Autowired
+    GardenWatcherMicroBatch gardenWatcherMicroBatch;
+
+    @Autowired
+    GardenWatcherCompacted gardenWatcherCompacted;
+
+    @Autowired
+    GardenWatcherRebalance gardenWatcherRebalance;
+
+    @Value("${kafka.bootstrap.servers}")
+    String bootstrapServers;
+
     @Test
     void consumerOfGardenChanges_shouldBeActive(KafkaStub kafkaStub) throws Exception {
         // Given
@@ -74,6 +109,21 @@ public class ConsumersTest {
         kafkaStub.unload("stubs/Garden/batchedRecordsConsumer/kafka");
     }
 
+    @Test
+    void batchedRecordsManagedCommitConsumer_shouldBeActive(KafkaStub kafkaStub) throws Exception {
+        // Given
+        kafkaStub.load("stubs/Garden/batchedRecordsManagedConsumer/kafka");
+
+        // When
+        boolean gardenIsFull = gardenWatcherBatchManaged.waitUntilGardenIsFull(Duration.ofSeconds(10));
+
+        // Then
+        assertThat(gardenIsFull).isTrue();
+
+        // Cleanup
+        kafkaStub.unload("stubs/Garden/batchedRecordsManagedConsumer/kafka");
+    }
+
     @Test
     void autoCommitConsumer_shouldBeActive(KafkaStub kafkaStub) throws Exception {
         // Given
@@ -104,4 +154,146 @@ public class ConsumersTest {
         kafkaStub.unload("stubs/Garden/batchedRecordsAutoCommitConsumer/kafka");
     }
 
+    @Test
+    void concurrentConsumer_shouldKeepOrderOfEachKey(KafkaStub kafkaStub) throws Exception {
+        // Given
+        kafkaStub.load("stubs/Garden/concurrentConsumer/kafka");
+
+        // When
+        boolean gardenIsFull = gardenWatcherConcurrent.waitUntilGardenIsFull(Duration.ofSeconds(10));
+
+        // Then
+        assertThat(gardenIsFull).isTrue();
+        for (String name : List.of("Apple", "Banana", "Cherry", "Durian")) {
+            assertThat(gardenWatcherConcurrent.getHarvestedFruits().get(new Seed(name))).containsExactly(
+                    new Fruit(name + " 0"),
+                    new Fruit(name + " 1"),
+                    new Fruit(name + " 2"),
+                    new Fruit(name + " 3"),
+                    new Fruit(name + " 4")
+            );
+        }
+
+        // Cleanup
+        kafkaStub.unload("stubs/Garden/concurrentConsumer/kafka");
+    }
+
+    @Test
+    void handoffConsumer_shouldReceiveAllRecords_whilePausedBySlowHandler(KafkaStub kafkaStub) throws Exception {
+        // Given
+        kafkaStub.load("stubs/Garden/handoffConsumer/kafka");
+
+        // When
+        boolean gardenIsFull = gardenWatcherHandoff.waitUntilGardenIsFull(Duration.ofSeconds(10));
+
+        // Then
+        assertThat(gardenIsFull).isTrue();
+        assertThat(gardenWatcherHandoff.getHarvestedFruits()).containsExactly(
+                new Fruit("Fig 0"), new Fruit("Fig 1"), new Fruit("Fig 2"), new Fruit("Fig 3"),
+                new Fruit("Fig 4"), new Fruit("Fig 5"), new Fruit("Fig 6"), new Fruit("Fig 7"),
+                new Fruit("Fig 8"), new Fruit("Fig 9"), new Fruit("Fig 10"), new Fruit("Fig 11")
+        );
+
+        // Cleanup
+        kafkaStub.unload("stubs/Garden/handoffConsumer/kafka");
+    }
+
+    @Test
+    void retryConsumer_shouldRetryFailedRecords_andPublishExhaustedOnesToDeadLetterTopic(KafkaStub kafkaStub) throws Exception {
+        // Given
+        kafkaStub.load("stubs/Garden/retryConsumer/kafka");
+
+        // When
+        boolean gardenIsFull = gardenWatcherRetry.waitUntilGardenIsFull(Duration.ofSeconds(30));
+
+        // Then
+        assertThat(gardenIsFull).isTrue();
+        assertThat(gardenWatcherRetry.getHarvestedFruits())
+                .containsExactlyInAnyOrder(new Fruit("Grape 0"), new Fruit("Grape 1"), new Fruit("Grape 2"));
+        assertThat(gardenWatcherRetry.getRottenFruits()).containsExactly(Map.entry(new Fruit("Rotten 0"), "3"));
+
+        // Cleanup
+        kafkaStub.unload("stubs/Garden/retryConsumer/kafka");
+    }
+
+    @Test
+    void microBatchConsumer_shouldAccumulateRecordsAcrossPolls(KafkaStub kafkaStub) throws Exception {
+        // Given
+        kafkaStub.load("stubs/Garden/microBatchConsumer/kafka");
+
+        // When
+        boolean gardenIsFull = gardenWatcherMicroBatch.waitUntilGardenIsFull(Duration.ofSeconds(15));
+
+        // Then
+        assertThat(gardenIsFull).isTrue();
+        assertThat(gardenWatcherMicroBatch.getBatchSizes()).allMatch(size -> size <= 5).startsWith(5);
+        assertThat(gardenWatcherMicroBatch.getHarvestedFruits()).containsExactly(
+                new Fruit("Kiwi 0"), new Fruit("Kiwi 1"), new Fruit("Kiwi 2"), new Fruit("Kiwi 3"),
+                new Fruit("Kiwi 4"), new Fruit("Kiwi 5"), new Fruit("Kiwi 6"), new Fruit("Kiwi 7"),
+                new Fruit("Kiwi 8"), new Fruit("Kiwi 9"), new Fruit("Kiwi 10"), new Fruit("Kiwi 11")
+        );
+
+        // Cleanup
+        kafkaStub.unload("stubs/Garden/microBatchConsumer/kafka");
+    }
+
+    @Test
+    void compactedConsumer_shouldReceiveLatestValueOfEachKey(KafkaStub kafkaStub) throws Exception {
+        // Given
+        kafkaStub.load("stubs/Garden/compactedConsumer/kafka");
+
+        // When
+        boolean gardenIsFull = gardenWatcherCompacted.waitUntilGardenIsFull(Duration.ofSeconds(15));
+
+        // Then
+        assertThat(gardenIsFull).isTrue();
+        assertThat(gardenWatcherCompacted.getLatestFruits()).containsExactly(
+                Map.entry(new Seed("Lemon"), new Fruit("Lemon 2")),
+                Map.entry(new Seed("Lime"), new Fruit("Lime 1"))
+        );
+
+        // Cleanup
+        kafkaStub.unload("stubs/Garden/compactedConsumer/kafka");
+    }
+
+    @Test
+    void rebalanceAwareConsumer_shouldKeepStateOfAssignedPartitions(KafkaStub kafkaStub) throws Exception {
+        // Given
+        kafkaStub.load("stubs/Garden/rebalanceConsumer/kafka");
+
+        // When
+        boolean gardenIsFull = gardenWatcherRebalance.waitUntilGardenIsFull(Duration.ofSeconds(10));
+
+        // Then
+        TopicPartition partition = new TopicPartition("connect.garden.changes.rebalance", 0);
+        assertThat(gardenIsFull).isTrue();
+        assertThat(gardenWatcherRebalance.getAssignedPartitions()).containsOnlyOnce(partition);
+        assertThat(gardenWatcherRebalance.getFruitsByPartition().get(partition)).containsExactly(
+                new Fruit("Plum 0"), new Fruit("Plum 1"), new Fruit("Plum 2"), new Fruit("Plum 3")
+        );
+
+        // When another member joins the group
+        Properties joiningProps = new Properties();
+        joiningProps.setProperty(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        joiningProps.setProperty(ConsumerConfig.GROUP_ID_CONFIG, "garden-rebalance-watcher");
+        joiningProps.setProperty(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+        joiningProps.setProperty(ConsumerConfig.PARTITION_ASSIGNMENT_STRATEGY_CONFIG,
+                RangeAssignor.class.getName() + "," + CooperativeStickyAssignor.class.getName());
+        try (KafkaConsumer<byte[], byte[]> joiningConsumer = new KafkaConsumer<>(joiningProps, new ByteArrayDeserializer(), new ByteArrayDeserializer())) {
+            joiningConsumer.subscribe(List.of(partition.topic()));
+            long deadline = System.nanoTime() + Duration.ofSeconds(30).toNanos();
+            while (!gardenWatcherRebalance.getRevokedPartitions().contains(partition) && System.nanoTime() < deadline) {
+                joiningConsumer.poll(Duration.ofMillis(100));
+            }
+
+            // Then the partition was revoked after committing the processed records
+            assertThat(gardenWatcherRebalance.getRevokedPartitions()).contains(partition);
+            assertThat(gardenWatcherRebalance.getFruitsByPartition()).doesNotContainKey(partition);
+            assertThat(joiningConsumer.committed(Set.of(partition)).get(partition).offset()).isEqualTo(4);
+        }
+
+        // Cleanup
+        kafkaStub.unload("stubs/Garden/rebalanceConsumer/kafka");
+    }
+
 }
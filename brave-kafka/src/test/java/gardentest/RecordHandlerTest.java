@@ -0,0 +1,117 @@
+package gardentest;
+
+import brave.kafka.RecordHandler;
+import garden.Fruit;
+import garden.Seed;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class RecordHandlerTest {
+
+    private final ConsumerRecord<Seed, Fruit> apple = new ConsumerRecord<>("garden", 0, 1L, new Seed("apple"), new Fruit("apple"));
+    private final ConsumerRecord<Seed, Fruit> banana = new ConsumerRecord<>("garden", 0, 2L, new Seed("banana"), new Fruit("banana"));
+
+    @Test
+    void bind_shouldCallSingleRecordHandler() throws Throwable {
+        GardenHandlers handlers = new GardenHandlers();
+
+        RecordHandler handler = RecordHandler.bind(handlers, GardenHandlers.class.getMethod("single", ConsumerRecord.class));
+        handler.handle(apple);
+        handler.handle(banana);
+
+        assertThat(handlers.handledFruits).containsExactly(new Fruit("apple"), new Fruit("banana"));
+    }
+
+    @Test
+    void bind_shouldCallBatchHandler() throws Throwable {
+        GardenHandlers handlers = new GardenHandlers();
+
+        RecordHandler handler = RecordHandler.bind(handlers, GardenHandlers.class.getMethod("batch", List.class));
+        handler.handle(List.of(apple, banana));
+
+        assertThat(handlers.handledFruits).containsExactly(new Fruit("apple"), new Fruit("banana"));
+    }
+
+    @Test
+    void bindWithConsumer_shouldPassTheConsumer() throws Throwable {
+        GardenHandlers handlers = new GardenHandlers();
+        MockConsumer<Seed, Fruit> consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+
+        RecordHandler.WithConsumer handler = RecordHandler.bindWithConsumer(handlers,
+                GardenHandlers.class.getMethod("withConsumer", ConsumerRecord.class, Consumer.class));
+        handler.handle(apple, consumer);
+
+        assertThat(handlers.handledFruits).containsExactly(new Fruit("apple"));
+        assertThat(handlers.consumer).isSameAs(consumer);
+    }
+
+    @Test
+    void bind_shouldCallPrivateHandlerOfPrivateClass() throws Throwable {
+        PrivateGardenHandlers handlers = new PrivateGardenHandlers();
+
+        RecordHandler handler = RecordHandler.bind(handlers, PrivateGardenHandlers.class.getDeclaredMethod("single", ConsumerRecord.class));
+        handler.handle(apple);
+
+        assertThat(handlers.handledFruits).containsExactly(new Fruit("apple"));
+    }
+
+    @Test
+    void handle_shouldThrowHandlerExceptionUnwrapped() throws Throwable {
+        RecordHandler handler = RecordHandler.bind(new GardenHandlers(), GardenHandlers.class.getMethod("failing", ConsumerRecord.class));
+
+        assertThatThrownBy(() -> handler.handle(apple))
+                .isInstanceOf(IOException.class)
+                .hasMessage("Rotten apple");
+    }
+
+    @Test
+    void bind_shouldFailOnHandlerWithoutParameter() {
+        assertThatThrownBy(() -> RecordHandler.bind(new GardenHandlers(), GardenHandlers.class.getMethod("noRecords")))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    public static class GardenHandlers {
+
+        final List<Fruit> handledFruits = new ArrayList<>();
+        Consumer<Seed, Fruit> consumer;
+
+        public void single(ConsumerRecord<Seed, Fruit> record) {
+            handledFruits.add(record.value());
+        }
+
+        public void batch(List<ConsumerRecord<Seed, Fruit>> records) {
+            records.forEach(record -> handledFruits.add(record.value()));
+        }
+
+        public void withConsumer(ConsumerRecord<Seed, Fruit> record, Consumer<Seed, Fruit> consumer) {
+            handledFruits.add(record.value());
+            this.consumer = consumer;
+        }
+
+        public void failing(ConsumerRecord<Seed, Fruit> record) throws IOException {
+            throw new IOException("Rotten " + record.key().getName());
+        }
+
+        public void noRecords() {
+        }
+    }
+
+    private static class PrivateGardenHandlers {
+
+        final List<Fruit> handledFruits = new ArrayList<>();
+
+        private void single(ConsumerRecord<Seed, Fruit> record) {
+            handledFruits.add(record.value());
+        }
+    }
+}
@@ -0,0 +1,5 @@
+package brave.metric;
+
+public interface GaugeMetric extends Metric {
+
+}
@@ -2,17 +2,21 @@ package brave.metric;
 
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToDoubleFunction;
 
 @Slf4j
 public class MetricsCollector {
 
-    private final Map<DistributionSummaryMetric, DistributionSummary> summaries = new HashMap<>();
-    private final Map<CounterMetric, Counter> counters = new HashMap<>();
+    private final Map<DistributionSummaryMetric, DistributionSummary> summaries = new ConcurrentHashMap<>();
+    private final Map<CounterMetric, Counter> counters = new ConcurrentHashMap<>();
+    private final Map<GaugeMetric, Gauge> gauges = new ConcurrentHashMap<>();
+    private final Map<GaugeMetric, Gauge> uncountedGauges = new ConcurrentHashMap<>();
     private final MeterRegistry registry;
     private final int maximumMetrics;
 
@@ -43,6 +47,28 @@ public class MetricsCollector {
         increase(counterMetric, 1);
     }
 
+    /**
+     * Register a gauge sampling {@param valueFunction} of {@param stateObject} whenever the metrics are published.
+     * The state object is strongly referenced, registering the same metric again keeps the first one.
+     */
+    public <T> void gauge(GaugeMetric gaugeMetric, T stateObject, ToDoubleFunction<T> valueFunction) {
+        if (gauges.containsKey(gaugeMetric)) return;
+        if (reachMaximumMetrics()) {
+            log.warn("Maximum metrics reached: {}", maximumMetrics);
+            return;
+        }
+
+        gauges.computeIfAbsent(gaugeMetric, metric -> createDefaultGauge(metric, stateObject, valueFunction));
+    }
+
+    /**
+     * Register a gauge like {@link #gauge(GaugeMetric, Object, ToDoubleFunction)} without counting it against the maximum metrics,
+     * for gauges whose number is already bounded by the caller, e.g. one per assigned partition.
+     */
+    public <T> void uncountedGauge(GaugeMetric gaugeMetric, T stateObject, ToDoubleFunction<T> valueFunction) {
+        uncountedGauges.computeIfAbsent(gaugeMetric, metric -> createDefaultGauge(metric, stateObject, valueFunction));
+    }
+
     private Counter getCounter(CounterMetric serviceMetric) {
         Counter counter;
         if ((counter = counters.get(serviceMetric)) == null) {
@@ -51,8 +77,7 @@ public class MetricsCollector {
                 return null;
             }
 
-            counter = this.createDefaultCounter(serviceMetric);
-            counters.put(serviceMetric, counter);
+            counter = counters.computeIfAbsent(serviceMetric, this::createDefaultCounter);
         }
 
         return counter;
@@ -66,8 +91,7 @@ public class MetricsCollector {
                 return null;
             }
 
-            summary = this.createDefaultSummary(serviceMetric);
-            summaries.put(serviceMetric, summary);
+            summary = summaries.computeIfAbsent(serviceMetric, this::createDefaultSummary);
         }
 
         return summary;
@@ -75,7 +99,7 @@ public class MetricsCollector {
     }
 
     private boolean reachMaximumMetrics() {
-        return counters.size() + summaries.size() >= maximumMetrics;
+        return counters.size() + summaries.size() + gauges.size() >= maximumMetrics;
     }
 
     private DistributionSummary createDefaultSummary(DistributionSummaryMetric summaryMetric) {
@@ -90,6 +114,14 @@ public class MetricsCollector {
                 .register(registry);
     }
 
+    private <T> Gauge createDefaultGauge(GaugeMetric gaugeMetric, T stateObject, ToDoubleFunction<T> valueFunction) {
+        return Gauge.builder(gaugeMetric.metricName(), stateObject, valueFunction)
+                .tags(gaugeMetric.tags())
+                .baseUnit(gaugeMetric.baseUnit())
+                .strongReference(true)
+                .register(registry);
+    }
+
     private Counter createDefaultCounter(CounterMetric counterMetric) {
         return Counter.builder(counterMetric.metricName())
                 .tags(counterMetric.tags())